@@ -0,0 +1,43 @@
+package model.admission;
+
+import java.time.Duration;
+import java.util.Map;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Singular;
+import lombok.ToString;
+
+@Getter
+@Builder
+@ToString
+public class AdmissionConfig {
+
+  /** Latency SLO: shedding grows while the p99 pipeline delay of a window is above this. */
+  @Builder.Default private final Duration targetP99 = Duration.ofMillis(200);
+
+  /** Length of the windows the p99 is measured over; the controller adjusts once per window. */
+  @Builder.Default private final Duration window = Duration.ofMillis(500);
+
+  /** Windows with fewer delay samples keep the current rates. */
+  @Builder.Default private final int minSamples = 50;
+
+  /**
+   * Shedding added per breached window, scaled by how far the p99 is over the target. One unit of
+   * shedding drops one priority level completely.
+   */
+  @Builder.Default private final double increaseStep = 0.25;
+
+  /** Shedding removed per window whose p99 is below {@code recoveryRatio * targetP99}. */
+  @Builder.Default private final double decreaseStep = 0.02;
+
+  @Builder.Default private final double recoveryRatio = 0.7;
+
+  /** Shedding is not lowered until this long after it was last raised. */
+  @Builder.Default private final Duration recoveryDelay = Duration.ofSeconds(5);
+
+  /** Priorities of EventName symbols that differ from {@link Priority#of(String)}. */
+  @Singular private final Map<String, Priority> priorities;
+
+  /** Sets the sampleRate field of kept sampled events to their keep rate. */
+  @Builder.Default private final boolean recordSampleRate = true;
+}
@@ -0,0 +1,193 @@
+package model.admission;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+import model.metrics.LatencyHistogram;
+import model.utils.Hashing;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Adaptive load shedding by event priority. Callers report the pipeline delay of their work with
+ * {@link #recordDelay(long)}; once per window the controller compares the window's p99 with the SLO
+ * and raises shedding in proportion to the overshoot, or lowers it slowly once the p99 has been
+ * well below for a while. Shedding samples down {@link Priority#LOW} events first, then NORMAL,
+ * then HIGH, and never CRITICAL ones. Sampling keeps an event when the hash of its clientId falls
+ * below the keep rate, so a client's events are kept or dropped together, and lowering a rate only
+ * drops clients from the kept set. Kept sampled events record their rate in their sampleRate field
+ * so counts can be re-weighted downstream. Thread-safe.
+ */
+@Slf4j
+public class AdmissionController {
+
+  private static final long CLIENT_SEED = 0x3c6ef372fe94f82bL;
+  private static final List<Priority> PRIORITIES = List.of(Priority.values());
+
+  /** Priority levels that can be shed, i.e. all but CRITICAL. */
+  private static final int SHEDDABLE = PRIORITIES.size() - 1;
+
+  /** A window p99 below this fraction of the previous one counts as improving. */
+  private static final double IMPROVING = 0.8;
+
+  /** Cap on the p99/target factor applied to each increase. */
+  private static final double MAX_OVERSHOOT = 4;
+
+  private final AdmissionConfig config;
+  private final Schema eventNameSchema;
+  private final Priority[] priorities;
+  private final int clientIdPos;
+  private final int eventNamePos;
+  private final int sampleRatePos;
+  private final long targetNanos;
+  private final long windowNanos;
+  private final long recoveryDelayNanos;
+  private final LatencyHistogram delays = new LatencyHistogram();
+  private final LongAdder[] admitted = new LongAdder[PRIORITIES.size()];
+  private final LongAdder[] shed = new LongAdder[PRIORITIES.size()];
+  private final AtomicBoolean adjusting = new AtomicBoolean();
+
+  private long[] windowStartCounts;
+  private long lastIncreaseNanos;
+  private volatile long nextAdjustNanos;
+  private volatile double shedding;
+  private volatile double[] keepRates;
+  private volatile long lastP99Nanos;
+  private volatile long adjustments;
+
+  public AdmissionController(Schema eventSchema, AdmissionConfig config) {
+    this.config = config;
+    this.clientIdPos = eventSchema.getField("clientId").pos();
+    this.eventNamePos = eventSchema.getField("eventName").pos();
+    Schema.Field sampleRate = eventSchema.getField("sampleRate");
+    this.sampleRatePos = sampleRate == null ? -1 : sampleRate.pos();
+    this.eventNameSchema = eventSchema.getField("eventName").schema();
+    List<String> symbols = eventNameSchema.getEnumSymbols();
+    this.priorities = new Priority[symbols.size()];
+    for (int i = 0; i < priorities.length; i++) {
+      priorities[i] =
+          config.getPriorities().getOrDefault(symbols.get(i), Priority.of(symbols.get(i)));
+    }
+    for (int i = 0; i < admitted.length; i++) {
+      admitted[i] = new LongAdder();
+      shed[i] = new LongAdder();
+    }
+    this.targetNanos = config.getTargetP99().toNanos();
+    this.windowNanos = config.getWindow().toNanos();
+    this.recoveryDelayNanos = config.getRecoveryDelay().toNanos();
+    this.windowStartCounts = delays.snapshotCounts();
+    this.lastIncreaseNanos = System.nanoTime() - recoveryDelayNanos;
+    this.nextAdjustNanos = lastIncreaseNanos + recoveryDelayNanos + windowNanos;
+    this.keepRates = keepRates(0);
+    log.info("Admission controller created with {}", config);
+  }
+
+  /** Whether the event should be processed; kept sampled events get their rate recorded. */
+  public boolean admit(GenericRecord event) {
+    Object name = event.get(eventNamePos);
+    Priority priority =
+        name != null && eventNameSchema.hasEnumSymbol(name.toString())
+            ? priorities[eventNameSchema.getEnumOrdinal(name.toString())]
+            : Priority.NORMAL;
+    int level = priority.ordinal();
+    double rate = keepRates[level];
+    if (rate >= 1) {
+      admitted[level].increment();
+      return true;
+    }
+    if (!keep((CharSequence) event.get(clientIdPos), rate)) {
+      shed[level].increment();
+      return false;
+    }
+    if (config.isRecordSampleRate() && sampleRatePos >= 0) {
+      event.put(sampleRatePos, rate);
+    }
+    admitted[level].increment();
+    return true;
+  }
+
+  /** Reports the delay of a unit of pipeline work, such as one ingest request. */
+  public void recordDelay(long nanos) {
+    delays.record(nanos);
+    long now = System.nanoTime();
+    if (now - nextAdjustNanos >= 0 && adjusting.compareAndSet(false, true)) {
+      try {
+        adjust(now);
+      } finally {
+        adjusting.set(false);
+      }
+    }
+  }
+
+  public double keepRate(Priority priority) {
+    return keepRates[priority.ordinal()];
+  }
+
+  public AdmissionStats stats() {
+    long[] admittedCounts = new long[admitted.length];
+    long[] shedCounts = new long[shed.length];
+    for (int i = 0; i < admitted.length; i++) {
+      admittedCounts[i] = admitted[i].sum();
+      shedCounts[i] = shed[i].sum();
+    }
+    return new AdmissionStats(
+        admittedCounts, shedCounts, keepRates.clone(), shedding, lastP99Nanos, adjustments);
+  }
+
+  private void adjust(long now) {
+    long[] counts = delays.snapshotCounts();
+    long total = 0;
+    for (int i = 0; i < counts.length; i++) {
+      long windowCount = counts[i] - windowStartCounts[i];
+      windowStartCounts[i] = counts[i];
+      counts[i] = windowCount;
+      total += windowCount;
+    }
+    nextAdjustNanos = now + windowNanos;
+    long p99 = LatencyHistogram.percentile(counts, total, 99);
+    double next = shedding;
+    if (p99 > targetNanos && total >= config.getMinSamples()) {
+      // A queue that is already draining keeps the p99 high for a while; shedding more on top
+      // of it would overshoot, so only push harder while the delay is not clearly falling.
+      if (p99 > IMPROVING * lastP99Nanos) {
+        double overshoot = Math.min(MAX_OVERSHOOT, (double) p99 / targetNanos);
+        next = Math.min(SHEDDABLE, next + config.getIncreaseStep() * overshoot);
+        lastIncreaseNanos = now;
+      }
+    } else if (p99 < config.getRecoveryRatio() * targetNanos
+        && now - lastIncreaseNanos >= recoveryDelayNanos) {
+      next = Math.max(0, next - config.getDecreaseStep());
+    }
+    lastP99Nanos = p99;
+    if (next != shedding) {
+      if (next == 0 || shedding == 0) {
+        log.info("Load shedding {}: window p99 {} ns", next == 0 ? "stopped" : "started", p99);
+      }
+      shedding = next;
+      keepRates = keepRates(next);
+      adjustments++;
+    }
+  }
+
+  /** Keep rate of every priority, rounded to whole percents, at the shedding level. */
+  private static double[] keepRates(double shedding) {
+    double[] rates = new double[PRIORITIES.size()];
+    for (Priority priority : PRIORITIES) {
+      int level = priority.ordinal();
+      int shedOrder = SHEDDABLE - level;
+      double rate =
+          priority == Priority.CRITICAL ? 1 : Math.max(0, Math.min(1, shedOrder + 1 - shedding));
+      rates[level] = Math.round(rate * 100) / 100.0;
+    }
+    return rates;
+  }
+
+  private static boolean keep(CharSequence clientId, double rate) {
+    if (rate <= 0) {
+      return false;
+    }
+    long hash = Hashing.hashUtf8(clientId, CLIENT_SEED);
+    return (hash >>> 11) * 0x1.0p-53 < rate;
+  }
+}
@@ -0,0 +1,36 @@
+package model.admission;
+
+import lombok.Value;
+
+@Value
+public class AdmissionStats {
+  /** Admitted and shed events, indexed by {@link Priority} ordinal. */
+  long[] admitted;
+
+  long[] shed;
+
+  /** Current keep rate of each priority. */
+  double[] keepRates;
+
+  /** Shedding level: 0 keeps everything, each unit drops one more priority level. */
+  double shedding;
+
+  long lastP99Nanos;
+  long adjustments;
+
+  public String toText() {
+    StringBuilder text = new StringBuilder();
+    text.append(
+        String.format(
+            "shedding=%.2f lastP99=%.1fms adjustments=%d%n",
+            shedding, lastP99Nanos / 1e6, adjustments));
+    for (Priority priority : Priority.values()) {
+      int i = priority.ordinal();
+      text.append(
+          String.format(
+              "  %-8s keep=%.2f admitted=%d shed=%d%n",
+              priority, keepRates[i], admitted[i], shed[i]));
+    }
+    return text.toString();
+  }
+}
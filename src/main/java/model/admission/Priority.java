@@ -0,0 +1,63 @@
+package model.admission;
+
+import java.util.Set;
+
+/**
+ * Admission priority of an event name, most important first. Under overload the lowest priority is
+ * sampled down first, and {@link #CRITICAL} events are never shed.
+ */
+public enum Priority {
+  /** Ad events (cm*), which carry revenue. */
+  CRITICAL,
+  /** Playback, session and error events that drive viewing and QoS metrics. */
+  HIGH,
+  NORMAL,
+  /** UI gesture noise and test events. */
+  LOW;
+
+  private static final Set<String> HIGH_NAMES =
+      Set.of(
+          "heartBeat",
+          "channelChange",
+          "clipStart",
+          "clipEnd",
+          "episodeStart",
+          "episodeEnd",
+          "vodEpisodeWatch",
+          "appLaunch",
+          "appLoaded",
+          "videoRequest",
+          "videoLoaded",
+          "sessionReset",
+          "signInSuccessful",
+          "signUpSuccessful",
+          "signOutSuccessful",
+          "castRequestSuccessful",
+          "castRequestFailure",
+          "castSuccess",
+          "castFail");
+
+  private static final Set<String> LOW_NAMES =
+      Set.of(
+          "scrollVertical",
+          "scrollHorizontal",
+          "swipeVertical",
+          "swipeHorizontal",
+          "tiltScreen",
+          "clickVolume",
+          "displayOverlay",
+          "testEntry",
+          "testExit",
+          "testInProgress");
+
+  /** Default priority of an EventName symbol. */
+  public static Priority of(String eventName) {
+    if (eventName.startsWith("cm")) {
+      return CRITICAL;
+    }
+    if (HIGH_NAMES.contains(eventName) || eventName.endsWith("Error")) {
+      return HIGH;
+    }
+    return LOW_NAMES.contains(eventName) ? LOW : NORMAL;
+  }
+}
@@ -0,0 +1,98 @@
+package model.adpods;
+
+import lombok.Builder;
+import lombok.Value;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+
+/** One reconstructed ad pod. Times are event occurrence times in epoch millis, 0 if not seen. */
+@Value
+@Builder
+public class AdPod {
+
+  public static final Schema SCHEMA =
+      SchemaBuilder.record("AdPod")
+          .namespace("tv.pluto.nile.avro.adpods")
+          .doc("An ad pod and its ads, assembled from cmPod* and per-ad cm* events.")
+          .fields()
+          .optionalString("podId")
+          .optionalString("podRequestId")
+          .optionalString("sessionId")
+          .optionalString("clientId")
+          .optionalString("channelId")
+          .requiredBoolean("complete")
+          .optionalLong("requestedDuration")
+          .requiredLong("servedDuration")
+          .optionalDouble("fillRate")
+          .requiredInt("ads")
+          .requiredInt("adsStarted")
+          .requiredInt("impressions")
+          .requiredInt("adsCompleted")
+          .requiredInt("adErrors")
+          .requiredLong("requestSentMillis")
+          .requiredLong("responseReceivedMillis")
+          .optionalLong("responseLatencyMillis")
+          .requiredLong("podStartMillis")
+          .requiredLong("podEndMillis")
+          .endRecord();
+
+  String podId;
+  String podRequestId;
+  String sessionId;
+  String clientId;
+  String channelId;
+
+  /** Whether cmPodEnd was seen; otherwise the pod went idle. */
+  boolean complete;
+
+  /** cmPodDuration, or null if no event carried it. */
+  Long requestedDuration;
+
+  /** Sum over the pod's ads of the largest cmDurationServed reported for each. */
+  long servedDuration;
+
+  /** servedDuration / requestedDuration, or null without a requested duration. */
+  Double fillRate;
+
+  /** Distinct cmImpressionIndex values seen. */
+  int ads;
+
+  int adsStarted;
+  int impressions;
+  int adsCompleted;
+  int adErrors;
+  long requestSentMillis;
+  long responseReceivedMillis;
+
+  /** From cmPodRequestSent to cmPodResponseReceived, or null if either is missing. */
+  Long responseLatencyMillis;
+
+  long podStartMillis;
+  long podEndMillis;
+
+  public GenericRecord toRecord() {
+    GenericRecord record = new GenericData.Record(SCHEMA);
+    record.put("podId", podId);
+    record.put("podRequestId", podRequestId);
+    record.put("sessionId", sessionId);
+    record.put("clientId", clientId);
+    record.put("channelId", channelId);
+    record.put("complete", complete);
+    record.put("requestedDuration", requestedDuration);
+    record.put("servedDuration", servedDuration);
+    record.put("fillRate", fillRate);
+    record.put("ads", ads);
+    record.put("adsStarted", adsStarted);
+    record.put("impressions", impressions);
+    record.put("adsCompleted", adsCompleted);
+    record.put("adErrors", adErrors);
+    record.put("requestSentMillis", requestSentMillis);
+    record.put("responseReceivedMillis", responseReceivedMillis);
+    record.put("responseLatencyMillis", responseLatencyMillis);
+    record.put("podStartMillis", podStartMillis);
+    record.put("podEndMillis", podEndMillis);
+    return record;
+  }
+}
@@ -0,0 +1,30 @@
+package model.adpods;
+
+import java.time.Duration;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@Builder
+@ToString
+public class AdPodConfig {
+
+  /** Pods assembled at once; events of further pods are counted and dropped until some expire. */
+  @Builder.Default private final int maxPods = 1 << 17;
+
+  /**
+   * Ads tracked per pod, at most 64: cmImpressionIndex 1 to maxAdsPerPod. Other indexes are counted
+   * only.
+   */
+  @Builder.Default private final int maxAdsPerPod = 32;
+
+  /** A pod without events for this long is emitted as incomplete. */
+  @Builder.Default private final Duration idleTimeout = Duration.ofMinutes(5);
+
+  /** How long a pod waits after cmPodEnd for its late ad events before it is emitted. */
+  @Builder.Default private final Duration lingerAfterEnd = Duration.ofSeconds(30);
+
+  /** Expiry resolution. */
+  @Builder.Default private final Duration tick = Duration.ofSeconds(1);
+}
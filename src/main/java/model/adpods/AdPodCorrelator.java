@@ -0,0 +1,570 @@
+package model.adpods;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+import model.utils.AvroEventSchemaBuilder;
+import model.utils.Hashing;
+import model.utils.TimingWheel;
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Assembles ad pods from cmPod* and per-ad cm* events as they arrive and emits each pod as an
+ * {@link AdPod}. Events find their pod by cmPodId or cmPodRequestId; a pod seen under each id
+ * separately is joined once an event carries both. A pod is emitted {@code lingerAfterEnd} after
+ * its cmPodEnd, so late ad events still count, or as incomplete after {@code idleTimeout} without
+ * events; both deadlines run on a {@link TimingWheel}. Pod state lives in primitive arrays sized by
+ * maxPods and maxAdsPerPod, so memory is fixed up front. Event methods are synchronized and meant
+ * for one feeding thread, ideally with events partitioned by session across nodes.
+ */
+@Slf4j
+public class AdPodCorrelator {
+
+  private static final long POD_SEED = 0x3c6ef372fe94f82bL;
+  private static final long REQUEST_SEED = 0xa54ff53a5f1d36f1L;
+
+  private static final byte IGNORE = 0;
+  private static final byte REQUEST_SENT = 1;
+  private static final byte RESPONSE_RECEIVED = 2;
+  private static final byte POD_START = 3;
+  private static final byte POD_END = 4;
+  private static final byte AD_START = 5;
+  private static final byte AD_IMPRESSION = 6;
+  private static final byte AD_COMPLETE = 7;
+  private static final byte AD_ERROR = 8;
+  private static final byte AD_PROGRESS = 9;
+
+  private final Schema eventNameSchema;
+  private final byte[] actions;
+  private final int eventNamePos;
+  private final int podIdPos;
+  private final int requestIdPos;
+  private final int podDurationPos;
+  private final int durationServedPos;
+  private final int impressionIndexPos;
+  private final int occurredPos;
+  private final int sessionIdPos;
+  private final int clientIdPos;
+  private final int channelIdPos;
+
+  private final LongSupplier clock;
+  private final long tickMillis;
+  private final long idleTicks;
+  private final long lingerTicks;
+  private final int maxAds;
+  private final PodIndex index;
+  private final TimingWheel wheel;
+  private final IntConsumer expire = this::expire;
+  private final int[] free;
+  private int freeCount;
+  private int allocated;
+
+  private final String[] podIds;
+  private final String[] requestIds;
+  private final long[] podKeys;
+  private final long[] requestKeys;
+  private final String[] sessionIds;
+  private final String[] clientIds;
+  private final String[] channelIds;
+  private final long[] requestSent;
+  private final long[] responseReceived;
+  private final long[] podStart;
+  private final long[] podEnd;
+  private final long[] requested;
+  private final boolean[] ended;
+
+  /** Per-pod bit sets over cmImpressionIndex. */
+  private final long[] seen;
+
+  private final long[] started;
+  private final long[] impressed;
+  private final long[] completed;
+  private final long[] errored;
+
+  /** Largest cmDurationServed per pod and ad, at {@code pod * maxAds + index}. */
+  private final int[] served;
+
+  private Consumer<AdPod> listener = pod -> {};
+
+  private long events;
+  private long completePods;
+  private long incompletePods;
+  private long rejectedEvents;
+  private long unkeyedEvents;
+  private long untrackedAds;
+  private long joinedPods;
+
+  public AdPodCorrelator(Schema eventSchema, AdPodConfig config) {
+    this(eventSchema, config, System::currentTimeMillis);
+  }
+
+  /** The clock drives expiry; replays can pass one that follows event time. */
+  public AdPodCorrelator(Schema eventSchema, AdPodConfig config, LongSupplier clock) {
+    if (config.getMaxAdsPerPod() < 1 || config.getMaxAdsPerPod() > Long.SIZE) {
+      throw new IllegalArgumentException("maxAdsPerPod must be between 1 and 64: " + config);
+    }
+    this.clock = clock;
+    this.tickMillis = Math.max(1, config.getTick().toMillis());
+    this.idleTicks = ticks(config.getIdleTimeout().toMillis());
+    this.lingerTicks = ticks(config.getLingerAfterEnd().toMillis());
+    this.maxAds = config.getMaxAdsPerPod();
+    int capacity = config.getMaxPods();
+    this.index = new PodIndex(capacity * 2);
+    this.wheel = new TimingWheel(capacity, clock.getAsLong() / tickMillis);
+    this.free = new int[capacity];
+    this.podIds = new String[capacity];
+    this.requestIds = new String[capacity];
+    this.podKeys = new long[capacity];
+    this.requestKeys = new long[capacity];
+    this.sessionIds = new String[capacity];
+    this.clientIds = new String[capacity];
+    this.channelIds = new String[capacity];
+    this.requestSent = new long[capacity];
+    this.responseReceived = new long[capacity];
+    this.podStart = new long[capacity];
+    this.podEnd = new long[capacity];
+    this.requested = new long[capacity];
+    this.ended = new boolean[capacity];
+    this.seen = new long[capacity];
+    this.started = new long[capacity];
+    this.impressed = new long[capacity];
+    this.completed = new long[capacity];
+    this.errored = new long[capacity];
+    this.served = new int[capacity * maxAds];
+    Arrays.fill(requested, -1);
+
+    this.eventNamePos = fieldPos(eventSchema, "eventName");
+    this.podIdPos = fieldPos(eventSchema, "cmPodId");
+    this.requestIdPos = fieldPos(eventSchema, "cmPodRequestId");
+    this.podDurationPos = fieldPos(eventSchema, "cmPodDuration");
+    this.durationServedPos = fieldPos(eventSchema, "cmDurationServed");
+    this.impressionIndexPos = fieldPos(eventSchema, "cmImpressionIndex");
+    this.occurredPos = fieldPos(eventSchema, "eventOccurredTimestampUtc");
+    this.sessionIdPos = fieldPos(eventSchema, "sessionId");
+    this.clientIdPos = fieldPos(eventSchema, "clientId");
+    this.channelIdPos = fieldPos(eventSchema, "channelId");
+    this.eventNameSchema = eventSchema.getField("eventName").schema();
+    this.actions = new byte[eventNameSchema.getEnumSymbols().size()];
+    setAction(REQUEST_SENT, "cmPodRequestSent");
+    setAction(RESPONSE_RECEIVED, "cmPodResponseReceived");
+    setAction(POD_START, "cmPodStart", "cmPodBegin");
+    setAction(POD_END, "cmPodEnd", "cmPodComplete");
+    setAction(AD_START, "cmStart", "cmBegin");
+    setAction(AD_IMPRESSION, "cmImpression");
+    setAction(AD_COMPLETE, "cmComplete");
+    setAction(AD_ERROR, "cmError");
+    setAction(
+        AD_PROGRESS,
+        "cmFirstQuartile",
+        "cmMidPoint",
+        "cmThirdQuartile",
+        "cmEnd",
+        "cmSkip",
+        "cmClickThru");
+    log.info("Ad pod correlator created with {} using {} bytes", config, memoryBytes());
+  }
+
+  /** Sends emitted pods to the listener, on the thread that feeds events or advances time. */
+  public AdPodCorrelator publishTo(Consumer<AdPod> listener) {
+    this.listener = listener;
+    return this;
+  }
+
+  public synchronized void observe(GenericRecord event) {
+    Object name = event.get(eventNamePos);
+    byte action =
+        name != null && eventNameSchema.hasEnumSymbol(name.toString())
+            ? actions[eventNameSchema.getEnumOrdinal(name.toString())]
+            : IGNORE;
+    if (action == IGNORE) {
+      return;
+    }
+    long now = now();
+    CharSequence podId = (CharSequence) event.get(podIdPos);
+    CharSequence requestId = (CharSequence) event.get(requestIdPos);
+    if (podId == null && requestId == null) {
+      unkeyedEvents++;
+      return;
+    }
+    int pod = resolve(podId, requestId);
+    if (pod < 0) {
+      rejectedEvents++;
+      return;
+    }
+    events++;
+    Long occurred = (Long) event.get(occurredPos);
+    long at = occurred != null ? occurred : now;
+    Long podDuration = (Long) event.get(podDurationPos);
+    if (podDuration != null) {
+      requested[pod] = Math.max(requested[pod], podDuration);
+    }
+    if (sessionIds[pod] == null) {
+      sessionIds[pod] = string(event.get(sessionIdPos));
+      clientIds[pod] = string(event.get(clientIdPos));
+      channelIds[pod] = string(event.get(channelIdPos));
+    }
+    switch (action) {
+      case REQUEST_SENT:
+        requestSent[pod] = earliest(requestSent[pod], at);
+        break;
+      case RESPONSE_RECEIVED:
+        responseReceived[pod] = earliest(responseReceived[pod], at);
+        break;
+      case POD_START:
+        podStart[pod] = earliest(podStart[pod], at);
+        break;
+      case POD_END:
+        podEnd[pod] = Math.max(podEnd[pod], at);
+        ended[pod] = true;
+        break;
+      default:
+        ad(pod, action, event);
+    }
+    wheel.schedule(pod, wheel.currentTick() + (ended[pod] ? lingerTicks : idleTicks));
+  }
+
+  /** Emits pods whose deadline passed; call periodically when events may stop arriving. */
+  public synchronized void advance() {
+    now();
+  }
+
+  /** Emits every pod still being assembled, for shutdown. */
+  public synchronized void flush() {
+    for (int pod = 0; pod < allocated; pod++) {
+      if (podIds[pod] != null || requestIds[pod] != null) {
+        wheel.cancel(pod);
+        expire(pod);
+      }
+    }
+  }
+
+  public synchronized AdPodStats stats() {
+    return new AdPodStats(
+        events,
+        completePods,
+        incompletePods,
+        rejectedEvents,
+        unkeyedEvents,
+        untrackedAds,
+        joinedPods,
+        allocated - freeCount,
+        memoryBytes());
+  }
+
+  private int resolve(CharSequence podId, CharSequence requestId) {
+    long podKey = podId == null ? 0 : Hashing.hashUtf8(podId, POD_SEED);
+    long requestKey = requestId == null ? 0 : Hashing.hashUtf8(requestId, REQUEST_SEED);
+    int byPod = podId == null ? -1 : index.find(podKey);
+    int byRequest = requestId == null ? -1 : index.find(requestKey);
+    int pod = byPod >= 0 ? byPod : byRequest;
+    if (byPod >= 0 && byRequest >= 0 && byPod != byRequest) {
+      join(byPod, byRequest);
+    } else if (pod < 0) {
+      if (freeCount == 0 && allocated == free.length) {
+        return -1;
+      }
+      pod = freeCount > 0 ? free[--freeCount] : allocated++;
+    }
+    if (podId != null && podIds[pod] == null) {
+      podIds[pod] = podId.toString();
+      podKeys[pod] = podKey;
+      index.put(podKey, pod);
+    }
+    if (requestId != null && requestIds[pod] == null) {
+      requestIds[pod] = requestId.toString();
+      requestKeys[pod] = requestKey;
+      index.put(requestKey, pod);
+    }
+    return pod;
+  }
+
+  private void ad(int pod, byte action, GenericRecord event) {
+    Integer impression = (Integer) event.get(impressionIndexPos);
+    if (impression == null || impression < 1 || impression > maxAds) {
+      untrackedAds++;
+      return;
+    }
+    // cmImpressionIndex starts from 1.
+    int ad = impression - 1;
+    long bit = 1L << ad;
+    seen[pod] |= bit;
+    Integer servedNow = (Integer) event.get(durationServedPos);
+    int slot = pod * maxAds + ad;
+    if (servedNow != null && servedNow > served[slot]) {
+      served[slot] = servedNow;
+    }
+    switch (action) {
+      case AD_START:
+        started[pod] |= bit;
+        break;
+      case AD_IMPRESSION:
+        impressed[pod] |= bit;
+        break;
+      case AD_COMPLETE:
+        completed[pod] |= bit;
+        break;
+      case AD_ERROR:
+        errored[pod] |= bit;
+        break;
+      default:
+        break;
+    }
+  }
+
+  /** Folds the state of {@code from} into {@code into} and frees {@code from}. */
+  private void join(int into, int from) {
+    requestSent[into] = earliest(requestSent[into], requestSent[from]);
+    responseReceived[into] = earliest(responseReceived[into], responseReceived[from]);
+    podStart[into] = earliest(podStart[into], podStart[from]);
+    podEnd[into] = Math.max(podEnd[into], podEnd[from]);
+    requested[into] = Math.max(requested[into], requested[from]);
+    ended[into] |= ended[from];
+    seen[into] |= seen[from];
+    started[into] |= started[from];
+    impressed[into] |= impressed[from];
+    completed[into] |= completed[from];
+    errored[into] |= errored[from];
+    for (int ad = 0; ad < maxAds; ad++) {
+      served[into * maxAds + ad] = Math.max(served[into * maxAds + ad], served[from * maxAds + ad]);
+    }
+    if (sessionIds[into] == null) {
+      sessionIds[into] = sessionIds[from];
+      clientIds[into] = clientIds[from];
+      channelIds[into] = channelIds[from];
+    }
+    String podId = podIds[from];
+    long podKey = podKeys[from];
+    String requestId = requestIds[from];
+    long requestKey = requestKeys[from];
+    wheel.cancel(from);
+    release(from);
+    if (podId != null && podIds[into] == null) {
+      podIds[into] = podId;
+      podKeys[into] = podKey;
+      index.put(podKey, into);
+    }
+    if (requestId != null && requestIds[into] == null) {
+      requestIds[into] = requestId;
+      requestKeys[into] = requestKey;
+      index.put(requestKey, into);
+    }
+    joinedPods++;
+  }
+
+  private void expire(int pod) {
+    AdPod emitted = toAdPod(pod);
+    if (emitted.isComplete()) {
+      completePods++;
+    } else {
+      incompletePods++;
+    }
+    release(pod);
+    try {
+      listener.accept(emitted);
+    } catch (RuntimeException e) {
+      log.warn("Ad pod listener failed", e);
+    }
+  }
+
+  private AdPod toAdPod(int pod) {
+    long servedDuration = 0;
+    for (long ads = seen[pod]; ads != 0; ads &= ads - 1) {
+      servedDuration += served[pod * maxAds + Long.numberOfTrailingZeros(ads)];
+    }
+    Long requestedDuration = requested[pod] >= 0 ? requested[pod] : null;
+    return AdPod.builder()
+        .podId(podIds[pod])
+        .podRequestId(requestIds[pod])
+        .sessionId(sessionIds[pod])
+        .clientId(clientIds[pod])
+        .channelId(channelIds[pod])
+        .complete(ended[pod])
+        .requestedDuration(requestedDuration)
+        .servedDuration(servedDuration)
+        .fillRate(
+            requestedDuration != null && requestedDuration > 0
+                ? (double) servedDuration / requestedDuration
+                : null)
+        .ads(Long.bitCount(seen[pod]))
+        .adsStarted(Long.bitCount(started[pod]))
+        .impressions(Long.bitCount(impressed[pod]))
+        .adsCompleted(Long.bitCount(completed[pod]))
+        .adErrors(Long.bitCount(errored[pod]))
+        .requestSentMillis(requestSent[pod])
+        .responseReceivedMillis(responseReceived[pod])
+        .responseLatencyMillis(
+            requestSent[pod] != 0 && responseReceived[pod] != 0
+                ? responseReceived[pod] - requestSent[pod]
+                : null)
+        .podStartMillis(podStart[pod])
+        .podEndMillis(podEnd[pod])
+        .build();
+  }
+
+  /** Unindexes the pod and clears its state for reuse. */
+  private void release(int pod) {
+    if (podIds[pod] != null) {
+      index.remove(podKeys[pod]);
+    }
+    if (requestIds[pod] != null) {
+      index.remove(requestKeys[pod]);
+    }
+    podIds[pod] = null;
+    requestIds[pod] = null;
+    sessionIds[pod] = null;
+    clientIds[pod] = null;
+    channelIds[pod] = null;
+    requestSent[pod] = 0;
+    responseReceived[pod] = 0;
+    podStart[pod] = 0;
+    podEnd[pod] = 0;
+    requested[pod] = -1;
+    ended[pod] = false;
+    for (long ads = seen[pod]; ads != 0; ads &= ads - 1) {
+      served[pod * maxAds + Long.numberOfTrailingZeros(ads)] = 0;
+    }
+    seen[pod] = 0;
+    started[pod] = 0;
+    impressed[pod] = 0;
+    completed[pod] = 0;
+    errored[pod] = 0;
+    free[freeCount++] = pod;
+  }
+
+  /** Reads the clock and emits every pod due up to it. */
+  private long now() {
+    long now = clock.getAsLong();
+    long tick = now / tickMillis;
+    if (tick > wheel.currentTick()) {
+      wheel.advance(tick, expire);
+    }
+    return now;
+  }
+
+  private long ticks(long millis) {
+    long ticks = (millis + tickMillis - 1) / tickMillis;
+    if (ticks > TimingWheel.MAX_TICKS) {
+      throw new IllegalArgumentException("Timeout of " + millis + "ms too long for the tick");
+    }
+    return ticks;
+  }
+
+  private long memoryBytes() {
+    int capacity = free.length;
+    return index.memoryBytes()
+        + wheel.memoryBytes()
+        + (long) served.length * Integer.BYTES
+        + (long) capacity * (Long.BYTES * 12 + Integer.BYTES + 1 + 5 * 8);
+  }
+
+  private void setAction(byte action, String... symbols) {
+    for (String symbol : symbols) {
+      if (eventNameSchema.hasEnumSymbol(symbol)) {
+        actions[eventNameSchema.getEnumOrdinal(symbol)] = action;
+      }
+    }
+  }
+
+  private static long earliest(long current, long at) {
+    return current == 0 || (at != 0 && at < current) ? at : current;
+  }
+
+  private static String string(Object value) {
+    return value == null ? null : value.toString();
+  }
+
+  private static int fieldPos(Schema schema, String name) {
+    Schema.Field field = schema.getField(name);
+    if (field == null) {
+      throw new IllegalArgumentException(
+          "Schema " + schema.getFullName() + " has no field " + name);
+    }
+    return field.pos();
+  }
+
+  /**
+   * Replays event files in order and writes the pods they contain: {@code AdPodCorrelator
+   * <pods.avro> <events.avro>...}. Expiry follows the largest eventServerLoggedUtc seen.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: AdPodCorrelator <pods.avro> <events.avro>...");
+      System.exit(1);
+    }
+    Schema schema = AvroEventSchemaBuilder.buildSchema();
+    int serverLoggedPos = fieldPos(schema, "eventServerLoggedUtc");
+    // Start at the first event so the timing wheel does not step through every tick from 0.
+    long[] eventTime = {firstEventTime(args, schema, serverLoggedPos)};
+    long started = System.nanoTime();
+    long replayed = 0;
+    try (DataFileWriter<GenericRecord> out =
+        new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(AdPod.SCHEMA))) {
+      out.setCodec(CodecFactory.zstandardCodec(3));
+      out.create(AdPod.SCHEMA, new File(args[0]));
+      AdPodCorrelator correlator =
+          new AdPodCorrelator(schema, AdPodConfig.builder().build(), () -> eventTime[0])
+              .publishTo(
+                  pod -> {
+                    try {
+                      out.append(pod.toRecord());
+                    } catch (IOException e) {
+                      throw new UncheckedIOException(e);
+                    }
+                  });
+      for (String path : List.of(args).subList(1, args.length)) {
+        try (DataFileReader<GenericRecord> reader =
+            new DataFileReader<>(new File(path), new GenericDatumReader<>(null, schema))) {
+          GenericRecord event = null;
+          while (reader.hasNext()) {
+            event = reader.next(event);
+            Long serverLogged = (Long) event.get(serverLoggedPos);
+            if (serverLogged != null && serverLogged > eventTime[0]) {
+              eventTime[0] = serverLogged;
+            }
+            correlator.observe(event);
+            replayed++;
+          }
+        }
+      }
+      correlator.flush();
+      double seconds = (System.nanoTime() - started) / 1e9;
+      log.info(
+          "Replayed {} events in {}s ({} events/s): {}",
+          replayed,
+          String.format("%.1f", seconds),
+          Math.round(replayed / seconds),
+          correlator.stats().toText());
+    }
+  }
+
+  /** eventServerLoggedUtc of the first event that has one, or 0 if none does. */
+  private static long firstEventTime(String[] args, Schema schema, int serverLoggedPos)
+      throws IOException {
+    for (String path : List.of(args).subList(1, args.length)) {
+      try (DataFileReader<GenericRecord> reader =
+          new DataFileReader<>(new File(path), new GenericDatumReader<>(null, schema))) {
+        GenericRecord event = null;
+        while (reader.hasNext()) {
+          event = reader.next(event);
+          Long serverLogged = (Long) event.get(serverLoggedPos);
+          if (serverLogged != null) {
+            return serverLogged;
+          }
+        }
+      }
+    }
+    return 0;
+  }
+}
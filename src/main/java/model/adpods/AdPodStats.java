@@ -0,0 +1,44 @@
+package model.adpods;
+
+import lombok.Value;
+
+@Value
+public class AdPodStats {
+  /** Ad events applied to a pod. */
+  long events;
+
+  long completePods;
+
+  /** Pods emitted after the idle timeout without a cmPodEnd. */
+  long incompletePods;
+
+  /** Events of new pods dropped because maxPods were already being assembled. */
+  long rejectedEvents;
+
+  /** Events with neither cmPodId nor cmPodRequestId. */
+  long unkeyedEvents;
+
+  /** Ad events whose cmImpressionIndex was missing, below 1 or beyond maxAdsPerPod. */
+  long untrackedAds;
+
+  /** Pods first seen under their request id and their pod id separately, then joined. */
+  long joinedPods;
+
+  int activePods;
+  long memoryBytes;
+
+  public String toText() {
+    return String.format(
+        "events=%d complete=%d incomplete=%d active=%d rejected=%d unkeyed=%d untrackedAds=%d"
+            + " joined=%d memory=%dMB%n",
+        events,
+        completePods,
+        incompletePods,
+        activePods,
+        rejectedEvents,
+        unkeyedEvents,
+        untrackedAds,
+        joinedPods,
+        memoryBytes >> 20);
+  }
+}
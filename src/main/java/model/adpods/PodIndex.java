@@ -0,0 +1,83 @@
+package model.adpods;
+
+/**
+ * Bounded map from 64-bit id hashes to pod entries. A pod can be reachable through both its cmPodId
+ * and its cmPodRequestId, so several keys may map to one entry. Open addressing with linear probing
+ * and backward-shift deletion, so removals leave no tombstones.
+ */
+final class PodIndex {
+
+  private static final long EMPTY = 0L;
+
+  /** Stand-in for the key 0, which marks empty slots. */
+  private static final long ZERO_KEY = 0x9e3779b97f4a7c15L;
+
+  private final long[] keys;
+  private final int[] entries;
+  private final int mask;
+  private int size;
+
+  /** Room for {@code capacity} keys at a load factor of at most one half. */
+  PodIndex(int capacity) {
+    int slots = Integer.highestOneBit(Math.max(1, capacity - 1)) << 2;
+    this.keys = new long[slots];
+    this.entries = new int[slots];
+    this.mask = slots - 1;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** Entry of the key, or -1. */
+  int find(long key) {
+    key = key == EMPTY ? ZERO_KEY : key;
+    for (int slot = (int) key & mask; ; slot = (slot + 1) & mask) {
+      long existing = keys[slot];
+      if (existing == key) {
+        return entries[slot];
+      }
+      if (existing == EMPTY) {
+        return -1;
+      }
+    }
+  }
+
+  /** Maps a key that is not present to the entry. */
+  void put(long key, int entry) {
+    key = key == EMPTY ? ZERO_KEY : key;
+    int slot = (int) key & mask;
+    while (keys[slot] != EMPTY) {
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = key;
+    entries[slot] = entry;
+    size++;
+  }
+
+  void remove(long key) {
+    key = key == EMPTY ? ZERO_KEY : key;
+    int hole = (int) key & mask;
+    while (keys[hole] != key) {
+      if (keys[hole] == EMPTY) {
+        return;
+      }
+      hole = (hole + 1) & mask;
+    }
+    for (int slot = (hole + 1) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask) {
+      int home = (int) keys[slot] & mask;
+      // Move the key back into the hole unless its home lies between the hole and its slot.
+      if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+        keys[hole] = keys[slot];
+        entries[hole] = entries[slot];
+        hole = slot;
+      }
+    }
+    keys[hole] = EMPTY;
+    size--;
+  }
+
+  long memoryBytes() {
+    return (long) keys.length * (Long.BYTES + Integer.BYTES);
+  }
+}
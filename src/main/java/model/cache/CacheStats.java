@@ -0,0 +1,36 @@
+package model.cache;
+
+import lombok.Value;
+
+@Value
+public class CacheStats {
+  String name;
+  long hotHits;
+  long warmHits;
+  long misses;
+  long puts;
+
+  /** Values too large for the warm tier or dropped because it is full. */
+  long warmSkipped;
+
+  long hotEntries;
+
+  public long lookups() {
+    return hotHits + warmHits + misses;
+  }
+
+  public String toText() {
+    long lookups = Math.max(1, lookups());
+    return String.format(
+        "%-16s lookups=%d hot=%.1f%% warm=%.1f%% miss=%.1f%% puts=%d warmSkipped=%d"
+            + " hotEntries=%d%n",
+        name,
+        lookups(),
+        100.0 * hotHits / lookups,
+        100.0 * warmHits / lookups,
+        100.0 * misses / lookups,
+        puts,
+        warmSkipped,
+        hotEntries);
+  }
+}
@@ -0,0 +1,33 @@
+package model.cache;
+
+import java.nio.file.Path;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@Builder
+@ToString
+public class EnrichmentCacheConfig {
+
+  /**
+   * Warm tier file shared by the processes on a host; created on first use and kept across
+   * restarts. Null keeps the cache on-heap only.
+   */
+  private final Path file;
+
+  /** Warm tier slots, as a power of two; at most three quarters of them are filled. */
+  @Builder.Default private final int slotBits = 20;
+
+  /** Warm tier bytes for keys and values. Slots and data together must stay below 2 GB. */
+  @Builder.Default private final long dataBytes = 256L << 20;
+
+  /** Entries per cache in the hot tier; a full hot tier is emptied and refilled from warm. */
+  @Builder.Default private final int hotEntries = 10_000;
+
+  /** Values encoding larger than this stay in the hot tier only. */
+  @Builder.Default private final int maxValueBytes = 16 * 1024;
+
+  /** Whether null results (an unknown UA, an unmapped IP) are cached too. */
+  @Builder.Default private final boolean allowNullValues = true;
+}
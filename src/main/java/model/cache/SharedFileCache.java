@@ -0,0 +1,348 @@
+package model.cache;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+import model.utils.Hashing;
+
+/**
+ * Append-only byte key/value table in a memory-mapped file. Every process on the host that opens
+ * the same file shares its contents, and entries outlive the processes that wrote them.
+ *
+ * <p>The file holds a header, an open-addressing slot table and a data region. A writer reserves
+ * space for its entry with an atomic add on the data tail, writes key and value there and then
+ * publishes the entry with one compare-and-set of an empty slot to a word holding a hash tag and
+ * the entry offset. Readers probe linearly and compare the full key of entries whose tag matches,
+ * so no reader ever sees a half-written entry and no lock is taken after the file is opened. A
+ * writer that dies between the two steps only leaks its reserved bytes.
+ *
+ * <p>Entry bytes are never overwritten. {@link #put} of a present key keeps the first value, so
+ * concurrent loaders of the same key settle on one; {@link #replace} appends a new entry and swings
+ * the key's slot to it with one compare-and-set, leaving the old entry's bytes unused. Removal
+ * marks the slot deleted. When the slots reach three quarters full or the data region is used up,
+ * further new keys are dropped; deleting the file resets the cache.
+ */
+@Slf4j
+public class SharedFileCache implements Closeable {
+
+  private static final long MAGIC = 0x4556434143484531L;
+  private static final int LAYOUT_VERSION = 1;
+
+  private static final int MAGIC_OFFSET = 0;
+  private static final int VERSION_OFFSET = 8;
+  private static final int SLOT_BITS_OFFSET = 12;
+  private static final int CAPACITY_OFFSET = 16;
+  private static final int TAIL_OFFSET = 24;
+  private static final int ENTRIES_OFFSET = 32;
+  private static final int HEADER_BYTES = 64;
+
+  /** Key length and value length. */
+  private static final int ENTRY_HEADER_BYTES = 8;
+
+  private static final long OFFSET_MASK = (1L << 40) - 1;
+  private static final long TAG_MASK = ((1L << 23) - 1) << 40;
+  private static final long DELETED = 1L << 63;
+  private static final long SEED = 0x5bd1e9955bd1e995L;
+
+  private static final VarHandle LONGS =
+      MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+  /** FileChannel locks are per process, so opens within one JVM are serialized here. */
+  private static final Object OPEN_LOCK = new Object();
+
+  private final Path file;
+  private final MappedByteBuffer map;
+  private final int slotBits;
+  private final int slotMask;
+  private final long maxEntries;
+  private final int dataStart;
+  private final long dataCapacity;
+  private final LongAdder dropped = new LongAdder();
+
+  private SharedFileCache(Path file, MappedByteBuffer map, int slotBits, long dataCapacity) {
+    this.file = file;
+    this.map = map;
+    this.slotBits = slotBits;
+    this.slotMask = (1 << slotBits) - 1;
+    this.maxEntries = (3L << slotBits) / 4;
+    this.dataStart = HEADER_BYTES + (Long.BYTES << slotBits);
+    this.dataCapacity = dataCapacity;
+  }
+
+  /**
+   * Opens the cache file, creating it with the given layout if it does not exist yet. An existing
+   * file keeps the layout it was created with.
+   */
+  public static SharedFileCache open(Path file, int slotBits, long dataBytes) throws IOException {
+    if (slotBits < 4 || slotBits > 27) {
+      throw new IllegalArgumentException("slotBits must be between 4 and 27: " + slotBits);
+    }
+    synchronized (OPEN_LOCK) {
+      try (FileChannel channel =
+          FileChannel.open(
+              file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        // Serializes creation with other processes; closing the channel releases the lock.
+        channel.lock();
+        if (channel.size() >= HEADER_BYTES) {
+          MappedByteBuffer map = map(channel, channel.size());
+          if ((long) LONGS.getVolatile(map, MAGIC_OFFSET) == MAGIC) {
+            return existing(file, map, channel.size());
+          }
+        }
+        // New, or left behind by a process that died while creating it.
+        long size = HEADER_BYTES + ((long) Long.BYTES << slotBits) + dataBytes;
+        if (size > Integer.MAX_VALUE) {
+          throw new IllegalArgumentException("Cache file would exceed 2 GB: " + size + " bytes");
+        }
+        channel.truncate(0);
+        MappedByteBuffer map = map(channel, size);
+        map.putInt(VERSION_OFFSET, LAYOUT_VERSION);
+        map.putInt(SLOT_BITS_OFFSET, slotBits);
+        map.putLong(CAPACITY_OFFSET, dataBytes);
+        LONGS.setVolatile(map, MAGIC_OFFSET, MAGIC);
+        log.info(
+            "Created enrichment cache {} ({} slots, {} data bytes)",
+            file,
+            1 << slotBits,
+            dataBytes);
+        return new SharedFileCache(file, map, slotBits, dataBytes);
+      }
+    }
+  }
+
+  private static SharedFileCache existing(Path file, MappedByteBuffer map, long size)
+      throws IOException {
+    int version = map.getInt(VERSION_OFFSET);
+    int slotBits = map.getInt(SLOT_BITS_OFFSET);
+    long capacity = map.getLong(CAPACITY_OFFSET);
+    if (version != LAYOUT_VERSION
+        || size != HEADER_BYTES + ((long) Long.BYTES << slotBits) + capacity) {
+      throw new IOException(
+          file + " has layout version " + version + " or is truncated; delete it to recreate");
+    }
+    return new SharedFileCache(file, map, slotBits, capacity);
+  }
+
+  private static MappedByteBuffer map(FileChannel channel, long size) throws IOException {
+    MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    map.order(ByteOrder.nativeOrder());
+    return map;
+  }
+
+  /** Value stored for the key, or null. */
+  public byte[] get(byte[] key) {
+    long hash = Hashing.hashUtf8(key, 0, key.length, SEED);
+    long tag = tag(hash);
+    int slot = (int) hash & slotMask;
+    for (int probe = 0; probe <= slotMask; probe++) {
+      long word = slot(slot);
+      if (word == 0) {
+        return null;
+      }
+      if ((word & (TAG_MASK | DELETED)) == tag && keyEquals(word, key)) {
+        int at = entryPosition(word);
+        byte[] value = new byte[map.getInt(at + 4)];
+        map.get(at + ENTRY_HEADER_BYTES + key.length, value);
+        return value;
+      }
+      slot = (slot + 1) & slotMask;
+    }
+    return null;
+  }
+
+  /**
+   * Stores the value unless the key is present. Returns false if the cache is full and the value
+   * was dropped.
+   */
+  public boolean put(byte[] key, byte[] value) {
+    return store(key, value, false);
+  }
+
+  /**
+   * Stores the value, replacing the present one if any. Readers see the old or the new value in
+   * full. Returns false if the cache is full and the value was dropped.
+   */
+  public boolean replace(byte[] key, byte[] value) {
+    return store(key, value, true);
+  }
+
+  private boolean store(byte[] key, byte[] value, boolean replace) {
+    long hash = Hashing.hashUtf8(key, 0, key.length, SEED);
+    long tag = tag(hash);
+    int slot = (int) hash & slotMask;
+    long entry = -1;
+    for (int probe = 0; probe <= slotMask; ) {
+      long word = slot(slot);
+      boolean present = word != 0 && (word & (TAG_MASK | DELETED)) == tag && keyEquals(word, key);
+      if (present && !replace) {
+        return true;
+      }
+      if (word == 0 || present) {
+        if (word == 0 && entries() >= maxEntries) {
+          dropped.increment();
+          return false;
+        }
+        if (entry < 0) {
+          entry = append(key, value);
+          if (entry < 0) {
+            dropped.increment();
+            return false;
+          }
+        }
+        if (LONGS.compareAndSet(map, slotOffset(slot), word, tag | entry)) {
+          if (word == 0) {
+            LONGS.getAndAdd(map, ENTRIES_OFFSET, 1L);
+          }
+          return true;
+        }
+        // Another writer changed the slot: look at what it published before moving on.
+        continue;
+      }
+      slot = (slot + 1) & slotMask;
+      probe++;
+    }
+    dropped.increment();
+    return false;
+  }
+
+  /** Marks the key's entry deleted. */
+  public boolean remove(byte[] key) {
+    long hash = Hashing.hashUtf8(key, 0, key.length, SEED);
+    long tag = tag(hash);
+    int slot = (int) hash & slotMask;
+    for (int probe = 0; probe <= slotMask; probe++) {
+      long word = slot(slot);
+      if (word == 0) {
+        return false;
+      }
+      if ((word & (TAG_MASK | DELETED)) == tag && keyEquals(word, key)) {
+        return LONGS.compareAndSet(map, slotOffset(slot), word, word | DELETED);
+      }
+      slot = (slot + 1) & slotMask;
+    }
+    return false;
+  }
+
+  /** Marks every entry whose key starts with the prefix deleted; returns how many. */
+  public int removePrefix(byte[] prefix) {
+    int removed = 0;
+    for (int slot = 0; slot <= slotMask; slot++) {
+      long word = slot(slot);
+      if (word == 0 || (word & DELETED) != 0) {
+        continue;
+      }
+      int at = entryPosition(word);
+      if (map.getInt(at) >= prefix.length
+          && bytesEqual(at + ENTRY_HEADER_BYTES, prefix)
+          && LONGS.compareAndSet(map, slotOffset(slot), word, word | DELETED)) {
+        removed++;
+      }
+    }
+    return removed;
+  }
+
+  /** Entries published by all processes, deleted ones included. */
+  public long entries() {
+    return (long) LONGS.getVolatile(map, ENTRIES_OFFSET);
+  }
+
+  public long dataBytesUsed() {
+    return Math.min((long) LONGS.getVolatile(map, TAIL_OFFSET), dataCapacity);
+  }
+
+  public long dataCapacity() {
+    return dataCapacity;
+  }
+
+  public int slots() {
+    return 1 << slotBits;
+  }
+
+  /** Puts this process dropped because the cache was full. */
+  public long dropped() {
+    return dropped.sum();
+  }
+
+  /** Flushes the mapping to the file; the mapping itself is released with the object. */
+  @Override
+  public void close() {
+    map.force();
+  }
+
+  public String toText() {
+    return String.format(
+        "%s: %d/%d slots, %d/%d data bytes, %d dropped here%n",
+        file, entries(), slots(), dataBytesUsed(), dataCapacity, dropped());
+  }
+
+  /** Reserves and writes an entry; returns its data offset, or -1 if the region is full. */
+  private long append(byte[] key, byte[] value) {
+    long size = (ENTRY_HEADER_BYTES + key.length + value.length + 7) & ~7L;
+    long offset = (long) LONGS.getAndAdd(map, TAIL_OFFSET, size);
+    if (offset + size > dataCapacity) {
+      return -1;
+    }
+    int at = dataStart + (int) offset;
+    map.putInt(at, key.length);
+    map.putInt(at + 4, value.length);
+    map.put(at + ENTRY_HEADER_BYTES, key);
+    map.put(at + ENTRY_HEADER_BYTES + key.length, value);
+    return offset;
+  }
+
+  private boolean keyEquals(long word, byte[] key) {
+    int at = entryPosition(word);
+    return map.getInt(at) == key.length && bytesEqual(at + ENTRY_HEADER_BYTES, key);
+  }
+
+  private boolean bytesEqual(int at, byte[] bytes) {
+    for (int i = 0; i < bytes.length; i++) {
+      if (map.get(at + i) != bytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private long slot(int slot) {
+    return (long) LONGS.getAcquire(map, slotOffset(slot));
+  }
+
+  private static int slotOffset(int slot) {
+    return HEADER_BYTES + slot * Long.BYTES;
+  }
+
+  private int entryPosition(long word) {
+    return dataStart + (int) (word & OFFSET_MASK);
+  }
+
+  /** Nonzero tag in bits 40-62, so a published slot word is never 0. */
+  private static long tag(long hash) {
+    return ((hash >>> 41) | 1) << 40;
+  }
+
+  /** Prints the fill of a cache file: {@code SharedFileCache <file>}. */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: SharedFileCache <file>");
+      System.exit(1);
+    }
+    Path file = Path.of(args[0]);
+    if (!Files.exists(file)) {
+      System.err.println("No cache file at " + file);
+      System.exit(1);
+    }
+    try (SharedFileCache cache = open(file, 20, 256L << 20)) {
+      System.out.print(cache.toText());
+    }
+  }
+}
@@ -0,0 +1,188 @@
+package model.cache;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+import model.profiling.CacheMissEvent;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+/**
+ * Spring {@link org.springframework.cache.Cache} with an on-heap hot tier in front of a {@link
+ * SharedFileCache} warm tier. A hot miss that hits warm is promoted to hot; a put goes to both and
+ * replaces the value in either. Keys are stored in the warm tier as the cache name and the key's
+ * {@code toString()}, so keys must have a stable text form. Values are stored as JSON of the
+ * cache's value type, and null results as an empty value.
+ *
+ * <p>The hot tier is emptied when it reaches its size limit rather than evicting entry by entry:
+ * the warm tier refills it at the cost of a probe and a decode per key. Loads through {@link
+ * #get(Object, Callable)} are not serialized per key; concurrent misses may each call the loader,
+ * which suits pure lookups like UA parsing.
+ *
+ * <p>Misses are counted in {@link #stats}. Those the cache loads itself through the value loader
+ * are also reported as JFR {@link CacheMissEvent}s, timed over the load.
+ */
+@Slf4j
+public class TieredCache extends AbstractValueAdaptingCache {
+
+  private static final byte[] NULL_VALUE = {};
+
+  private final String name;
+  private final byte[] keyPrefix;
+  private final SharedFileCache warm;
+  private final ObjectReader reader;
+  private final ObjectWriter writer;
+  private final int hotEntries;
+  private final int maxValueBytes;
+  private final ConcurrentHashMap<Object, Object> hot = new ConcurrentHashMap<>();
+
+  private final LongAdder hotHits = new LongAdder();
+  private final LongAdder warmHits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder puts = new LongAdder();
+  private final LongAdder warmSkipped = new LongAdder();
+
+  TieredCache(
+      String name,
+      SharedFileCache warm,
+      ObjectReader reader,
+      ObjectWriter writer,
+      EnrichmentCacheConfig config) {
+    super(config.isAllowNullValues());
+    this.name = name;
+    this.keyPrefix = (name + '\0').getBytes(StandardCharsets.UTF_8);
+    this.warm = warm;
+    this.reader = reader;
+    this.writer = writer;
+    this.hotEntries = config.getHotEntries();
+    this.maxValueBytes = config.getMaxValueBytes();
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  /** The hot tier. */
+  @Override
+  public Object getNativeCache() {
+    return hot;
+  }
+
+  @Override
+  protected Object lookup(Object key) {
+    Object stored = hot.get(key);
+    if (stored != null) {
+      hotHits.increment();
+      return stored;
+    }
+    byte[] value = warm == null ? null : warm.get(warmKey(key));
+    if (value == null || (value.length == 0 && !isAllowNullValues())) {
+      misses.increment();
+      return null;
+    }
+    try {
+      stored = toStoreValue(value.length == 0 ? null : reader.readValue(value));
+    } catch (IOException e) {
+      // Written by a process with a different value type; treat as a miss.
+      log.debug("Unreadable {} entry for {}", name, key, e);
+      misses.increment();
+      return null;
+    }
+    warmHits.increment();
+    putHot(key, stored);
+    return stored;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public <T> T get(Object key, Callable<T> valueLoader) {
+    Object stored = lookup(key);
+    if (stored != null) {
+      return (T) fromStoreValue(stored);
+    }
+    CacheMissEvent event = new CacheMissEvent();
+    event.begin();
+    T value;
+    try {
+      value = valueLoader.call();
+    } catch (Exception e) {
+      throw new ValueRetrievalException(key, valueLoader, e);
+    } finally {
+      event.finish(name);
+    }
+    put(key, value);
+    return value;
+  }
+
+  @Override
+  public void put(Object key, Object value) {
+    Object stored = toStoreValue(value);
+    puts.increment();
+    putHot(key, stored);
+    if (warm == null) {
+      return;
+    }
+    byte[] bytes;
+    try {
+      bytes = value == null ? NULL_VALUE : writer.writeValueAsBytes(value);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Cannot write " + name + " value as JSON", e);
+    }
+    byte[] warmKey = warmKey(key);
+    if (bytes.length > maxValueBytes) {
+      // Too large for warm, but an older value there must not outlive this put.
+      warm.remove(warmKey);
+      warmSkipped.increment();
+    } else if (!warm.replace(warmKey, bytes)) {
+      warmSkipped.increment();
+    }
+  }
+
+  @Override
+  public void evict(Object key) {
+    hot.remove(key);
+    if (warm != null) {
+      warm.remove(warmKey(key));
+    }
+  }
+
+  /** Empties the hot tier and deletes this cache's entries from the shared file. */
+  @Override
+  public void clear() {
+    hot.clear();
+    if (warm != null) {
+      warm.removePrefix(keyPrefix);
+    }
+  }
+
+  public CacheStats stats() {
+    return new CacheStats(
+        name,
+        hotHits.sum(),
+        warmHits.sum(),
+        misses.sum(),
+        puts.sum(),
+        warmSkipped.sum(),
+        hot.mappingCount());
+  }
+
+  private void putHot(Object key, Object stored) {
+    if (hot.mappingCount() >= hotEntries) {
+      hot.clear();
+    }
+    hot.put(key, stored);
+  }
+
+  private byte[] warmKey(Object key) {
+    byte[] text = key.toString().getBytes(StandardCharsets.UTF_8);
+    byte[] bytes = new byte[keyPrefix.length + text.length];
+    System.arraycopy(keyPrefix, 0, bytes, 0, keyPrefix.length);
+    System.arraycopy(text, 0, bytes, keyPrefix.length, text.length);
+    return bytes;
+  }
+}
@@ -0,0 +1,85 @@
+package model.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.cache.CacheManager;
+
+/**
+ * Spring {@link CacheManager} for enrichment lookups (UA parsing, geo lookup, referer
+ * classification). All caches share one warm tier file, so a lookup computed by any collector
+ * process on the host, before or after a restart, is found by the others. Caches hold Strings
+ * unless another value type is registered with {@link #valueType} before first use.
+ */
+public class TieredCacheManager implements CacheManager, Closeable {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final EnrichmentCacheConfig config;
+  private final SharedFileCache warm;
+  private final Map<String, Class<?>> valueTypes = new ConcurrentHashMap<>();
+  private final Map<String, TieredCache> caches = new ConcurrentHashMap<>();
+
+  public TieredCacheManager(EnrichmentCacheConfig config) throws IOException {
+    this.config = config;
+    this.warm =
+        config.getFile() == null
+            ? null
+            : SharedFileCache.open(config.getFile(), config.getSlotBits(), config.getDataBytes());
+  }
+
+  public TieredCacheManager valueType(String name, Class<?> type) {
+    if (caches.containsKey(name)) {
+      throw new IllegalStateException("Cache " + name + " is already in use");
+    }
+    valueTypes.put(name, type);
+    return this;
+  }
+
+  @Override
+  public TieredCache getCache(String name) {
+    return caches.computeIfAbsent(
+        name,
+        key -> {
+          Class<?> type = valueTypes.getOrDefault(key, String.class);
+          return new TieredCache(key, warm, MAPPER.readerFor(type), MAPPER.writerFor(type), config);
+        });
+  }
+
+  @Override
+  public Collection<String> getCacheNames() {
+    return Collections.unmodifiableSet(caches.keySet());
+  }
+
+  public List<CacheStats> stats() {
+    List<CacheStats> stats = new ArrayList<>();
+    for (TieredCache cache : caches.values()) {
+      stats.add(cache.stats());
+    }
+    return stats;
+  }
+
+  public String toText() {
+    StringBuilder text = new StringBuilder();
+    if (warm != null) {
+      text.append(warm.toText());
+    }
+    for (CacheStats cache : stats()) {
+      text.append(cache.toText());
+    }
+    return text.toString();
+  }
+
+  @Override
+  public void close() {
+    if (warm != null) {
+      warm.close();
+    }
+  }
+}
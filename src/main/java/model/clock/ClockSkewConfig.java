@@ -0,0 +1,30 @@
+package model.clock;
+
+import java.time.Duration;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@Builder
+@ToString
+public class ClockSkewConfig {
+
+  /** Number of clients tracked at most; rounded up to a power of two. Memory is ~28 bytes each. */
+  @Builder.Default private final int maxClients = 1 << 20;
+
+  /** Clients not seen for this long start over with a fresh estimate. */
+  @Builder.Default private final Duration idleTimeout = Duration.ofHours(6);
+
+  /** Weight of each new (server-logged - emitted) sample once a client has warmed up. */
+  @Builder.Default private final double smoothing = 0.1;
+
+  /** Samples needed before a client's estimate is trusted. */
+  @Builder.Default private final int minSamples = 3;
+
+  /**
+   * Estimates smaller than this are left alone; they are dominated by network transit time
+   * rather than a wrong clock.
+   */
+  @Builder.Default private final Duration minCorrection = Duration.ofSeconds(2);
+}
@@ -0,0 +1,190 @@
+package model.clock;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+import model.codec.BinaryCursor;
+import model.codec.BinarySkipPlan;
+import model.utils.Hashing;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Streaming correction of client clock skew. The skew of each clientId is estimated from
+ * (eventServerLoggedUtc - eventEmittedUtc) of its events and, once trusted, added to
+ * eventOccurredTimestampUtc. The client's own value is kept in clientOccurredTimestampUtc and every
+ * correction starts from it, while emitted and server-logged timestamps are left as they are, so
+ * re-running the stage over corrected events yields the same estimates and the same timestamps.
+ * Works on decoded records or directly on binary-encoded ones. Not thread-safe; use one stage per
+ * stream, ideally with events partitioned by clientId.
+ */
+@Slf4j
+public class ClockSkewStage {
+
+  private static final long CLIENT_SEED = 0x2545f4914f6cdd1dL;
+
+  private final ClockSkewTable table;
+  private final LongSupplier clock;
+  private final int minSamples;
+  private final long minCorrectionMillis;
+  private final int clientIdPos;
+  private final int occurredPos;
+  private final int emittedPos;
+  private final int serverLoggedPos;
+  private final int clientOccurredPos;
+  private final BinarySkipPlan skipPlan;
+  private final BinaryCursor cursor = new BinaryCursor();
+
+  private long events;
+  private long samples;
+  private long corrected;
+
+  public ClockSkewStage(Schema eventSchema, ClockSkewConfig config) {
+    this(eventSchema, config, System::currentTimeMillis);
+  }
+
+  /** The clock is only used for events without eventServerLoggedUtc. */
+  public ClockSkewStage(Schema eventSchema, ClockSkewConfig config, LongSupplier clock) {
+    this.skipPlan = new BinarySkipPlan(eventSchema);
+    this.table =
+        new ClockSkewTable(
+            config.getMaxClients(), config.getIdleTimeout().toMillis(), config.getSmoothing());
+    this.clock = clock;
+    this.minSamples = Math.max(1, config.getMinSamples());
+    this.minCorrectionMillis = config.getMinCorrection().toMillis();
+    this.clientIdPos = fieldPos(eventSchema, "clientId");
+    this.occurredPos = fieldPos(eventSchema, "eventOccurredTimestampUtc");
+    this.emittedPos = fieldPos(eventSchema, "eventEmittedUtc");
+    this.serverLoggedPos = fieldPos(eventSchema, "eventServerLoggedUtc");
+    this.clientOccurredPos = fieldPos(eventSchema, "clientOccurredTimestampUtc");
+    if (!(clientIdPos < occurredPos
+        && occurredPos < emittedPos
+        && emittedPos < serverLoggedPos
+        && serverLoggedPos < clientOccurredPos)) {
+      throw new IllegalArgumentException("Unexpected field order in " + eventSchema.getFullName());
+    }
+    log.info("Clock skew stage created with {} using {} bytes", config, table.memoryBytes());
+  }
+
+  /**
+   * Updates the client's estimate and corrects the occurred timestamp, starting from the client's
+   * own value when the event was corrected before; true if the timestamp changed.
+   */
+  public boolean correct(GenericRecord event) {
+    long key = Hashing.hashUtf8((CharSequence) event.get(clientIdPos), CLIENT_SEED);
+    Long emitted = (Long) event.get(emittedPos);
+    Long serverLogged = (Long) event.get(serverLoggedPos);
+    long correction =
+        emitted != null && serverLogged != null
+            ? observe(key, serverLogged - emitted, serverLogged)
+            : lookup(key, serverLogged != null ? serverLogged : clock.getAsLong());
+    long occurred = (Long) event.get(occurredPos);
+    Long clientOccurred = (Long) event.get(clientOccurredPos);
+    if (clientOccurred == null) {
+      if (correction == 0) {
+        return false;
+      }
+      clientOccurred = occurred;
+      event.put(clientOccurredPos, clientOccurred);
+    }
+    event.put(occurredPos, clientOccurred + correction);
+    return clientOccurred + correction != occurred;
+  }
+
+  /**
+   * Same as {@link #correct(GenericRecord)} on a binary-encoded event. The occurred timestamp is
+   * rewritten in place when the event was corrected before and the new value has the same varint
+   * length (any millisecond timestamp between mid-1970 and 2039); otherwise, e.g. to add
+   * clientOccurredTimestampUtc on a first correction, a re-spliced copy is returned. Returns the
+   * array holding the result.
+   */
+  public byte[] correct(byte[] record) {
+    cursor.reset(record, skipPlan.fieldOffset(record, 0, clientIdPos));
+    int clientIdLength = cursor.readLength();
+    long key = Hashing.hashUtf8(record, cursor.position(), clientIdLength, CLIENT_SEED);
+    cursor.position(cursor.position() + clientIdLength);
+    skipTo(clientIdPos + 1, occurredPos);
+    int occurredStart = cursor.position();
+    long occurred = cursor.readLong();
+    int occurredEnd = cursor.position();
+    skipTo(occurredPos + 1, emittedPos);
+    boolean hasEmitted = cursor.readInt() != 0;
+    long emitted = hasEmitted ? cursor.readLong() : 0;
+    skipTo(emittedPos + 1, serverLoggedPos);
+    boolean hasServerLogged = cursor.readInt() != 0;
+    long serverLogged = hasServerLogged ? cursor.readLong() : 0;
+    skipTo(serverLoggedPos + 1, clientOccurredPos);
+    int clientOccurredStart = cursor.position();
+    boolean hasClientOccurred = cursor.readInt() != 0;
+    long clientOccurred = hasClientOccurred ? cursor.readLong() : occurred;
+    int clientOccurredEnd = cursor.position();
+
+    long correction =
+        hasEmitted && hasServerLogged
+            ? observe(key, serverLogged - emitted, serverLogged)
+            : lookup(key, hasServerLogged ? serverLogged : clock.getAsLong());
+    long value = clientOccurred + correction;
+    if (value == occurred) {
+      return record;
+    }
+    int size = BinaryCursor.longSize(value);
+    if (hasClientOccurred && size == occurredEnd - occurredStart) {
+      BinaryCursor.writeLong(record, occurredStart, value);
+      return record;
+    }
+    // Worst case both values grow to the 10 bytes of a varint plus a union branch.
+    byte[] copy = new byte[record.length + 21];
+    System.arraycopy(record, 0, copy, 0, occurredStart);
+    int end = BinaryCursor.writeLong(copy, occurredStart, value);
+    System.arraycopy(record, occurredEnd, copy, end, clientOccurredStart - occurredEnd);
+    end += clientOccurredStart - occurredEnd;
+    end = BinaryCursor.writeLong(copy, end, 1);
+    end = BinaryCursor.writeLong(copy, end, clientOccurred);
+    System.arraycopy(record, clientOccurredEnd, copy, end, record.length - clientOccurredEnd);
+    return Arrays.copyOf(copy, end + record.length - clientOccurredEnd);
+  }
+
+  public ClockSkewStats stats() {
+    return new ClockSkewStats(
+        events, samples, corrected, table.size(), table.evictions(), table.memoryBytes());
+  }
+
+  private long observe(long key, long sampleMillis, long now) {
+    samples++;
+    return correction(table.observe(key, sampleMillis, now));
+  }
+
+  private long lookup(long key, long now) {
+    int slot = table.find(key, now);
+    return slot < 0 ? countEvent(0) : correction(slot);
+  }
+
+  private long correction(int slot) {
+    if (table.samples(slot) < minSamples) {
+      return countEvent(0);
+    }
+    long skew = Math.round(table.skew(slot));
+    return countEvent(Math.abs(skew) < minCorrectionMillis ? 0 : skew);
+  }
+
+  private long countEvent(long correction) {
+    events++;
+    if (correction != 0) {
+      corrected++;
+    }
+    return correction;
+  }
+
+  private void skipTo(int from, int to) {
+    cursor.position(skipPlan.skip(cursor.getBuffer(), cursor.position(), from, to));
+  }
+
+  private static int fieldPos(Schema schema, String name) {
+    Schema.Field field = schema.getField(name);
+    if (field == null) {
+      throw new IllegalArgumentException(
+          "Schema " + schema.getFullName() + " has no field " + name);
+    }
+    return field.pos();
+  }
+}
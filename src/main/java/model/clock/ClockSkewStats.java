@@ -0,0 +1,18 @@
+package model.clock;
+
+import lombok.Value;
+
+@Value
+public class ClockSkewStats {
+  long events;
+  /** Events carrying both eventEmittedUtc and eventServerLoggedUtc. */
+  long samples;
+  long corrected;
+  int trackedClients;
+  long evictions;
+  long memoryBytes;
+
+  public double getCorrectionRate() {
+    return events == 0 ? 0 : (double) corrected / events;
+  }
+}
@@ -0,0 +1,124 @@
+package model.clock;
+
+import model.utils.Hashing;
+
+/**
+ * Bounded map from 64-bit clientId hash to an exponentially-decayed skew estimate, held in
+ * parallel primitive arrays. It is set-associative: a key can only live in the {@value #WAYS}
+ * slots of its bucket, and inserting into a full bucket evicts the least recently seen client
+ * there, so memory never grows and cold clients make room for active ones.
+ */
+final class ClockSkewTable {
+
+  static final int WAYS = 8;
+
+  private static final long EMPTY = 0L;
+  /** Stand-in for the key 0, which marks empty slots. */
+  private static final long ZERO_KEY = 0x9e3779b97f4a7c15L;
+
+  private final long[] keys;
+  private final long[] lastSeen;
+  private final double[] skew;
+  private final int[] samples;
+  private final int bucketMask;
+  private final long idleMillis;
+  private final double smoothing;
+
+  private int size;
+  private long evictions;
+
+  ClockSkewTable(int capacity, long idleMillis, double smoothing) {
+    int slots = Math.max(WAYS, Integer.highestOneBit(Math.max(1, capacity - 1)) << 1);
+    this.keys = new long[slots];
+    this.lastSeen = new long[slots];
+    this.skew = new double[slots];
+    this.samples = new int[slots];
+    this.bucketMask = slots / WAYS - 1;
+    this.idleMillis = idleMillis;
+    this.smoothing = smoothing;
+  }
+
+  /** Returns the slot of a live entry for the key, or -1. */
+  int find(long key, long now) {
+    key = key == EMPTY ? ZERO_KEY : key;
+    int bucket = bucket(key);
+    for (int slot = bucket; slot < bucket + WAYS; slot++) {
+      if (keys[slot] == key) {
+        return now - lastSeen[slot] > idleMillis ? -1 : slot;
+      }
+    }
+    return -1;
+  }
+
+  /** Folds one skew sample into the key's estimate, inserting it if needed; returns its slot. */
+  int observe(long key, long sampleMillis, long now) {
+    key = key == EMPTY ? ZERO_KEY : key;
+    int bucket = bucket(key);
+    int victim = bucket;
+    for (int slot = bucket; slot < bucket + WAYS; slot++) {
+      long existing = keys[slot];
+      if (existing == key) {
+        if (now - lastSeen[slot] > idleMillis) {
+          samples[slot] = 0;
+        }
+        update(slot, sampleMillis, now);
+        return slot;
+      }
+      if (existing == EMPTY) {
+        victim = slot;
+        size++;
+        break;
+      }
+      if (lastSeen[slot] < lastSeen[victim]) {
+        victim = slot;
+      }
+    }
+    if (keys[victim] != EMPTY) {
+      evictions++;
+    }
+    keys[victim] = key;
+    samples[victim] = 0;
+    lastSeen[victim] = now;
+    update(victim, sampleMillis, now);
+    return victim;
+  }
+
+  double skew(int slot) {
+    return skew[slot];
+  }
+
+  int samples(int slot) {
+    return samples[slot];
+  }
+
+  int size() {
+    return size;
+  }
+
+  long evictions() {
+    return evictions;
+  }
+
+  long memoryBytes() {
+    return (long) keys.length * (Long.BYTES * 2 + Double.BYTES + Integer.BYTES);
+  }
+
+  private void update(int slot, long sampleMillis, long now) {
+    int n = samples[slot];
+    if (n == 0) {
+      skew[slot] = sampleMillis;
+    } else {
+      // Plain mean while warming up, so the first samples are not overweighted.
+      double weight = Math.max(smoothing, 1.0 / (n + 1));
+      skew[slot] += weight * (sampleMillis - skew[slot]);
+    }
+    if (n < Integer.MAX_VALUE) {
+      samples[slot] = n + 1;
+    }
+    lastSeen[slot] = Math.max(lastSeen[slot], now);
+  }
+
+  private int bucket(long key) {
+    return ((int) Hashing.fmix64(key) & bucketMask) * WAYS;
+  }
+}
@@ -0,0 +1,159 @@
+package model.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import model.metrics.EventMetrics;
+import model.metrics.Stage;
+import model.metrics.StageMetrics;
+import model.profiling.CodecEvent;
+import model.utils.EventNames;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+
+/**
+ * Binary encoder/decoder for single EventDataPayload or ErrorMessage records, reporting every call
+ * to {@link EventMetrics} and slow ones as a JFR {@link CodecEvent}. Encoders, decoders and the
+ * output buffer are reused between calls, so an instance must not be shared between threads.
+ */
+public class AvroRecordCodec {
+
+  private final Schema schema;
+  private final GenericDatumWriter<GenericRecord> writer;
+  private final GenericDatumReader<GenericRecord> reader;
+  private final StageMetrics encodeMetrics;
+  private final StageMetrics decodeMetrics;
+  /** Position of eventName for the per-event-name breakdown, -1 for other record types. */
+  private final int eventNamePos;
+
+  /** Only asked whether CodecEvents are enabled, so calls allocate none while JFR is off. */
+  private final CodecEvent probe = new CodecEvent();
+
+  private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+  private final CountingOutputStream counting = new CountingOutputStream();
+  private BinaryEncoder encoder;
+  private BinaryDecoder decoder;
+
+  AvroRecordCodec(Schema schema, StageMetrics encodeMetrics, StageMetrics decodeMetrics) {
+    this.schema = schema;
+    this.writer = new GenericDatumWriter<>(schema);
+    this.reader = new GenericDatumReader<>(schema);
+    this.encodeMetrics = encodeMetrics;
+    this.decodeMetrics = decodeMetrics;
+    Schema.Field eventName = schema.getField("eventName");
+    this.eventNamePos = eventName == null ? -1 : eventName.pos();
+  }
+
+  public static AvroRecordCodec forEvents(Schema eventSchema, EventMetrics metrics) {
+    return new AvroRecordCodec(
+        eventSchema, metrics.stage(Stage.EVENT_ENCODE), metrics.stage(Stage.EVENT_DECODE));
+  }
+
+  public static AvroRecordCodec forErrorMessages(Schema errorSchema, EventMetrics metrics) {
+    return new AvroRecordCodec(
+        errorSchema, metrics.stage(Stage.ERROR_ENCODE), metrics.stage(Stage.ERROR_DECODE));
+  }
+
+  public Schema getSchema() {
+    return schema;
+  }
+
+  public byte[] encode(GenericRecord record) throws IOException {
+    buffer.reset();
+    encode(record, buffer);
+    return buffer.toByteArray();
+  }
+
+  public void encode(GenericRecord record, OutputStream out) throws IOException {
+    CodecEvent event = beginEvent();
+    long start = System.nanoTime();
+    counting.reset(out);
+    try {
+      encoder = EncoderFactory.get().directBinaryEncoder(counting, encoder);
+      writer.write(record, encoder);
+      encoder.flush();
+    } catch (IOException | RuntimeException e) {
+      encodeMetrics.recordError();
+      throw e;
+    }
+    long bytes = counting.count;
+    int eventName = eventNameOrdinal(record);
+    encodeMetrics.record(eventName, System.nanoTime() - start, bytes);
+    if (event != null) {
+      event.finish(encodeMetrics.getStage(), eventName, bytes);
+    }
+  }
+
+  public GenericRecord decode(byte[] bytes) throws IOException {
+    return decode(bytes, 0, bytes.length, null);
+  }
+
+  /** Decodes one record, reusing {@code reuse} and its nested objects when not null. */
+  public GenericRecord decode(byte[] bytes, int offset, int length, GenericRecord reuse)
+      throws IOException {
+    CodecEvent event = beginEvent();
+    long start = System.nanoTime();
+    GenericRecord record;
+    try {
+      decoder = DecoderFactory.get().binaryDecoder(bytes, offset, length, decoder);
+      record = reader.read(reuse, decoder);
+    } catch (IOException | RuntimeException e) {
+      decodeMetrics.recordError();
+      throw e;
+    }
+    int eventName = eventNameOrdinal(record);
+    decodeMetrics.record(eventName, System.nanoTime() - start, length);
+    if (event != null) {
+      event.finish(decodeMetrics.getStage(), eventName, length);
+    }
+    return record;
+  }
+
+  /** A started CodecEvent, or null when the event is not enabled. */
+  private CodecEvent beginEvent() {
+    if (!probe.isEnabled()) {
+      return null;
+    }
+    CodecEvent event = new CodecEvent();
+    event.begin();
+    return event;
+  }
+
+  private int eventNameOrdinal(GenericRecord record) {
+    return eventNamePos < 0 ? -1 : EventNames.ordinal(record.get(eventNamePos));
+  }
+
+  /** Counts the bytes the encoder writes to the caller's stream. Reused between calls. */
+  private static final class CountingOutputStream extends OutputStream {
+    private OutputStream out;
+    private long count;
+
+    void reset(OutputStream target) {
+      out = target;
+      count = 0;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      out.write(bytes, offset, length);
+      count += length;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+  }
+}
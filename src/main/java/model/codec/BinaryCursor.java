@@ -0,0 +1,157 @@
+package model.codec;
+
+import java.util.List;
+import org.apache.avro.Schema;
+
+/**
+ * Reads and skips values of an Avro binary-encoded datum in a byte array without decoding it.
+ * Positions are absolute offsets into the array. Not thread-safe; reuse one cursor per thread via
+ * {@link #reset}.
+ */
+public final class BinaryCursor {
+
+  private byte[] buf;
+  private int pos;
+
+  public BinaryCursor reset(byte[] buf, int pos) {
+    this.buf = buf;
+    this.pos = pos;
+    return this;
+  }
+
+  public byte[] getBuffer() {
+    return buf;
+  }
+
+  public int position() {
+    return pos;
+  }
+
+  public void position(int pos) {
+    this.pos = pos;
+  }
+
+  /** Reads a zig-zag varint long. */
+  public long readLong() {
+    long raw = 0;
+    int shift = 0;
+    byte b;
+    do {
+      if (shift > 63) {
+        throw new IllegalStateException("Malformed varint at " + pos);
+      }
+      b = buf[pos++];
+      raw |= (long) (b & 0x7f) << shift;
+      shift += 7;
+    } while (b < 0);
+    return (raw >>> 1) ^ -(raw & 1);
+  }
+
+  public int readInt() {
+    return (int) readLong();
+  }
+
+  /** Reads a string or bytes length and leaves the cursor on the first content byte. */
+  public int readLength() {
+    long length = readLong();
+    if (length < 0 || pos + length > buf.length) {
+      throw new IllegalStateException("Invalid length " + length + " at " + pos);
+    }
+    return (int) length;
+  }
+
+  /** Skips fields {@code 0..fieldPos-1} of a record whose encoding starts at the cursor. */
+  public BinaryCursor skipFields(Schema record, int fieldPos) {
+    List<Schema.Field> fields = record.getFields();
+    for (int i = 0; i < fieldPos; i++) {
+      skip(fields.get(i).schema());
+    }
+    return this;
+  }
+
+  /** Skips one value of the given schema. */
+  public void skip(Schema schema) {
+    switch (schema.getType()) {
+      case NULL:
+        return;
+      case BOOLEAN:
+        pos++;
+        return;
+      case INT:
+      case LONG:
+      case ENUM:
+        readLong();
+        return;
+      case FLOAT:
+        pos += 4;
+        return;
+      case DOUBLE:
+        pos += 8;
+        return;
+      case STRING:
+      case BYTES:
+        int length = readLength();
+        pos += length;
+        return;
+      case FIXED:
+        pos += schema.getFixedSize();
+        return;
+      case UNION:
+        skip(schema.getTypes().get(readInt()));
+        return;
+      case RECORD:
+        for (Schema.Field field : schema.getFields()) {
+          skip(field.schema());
+        }
+        return;
+      case ARRAY:
+        skipBlocks(schema.getElementType(), false);
+        return;
+      case MAP:
+        skipBlocks(schema.getValueType(), true);
+        return;
+      default:
+        throw new IllegalArgumentException("Unsupported schema type " + schema.getType());
+    }
+  }
+
+  private void skipBlocks(Schema itemSchema, boolean withKeys) {
+    for (long count = readLong(); count != 0; count = readLong()) {
+      if (count < 0) {
+        // Negative count: the block's byte size follows, so it can be skipped in one go.
+        int blockBytes = (int) readLong();
+        pos += blockBytes;
+        continue;
+      }
+      for (long i = 0; i < count; i++) {
+        if (withKeys) {
+          int keyLength = readLength();
+          pos += keyLength;
+        }
+        skip(itemSchema);
+      }
+    }
+  }
+
+  /** Number of bytes the zig-zag varint encoding of {@code value} takes. */
+  public static int longSize(long value) {
+    long raw = (value << 1) ^ (value >> 63);
+    int size = 1;
+    while ((raw & ~0x7fL) != 0) {
+      raw >>>= 7;
+      size++;
+    }
+    return size;
+  }
+
+  /** Writes the zig-zag varint encoding of {@code value}, returning the position after it. */
+  public static int writeLong(byte[] buf, int pos, long value) {
+    long raw = (value << 1) ^ (value >> 63);
+    while ((raw & ~0x7fL) != 0) {
+      buf[pos++] = (byte) ((raw & 0x7f) | 0x80);
+      raw >>>= 7;
+    }
+    buf[pos++] = (byte) raw;
+    return pos;
+  }
+}
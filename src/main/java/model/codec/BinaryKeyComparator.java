@@ -0,0 +1,296 @@
+package model.codec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import model.utils.Hashing;
+import org.apache.avro.Schema;
+
+/**
+ * Compares and hashes binary-encoded records on selected key fields without decoding them, for
+ * sorting and hash partitioning encoded events (e.g. by clientId then hitId). Each key field is
+ * compiled once into a small descriptor (value kind, nullable branch) and located with a {@link
+ * BinarySkipPlan}; comparison stops at the first differing key, so later keys are only located
+ * when earlier ones tie. Ordering follows the Avro specification: union branch first (so null
+ * sorts before values in {@code ["null", T]}), strings and bytes as unsigned bytes, enums by
+ * ordinal, numbers by value. Equal keys always hash equally. Immutable and thread-safe.
+ */
+public final class BinaryKeyComparator implements Comparator<byte[]> {
+
+  private static final int KIND_BYTES = 0;
+  private static final int KIND_VARINT = 1;
+  private static final int KIND_BOOLEAN = 2;
+  private static final int KIND_FLOAT = 3;
+  private static final int KIND_DOUBLE = 4;
+
+  private static final long HASH_SEED = 0x510e527fade682d1L;
+  private static final long NULL_HASH = 0x1f83d9abfb41bd6bL;
+
+  private final BinarySkipPlan plan;
+  private final List<String> fieldNames;
+  /** Key fields in comparison order. */
+  private final int[] positions;
+  private final int[] kinds;
+  private final int[] nullBranches;
+  /** Indexes into the key arrays sorted by field position, for single-pass hashing. */
+  private final int[] hashOrder;
+
+  public BinaryKeyComparator(Schema record, String... fields) {
+    this(new BinarySkipPlan(record), fields);
+  }
+
+  public BinaryKeyComparator(BinarySkipPlan plan, String... fields) {
+    if (fields.length == 0) {
+      throw new IllegalArgumentException("At least one key field is required");
+    }
+    Schema record = plan.getSchema();
+    this.plan = plan;
+    this.fieldNames = List.of(fields);
+    this.positions = new int[fields.length];
+    this.kinds = new int[fields.length];
+    this.nullBranches = new int[fields.length];
+    for (int i = 0; i < fields.length; i++) {
+      Schema.Field field = record.getField(fields[i]);
+      if (field == null) {
+        throw new IllegalArgumentException(
+            "Schema " + record.getFullName() + " has no field " + fields[i]);
+      }
+      positions[i] = field.pos();
+      nullBranches[i] = BinarySkipPlan.nullBranch(field.schema());
+      Schema value =
+          nullBranches[i] < 0 ? field.schema() : BinarySkipPlan.nonNullBranch(field.schema());
+      kinds[i] = kind(fields[i], value);
+    }
+    List<Integer> order = new ArrayList<>();
+    for (int i = 0; i < fields.length; i++) {
+      order.add(i);
+    }
+    order.sort(Comparator.comparingInt(i -> positions[i]));
+    this.hashOrder = order.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  public List<String> getFields() {
+    return fieldNames;
+  }
+
+  @Override
+  public int compare(byte[] a, byte[] b) {
+    return compare(a, 0, b, 0);
+  }
+
+  /** Compares the records encoded at {@code aOffset} and {@code bOffset} on the key fields. */
+  public int compare(byte[] a, int aOffset, byte[] b, int bOffset) {
+    int posA = aOffset;
+    int posB = bOffset;
+    int next = 0;
+    for (int k = 0; k < positions.length; k++) {
+      int field = positions[k];
+      if (field < next) {
+        posA = aOffset;
+        posB = bOffset;
+        next = 0;
+      }
+      posA = plan.skip(a, posA, next, field);
+      posB = plan.skip(b, posB, next, field);
+      int result = compareValue(k, a, posA, b, posB);
+      if (result != 0) {
+        return result;
+      }
+      if (k + 1 < positions.length) {
+        posA = plan.skip(a, posA, field, field + 1);
+        posB = plan.skip(b, posB, field, field + 1);
+        next = field + 1;
+      }
+    }
+    return 0;
+  }
+
+  public long hash(byte[] buf) {
+    return hash(buf, 0);
+  }
+
+  /** 64-bit hash of the key fields of the record encoded at {@code offset}. */
+  public long hash(byte[] buf, int offset) {
+    long h = HASH_SEED;
+    int pos = offset;
+    int next = 0;
+    for (int k : hashOrder) {
+      int field = positions[k];
+      pos = plan.skip(buf, pos, next, field);
+      h = Hashing.combine(h, hashValue(k, buf, pos));
+      pos = plan.skip(buf, pos, field, field + 1);
+      next = field + 1;
+    }
+    return h;
+  }
+
+  /**
+   * Encodes the key fields of the record at {@code offset} as bytes whose unsigned lexicographic
+   * order is the order of {@link #compare}, so sorters can compare keys with a plain byte compare
+   * (and a long prefix of them) instead of re-parsing records. Strings are escaped (0x00 becomes
+   * 0x00 0x01) and terminated with 0x00 0x00; numbers are written big-endian with the sign bit
+   * flipped.
+   */
+  public byte[] sortKey(byte[] buf, int offset) {
+    // Locate all key fields in one forward pass, then write them in comparison order.
+    int[] starts = new int[positions.length];
+    int pos = offset;
+    int next = 0;
+    for (int k : hashOrder) {
+      int field = positions[k];
+      pos = plan.skip(buf, pos, next, field);
+      starts[k] = pos;
+      next = field;
+    }
+    KeyWriter out = new KeyWriter();
+    for (int k = 0; k < positions.length; k++) {
+      writeSortKey(k, buf, starts[k], out);
+    }
+    return Arrays.copyOf(out.bytes, out.length);
+  }
+
+  private int compareValue(int k, byte[] a, int posA, byte[] b, int posB) {
+    int nullBranch = nullBranches[k];
+    if (nullBranch >= 0) {
+      int branchA = a[posA++] >> 1;
+      int branchB = b[posB++] >> 1;
+      if (branchA != branchB) {
+        return Integer.compare(branchA, branchB);
+      }
+      if (branchA == nullBranch) {
+        return 0;
+      }
+    }
+    switch (kinds[k]) {
+      case KIND_BYTES:
+        int lengthA = (int) BinarySkipPlan.readLong(a, posA);
+        int lengthB = (int) BinarySkipPlan.readLong(b, posB);
+        posA = BinarySkipPlan.skipVarint(a, posA);
+        posB = BinarySkipPlan.skipVarint(b, posB);
+        return Arrays.compareUnsigned(a, posA, posA + lengthA, b, posB, posB + lengthB);
+      case KIND_VARINT:
+        return Long.compare(BinarySkipPlan.readLong(a, posA), BinarySkipPlan.readLong(b, posB));
+      case KIND_BOOLEAN:
+        return Integer.compare(a[posA], b[posB]);
+      case KIND_FLOAT:
+        return Float.compare(
+            Float.intBitsToFloat(readIntLe(a, posA)), Float.intBitsToFloat(readIntLe(b, posB)));
+      default:
+        return Double.compare(
+            Double.longBitsToDouble(readLongLe(a, posA)),
+            Double.longBitsToDouble(readLongLe(b, posB)));
+    }
+  }
+
+  private long hashValue(int k, byte[] buf, int pos) {
+    int nullBranch = nullBranches[k];
+    if (nullBranch >= 0 && buf[pos++] >> 1 == nullBranch) {
+      return NULL_HASH;
+    }
+    switch (kinds[k]) {
+      case KIND_BYTES:
+        int length = (int) BinarySkipPlan.readLong(buf, pos);
+        return Hashing.hashUtf8(buf, BinarySkipPlan.skipVarint(buf, pos), length, HASH_SEED);
+      case KIND_VARINT:
+        return Hashing.fmix64(BinarySkipPlan.readLong(buf, pos));
+      case KIND_BOOLEAN:
+        return Hashing.fmix64(buf[pos]);
+      case KIND_FLOAT:
+        // floatToIntBits collapses NaNs, which Float.compare also treats as equal.
+        return Hashing.fmix64(Float.floatToIntBits(Float.intBitsToFloat(readIntLe(buf, pos))));
+      default:
+        return Hashing.fmix64(
+            Double.doubleToLongBits(Double.longBitsToDouble(readLongLe(buf, pos))));
+    }
+  }
+
+  private void writeSortKey(int k, byte[] buf, int pos, KeyWriter out) {
+    int nullBranch = nullBranches[k];
+    if (nullBranch >= 0) {
+      int branch = buf[pos++] >> 1;
+      out.write(branch);
+      if (branch == nullBranch) {
+        return;
+      }
+    }
+    switch (kinds[k]) {
+      case KIND_BYTES:
+        int length = (int) BinarySkipPlan.readLong(buf, pos);
+        pos = BinarySkipPlan.skipVarint(buf, pos);
+        for (int i = pos, end = pos + length; i < end; i++) {
+          out.write(buf[i]);
+          if (buf[i] == 0) {
+            out.write(1);
+          }
+        }
+        out.write(0);
+        out.write(0);
+        return;
+      case KIND_VARINT:
+        writeBigEndian(out, BinarySkipPlan.readLong(buf, pos) ^ Long.MIN_VALUE, Long.BYTES);
+        return;
+      case KIND_BOOLEAN:
+        out.write(buf[pos]);
+        return;
+      case KIND_FLOAT:
+        int floatBits = Float.floatToIntBits(Float.intBitsToFloat(readIntLe(buf, pos)));
+        writeBigEndian(out, floatBits < 0 ? ~floatBits : floatBits ^ Integer.MIN_VALUE, 4);
+        return;
+      default:
+        long doubleBits = Double.doubleToLongBits(Double.longBitsToDouble(readLongLe(buf, pos)));
+        writeBigEndian(out, doubleBits < 0 ? ~doubleBits : doubleBits ^ Long.MIN_VALUE, 8);
+    }
+  }
+
+  private static void writeBigEndian(KeyWriter out, long value, int bytes) {
+    for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) {
+      out.write((int) (value >>> shift));
+    }
+  }
+
+  private static int kind(String name, Schema schema) {
+    switch (schema.getType()) {
+      case STRING:
+      case BYTES:
+        return KIND_BYTES;
+      case INT:
+      case LONG:
+      case ENUM:
+        return KIND_VARINT;
+      case BOOLEAN:
+        return KIND_BOOLEAN;
+      case FLOAT:
+        return KIND_FLOAT;
+      case DOUBLE:
+        return KIND_DOUBLE;
+      default:
+        throw new IllegalArgumentException(
+            "Field " + name + " of type " + schema.getType() + " cannot be a key");
+    }
+  }
+
+  private static int readIntLe(byte[] buf, int pos) {
+    return (buf[pos] & 0xff)
+        | (buf[pos + 1] & 0xff) << 8
+        | (buf[pos + 2] & 0xff) << 16
+        | (buf[pos + 3] & 0xff) << 24;
+  }
+
+  private static long readLongLe(byte[] buf, int pos) {
+    return (readIntLe(buf, pos) & 0xffffffffL) | (long) readIntLe(buf, pos + 4) << 32;
+  }
+
+  /** Unsynchronized growable byte array for building sort keys. */
+  private static final class KeyWriter {
+    byte[] bytes = new byte[96];
+    int length;
+
+    void write(int b) {
+      if (length == bytes.length) {
+        bytes = Arrays.copyOf(bytes, length * 2);
+      }
+      bytes[length++] = (byte) b;
+    }
+  }
+}
@@ -0,0 +1,223 @@
+package model.codec;
+
+import java.util.List;
+import org.apache.avro.Schema;
+
+/**
+ * Precomputed plan for skipping the fields of one record schema in its binary encoding. Each
+ * field is reduced once to an opcode (varint, length-prefixed, fixed width, or one of those behind
+ * a nullable union), so skipping is a tight loop without schema lookups. Fields whose type has no
+ * opcode (maps, arrays, nested records, wider unions) are skipped by walking their schema, still
+ * without allocating. Immutable and thread-safe.
+ */
+public final class BinarySkipPlan {
+
+  static final int OP_NONE = 0;
+  static final int OP_VARINT = 1;
+  static final int OP_BYTES = 2;
+  static final int OP_FIXED = 3;
+  static final int OP_GENERIC = 4;
+
+  /** Bit set on ops of nullable fields whose null branch is 1 rather than 0. */
+  private static final int NULL_SECOND = 1 << 3;
+  private static final int NULLABLE = 1 << 4;
+  private static final int OP_MASK = 7;
+  private static final int WIDTH_SHIFT = 8;
+
+  private final Schema record;
+  /** Per field: opcode, nullability flags and fixed width packed into one int. */
+  private final int[] plan;
+  /** Per OP_GENERIC field: the schema to skip, without its nullable union; otherwise null. */
+  private final Schema[] generic;
+
+  public BinarySkipPlan(Schema record) {
+    this.record = record;
+    List<Schema.Field> fields = record.getFields();
+    this.plan = new int[fields.size()];
+    this.generic = new Schema[fields.size()];
+    for (int i = 0; i < plan.length; i++) {
+      Schema schema = fields.get(i).schema();
+      int nullBranch = nullBranch(schema);
+      Schema value = nullBranch < 0 ? schema : nonNullBranch(schema);
+      int flags = nullBranch < 0 ? 0 : NULLABLE | (nullBranch == 1 ? NULL_SECOND : 0);
+      plan[i] = op(value) | flags | width(value) << WIDTH_SHIFT;
+      generic[i] = op(value) == OP_GENERIC ? value : null;
+    }
+  }
+
+  public Schema getSchema() {
+    return record;
+  }
+
+  /** Position of field {@code to} given that field {@code from} starts at {@code pos}. */
+  public int skip(byte[] buf, int pos, int from, int to) {
+    for (int i = from; i < to; i++) {
+      int step = plan[i];
+      if ((step & NULLABLE) != 0) {
+        // Union branch indexes 0 and 1 are the single-byte varints 0 and 2.
+        int branch = buf[pos++] >> 1;
+        if (branch == ((step & NULL_SECOND) == 0 ? 0 : 1)) {
+          continue;
+        }
+      }
+      switch (step & OP_MASK) {
+        case OP_VARINT:
+          pos = skipVarint(buf, pos);
+          break;
+        case OP_BYTES:
+          long length = readLong(buf, pos);
+          pos = skipVarint(buf, pos) + (int) length;
+          break;
+        case OP_FIXED:
+          pos += step >>> WIDTH_SHIFT;
+          break;
+        case OP_GENERIC:
+          pos = skipValue(buf, pos, generic[i]);
+          break;
+        default:
+          break;
+      }
+    }
+    return pos;
+  }
+
+  /** Offset of field {@code field} of the record encoded at {@code offset}. */
+  public int fieldOffset(byte[] buf, int offset, int field) {
+    return skip(buf, offset, 0, field);
+  }
+
+  /** Decodes the zig-zag varint at {@code pos}. */
+  public static long readLong(byte[] buf, int pos) {
+    long raw = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = buf[pos++];
+      raw |= (long) (b & 0x7f) << shift;
+      shift += 7;
+    } while (b < 0 && shift < 64);
+    return (raw >>> 1) ^ -(raw & 1);
+  }
+
+  /** Position just after the varint at {@code pos}. */
+  public static int skipVarint(byte[] buf, int pos) {
+    while (buf[pos++] < 0) {
+      // continuation bit set
+    }
+    return pos;
+  }
+
+  /** Position just after the value of {@code schema} encoded at {@code pos}. */
+  static int skipValue(byte[] buf, int pos, Schema schema) {
+    switch (schema.getType()) {
+      case NULL:
+        return pos;
+      case BOOLEAN:
+        return pos + 1;
+      case INT:
+      case LONG:
+      case ENUM:
+        return skipVarint(buf, pos);
+      case FLOAT:
+        return pos + 4;
+      case DOUBLE:
+        return pos + 8;
+      case STRING:
+      case BYTES:
+        long length = readLong(buf, pos);
+        return skipVarint(buf, pos) + (int) length;
+      case FIXED:
+        return pos + schema.getFixedSize();
+      case UNION:
+        int branch = (int) readLong(buf, pos);
+        return skipValue(buf, skipVarint(buf, pos), schema.getTypes().get(branch));
+      case RECORD:
+        List<Schema.Field> fields = schema.getFields();
+        for (int i = 0; i < fields.size(); i++) {
+          pos = skipValue(buf, pos, fields.get(i).schema());
+        }
+        return pos;
+      case ARRAY:
+        return skipBlocks(buf, pos, schema.getElementType(), false);
+      case MAP:
+        return skipBlocks(buf, pos, schema.getValueType(), true);
+      default:
+        throw new IllegalArgumentException("Unsupported schema type " + schema.getType());
+    }
+  }
+
+  private static int skipBlocks(byte[] buf, int pos, Schema item, boolean withKeys) {
+    while (true) {
+      long count = readLong(buf, pos);
+      pos = skipVarint(buf, pos);
+      if (count == 0) {
+        return pos;
+      }
+      if (count < 0) {
+        // Negative count: the block's byte size follows, so it can be skipped in one go.
+        long blockBytes = readLong(buf, pos);
+        pos = skipVarint(buf, pos) + (int) blockBytes;
+        continue;
+      }
+      for (long i = 0; i < count; i++) {
+        if (withKeys) {
+          long keyLength = readLong(buf, pos);
+          pos = skipVarint(buf, pos) + (int) keyLength;
+        }
+        pos = skipValue(buf, pos, item);
+      }
+    }
+  }
+
+  /** Index of the null branch of a two-branch nullable union, otherwise -1. */
+  static int nullBranch(Schema schema) {
+    if (schema.getType() != Schema.Type.UNION || schema.getTypes().size() != 2) {
+      return -1;
+    }
+    List<Schema> types = schema.getTypes();
+    if (types.get(0).getType() == Schema.Type.NULL) {
+      return 0;
+    }
+    return types.get(1).getType() == Schema.Type.NULL ? 1 : -1;
+  }
+
+  static Schema nonNullBranch(Schema union) {
+    return union.getTypes().get(1 - nullBranch(union));
+  }
+
+  private static int op(Schema schema) {
+    switch (schema.getType()) {
+      case NULL:
+        return OP_NONE;
+      case INT:
+      case LONG:
+      case ENUM:
+        return OP_VARINT;
+      case STRING:
+      case BYTES:
+        return OP_BYTES;
+      case BOOLEAN:
+      case FLOAT:
+      case DOUBLE:
+      case FIXED:
+        return OP_FIXED;
+      default:
+        return OP_GENERIC;
+    }
+  }
+
+  private static int width(Schema schema) {
+    switch (schema.getType()) {
+      case BOOLEAN:
+        return 1;
+      case FLOAT:
+        return 4;
+      case DOUBLE:
+        return 8;
+      case FIXED:
+        return schema.getFixedSize();
+      default:
+        return 0;
+    }
+  }
+}
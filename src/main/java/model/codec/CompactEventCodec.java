@@ -0,0 +1,199 @@
+package model.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import model.metrics.EventMetrics;
+import model.metrics.Stage;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * EventDataPayload codec that stores map fields carrying a {@code keyDictionary} property
+ * (httpHeaders, httpQueryString) as a CompactStringMap record: well-known keys become varint ids
+ * and only unknown keys are written as strings. The compact schema keeps the dictionaries as field
+ * properties, so they travel with any file or registry entry that holds it. Decoded maps are
+ * {@link DictionaryKeyedMap} views. Not thread-safe.
+ */
+public class CompactEventCodec {
+
+  static final String NAMESPACE = "tv.pluto.nile.avro.compact";
+
+  private static final Schema COMPACT_MAP =
+      SchemaBuilder.record("CompactStringMap")
+          .namespace(NAMESPACE)
+          .fields()
+          .name("keyIds")
+          .doc("One varint per entry: the key's dictionary id, or 0 for a key from extraKeys.")
+          .type()
+          .bytesType()
+          .noDefault()
+          .name("values")
+          .type()
+          .array()
+          .items()
+          .stringType()
+          .noDefault()
+          .name("extraKeys")
+          .doc("Keys missing from the dictionary, in entry order.")
+          .type()
+          .array()
+          .items()
+          .stringType()
+          .noDefault()
+          .endRecord();
+
+  private final Schema eventSchema;
+  private final Schema compactSchema;
+  private final AvroRecordCodec codec;
+  private final int[] mapPositions;
+  private final MapKeyDictionary[] dictionaries;
+
+  private final GenericData.Record compact;
+  private final GenericData.Record[] compactMaps;
+  private final List<List<Object>> valueBuffers = new ArrayList<>();
+  private final List<List<Object>> extraKeyBuffers = new ArrayList<>();
+  /** Key id bytes per dictionary-keyed map; each is wrapped, not copied, into its compact map. */
+  private final byte[][] idBuffers;
+
+  public CompactEventCodec(Schema eventSchema, EventMetrics metrics) {
+    this.eventSchema = eventSchema;
+    this.compactSchema = compactSchema(eventSchema);
+    this.codec =
+        new AvroRecordCodec(
+            compactSchema, metrics.stage(Stage.EVENT_ENCODE), metrics.stage(Stage.EVENT_DECODE));
+    this.mapPositions =
+        eventSchema.getFields().stream()
+            .filter(field -> MapKeyDictionary.of(field) != null)
+            .mapToInt(Schema.Field::pos)
+            .toArray();
+    this.dictionaries = new MapKeyDictionary[mapPositions.length];
+    this.compactMaps = new GenericData.Record[mapPositions.length];
+    this.idBuffers = new byte[mapPositions.length][];
+    for (int i = 0; i < mapPositions.length; i++) {
+      dictionaries[i] = MapKeyDictionary.of(eventSchema.getFields().get(mapPositions[i]));
+      compactMaps[i] = new GenericData.Record(COMPACT_MAP);
+      idBuffers[i] = new byte[64];
+      valueBuffers.add(new ArrayList<>());
+      extraKeyBuffers.add(new ArrayList<>());
+    }
+    this.compact = new GenericData.Record(compactSchema);
+  }
+
+  /**
+   * The compact variant of an event schema: every field with a key dictionary becomes an optional
+   * CompactStringMap; all other fields, and all field properties, are unchanged.
+   */
+  public static Schema compactSchema(Schema eventSchema) {
+    Schema optionalCompactMap =
+        Schema.createUnion(Schema.create(Schema.Type.NULL), COMPACT_MAP);
+    List<Schema.Field> fields = new ArrayList<>(eventSchema.getFields().size());
+    for (Schema.Field field : eventSchema.getFields()) {
+      fields.add(
+          MapKeyDictionary.of(field) == null
+              ? new Schema.Field(field, field.schema())
+              : new Schema.Field(field, optionalCompactMap));
+    }
+    Schema compact =
+        Schema.createRecord(eventSchema.getName(), eventSchema.getDoc(), NAMESPACE, false, fields);
+    eventSchema.getObjectProps().forEach(compact::addProp);
+    return compact;
+  }
+
+  /**
+   * Throws if data written with {@code writerCompactSchema} uses a key dictionary this codec
+   * cannot read, i.e. one that is newer or not a prefix of ours.
+   */
+  public void checkReadable(Schema writerCompactSchema) {
+    for (int i = 0; i < mapPositions.length; i++) {
+      Schema.Field field = eventSchema.getFields().get(mapPositions[i]);
+      Schema.Field writerField = writerCompactSchema.getField(field.name());
+      MapKeyDictionary writer = writerField == null ? null : MapKeyDictionary.of(writerField);
+      if (writer != null && !dictionaries[i].canRead(writer)) {
+        throw new IllegalArgumentException(
+            field.name()
+                + " was written with key dictionary version "
+                + writer.getVersion()
+                + ", which version "
+                + dictionaries[i].getVersion()
+                + " cannot read");
+      }
+    }
+  }
+
+  public Schema getCompactSchema() {
+    return compactSchema;
+  }
+
+  public byte[] encode(GenericRecord event) throws IOException {
+    for (int pos = 0, n = eventSchema.getFields().size(); pos < n; pos++) {
+      compact.put(pos, event.get(pos));
+    }
+    for (int i = 0; i < mapPositions.length; i++) {
+      Object map = event.get(mapPositions[i]);
+      compact.put(mapPositions[i], map == null ? null : toCompact(i, (Map<?, ?>) map));
+    }
+    return codec.encode(compact);
+  }
+
+  /** Decodes into a record of the event schema whose dictionary-keyed maps are flat views. */
+  public GenericRecord decode(byte[] bytes) throws IOException {
+    GenericRecord decoded = codec.decode(bytes, 0, bytes.length, null);
+    GenericData.Record event = new GenericData.Record(eventSchema);
+    for (int pos = 0, n = eventSchema.getFields().size(); pos < n; pos++) {
+      event.put(pos, decoded.get(pos));
+    }
+    for (int i = 0; i < mapPositions.length; i++) {
+      GenericRecord map = (GenericRecord) decoded.get(mapPositions[i]);
+      if (map != null) {
+        event.put(
+            mapPositions[i],
+            new DictionaryKeyedMap(
+                dictionaries[i],
+                (ByteBuffer) map.get(0),
+                (List<?>) map.get(1),
+                (List<?>) map.get(2)));
+      }
+    }
+    return event;
+  }
+
+  private GenericData.Record toCompact(int index, Map<?, ?> map) {
+    MapKeyDictionary dictionary = dictionaries[index];
+    List<Object> values = valueBuffers.get(index);
+    List<Object> extraKeys = extraKeyBuffers.get(index);
+    values.clear();
+    extraKeys.clear();
+    byte[] idBuffer = idBuffers[index];
+    if (idBuffer.length < map.size() * 5) {
+      idBuffer = idBuffers[index] = new byte[map.size() * 5];
+    }
+    int length = 0;
+    for (Map.Entry<?, ?> entry : map.entrySet()) {
+      int id = dictionary.id(entry.getKey());
+      if (id == 0) {
+        extraKeys.add(entry.getKey());
+      }
+      length = writeVarInt(id, idBuffer, length);
+      values.add(entry.getValue());
+    }
+    GenericData.Record compactMap = compactMaps[index];
+    compactMap.put(0, ByteBuffer.wrap(idBuffer, 0, length));
+    compactMap.put(1, values);
+    compactMap.put(2, extraKeys);
+    return compactMap;
+  }
+
+  private static int writeVarInt(int value, byte[] buffer, int offset) {
+    while ((value & ~0x7f) != 0) {
+      buffer[offset++] = (byte) ((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    buffer[offset++] = (byte) value;
+    return offset;
+  }
+}
@@ -0,0 +1,131 @@
+package model.codec;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only map view over a decoded compact map: key ids and values stay in the flat arrays they
+ * were decoded into, and a value is only turned into a String when it is read. Looking up one
+ * key scans the ids, which is cheaper than building a HashMap for the handful of entries a
+ * request carries.
+ */
+public final class DictionaryKeyedMap extends AbstractMap<String, String> {
+
+  private final MapKeyDictionary dictionary;
+  private final int[] keyIds;
+  private final List<?> values;
+  private final List<?> extraKeys;
+  /** Index into extraKeys for each entry with key id 0. */
+  private final int[] extraKeyIndex;
+
+  DictionaryKeyedMap(
+      MapKeyDictionary dictionary, ByteBuffer packedKeyIds, List<?> values, List<?> extraKeys) {
+    this.dictionary = dictionary;
+    this.values = values;
+    this.extraKeys = extraKeys;
+    this.keyIds = new int[values.size()];
+    this.extraKeyIndex = new int[values.size()];
+    ByteBuffer ids = packedKeyIds.duplicate();
+    int extra = 0;
+    for (int i = 0; i < keyIds.length; i++) {
+      keyIds[i] = readVarInt(ids);
+      extraKeyIndex[i] = keyIds[i] == 0 ? extra++ : -1;
+    }
+  }
+
+  @Override
+  public int size() {
+    return keyIds.length;
+  }
+
+  @Override
+  public String get(Object key) {
+    int index = indexOf(key);
+    return index < 0 ? null : valueAt(index);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  @Override
+  public Set<Map.Entry<String, String>> entrySet() {
+    return new AbstractSet<>() {
+      @Override
+      public Iterator<Map.Entry<String, String>> iterator() {
+        return new Iterator<>() {
+          private int next;
+
+          @Override
+          public boolean hasNext() {
+            return next < keyIds.length;
+          }
+
+          @Override
+          public Map.Entry<String, String> next() {
+            if (next >= keyIds.length) {
+              throw new NoSuchElementException();
+            }
+            int index = next++;
+            return new SimpleImmutableEntry<>(keyAt(index), valueAt(index));
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return keyIds.length;
+      }
+    };
+  }
+
+  private int indexOf(Object key) {
+    if (key == null) {
+      return -1;
+    }
+    int id = dictionary.id(key);
+    if (id != 0) {
+      for (int i = 0; i < keyIds.length; i++) {
+        if (keyIds[i] == id) {
+          return i;
+        }
+      }
+    }
+    // A writer with an older dictionary stored the keys it did not know yet as extra keys.
+    String name = key.toString();
+    for (int i = 0; i < keyIds.length; i++) {
+      if (keyIds[i] == 0 && name.contentEquals((CharSequence) extraKeys.get(extraKeyIndex[i]))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private String keyAt(int index) {
+    int id = keyIds[index];
+    return id == 0 ? extraKeys.get(extraKeyIndex[index]).toString() : dictionary.key(id);
+  }
+
+  private String valueAt(int index) {
+    Object value = values.get(index);
+    return value == null ? null : value.toString();
+  }
+
+  static int readVarInt(ByteBuffer in) {
+    int value = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = in.get();
+      value |= (b & 0x7f) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package model.codec;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.avro.Schema;
+
+/**
+ * Versioned list of well-known map keys, read from a field's {@code keyDictionary} property. A
+ * key's id is its position in the list plus one; id 0 means "not in the dictionary".
+ */
+public final class MapKeyDictionary {
+
+  public static final String PROP = "keyDictionary";
+
+  private final int version;
+  private final String[] keys;
+  private final Map<String, Integer> ids;
+
+  public MapKeyDictionary(int version, List<String> keys) {
+    this.version = version;
+    this.keys = keys.toArray(new String[0]);
+    this.ids = new HashMap<>(keys.size() * 2);
+    for (int i = 0; i < this.keys.length; i++) {
+      ids.put(this.keys[i], i + 1);
+    }
+  }
+
+  /** The dictionary attached to a field, or null if it has none. */
+  @SuppressWarnings("unchecked")
+  public static MapKeyDictionary of(Schema.Field field) {
+    Object prop = field.getObjectProp(PROP);
+    if (!(prop instanceof Map)) {
+      return null;
+    }
+    Map<String, Object> dictionary = (Map<String, Object>) prop;
+    return new MapKeyDictionary(
+        ((Number) dictionary.get("version")).intValue(), (List<String>) dictionary.get("keys"));
+  }
+
+  public int getVersion() {
+    return version;
+  }
+
+  public int size() {
+    return keys.length;
+  }
+
+  /** Id of the key, 0 if the key is not in the dictionary. */
+  public int id(Object key) {
+    Integer id = ids.get(key instanceof String ? key : String.valueOf(key));
+    return id == null ? 0 : id;
+  }
+
+  public String key(int id) {
+    return keys[id - 1];
+  }
+
+  /**
+   * Whether data written with {@code writer} can be read with this dictionary. Keys are only ever
+   * appended, so any newer version can read older data.
+   */
+  public boolean canRead(MapKeyDictionary writer) {
+    if (writer.version > version || writer.keys.length > keys.length) {
+      return false;
+    }
+    for (int i = 0; i < writer.keys.length; i++) {
+      if (!writer.keys[i].equals(keys[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
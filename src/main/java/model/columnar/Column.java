@@ -0,0 +1,45 @@
+package model.columnar;
+
+/**
+ * One field of a {@link Segment}. The store's single writer appends row by row and publishes the
+ * row count afterwards with a volatile write, so readers that read the count first see every row
+ * below it without further synchronization. Summaries read after the count may already include
+ * later rows: zone maps only widen, and dictionaries are published as snapshots of their own.
+ */
+abstract class Column {
+
+  final String name;
+
+  Column(String name) {
+    this.name = name;
+  }
+
+  /** Sets row {@code row}; rows are appended in order. */
+  abstract void append(int row, Object value);
+
+  /**
+   * The column with its first {@code rows} rows, once the segment is full. May return a compacted
+   * copy; this column stays readable for queries already scanning it.
+   */
+  abstract Column seal(int rows);
+
+  /** Value of the row as a decoded Java object, null if absent. */
+  abstract Object value(int row);
+
+  abstract long memoryBytes();
+
+  /** Numeric value of the row, NaN if absent. Only numeric columns support it. */
+  double number(int row) {
+    throw new UnsupportedOperationException(name + " is not numeric");
+  }
+
+  /** Clears the bits of selected rows in {@code [0, rows)} the filter rejects. */
+  abstract void select(ColumnFilter filter, long[] selection, int rows);
+
+  /** Whether no row in {@code [0, rows)} can pass the filter, judged from summaries only. */
+  abstract boolean excludes(ColumnFilter filter);
+
+  static long bit(int row) {
+    return 1L << row;
+  }
+}
@@ -0,0 +1,32 @@
+package model.columnar;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import lombok.Value;
+
+/** Row predicate on one column: a set of strings for string columns, else an inclusive range. */
+@Value
+public class ColumnFilter {
+  String column;
+  Set<String> values;
+  double min;
+  double max;
+
+  public static ColumnFilter equalTo(String column, String... values) {
+    return new ColumnFilter(
+        column, new LinkedHashSet<>(Arrays.asList(values)), Double.NaN, Double.NaN);
+  }
+
+  public static ColumnFilter between(String column, double min, double max) {
+    return new ColumnFilter(column, Set.of(), min, max);
+  }
+
+  public boolean isRange() {
+    return values.isEmpty();
+  }
+
+  public String toText() {
+    return isRange() ? column + " in [" + min + ", " + max + "]" : column + " in " + values;
+  }
+}
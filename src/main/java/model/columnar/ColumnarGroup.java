@@ -0,0 +1,23 @@
+package model.columnar;
+
+import java.util.List;
+import lombok.Value;
+
+@Value
+public class ColumnarGroup {
+  /** Values of the group columns, null for missing values. */
+  List<String> keys;
+
+  long rows;
+
+  /** Rows with a value for the metric column. */
+  long metricRows;
+
+  double sum;
+  double min;
+  double max;
+
+  public double average() {
+    return metricRows == 0 ? Double.NaN : sum / metricRows;
+  }
+}
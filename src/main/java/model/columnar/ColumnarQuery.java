@@ -0,0 +1,29 @@
+package model.columnar;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.Singular;
+import lombok.Value;
+
+/**
+ * Filters ANDed together, optionally grouped by up to three string columns. Each group, or the
+ * whole match without grouping, gets a row count and, if a metric column is named, the count, sum,
+ * minimum and maximum of its non-null values.
+ */
+@Value
+@Builder
+public class ColumnarQuery {
+
+  static final int MAX_GROUP_COLUMNS = 3;
+
+  @Singular List<ColumnFilter> filters;
+
+  @Singular("groupBy")
+  List<String> groupBy;
+
+  /** Numeric column aggregated per group, or null. */
+  String metric;
+
+  /** Groups returned, largest first; without grouping, matching rows returned, newest first. */
+  @Builder.Default int limit = 20;
+}
@@ -0,0 +1,44 @@
+package model.columnar;
+
+import java.util.List;
+import java.util.Map;
+import lombok.Value;
+
+@Value
+public class ColumnarResult {
+  long matchedRows;
+  long scannedRows;
+  int scannedSegments;
+
+  /** Segments ruled out by their zone maps or dictionaries without scanning. */
+  int skippedSegments;
+
+  long elapsedNanos;
+
+  /** Largest groups first; a single group with no keys when the query is not grouped. */
+  List<ColumnarGroup> groups;
+
+  /** Matching rows, newest first, when the query is not grouped. */
+  List<Map<String, Object>> rows;
+
+  public String toText() {
+    StringBuilder text = new StringBuilder();
+    text.append(
+        String.format(
+            "%d rows matched of %d scanned in %d segments (%d skipped) in %.1fms%n",
+            matchedRows, scannedRows, scannedSegments, skippedSegments, elapsedNanos / 1e6));
+    for (ColumnarGroup group : groups) {
+      text.append(String.format("  %-60s %10d", group.getKeys(), group.getRows()));
+      if (group.getMetricRows() > 0) {
+        text.append(
+            String.format(
+                "  avg=%.2f min=%.2f max=%.2f", group.average(), group.getMin(), group.getMax()));
+      }
+      text.append(System.lineSeparator());
+    }
+    for (Map<String, Object> row : rows) {
+      text.append("  ").append(row).append(System.lineSeparator());
+    }
+    return text.toString();
+  }
+}
@@ -0,0 +1,532 @@
+package model.columnar;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import model.ingest.RecordConsumer;
+import model.utils.AvroEventSchemaBuilder;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * In-memory columnar ring of recent events for ad-hoc filter and group-by queries. Configured
+ * fields are stored column by column in segments: strings and enums dictionary-encoded per segment,
+ * numbers and timestamps in primitive arrays with min/max zone maps. Full segments are sealed and
+ * compacted; the oldest are dropped once they age past the retention or the memory budget is
+ * exceeded.
+ *
+ * <p>A query skips segments whose zone maps or dictionaries rule out a filter, evaluates filters
+ * column by column into per-segment row bitmaps and aggregates groups per segment; segments are
+ * scanned in parallel and the partial results merged. Events are appended by one writer at a time
+ * (appends are synchronized) while any number of queries run, including over the segment being
+ * filled.
+ */
+@Slf4j
+public class ColumnarStore implements RecordConsumer, Closeable {
+
+  private static final int DENSE_GROUPS = 1 << 16;
+
+  private final ColumnarStoreConfig config;
+  private final LongSupplier clock;
+  private final List<String> names;
+  private final Map<String, Integer> columnIndex = new HashMap<>();
+  private final Schema.Type[] types;
+  private final int[] positions;
+  private final int timeColumn;
+  private final ForkJoinPool pool;
+
+  private final Deque<Segment> sealed = new ArrayDeque<>();
+  private Segment active;
+  private long sealedBytes;
+  private long evictedSegments;
+  private long evictedRows;
+
+  public ColumnarStore(Schema eventSchema, ColumnarStoreConfig config) {
+    this(eventSchema, config, System::currentTimeMillis);
+  }
+
+  /** The clock decides which segments are past the retention. */
+  public ColumnarStore(Schema eventSchema, ColumnarStoreConfig config, LongSupplier clock) {
+    this.config = config;
+    this.clock = clock;
+    List<String> columns = new ArrayList<>(config.columnsOrDefault());
+    if (!columns.contains(config.getTimeColumn())) {
+      columns.add(config.getTimeColumn());
+    }
+    this.names = List.copyOf(columns);
+    this.types = new Schema.Type[names.size()];
+    this.positions = new int[names.size()];
+    for (int i = 0; i < names.size(); i++) {
+      Schema.Field field = eventSchema.getField(names.get(i));
+      if (field == null) {
+        throw new IllegalArgumentException(
+            "Schema " + eventSchema.getFullName() + " has no field " + names.get(i));
+      }
+      Schema type = field.schema();
+      if (type.getType() == Schema.Type.UNION) {
+        List<Schema> branches = type.getTypes();
+        type = branches.get(branches.size() - 1);
+      }
+      types[i] = type.getType();
+      positions[i] = field.pos();
+      columnIndex.put(names.get(i), i);
+    }
+    this.timeColumn = columnIndex.get(config.getTimeColumn());
+    if (types[timeColumn] != Schema.Type.LONG) {
+      throw new IllegalArgumentException("Time column must be a long: " + config.getTimeColumn());
+    }
+    this.active = newSegment();
+    this.pool = new ForkJoinPool(Math.max(1, config.getParallelism()));
+    log.info("Columnar store created with {} columns: {}", names.size(), config);
+  }
+
+  @Override
+  public synchronized void accept(GenericRecord event) {
+    Segment segment = active;
+    int row = segment.rows();
+    Column[] columns = segment.columns;
+    for (int i = 0; i < columns.length; i++) {
+      columns[i].append(row, event.get(positions[i]));
+    }
+    Object time = event.get(positions[timeColumn]);
+    if (time != null) {
+      segment.publish(row, (Long) time);
+    } else {
+      segment.publish(row);
+    }
+    if (segment.isFull()) {
+      Segment full = segment.seal();
+      sealed.addLast(full);
+      sealedBytes += full.memoryBytes();
+      active = newSegment();
+      evict();
+    }
+  }
+
+  public List<String> columns() {
+    return names;
+  }
+
+  public ColumnarResult query(ColumnarQuery query) {
+    long started = System.nanoTime();
+    Plan plan = plan(query);
+    List<Segment> segments = segments();
+    List<Partial> partials =
+        pool.submit(
+                () ->
+                    segments.parallelStream()
+                        .map(segment -> scan(segment, plan))
+                        .collect(Collectors.toList()))
+            .join();
+
+    long matched = 0;
+    long scanned = 0;
+    int skipped = 0;
+    Map<List<String>, Aggregate> groups = new HashMap<>();
+    for (Partial partial : partials) {
+      matched += partial.matched;
+      scanned += partial.scanned;
+      skipped += partial.skipped ? 1 : 0;
+      partial.groups.forEach(
+          (keys, aggregate) -> groups.computeIfAbsent(keys, k -> new Aggregate()).merge(aggregate));
+    }
+    List<ColumnarGroup> top =
+        groups.entrySet().stream()
+            .sorted((a, b) -> Long.compare(b.getValue().rows, a.getValue().rows))
+            .limit(plan.groupBy.length == 0 ? 1 : query.getLimit())
+            .map(entry -> entry.getValue().toGroup(entry.getKey()))
+            .collect(Collectors.toList());
+    List<Map<String, Object>> rows =
+        plan.groupBy.length == 0 ? rows(segments, partials, query.getLimit()) : List.of();
+    return new ColumnarResult(
+        matched,
+        scanned,
+        segments.size() - skipped,
+        skipped,
+        System.nanoTime() - started,
+        top,
+        rows);
+  }
+
+  public synchronized ColumnarStoreStats stats() {
+    long rows = active.rows();
+    long oldest = active.minTime();
+    long newest = active.maxTime();
+    for (Segment segment : sealed) {
+      rows += segment.rows();
+      oldest = Math.min(oldest, segment.minTime());
+      newest = Math.max(newest, segment.maxTime());
+    }
+    return new ColumnarStoreStats(
+        sealed.size() + 1,
+        rows,
+        sealedBytes + active.memoryBytes(),
+        oldest,
+        newest,
+        evictedSegments,
+        evictedRows);
+  }
+
+  @Override
+  public void close() {
+    pool.shutdown();
+  }
+
+  private synchronized List<Segment> segments() {
+    List<Segment> segments = new ArrayList<>(sealed.size() + 1);
+    segments.addAll(sealed);
+    segments.add(active);
+    return segments;
+  }
+
+  private void evict() {
+    long cutoff = clock.getAsLong() - config.getRetention().toMillis();
+    while (!sealed.isEmpty()) {
+      Segment oldest = sealed.peekFirst();
+      boolean expired = oldest.maxTime() != Long.MIN_VALUE && oldest.maxTime() < cutoff;
+      if (!expired && sealedBytes <= config.getMemoryBudgetBytes()) {
+        return;
+      }
+      sealed.removeFirst();
+      sealedBytes -= oldest.memoryBytes();
+      evictedSegments++;
+      evictedRows += oldest.rows();
+    }
+  }
+
+  private Segment newSegment() {
+    int capacity = config.getSegmentRows();
+    Column[] columns = new Column[names.size()];
+    for (int i = 0; i < columns.length; i++) {
+      String name = names.get(i);
+      switch (types[i]) {
+        case STRING:
+        case ENUM:
+          columns[i] = new StringColumn(name, capacity);
+          break;
+        case INT:
+        case LONG:
+        case BOOLEAN:
+          columns[i] = new LongColumn(name, capacity);
+          break;
+        case FLOAT:
+        case DOUBLE:
+          columns[i] = new DoubleColumn(name, capacity);
+          break;
+        default:
+          throw new IllegalArgumentException("Cannot store " + types[i] + " field " + name);
+      }
+    }
+    return new Segment(columns, capacity);
+  }
+
+  private Plan plan(ColumnarQuery query) {
+    Plan plan = new Plan();
+    plan.filters = query.getFilters().toArray(new ColumnFilter[0]);
+    plan.filterColumns = new int[plan.filters.length];
+    for (int i = 0; i < plan.filters.length; i++) {
+      ColumnFilter filter = plan.filters[i];
+      plan.filterColumns[i] = column(filter.getColumn());
+      if (filter.isRange() == isString(plan.filterColumns[i])) {
+        throw new IllegalArgumentException(
+            filter.isRange()
+                ? "Range filter on string column " + filter.getColumn()
+                : "Value filter on numeric column " + filter.getColumn());
+      }
+    }
+    if (query.getGroupBy().size() > ColumnarQuery.MAX_GROUP_COLUMNS) {
+      throw new IllegalArgumentException(
+          "At most " + ColumnarQuery.MAX_GROUP_COLUMNS + " group columns");
+    }
+    plan.groupBy = new int[query.getGroupBy().size()];
+    for (int i = 0; i < plan.groupBy.length; i++) {
+      plan.groupBy[i] = column(query.getGroupBy().get(i));
+      if (!isString(plan.groupBy[i])) {
+        throw new IllegalArgumentException(
+            "Cannot group by numeric column " + names.get(plan.groupBy[i]));
+      }
+    }
+    plan.metric = query.getMetric() == null ? -1 : column(query.getMetric());
+    if (plan.metric >= 0 && isString(plan.metric)) {
+      throw new IllegalArgumentException("Metric column must be numeric: " + query.getMetric());
+    }
+    return plan;
+  }
+
+  private int column(String name) {
+    Integer column = columnIndex.get(name);
+    if (column == null) {
+      throw new IllegalArgumentException("No column " + name + "; stored columns are " + names);
+    }
+    return column;
+  }
+
+  private boolean isString(int column) {
+    return types[column] == Schema.Type.STRING || types[column] == Schema.Type.ENUM;
+  }
+
+  private static Partial scan(Segment segment, Plan plan) {
+    Partial partial = new Partial();
+    int rows = segment.rows();
+    partial.rows = rows;
+    for (int i = 0; i < plan.filters.length; i++) {
+      if (rows == 0 || segment.columns[plan.filterColumns[i]].excludes(plan.filters[i])) {
+        partial.skipped = true;
+        return partial;
+      }
+    }
+    partial.scanned = rows;
+    long[] selection = new long[(rows + 63) >>> 6];
+    Arrays.fill(selection, -1L);
+    if ((rows & 63) != 0) {
+      selection[selection.length - 1] = (1L << (rows & 63)) - 1;
+    }
+    for (int i = 0; i < plan.filters.length; i++) {
+      segment.columns[plan.filterColumns[i]].select(plan.filters[i], selection, rows);
+    }
+    for (long word : selection) {
+      partial.matched += Long.bitCount(word);
+    }
+    partial.selection = selection;
+    if (partial.matched > 0) {
+      aggregate(segment, plan, selection, partial);
+    }
+    return partial;
+  }
+
+  private static void aggregate(Segment segment, Plan plan, long[] selection, Partial partial) {
+    Column metric = plan.metric >= 0 ? segment.columns[plan.metric] : null;
+    StringColumn[] keys = new StringColumn[plan.groupBy.length];
+    // One dictionary snapshot per key column for the whole scan: the writer may add values while
+    // it runs, and encoding and decoding group keys with different counts would mix groups up.
+    StringColumn.Dictionary[] dictionaries = new StringColumn.Dictionary[keys.length];
+    long groups = 1;
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = (StringColumn) segment.columns[plan.groupBy[i]];
+      dictionaries[i] = keys[i].dictionary();
+      groups *= dictionaries[i].count;
+    }
+    Aggregate[] dense = groups <= DENSE_GROUPS ? new Aggregate[(int) groups] : null;
+    Map<Long, Aggregate> sparse = dense == null ? new HashMap<>() : null;
+    for (int word = 0; word < selection.length; word++) {
+      for (long bits = selection[word]; bits != 0; bits &= bits - 1) {
+        int row = (word << 6) + Long.numberOfTrailingZeros(bits);
+        long key = 0;
+        for (int i = 0; i < keys.length; i++) {
+          key = key * dictionaries[i].count + keys[i].code(row);
+        }
+        Aggregate aggregate;
+        if (dense != null) {
+          aggregate = dense[(int) key];
+          if (aggregate == null) {
+            aggregate = dense[(int) key] = new Aggregate();
+          }
+        } else {
+          aggregate = sparse.computeIfAbsent(key, k -> new Aggregate());
+        }
+        aggregate.rows++;
+        if (metric != null) {
+          aggregate.add(metric.number(row));
+        }
+      }
+    }
+    if (dense != null) {
+      for (int key = 0; key < dense.length; key++) {
+        if (dense[key] != null) {
+          partial.groups.put(decode(dictionaries, key), dense[key]);
+        }
+      }
+    } else {
+      sparse.forEach((key, aggregate) -> partial.groups.put(decode(dictionaries, key), aggregate));
+    }
+  }
+
+  private static List<String> decode(StringColumn.Dictionary[] dictionaries, long key) {
+    String[] values = new String[dictionaries.length];
+    for (int i = dictionaries.length - 1; i >= 0; i--) {
+      values[i] = dictionaries[i].valueOf((int) (key % dictionaries[i].count));
+      key /= dictionaries[i].count;
+    }
+    return Collections.unmodifiableList(Arrays.asList(values));
+  }
+
+  /** The newest matching rows, from the selections computed by the scan. */
+  private List<Map<String, Object>> rows(
+      List<Segment> segments, List<Partial> partials, int limit) {
+    List<Map<String, Object>> rows = new ArrayList<>();
+    for (int s = segments.size() - 1; s >= 0 && rows.size() < limit; s--) {
+      long[] selection = partials.get(s).selection;
+      if (selection == null) {
+        continue;
+      }
+      Segment segment = segments.get(s);
+      for (int word = selection.length - 1; word >= 0 && rows.size() < limit; word--) {
+        for (long bits = selection[word]; bits != 0 && rows.size() < limit; ) {
+          int bit = 63 - Long.numberOfLeadingZeros(bits);
+          bits &= ~(1L << bit);
+          int row = (word << 6) + bit;
+          Map<String, Object> values = new LinkedHashMap<>();
+          for (Column column : segment.columns) {
+            Object value = column.value(row);
+            if (value != null) {
+              values.put(column.name, value);
+            }
+          }
+          rows.add(values);
+        }
+      }
+    }
+    return rows;
+  }
+
+  /** A query resolved to column indexes. */
+  private static final class Plan {
+    ColumnFilter[] filters;
+    int[] filterColumns;
+    int[] groupBy;
+    int metric;
+  }
+
+  /** One segment's share of a query result. */
+  private static final class Partial {
+    int rows;
+    long scanned;
+    long matched;
+    boolean skipped;
+    long[] selection;
+    final Map<List<String>, Aggregate> groups = new HashMap<>();
+  }
+
+  private static final class Aggregate {
+    long rows;
+    long metricRows;
+    double sum;
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+
+    void add(double value) {
+      if (Double.isNaN(value)) {
+        return;
+      }
+      metricRows++;
+      sum += value;
+      min = Math.min(min, value);
+      max = Math.max(max, value);
+    }
+
+    void merge(Aggregate other) {
+      rows += other.rows;
+      metricRows += other.metricRows;
+      sum += other.sum;
+      min = Math.min(min, other.min);
+      max = Math.max(max, other.max);
+    }
+
+    ColumnarGroup toGroup(List<String> keys) {
+      return new ColumnarGroup(
+          keys,
+          rows,
+          metricRows,
+          sum,
+          metricRows == 0 ? Double.NaN : min,
+          metricRows == 0 ? Double.NaN : max);
+    }
+  }
+
+  /**
+   * Loads event files and runs one query: {@code ColumnarStore <events.avro>... -- [column=v1,v2]
+   * [column=[min,max]] [by=column,...] [metric=column] [limit=n]}. Retention follows the largest
+   * time column value loaded.
+   */
+  public static void main(String[] args) throws IOException {
+    int split = Arrays.asList(args).indexOf("--");
+    if (split < 1) {
+      System.err.println(
+          "Usage: ColumnarStore <events.avro>... -- [column=v1,v2] [column=[min,max]]"
+              + " [by=column,...] [metric=column] [limit=n]");
+      System.exit(1);
+    }
+    Schema schema = AvroEventSchemaBuilder.buildSchema();
+    ColumnarStoreConfig config = ColumnarStoreConfig.builder().build();
+    int timePos = schema.getField(config.getTimeColumn()).pos();
+    long[] latest = {0};
+    long loaded = 0;
+    long started = System.nanoTime();
+    try (ColumnarStore store = new ColumnarStore(schema, config, () -> latest[0])) {
+      for (String path : Arrays.asList(args).subList(0, split)) {
+        try (DataFileReader<GenericRecord> reader =
+            new DataFileReader<>(new File(path), new GenericDatumReader<>(null, schema))) {
+          GenericRecord event = null;
+          while (reader.hasNext()) {
+            event = reader.next(event);
+            Long time = (Long) event.get(timePos);
+            if (time != null && time > latest[0]) {
+              latest[0] = time;
+            }
+            store.accept(event);
+            loaded++;
+          }
+        }
+      }
+      log.info(
+          "Loaded {} events in {}s: {}",
+          loaded,
+          String.format("%.1f", (System.nanoTime() - started) / 1e9),
+          store.stats().toText());
+      ColumnarQuery query = parseQuery(Arrays.asList(args).subList(split + 1, args.length));
+      // The first run also warms up the scan code.
+      store.query(query);
+      System.out.print(store.query(query).toText());
+    }
+  }
+
+  private static ColumnarQuery parseQuery(List<String> terms) {
+    ColumnarQuery.ColumnarQueryBuilder query = ColumnarQuery.builder();
+    for (String term : terms) {
+      int equals = term.indexOf('=');
+      if (equals < 1) {
+        throw new IllegalArgumentException("Expected name=value: " + term);
+      }
+      String name = term.substring(0, equals);
+      String value = term.substring(equals + 1);
+      switch (name) {
+        case "by":
+          for (String column : value.split(",")) {
+            query.groupBy(column);
+          }
+          break;
+        case "metric":
+          query.metric(value);
+          break;
+        case "limit":
+          query.limit(Integer.parseInt(value));
+          break;
+        default:
+          if (value.startsWith("[") && value.endsWith("]")) {
+            String[] bounds = value.substring(1, value.length() - 1).split(",");
+            query.filter(
+                ColumnFilter.between(
+                    name, Double.parseDouble(bounds[0]), Double.parseDouble(bounds[1])));
+          } else {
+            query.filter(ColumnFilter.equalTo(name, value.split(",")));
+          }
+      }
+    }
+    return query.build();
+  }
+}
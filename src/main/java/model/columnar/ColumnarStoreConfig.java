@@ -0,0 +1,64 @@
+package model.columnar;
+
+import java.time.Duration;
+import java.util.List;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Singular;
+import lombok.ToString;
+
+@Getter
+@Builder
+@ToString
+public class ColumnarStoreConfig {
+
+  /** Columns kept when none are configured: the fields ops investigations filter on. */
+  public static final List<String> DEFAULT_COLUMNS =
+      List.of(
+          "eventName",
+          "eventCategory",
+          "appName",
+          "appVersion",
+          "appPlatform",
+          "environment",
+          "clientDeviceType",
+          "clientOs",
+          "clientOsVersion",
+          "clientModelName",
+          "clientUserAgentFamily",
+          "clientId",
+          "sessionId",
+          "channelId",
+          "episodeId",
+          "userCountryCode",
+          "playbackState",
+          "cmNetworkName",
+          "cmDurationServed",
+          "streamBitRate",
+          "episodeTimelinePoint",
+          "hitId",
+          "eventOccurredTimestampUtc",
+          "eventServerLoggedUtc");
+
+  /** Fields stored as columns; {@link #DEFAULT_COLUMNS} if empty. */
+  @Singular private final List<String> columns;
+
+  /** Long field that decides when rows age out, also usable for time range filters. */
+  @Builder.Default private final String timeColumn = "eventServerLoggedUtc";
+
+  /** Rows per segment, the unit of parallel scans, zone maps and eviction. */
+  @Builder.Default private final int segmentRows = 1 << 16;
+
+  /** Rows older than this by the time column are dropped a segment at a time. */
+  @Builder.Default private final Duration retention = Duration.ofHours(1);
+
+  /** Oldest segments are dropped to keep sealed segments within this many bytes. */
+  @Builder.Default private final long memoryBudgetBytes = 2L << 30;
+
+  /** Threads scanning segments for one query. */
+  @Builder.Default private final int parallelism = Runtime.getRuntime().availableProcessors();
+
+  public List<String> columnsOrDefault() {
+    return columns.isEmpty() ? DEFAULT_COLUMNS : columns;
+  }
+}
@@ -0,0 +1,30 @@
+package model.columnar;
+
+import lombok.Value;
+
+@Value
+public class ColumnarStoreStats {
+  int segments;
+  long rows;
+  long memoryBytes;
+
+  /** Range of the time column over the stored rows. */
+  long oldestMillis;
+
+  long newestMillis;
+
+  long evictedSegments;
+  long evictedRows;
+
+  public String toText() {
+    return String.format(
+        "%d rows in %d segments, %dMB (%.0f bytes/row), span %ds, evicted %d segments / %d rows%n",
+        rows,
+        segments,
+        memoryBytes >> 20,
+        rows == 0 ? 0.0 : (double) memoryBytes / rows,
+        rows == 0 ? 0 : (newestMillis - oldestMillis) / 1000,
+        evictedSegments,
+        evictedRows);
+  }
+}
@@ -0,0 +1,85 @@
+package model.columnar;
+
+/** Floating point values with a presence bitmap and min/max zone map. */
+final class DoubleColumn extends Column {
+
+  private final double[] values;
+  private final long[] present;
+  private double min = Double.POSITIVE_INFINITY;
+  private double max = Double.NEGATIVE_INFINITY;
+
+  DoubleColumn(String name, int capacity) {
+    super(name);
+    this.values = new double[capacity];
+    this.present = new long[(capacity + 63) >>> 6];
+  }
+
+  @Override
+  void append(int row, Object value) {
+    if (value == null) {
+      return;
+    }
+    double number = ((Number) value).doubleValue();
+    values[row] = number;
+    present[row >>> 6] |= bit(row);
+    if (number < min) {
+      min = number;
+    }
+    if (number > max) {
+      max = number;
+    }
+  }
+
+  @Override
+  Column seal(int rows) {
+    return this;
+  }
+
+  boolean present(int row) {
+    return (present[row >>> 6] & bit(row)) != 0;
+  }
+
+  double get(int row) {
+    return values[row];
+  }
+
+  @Override
+  Object value(int row) {
+    return present(row) ? values[row] : null;
+  }
+
+  @Override
+  double number(int row) {
+    return present(row) ? values[row] : Double.NaN;
+  }
+
+  @Override
+  long memoryBytes() {
+    return values.length * 8L + present.length * 8L;
+  }
+
+  @Override
+  boolean excludes(ColumnFilter filter) {
+    return !(min <= max) || max < filter.getMin() || min > filter.getMax();
+  }
+
+  @Override
+  void select(ColumnFilter filter, long[] selection, int rows) {
+    double low = filter.getMin();
+    double high = filter.getMax();
+    for (int word = 0, base = 0; base < rows; word++, base += 64) {
+      long selected = selection[word] & present[word];
+      if (selected == 0) {
+        selection[word] = 0;
+        continue;
+      }
+      int end = Math.min(64, rows - base);
+      long bits = 0;
+      for (int i = 0; i < end; i++) {
+        double value = values[base + i];
+        bits |= value >= low && value <= high ? bit(i) : 0;
+      }
+      selection[word] = selected & bits;
+    }
+  }
+}
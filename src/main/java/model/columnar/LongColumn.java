@@ -0,0 +1,98 @@
+package model.columnar;
+
+/**
+ * Integral values (int, long, timestamps and booleans as 0/1) with a presence bitmap and the
+ * segment's minimum and maximum as a zone map.
+ */
+final class LongColumn extends Column {
+
+  private final long[] values;
+  private final long[] present;
+  private long min = Long.MAX_VALUE;
+  private long max = Long.MIN_VALUE;
+
+  LongColumn(String name, int capacity) {
+    super(name);
+    this.values = new long[capacity];
+    this.present = new long[(capacity + 63) >>> 6];
+  }
+
+  @Override
+  void append(int row, Object value) {
+    if (value == null) {
+      return;
+    }
+    long number =
+        value instanceof Boolean ? ((Boolean) value ? 1 : 0) : ((Number) value).longValue();
+    values[row] = number;
+    present[row >>> 6] |= bit(row);
+    if (number < min) {
+      min = number;
+    }
+    if (number > max) {
+      max = number;
+    }
+  }
+
+  @Override
+  Column seal(int rows) {
+    return this;
+  }
+
+  long min() {
+    return min;
+  }
+
+  long max() {
+    return max;
+  }
+
+  boolean present(int row) {
+    return (present[row >>> 6] & bit(row)) != 0;
+  }
+
+  long get(int row) {
+    return values[row];
+  }
+
+  @Override
+  Object value(int row) {
+    return present(row) ? values[row] : null;
+  }
+
+  @Override
+  double number(int row) {
+    return present(row) ? values[row] : Double.NaN;
+  }
+
+  @Override
+  long memoryBytes() {
+    return values.length * 8L + present.length * 8L;
+  }
+
+  @Override
+  boolean excludes(ColumnFilter filter) {
+    return min > max || max < filter.getMin() || min > filter.getMax();
+  }
+
+  @Override
+  void select(ColumnFilter filter, long[] selection, int rows) {
+    // Inclusive bounds as longs; infinities clamp to the long range.
+    long low = (long) Math.ceil(filter.getMin());
+    long high = (long) Math.floor(filter.getMax());
+    for (int word = 0, base = 0; base < rows; word++, base += 64) {
+      long selected = selection[word] & present[word];
+      if (selected == 0) {
+        selection[word] = 0;
+        continue;
+      }
+      int end = Math.min(64, rows - base);
+      long bits = 0;
+      for (int i = 0; i < end; i++) {
+        long value = values[base + i];
+        bits |= value >= low && value <= high ? bit(i) : 0;
+      }
+      selection[word] = selected & bits;
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package model.columnar;
+
+/**
+ * A block of up to segmentRows rows stored column by column. The active segment is appended to by
+ * the store's writer and read concurrently; sealed segments are immutable.
+ */
+final class Segment {
+
+  final Column[] columns;
+  final int capacity;
+  private volatile int rows;
+
+  /** Range of the time column over the segment's rows; MIN/MAX_VALUE while there is none. */
+  private long minTime = Long.MAX_VALUE;
+
+  private long maxTime = Long.MIN_VALUE;
+
+  Segment(Column[] columns, int capacity) {
+    this.columns = columns;
+    this.capacity = capacity;
+  }
+
+  /** Rows readable now; read it before anything else about the segment. */
+  int rows() {
+    return rows;
+  }
+
+  boolean isFull() {
+    return rows == capacity;
+  }
+
+  /** Makes row {@code row}, already written to every column, visible to readers. */
+  void publish(int row, long time) {
+    if (time < minTime) {
+      minTime = time;
+    }
+    if (time > maxTime) {
+      maxTime = time;
+    }
+    rows = row + 1;
+  }
+
+  void publish(int row) {
+    rows = row + 1;
+  }
+
+  long minTime() {
+    return minTime;
+  }
+
+  long maxTime() {
+    return maxTime;
+  }
+
+  /** Immutable copy with compacted columns. */
+  Segment seal() {
+    int count = rows;
+    Column[] sealed = new Column[columns.length];
+    for (int i = 0; i < columns.length; i++) {
+      sealed[i] = columns[i].seal(count);
+    }
+    Segment segment = new Segment(sealed, count);
+    segment.minTime = minTime;
+    segment.maxTime = maxTime;
+    segment.rows = count;
+    return segment;
+  }
+
+  long memoryBytes() {
+    long bytes = 0;
+    for (Column column : columns) {
+      bytes += column.memoryBytes();
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,228 @@
+package model.columnar;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Dictionary-encoded strings (and enum symbols). Each segment has its own dictionary, so evicting a
+ * segment frees its strings; code 0 stands for null. Codes are written as ints while the segment
+ * fills and narrowed to bytes or shorts when it is sealed, as far as its dictionary allows.
+ *
+ * <p>The dictionary is published as a {@link Dictionary} snapshot through a volatile field, so a
+ * reader sees a count and an array that belong together, with every value below the count written.
+ * A reader that took the row count first finds every code of those rows in any snapshot it reads
+ * afterwards. Readers must decode a scan with one snapshot rather than re-reading it.
+ */
+final class StringColumn extends Column {
+
+  /** Lookup while the segment fills; null once sealed. */
+  private final Map<String, Integer> codesByValue;
+
+  /** Lookup once sealed: codes ordered by their values. */
+  private final int[] sortedCodes;
+
+  private volatile Dictionary dictionary;
+
+  private final int[] ints;
+  private final short[] shorts;
+  private final byte[] bytes;
+
+  StringColumn(String name, int capacity) {
+    this(
+        name,
+        new ConcurrentHashMap<>(),
+        null,
+        new Dictionary(new String[64], 1),
+        new int[capacity],
+        null,
+        null);
+  }
+
+  private StringColumn(
+      String name,
+      Map<String, Integer> codesByValue,
+      int[] sortedCodes,
+      Dictionary dictionary,
+      int[] ints,
+      short[] shorts,
+      byte[] bytes) {
+    super(name);
+    this.codesByValue = codesByValue;
+    this.sortedCodes = sortedCodes;
+    this.dictionary = dictionary;
+    this.ints = ints;
+    this.shorts = shorts;
+    this.bytes = bytes;
+  }
+
+  @Override
+  void append(int row, Object value) {
+    if (value == null) {
+      ints[row] = 0;
+      return;
+    }
+    String text = value.toString();
+    Integer code = codesByValue.get(text);
+    if (code == null) {
+      Dictionary current = dictionary;
+      code = current.count;
+      String[] values = current.values;
+      if (code == values.length) {
+        values = Arrays.copyOf(values, code * 2);
+      }
+      // Beyond the published count, so no reader looks at it yet.
+      values[code] = text;
+      dictionary = new Dictionary(values, code + 1);
+      codesByValue.put(text, code);
+    }
+    ints[row] = code;
+  }
+
+  @Override
+  Column seal(int rows) {
+    Dictionary current = dictionary;
+    int valueCount = current.count;
+    Dictionary sealed = new Dictionary(Arrays.copyOf(current.values, valueCount), valueCount);
+    int[] sorted =
+        IntStream.range(1, valueCount)
+            .boxed()
+            .sorted(Comparator.comparing(sealed::valueOf))
+            .mapToInt(Integer::intValue)
+            .toArray();
+    if (valueCount <= 0xff) {
+      byte[] narrow = new byte[rows];
+      for (int row = 0; row < rows; row++) {
+        narrow[row] = (byte) ints[row];
+      }
+      return new StringColumn(name, null, sorted, sealed, null, null, narrow);
+    }
+    if (valueCount <= 0xffff) {
+      short[] narrow = new short[rows];
+      for (int row = 0; row < rows; row++) {
+        narrow[row] = (short) ints[row];
+      }
+      return new StringColumn(name, null, sorted, sealed, null, narrow, null);
+    }
+    return new StringColumn(name, null, sorted, sealed, Arrays.copyOf(ints, rows), null, null);
+  }
+
+  /** Code of the value, or -1 if the segment does not contain it. */
+  int codeOf(String value) {
+    if (codesByValue != null) {
+      Integer code = codesByValue.get(value);
+      return code == null ? -1 : code;
+    }
+    String[] values = dictionary.values;
+    int low = 0;
+    int high = sortedCodes.length - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int order = values[sortedCodes[mid]].compareTo(value);
+      if (order < 0) {
+        low = mid + 1;
+      } else if (order > 0) {
+        high = mid - 1;
+      } else {
+        return sortedCodes[mid];
+      }
+    }
+    return -1;
+  }
+
+  int code(int row) {
+    if (bytes != null) {
+      return bytes[row] & 0xff;
+    }
+    return shorts != null ? shorts[row] & 0xffff : ints[row];
+  }
+
+  /** The current dictionary; read the segment's row count first. */
+  Dictionary dictionary() {
+    return dictionary;
+  }
+
+  @Override
+  Object value(int row) {
+    return dictionary.valueOf(code(row));
+  }
+
+  @Override
+  long memoryBytes() {
+    long codes =
+        bytes != null
+            ? bytes.length
+            : shorts != null ? shorts.length * 2L : ints.length * (long) Integer.BYTES;
+    // Per value: String and array headers plus the characters, and a map node and boxed code or
+    // a sorted code.
+    long perValue = codesByValue != null ? 40 + 48 : 40 + Integer.BYTES;
+    Dictionary current = dictionary;
+    long strings = 0;
+    for (int code = 1; code < current.count; code++) {
+      strings += perValue + current.values[code].length();
+    }
+    return codes + strings + current.values.length * 8L;
+  }
+
+  @Override
+  boolean excludes(ColumnFilter filter) {
+    for (String value : filter.getValues()) {
+      if (codeOf(value) >= 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  void select(ColumnFilter filter, long[] selection, int rows) {
+    boolean[] match = new boolean[dictionary.count];
+    for (String value : filter.getValues()) {
+      int code = codeOf(value);
+      if (code >= 0 && code < match.length) {
+        match[code] = true;
+      }
+    }
+    for (int word = 0, base = 0; base < rows; word++, base += 64) {
+      long selected = selection[word];
+      if (selected == 0) {
+        continue;
+      }
+      int end = Math.min(64, rows - base);
+      long bits = 0;
+      if (bytes != null) {
+        for (int i = 0; i < end; i++) {
+          bits |= match[bytes[base + i] & 0xff] ? bit(i) : 0;
+        }
+      } else if (shorts != null) {
+        for (int i = 0; i < end; i++) {
+          bits |= match[shorts[base + i] & 0xffff] ? bit(i) : 0;
+        }
+      } else {
+        for (int i = 0; i < end; i++) {
+          bits |= match[ints[base + i]] ? bit(i) : 0;
+        }
+      }
+      selection[word] = selected & bits;
+    }
+  }
+
+  /** Values by code, of which the first {@code count} are set and never change. */
+  static final class Dictionary {
+    private final String[] values;
+
+    /** Codes in use, counting the null code 0. */
+    final int count;
+
+    Dictionary(String[] values, int count) {
+      this.values = values;
+      this.count = count;
+    }
+
+    String valueOf(int code) {
+      return values[code];
+    }
+  }
+}
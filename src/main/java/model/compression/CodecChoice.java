@@ -0,0 +1,33 @@
+package model.compression;
+
+import lombok.Value;
+import org.apache.avro.file.CodecFactory;
+
+/** Measured size and CPU cost of one candidate codec on a sample. */
+@Value
+public class CodecChoice {
+  String name;
+  CodecFactory codec;
+  long uncompressedBytes;
+  long compressedBytes;
+  /** Write time on top of the uncompressed baseline. */
+  long compressNanos;
+  /** Read time on top of the uncompressed baseline. */
+  long decompressNanos;
+  double cost;
+
+  public double getRatio() {
+    return compressedBytes == 0 ? 0 : (double) uncompressedBytes / compressedBytes;
+  }
+
+  public String toText() {
+    return String.format(
+        "%-22s ratio=%.2f bytes=%d compress=%.1fns/B decompress=%.1fns/B cost=%.0f",
+        name,
+        getRatio(),
+        compressedBytes,
+        (double) compressNanos / uncompressedBytes,
+        (double) decompressNanos / uncompressedBytes,
+        cost);
+  }
+}
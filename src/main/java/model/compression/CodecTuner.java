@@ -0,0 +1,186 @@
+package model.compression;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import model.codec.AvroRecordCodec;
+import model.metrics.EventMetrics;
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Picks a container file codec by writing and reading a sample of records with each candidate.
+ * Each candidate's cost is {@code compressedBytes + cpuNanos / nanosPerSavedByte}, where cpuNanos
+ * is its compression time plus {@code readsPerWrite} times its decompression time, both measured
+ * on top of an uncompressed baseline. A higher {@code nanosPerSavedByte} favours smaller files.
+ */
+@Slf4j
+public class CodecTuner {
+
+  private static final int ROUNDS = 3;
+  private static final int DICTIONARY_SIZE = 64 * 1024;
+
+  private final double nanosPerSavedByte;
+  private final double readsPerWrite;
+  private final Map<String, CodecFactory> candidates = new LinkedHashMap<>();
+
+  public CodecTuner(double nanosPerSavedByte, double readsPerWrite) {
+    this.nanosPerSavedByte = nanosPerSavedByte;
+    this.readsPerWrite = readsPerWrite;
+    candidates.put("deflate-1", CodecFactory.deflateCodec(1));
+    candidates.put("deflate-6", CodecFactory.deflateCodec(6));
+    candidates.put("zstd-1", CodecFactory.zstandardCodec(1));
+    candidates.put("zstd-3", CodecFactory.zstandardCodec(3));
+    candidates.put("zstd-9", CodecFactory.zstandardCodec(9));
+    candidates.put("zstd-19", CodecFactory.zstandardCodec(19));
+  }
+
+  /**
+   * Trains a dictionary from a sample container file, stores it and ranks all codecs on the
+   * sample: {@code CodecTuner <sample.avro> <dictionaryDir> [nanosPerSavedByte] [readsPerWrite]}.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println(
+          "Usage: CodecTuner <sample.avro> <dictionaryDir> [nanosPerSavedByte] [readsPerWrite]");
+      System.exit(1);
+    }
+    List<GenericRecord> sample = new ArrayList<>();
+    List<byte[]> encoded = new ArrayList<>();
+    Schema schema;
+    try (DataFileReader<GenericRecord> reader =
+        new DataFileReader<>(new File(args[0]), new GenericDatumReader<>())) {
+      schema = reader.getSchema();
+      AvroRecordCodec codec = AvroRecordCodec.forEvents(schema, new EventMetrics());
+      for (GenericRecord record : reader) {
+        sample.add(record);
+        encoded.add(codec.encode(record));
+      }
+    }
+    byte[] dictionary = EventDictionaryStore.train(encoded, DICTIONARY_SIZE);
+    new EventDictionaryStore(Path.of(args[1])).save(schema, dictionary);
+
+    CodecTuner tuner =
+        new CodecTuner(
+                args.length > 2 ? Double.parseDouble(args[2]) : 20,
+                args.length > 3 ? Double.parseDouble(args[3]) : 1)
+            .withDictionary(dictionary);
+    for (CodecChoice choice : tuner.rank(schema, sample)) {
+      System.out.println(choice.toText());
+    }
+  }
+
+  /** Adds dictionary candidates at a fast and a default level. */
+  public CodecTuner withDictionary(byte[] dictionary) {
+    candidates.put("zstd-dict-1", ZstdDictionaryCodec.register(dictionary, 1));
+    candidates.put("zstd-dict-3", ZstdDictionaryCodec.register(dictionary, 3));
+    return this;
+  }
+
+  public CodecTuner withCandidate(String name, CodecFactory codec) {
+    candidates.put(name, codec);
+    return this;
+  }
+
+  /** Benchmarks all candidates, cheapest first. */
+  public List<CodecChoice> rank(Schema schema, List<GenericRecord> sample) throws IOException {
+    // The first pass only warms up the datum reader and writer code paths.
+    measure(schema, sample, CodecFactory.nullCodec());
+    Measurement baseline = measure(schema, sample, CodecFactory.nullCodec());
+    List<CodecChoice> choices = new ArrayList<>();
+    for (Map.Entry<String, CodecFactory> candidate : candidates.entrySet()) {
+      Measurement measured;
+      try {
+        measured = measure(schema, sample, candidate.getValue());
+      } catch (IOException | RuntimeException | LinkageError e) {
+        log.debug("Skipping codec {}: {}", candidate.getKey(), e.toString());
+        continue;
+      }
+      long compressNanos = Math.max(0, measured.writeNanos - baseline.writeNanos);
+      long decompressNanos = Math.max(0, measured.readNanos - baseline.readNanos);
+      double cost =
+          measured.bytes + (compressNanos + readsPerWrite * decompressNanos) / nanosPerSavedByte;
+      choices.add(
+          new CodecChoice(
+              candidate.getKey(),
+              candidate.getValue(),
+              baseline.bytes,
+              measured.bytes,
+              compressNanos,
+              decompressNanos,
+              cost));
+    }
+    choices.sort(Comparator.comparingDouble(CodecChoice::getCost));
+    return choices;
+  }
+
+  public CodecChoice choose(Schema schema, List<GenericRecord> sample) throws IOException {
+    List<CodecChoice> ranked = rank(schema, sample);
+    if (ranked.isEmpty()) {
+      throw new IllegalStateException("No codec candidate could be benchmarked");
+    }
+    for (CodecChoice choice : ranked) {
+      log.info("Codec candidate {}", choice.toText());
+    }
+    return ranked.get(0);
+  }
+
+  private static Measurement measure(Schema schema, List<GenericRecord> sample, CodecFactory codec)
+      throws IOException {
+    Measurement best = null;
+    for (int round = 0; round < ROUNDS; round++) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      long start = System.nanoTime();
+      try (DataFileWriter<GenericRecord> writer =
+          new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema))) {
+        writer.setCodec(codec);
+        writer.create(schema, out);
+        for (GenericRecord record : sample) {
+          writer.append(record);
+        }
+      }
+      long writeNanos = System.nanoTime() - start;
+      byte[] file = out.toByteArray();
+
+      start = System.nanoTime();
+      try (DataFileStream<GenericRecord> reader =
+          new DataFileStream<>(new ByteArrayInputStream(file), new GenericDatumReader<>())) {
+        GenericRecord reuse = null;
+        while (reader.hasNext()) {
+          reuse = reader.next(reuse);
+        }
+      }
+      long readNanos = System.nanoTime() - start;
+      if (best == null || writeNanos + readNanos < best.writeNanos + best.readNanos) {
+        best = new Measurement(file.length, writeNanos, readNanos);
+      }
+    }
+    return best;
+  }
+
+  private static final class Measurement {
+    final long bytes;
+    final long writeNanos;
+    final long readNanos;
+
+    Measurement(long bytes, long writeNanos, long readNanos) {
+      this.bytes = bytes;
+      this.writeNanos = writeNanos;
+      this.readNanos = readNanos;
+    }
+  }
+}
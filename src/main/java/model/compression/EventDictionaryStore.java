@@ -0,0 +1,122 @@
+package model.compression;
+
+import com.github.luben.zstd.ZstdDictTrainer;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaNormalization;
+import org.apache.avro.file.CodecFactory;
+
+/**
+ * Trains zstd dictionaries from sample records and keeps them in a directory next to the schemas,
+ * named {@code <schema fingerprint>.<dictionary id>.zdict}, where the fingerprint is the Avro
+ * 64-bit parsing fingerprint of the schema the samples were encoded with.
+ */
+@Slf4j
+public class EventDictionaryStore {
+
+  private static final String SUFFIX = ".zdict";
+
+  private final Path directory;
+
+  public EventDictionaryStore(Path directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Trains a dictionary from encoded sample records.
+   *
+   * @param dictionarySize target dictionary size in bytes, e.g. 64 KiB
+   */
+  public static byte[] train(Iterable<byte[]> samples, int dictionarySize) {
+    long sampleBytes = 0;
+    for (byte[] sample : samples) {
+      sampleBytes += sample.length;
+    }
+    ZstdDictTrainer trainer =
+        new ZstdDictTrainer((int) Math.min(Integer.MAX_VALUE, sampleBytes), dictionarySize);
+    for (byte[] sample : samples) {
+      trainer.addSample(sample);
+    }
+    return trainer.trainSamples();
+  }
+
+  public static String fingerprint(Schema schema) {
+    return String.format("%016x", SchemaNormalization.parsingFingerprint64(schema));
+  }
+
+  public Path save(Schema schema, byte[] dictionary) throws IOException {
+    Files.createDirectories(directory);
+    Path file = directory.resolve(fileName(schema, dictionary));
+    Files.write(file, dictionary);
+    log.info(
+        "Saved {} byte zstd dictionary for schema {} to {}",
+        dictionary.length,
+        schema.getFullName(),
+        file);
+    return file;
+  }
+
+  /** The most recently written dictionary trained for this schema, if any. */
+  public Optional<byte[]> latest(Schema schema) throws IOException {
+    if (!Files.isDirectory(directory)) {
+      return Optional.empty();
+    }
+    Path latest = null;
+    try (DirectoryStream<Path> files =
+        Files.newDirectoryStream(directory, fingerprint(schema) + ".*" + SUFFIX)) {
+      for (Path file : files) {
+        if (latest == null
+            || Files.getLastModifiedTime(file).compareTo(Files.getLastModifiedTime(latest)) > 0) {
+          latest = file;
+        }
+      }
+    }
+    return latest == null ? Optional.empty() : Optional.of(Files.readAllBytes(latest));
+  }
+
+  /**
+   * Codec for the latest dictionary of the schema, or zstd without a dictionary. Files written with
+   * a dictionary codec can only be read where this store is {@link #registerAll registered}.
+   */
+  public CodecFactory codecFor(Schema schema, int level) throws IOException {
+    Optional<byte[]> dictionary = latest(schema);
+    return dictionary.isPresent()
+        ? ZstdDictionaryCodec.register(dictionary.get(), level)
+        : CodecFactory.zstandardCodec(level);
+  }
+
+  /**
+   * Registers every stored dictionary so that files written with any of them can be read. A
+   * dictionary whose id is already taken by another one is skipped with a warning, since files
+   * naming that id cannot tell the two apart.
+   */
+  public int registerAll() throws IOException {
+    if (!Files.isDirectory(directory)) {
+      return 0;
+    }
+    int registered = 0;
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+      for (Path file : files) {
+        byte[] dictionary = Files.readAllBytes(file);
+        try {
+          ZstdDictionaryCodec.register(dictionary, CodecFactory.DEFAULT_ZSTANDARD_LEVEL);
+          registered++;
+        } catch (IllegalArgumentException e) {
+          log.warn("Not registering {}: {}", file, e.getMessage());
+        }
+      }
+    }
+    return registered;
+  }
+
+  private static String fileName(Schema schema, byte[] dictionary) {
+    String codecName = ZstdDictionaryCodec.codecName(dictionary);
+    String dictionaryId = codecName.substring(ZstdDictionaryCodec.NAME_PREFIX.length());
+    return fingerprint(schema) + "." + dictionaryId + SUFFIX;
+  }
+}
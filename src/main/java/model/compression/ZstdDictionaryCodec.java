@@ -0,0 +1,137 @@
+package model.compression;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.avro.file.Codec;
+import org.apache.avro.file.CodecFactory;
+
+/**
+ * Avro container block codec compressing with a pre-trained zstd dictionary. The dictionary id is
+ * part of the codec name written to the file header ({@code zstd-dict-<id>}), so a reader only
+ * needs the dictionary {@link #register registered} to open the file. Each id names exactly one
+ * dictionary: registering different content under an id already taken is refused rather than
+ * letting the last registration decide how files are decoded.
+ *
+ * <p>{@code zstd-dict-<id>} is not a standard Avro codec. Readers outside this code base
+ * (avro-tools, Spark, Athena and the like) fail on these files with an unknown codec error; files
+ * meant for them must be written with a standard codec.
+ */
+public class ZstdDictionaryCodec extends Codec {
+
+  static final String NAME_PREFIX = "zstd-dict-";
+
+  /** Content of the dictionary registered under each codec name. */
+  private static final Map<String, byte[]> REGISTERED = new ConcurrentHashMap<>();
+
+  private final String name;
+  private final ZstdDictCompress compressDictionary;
+  private final ZstdDictDecompress decompressDictionary;
+
+  ZstdDictionaryCodec(
+      String name, ZstdDictCompress compressDictionary, ZstdDictDecompress decompressDictionary) {
+    this.name = name;
+    this.compressDictionary = compressDictionary;
+    this.decompressDictionary = decompressDictionary;
+  }
+
+  /** Codec name for a dictionary. Raw content dictionaries have no id and are rejected. */
+  public static String codecName(byte[] dictionary) {
+    long id = Zstd.getDictIdFromDict(dictionary);
+    if (id == 0) {
+      throw new IllegalArgumentException("Dictionary has no zstd dictionary id");
+    }
+    return NAME_PREFIX + Long.toHexString(id);
+  }
+
+  /**
+   * Registers the dictionary with Avro under {@link #codecName} and returns the factory to pass to
+   * {@code DataFileWriter.setCodec}. Registering the same dictionary again, e.g. at another level,
+   * is fine; another dictionary with the same id throws {@link IllegalArgumentException}.
+   */
+  public static CodecFactory register(byte[] dictionary, int level) {
+    String name = codecName(dictionary);
+    byte[] registered = REGISTERED.putIfAbsent(name, dictionary.clone());
+    if (registered != null && !Arrays.equals(registered, dictionary)) {
+      throw new IllegalArgumentException(
+          "Another dictionary is already registered as " + name + "; retrain to get a new id");
+    }
+    Factory factory = new Factory(name, dictionary, level);
+    CodecFactory.addCodec(name, factory);
+    return factory;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public ByteBuffer compress(ByteBuffer data) throws IOException {
+    byte[] compressed = Zstd.compress(toArray(data), compressDictionary);
+    return ByteBuffer.wrap(compressed);
+  }
+
+  @Override
+  public ByteBuffer decompress(ByteBuffer data) throws IOException {
+    byte[] input = toArray(data);
+    long size = Zstd.getFrameContentSize(input);
+    if (size < 0 || size > Integer.MAX_VALUE) {
+      throw new IOException("Invalid zstd frame content size " + size + " in " + name + " block");
+    }
+    return ByteBuffer.wrap(Zstd.decompress(input, decompressDictionary, (int) size));
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return this == other
+        || (other != null && getClass() == other.getClass()
+            && name.equals(((ZstdDictionaryCodec) other).name));
+  }
+
+  @Override
+  public int hashCode() {
+    return name.hashCode();
+  }
+
+  private static byte[] toArray(ByteBuffer data) {
+    if (data.hasArray()
+        && data.arrayOffset() + data.position() == 0
+        && data.remaining() == data.array().length) {
+      return data.array();
+    }
+    byte[] bytes = new byte[data.remaining()];
+    data.duplicate().get(bytes);
+    return bytes;
+  }
+
+  /** Shares the prepared (thread-safe) dictionaries between all codec instances. */
+  static final class Factory extends CodecFactory {
+    private final String name;
+    private final int level;
+    private final ZstdDictCompress compressDictionary;
+    private final ZstdDictDecompress decompressDictionary;
+
+    Factory(String name, byte[] dictionary, int level) {
+      this.name = name;
+      this.level = level;
+      this.compressDictionary = new ZstdDictCompress(dictionary, level);
+      this.decompressDictionary = new ZstdDictDecompress(dictionary);
+    }
+
+    @Override
+    protected Codec createInstance() {
+      return new ZstdDictionaryCodec(name, compressDictionary, decompressDictionary);
+    }
+
+    @Override
+    public String toString() {
+      return name + "(level " + level + ")";
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package model.dedup;
+
+import java.time.Duration;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+import model.eventkey.EventKeyConfig;
+
+@Getter
+@Builder
+@ToString
+public class DedupConfig {
+
+  @Builder.Default private final DedupMode mode = DedupMode.BLOOM;
+
+  /** How long an event key is remembered, give or take one generation. */
+  @Builder.Default private final Duration window = Duration.ofMinutes(30);
+
+  /** Number of time buckets the window is split into; the oldest one is dropped on rotation. */
+  @Builder.Default private final int generations = 4;
+
+  /** Expected distinct events per window, used to size each generation. */
+  @Builder.Default private final long expectedEventsPerWindow = 10_000_000L;
+
+  /** Target false-positive rate of the Bloom mode. */
+  @Builder.Default private final double falsePositiveRate = 0.001;
+
+  /** Upper bound on the memory of all generations together. */
+  @Builder.Default private final long maxMemoryBytes = 64L * 1024 * 1024;
+
+  /**
+   * Keys events by a hash of these canonical fields instead of eventTransactionId or (sessionId,
+   * hitId), which also allows dedup of binary-encoded events; null keeps the latter.
+   */
+  private final EventKeyConfig eventKey;
+
+  long bucketMillis() {
+    return Math.max(1, window.toMillis() / generations);
+  }
+
+  long expectedEventsPerGeneration() {
+    return Math.max(1, (expectedEventsPerWindow + generations - 1) / generations);
+  }
+}
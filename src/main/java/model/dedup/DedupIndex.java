@@ -0,0 +1,15 @@
+package model.dedup;
+
+/** A windowed set of 64-bit event keys used to detect repeated events. */
+public interface DedupIndex {
+
+  /**
+   * Records {@code key} as seen at {@code nowMillis}.
+   *
+   * @return true if the key was (possibly, for probabilistic indexes) already seen in the window
+   */
+  boolean checkAndPut(long key, long nowMillis);
+
+  /** Bytes currently held by the index. */
+  long memoryBytes();
+}
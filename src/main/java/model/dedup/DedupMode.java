@@ -0,0 +1,8 @@
+package model.dedup;
+
+public enum DedupMode {
+  /** Rotating blocked Bloom filters; bounded memory, small false-positive rate. */
+  BLOOM,
+  /** Rotating primitive long-hash sets; no false positives beyond 64-bit key collisions. */
+  EXACT
+}
@@ -0,0 +1,126 @@
+package model.dedup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.LongSupplier;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import model.eventkey.EventKeyDeriver;
+import model.utils.Hashing;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Streaming dedup of EventDataPayload records retried by clients. Events are keyed by
+ * eventTransactionId when present, otherwise by (sessionId, hitId), or by an {@link
+ * model.eventkey.EventKey} when configured, and looked up in a windowed {@link DedupIndex}. Not
+ * thread-safe; use one stage per stream.
+ */
+@Slf4j
+public class DedupStage {
+
+  private static final long TRANSACTION_SEED = 0x5851f42d4c957f2dL;
+  private static final long SESSION_SEED = 0x14057b7ef767814fL;
+  /** Only every 64th event is timed; System.nanoTime can cost as much as the lookup itself. */
+  private static final long TIMING_SAMPLE_MASK = 63;
+
+  @Getter private final DedupIndex index;
+  private final LongSupplier clock;
+  private final int transactionIdPos;
+  private final int sessionIdPos;
+  private final int hitIdPos;
+  /** Null unless events are keyed by an EventKey. */
+  private final EventKeyDeriver eventKeys;
+
+  private long events;
+  private long duplicates;
+  private long timedEvents;
+  private long timedNanos;
+
+  public DedupStage(Schema eventSchema, DedupConfig config) {
+    this(eventSchema, config, System::currentTimeMillis);
+  }
+
+  public DedupStage(Schema eventSchema, DedupConfig config, LongSupplier clock) {
+    this.index =
+        config.getMode() == DedupMode.EXACT
+            ? new RotatingExactIndex(config)
+            : new RotatingBloomIndex(config);
+    this.clock = clock;
+    this.transactionIdPos = fieldPos(eventSchema, "eventTransactionId");
+    this.sessionIdPos = fieldPos(eventSchema, "sessionId");
+    this.hitIdPos = fieldPos(eventSchema, "hitId");
+    this.eventKeys =
+        config.getEventKey() == null ? null : new EventKeyDeriver(config.getEventKey());
+    log.info("Dedup stage created with {} using {} bytes", config, index.memoryBytes());
+  }
+
+  /** Returns true if the event was already seen within the window, recording it otherwise. */
+  public boolean isDuplicate(GenericRecord event) {
+    return isDuplicate(key(event));
+  }
+
+  /** Same as {@link #isDuplicate(GenericRecord)} on a binary-encoded event; needs an eventKey. */
+  public boolean isDuplicate(Schema writerSchema, byte[] event) {
+    if (eventKeys == null) {
+      throw new IllegalStateException("Binary events can only be deduplicated by eventKey");
+    }
+    return isDuplicate(eventKeys.derive(writerSchema, event).shortKey());
+  }
+
+  /** Returns the events of the batch that are not duplicates, in order. */
+  public List<GenericRecord> filter(Collection<? extends GenericRecord> batch) {
+    List<GenericRecord> unique = new ArrayList<>(batch.size());
+    for (GenericRecord event : batch) {
+      if (!isDuplicate(event)) {
+        unique.add(event);
+      }
+    }
+    return unique;
+  }
+
+  /** The 64-bit dedup key of an event. */
+  public long key(GenericRecord event) {
+    if (eventKeys != null) {
+      return eventKeys.derive(event).shortKey();
+    }
+    Object transactionId = event.get(transactionIdPos);
+    if (transactionId != null) {
+      return Hashing.hashUtf8((CharSequence) transactionId, TRANSACTION_SEED);
+    }
+    long session = Hashing.hashUtf8((CharSequence) event.get(sessionIdPos), SESSION_SEED);
+    return Hashing.combine(session, ((Integer) event.get(hitIdPos)).longValue());
+  }
+
+  private boolean isDuplicate(long key) {
+    boolean duplicate;
+    if ((events & TIMING_SAMPLE_MASK) == 0) {
+      long start = System.nanoTime();
+      duplicate = index.checkAndPut(key, clock.getAsLong());
+      timedNanos += System.nanoTime() - start;
+      timedEvents++;
+    } else {
+      duplicate = index.checkAndPut(key, clock.getAsLong());
+    }
+    events++;
+    if (duplicate) {
+      duplicates++;
+    }
+    return duplicate;
+  }
+
+  public DedupStats stats() {
+    long totalNanos = timedEvents == 0 ? 0 : timedNanos * events / timedEvents;
+    return new DedupStats(events, duplicates, index.memoryBytes(), totalNanos);
+  }
+
+  private static int fieldPos(Schema schema, String name) {
+    Schema.Field field = schema.getField(name);
+    if (field == null) {
+      throw new IllegalArgumentException(
+          "Schema " + schema.getFullName() + " has no field " + name);
+    }
+    return field.pos();
+  }
+}
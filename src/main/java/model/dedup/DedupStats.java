@@ -0,0 +1,20 @@
+package model.dedup;
+
+import lombok.Value;
+
+@Value
+public class DedupStats {
+  long events;
+  long duplicates;
+  long memoryBytes;
+  /** Estimated from a sample of timed events. */
+  long totalNanos;
+
+  public double getDedupRate() {
+    return events == 0 ? 0 : (double) duplicates / events;
+  }
+
+  public double getNanosPerEvent() {
+    return events == 0 ? 0 : (double) totalNanos / events;
+  }
+}
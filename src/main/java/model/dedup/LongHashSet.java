@@ -0,0 +1,76 @@
+package model.dedup;
+
+import java.util.Arrays;
+import model.utils.Hashing;
+
+/** Fixed-capacity open-addressing set of longs with linear probing; never resizes. */
+final class LongHashSet {
+
+  private static final long EMPTY = 0L;
+  /** Stand-in for the key 0, which marks empty slots. */
+  private static final long ZERO_KEY = 0x9e3779b97f4a7c15L;
+
+  private final long[] table;
+  private final int mask;
+  private final int maxSize;
+  private int size;
+
+  LongHashSet(int capacity) {
+    if (Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+    }
+    this.table = new long[capacity];
+    this.mask = capacity - 1;
+    this.maxSize = (int) (capacity * 0.75);
+  }
+
+  boolean contains(long key) {
+    key = key == EMPTY ? ZERO_KEY : key;
+    for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+      long existing = table[slot];
+      if (existing == key) {
+        return true;
+      }
+      if (existing == EMPTY) {
+        return false;
+      }
+    }
+  }
+
+  /** Adds the key, returning false if it was already present. The set must not be full. */
+  boolean add(long key) {
+    key = key == EMPTY ? ZERO_KEY : key;
+    for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+      long existing = table[slot];
+      if (existing == key) {
+        return false;
+      }
+      if (existing == EMPTY) {
+        table[slot] = key;
+        size++;
+        return true;
+      }
+    }
+  }
+
+  boolean isFull() {
+    return size >= maxSize;
+  }
+
+  int size() {
+    return size;
+  }
+
+  void clear() {
+    Arrays.fill(table, EMPTY);
+    size = 0;
+  }
+
+  long memoryBytes() {
+    return (long) table.length * Long.BYTES;
+  }
+
+  private int slot(long key) {
+    return (int) Hashing.fmix64(key) & mask;
+  }
+}
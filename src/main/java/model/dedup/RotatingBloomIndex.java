@@ -0,0 +1,79 @@
+package model.dedup;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import model.utils.BlockedBloomFilter;
+
+@Slf4j
+class RotatingBloomIndex extends RotatingDedupIndex {
+
+  /** 1 GiB per generation, the largest filter a single long[] comfortably holds. */
+  private static final long MAX_BLOCKS = 1L << 24;
+
+  private final BlockedBloomFilter[] filters;
+
+  /** False-positive rate expected once a generation holds its planned number of keys. */
+  @Getter private final double effectiveFalsePositiveRate;
+
+  RotatingBloomIndex(DedupConfig config) {
+    super(config.bucketMillis(), config.getGenerations());
+    int generations = config.getGenerations();
+    long keys = config.expectedEventsPerGeneration();
+
+    double bitsPerKey = BlockedBloomFilter.bitsPerKey(config.getFalsePositiveRate());
+    int hashes = BlockedBloomFilter.optimalHashes(bitsPerKey);
+    long wantedBlocks =
+        Math.max(1, (long) Math.ceil(keys * bitsPerKey / BlockedBloomFilter.BLOCK_BITS));
+    long blockBytes = BlockedBloomFilter.BLOCK_BITS / Byte.SIZE;
+    long maxBlocks = Math.max(1, config.getMaxMemoryBytes() / (blockBytes * generations));
+    int blocks = (int) Math.min(ceilPowerOfTwo(wantedBlocks), floorPowerOfTwo(maxBlocks));
+
+    this.filters = new BlockedBloomFilter[generations];
+    for (int i = 0; i < generations; i++) {
+      filters[i] = new BlockedBloomFilter(blocks, hashes);
+    }
+    this.effectiveFalsePositiveRate = BlockedBloomFilter.expectedFpp(keys, blocks, hashes);
+    if (blocks < wantedBlocks) {
+      log.warn(
+          "Dedup memory budget of {} bytes is too small for {} keys per generation at fpp {};"
+              + " expected fpp is {}",
+          config.getMaxMemoryBytes(),
+          keys,
+          config.getFalsePositiveRate(),
+          effectiveFalsePositiveRate);
+    }
+  }
+
+  @Override
+  boolean put(int generation, long key) {
+    return filters[generation].put(key);
+  }
+
+  @Override
+  boolean contains(int generation, long key) {
+    return filters[generation].mightContain(key);
+  }
+
+  @Override
+  void clear(int generation) {
+    filters[generation].clear();
+  }
+
+  @Override
+  public long memoryBytes() {
+    long bytes = 0;
+    for (BlockedBloomFilter filter : filters) {
+      bytes += filter.memoryBytes();
+    }
+    return bytes;
+  }
+
+  private static long ceilPowerOfTwo(long value) {
+    long floor = Long.highestOneBit(value);
+    return floor == value ? value : Math.min(floor << 1, MAX_BLOCKS);
+  }
+
+  private static long floorPowerOfTwo(long value) {
+    return Math.min(Long.highestOneBit(value), MAX_BLOCKS);
+  }
+}
@@ -0,0 +1,69 @@
+package model.dedup;
+
+/**
+ * Splits the dedup window into a ring of generations, each covering one time bucket. Keys are
+ * inserted into the current generation and looked up in all of them; when the clock moves into a
+ * new bucket the oldest generation is cleared and reused, so memory stays constant.
+ */
+abstract class RotatingDedupIndex implements DedupIndex {
+
+  private final long bucketMillis;
+  private final int generations;
+  private long currentBucket = Long.MIN_VALUE;
+  private int current;
+
+  RotatingDedupIndex(long bucketMillis, int generations) {
+    if (generations < 2) {
+      throw new IllegalArgumentException("At least two generations are required: " + generations);
+    }
+    this.bucketMillis = bucketMillis;
+    this.generations = generations;
+  }
+
+  /** Adds the key to a generation, returning false if it was (possibly) already present. */
+  abstract boolean put(int generation, long key);
+
+  abstract boolean contains(int generation, long key);
+
+  abstract void clear(int generation);
+
+  @Override
+  public boolean checkAndPut(long key, long nowMillis) {
+    long bucket = Math.floorDiv(nowMillis, bucketMillis);
+    if (bucket > currentBucket) {
+      advance(bucket);
+    }
+    if (!put(current, key)) {
+      return true;
+    }
+    for (int i = 1; i < generations; i++) {
+      int generation = current - i < 0 ? current - i + generations : current - i;
+      if (contains(generation, key)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  final int currentGeneration() {
+    return current;
+  }
+
+  /** Drops the oldest generation ahead of schedule, e.g. when the current one is full. */
+  void rotate() {
+    current = current + 1 == generations ? 0 : current + 1;
+    clear(current);
+  }
+
+  private void advance(long bucket) {
+    if (currentBucket == Long.MIN_VALUE) {
+      currentBucket = bucket;
+      return;
+    }
+    long steps = Math.min(bucket - currentBucket, generations);
+    for (long i = 0; i < steps; i++) {
+      rotate();
+    }
+    currentBucket = bucket;
+  }
+}
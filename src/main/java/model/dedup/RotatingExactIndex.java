@@ -0,0 +1,75 @@
+package model.dedup;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Exact counterpart of {@link RotatingBloomIndex}. Each generation is a fixed-size long-hash set;
+ * if one fills up before its time bucket ends, the oldest generation is dropped early rather than
+ * growing past the memory budget.
+ */
+@Slf4j
+class RotatingExactIndex extends RotatingDedupIndex {
+
+  private static final int MAX_CAPACITY = 1 << 30;
+
+  private final LongHashSet[] sets;
+
+  /** Generations dropped before their time because the current one was full. */
+  @Getter private long earlyRotations;
+
+  RotatingExactIndex(DedupConfig config) {
+    super(config.bucketMillis(), config.getGenerations());
+    int generations = config.getGenerations();
+    long wanted = Math.max(16, (long) Math.ceil(config.expectedEventsPerGeneration() / 0.75));
+    long maxSlots = Math.max(16, config.getMaxMemoryBytes() / (Long.BYTES * generations));
+    long capacity = Math.min(Long.highestOneBit(wanted - 1) << 1, Long.highestOneBit(maxSlots));
+    capacity = Math.min(capacity, MAX_CAPACITY);
+    if (capacity < wanted) {
+      log.warn(
+          "Dedup memory budget of {} bytes holds {} keys per generation, fewer than the expected {};"
+              + " the effective window will be shorter than {}",
+          config.getMaxMemoryBytes(),
+          (long) (capacity * 0.75),
+          config.expectedEventsPerGeneration(),
+          config.getWindow());
+    }
+    this.sets = new LongHashSet[generations];
+    for (int i = 0; i < generations; i++) {
+      sets[i] = new LongHashSet((int) capacity);
+    }
+  }
+
+  @Override
+  boolean put(int generation, long key) {
+    LongHashSet set = sets[generation];
+    if (set.contains(key)) {
+      return false;
+    }
+    if (set.isFull()) {
+      earlyRotations++;
+      rotate();
+      return sets[currentGeneration()].add(key);
+    }
+    return set.add(key);
+  }
+
+  @Override
+  boolean contains(int generation, long key) {
+    return sets[generation].contains(key);
+  }
+
+  @Override
+  void clear(int generation) {
+    sets[generation].clear();
+  }
+
+  @Override
+  public long memoryBytes() {
+    long bytes = 0;
+    for (LongHashSet set : sets) {
+      bytes += set.memoryBytes();
+    }
+    return bytes;
+  }
+}
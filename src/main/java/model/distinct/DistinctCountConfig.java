@@ -0,0 +1,23 @@
+package model.distinct;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@Builder
+@ToString
+public class DistinctCountConfig {
+
+  /**
+   * Sketch precision p: 2^p registers, a standard error of about 1.04/sqrt(2^p) (0.8% at 14) and
+   * 2^p bytes per dense sketch.
+   */
+  @Builder.Default private final int precision = 14;
+
+  /**
+   * Dimension combinations tracked at most; events and merged sketches for further ones are counted
+   * and skipped.
+   */
+  @Builder.Default private final int maxKeys = 200_000;
+}
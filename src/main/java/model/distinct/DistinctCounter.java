@@ -0,0 +1,324 @@
+package model.distinct;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.S3Object;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import lombok.extern.slf4j.Slf4j;
+import model.utils.AvroEventSchemaBuilder;
+import model.utils.Hashing;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Distinct devices (clientId) and users (accountId) per appName, appVersion, channelId and UTC day,
+ * kept as {@link HyperLogLog} sketches while events stream through. Counters of different workers
+ * or files merge into one, and a query merges the sketches of the matching keys instead of scanning
+ * events. Counters are stored as Avro containers of {@link #SCHEMA} records, locally or in S3. Not
+ * thread-safe; use one counter per worker and merge.
+ */
+@Slf4j
+public class DistinctCounter {
+
+  public static final Schema SCHEMA =
+      SchemaBuilder.record("DistinctSketches")
+          .namespace("tv.pluto.nile.avro.distinct")
+          .doc("HyperLogLog sketches of distinct clientIds and accountIds per dimension key.")
+          .fields()
+          .optionalString("appName")
+          .optionalString("appVersion")
+          .optionalString("channelId")
+          .requiredInt("day")
+          .requiredBytes("devices")
+          .optionalBytes("users")
+          .endRecord();
+
+  private static final long DEVICE_SEED = 0x510e527fade682d1L;
+  private static final long USER_SEED = 0x9b05688c2b3e6c1fL;
+  private static final long MILLIS_PER_DAY = 86_400_000L;
+
+  private final DistinctCountConfig config;
+  private final Map<DistinctKey, Sketches> sketches = new HashMap<>();
+  private int clientIdPos = -1;
+  private int accountIdPos;
+  private int appNamePos;
+  private int appVersionPos;
+  private int channelIdPos;
+  private int occurredPos;
+  private Schema eventSchema;
+  private long events;
+  private long skippedEvents;
+  private long skippedKeys;
+
+  public DistinctCounter(DistinctCountConfig config) {
+    this.config = config;
+  }
+
+  /** Adds an EventDataPayload record's clientId and accountId to its key's sketches. */
+  public void observe(GenericRecord event) {
+    if (event.getSchema() != eventSchema) {
+      bind(event.getSchema());
+    }
+    events++;
+    Object occurred = event.get(occurredPos);
+    DistinctKey key =
+        new DistinctKey(
+            string(event.get(appNamePos)),
+            string(event.get(appVersionPos)),
+            string(event.get(channelIdPos)),
+            occurred == null ? 0 : (int) Math.floorDiv((Long) occurred, MILLIS_PER_DAY));
+    Sketches entry = sketches.get(key);
+    if (entry == null) {
+      if (sketches.size() == config.getMaxKeys()) {
+        if (skippedEvents++ == 0) {
+          log.warn(
+              "Distinct counter reached {} keys; skipping events of new keys", sketches.size());
+        }
+        return;
+      }
+      entry = new Sketches(new HyperLogLog(config.getPrecision()));
+      sketches.put(key, entry);
+    }
+    Object clientId = event.get(clientIdPos);
+    if (clientId != null) {
+      entry.devices.add(Hashing.hashUtf8((CharSequence) clientId, DEVICE_SEED));
+    }
+    Object accountId = event.get(accountIdPos);
+    if (accountId != null) {
+      entry.users().add(Hashing.hashUtf8((CharSequence) accountId, USER_SEED));
+    }
+  }
+
+  /**
+   * Distinct devices and users over all keys matching the filter. Null values match any value of
+   * their dimension, and the day range is inclusive.
+   */
+  public DistinctEstimate estimate(
+      String appName, String appVersion, String channelId, int fromDay, int toDay) {
+    HyperLogLog devices = new HyperLogLog(config.getPrecision());
+    HyperLogLog users = new HyperLogLog(config.getPrecision());
+    int keys = 0;
+    for (Map.Entry<DistinctKey, Sketches> entry : sketches.entrySet()) {
+      if (entry.getKey().matches(appName, appVersion, channelId, fromDay, toDay)) {
+        devices.merge(entry.getValue().devices);
+        if (entry.getValue().users != null) {
+          users.merge(entry.getValue().users);
+        }
+        keys++;
+      }
+    }
+    return new DistinctEstimate(devices.estimate(), users.estimate(), keys);
+  }
+
+  /** Adds every sketch of the other counter, e.g. another worker's. */
+  public void merge(DistinctCounter other) {
+    for (Map.Entry<DistinctKey, Sketches> entry : other.sketches.entrySet()) {
+      Sketches theirs = entry.getValue();
+      merge(entry.getKey(), theirs.devices, theirs.users);
+    }
+    events += other.events;
+    skippedEvents += other.skippedEvents;
+    skippedKeys += other.skippedKeys;
+  }
+
+  public int keyCount() {
+    return sketches.size();
+  }
+
+  public long events() {
+    return events;
+  }
+
+  public long skippedEvents() {
+    return skippedEvents;
+  }
+
+  /** Keys whose merged sketches were dropped because the counter was full. */
+  public long skippedKeys() {
+    return skippedKeys;
+  }
+
+  /** Off-heap bytes held by all sketches. */
+  public long memoryBytes() {
+    long bytes = 0;
+    for (Sketches entry : sketches.values()) {
+      bytes += entry.devices.memoryBytes();
+      if (entry.users != null) {
+        bytes += entry.users.memoryBytes();
+      }
+    }
+    return bytes;
+  }
+
+  public void writeTo(OutputStream out) throws IOException {
+    try (DataFileWriter<GenericRecord> writer =
+        new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(SCHEMA))) {
+      writer.setCodec(CodecFactory.zstandardCodec(3));
+      writer.create(SCHEMA, out);
+      for (Map.Entry<DistinctKey, Sketches> entry : sketches.entrySet()) {
+        DistinctKey key = entry.getKey();
+        GenericRecord record = new GenericData.Record(SCHEMA);
+        record.put("appName", key.getAppName());
+        record.put("appVersion", key.getAppVersion());
+        record.put("channelId", key.getChannelId());
+        record.put("day", key.getDay());
+        record.put("devices", ByteBuffer.wrap(entry.getValue().devices.toBytes()));
+        if (entry.getValue().users != null) {
+          record.put("users", ByteBuffer.wrap(entry.getValue().users.toBytes()));
+        }
+        writer.append(record);
+      }
+    }
+  }
+
+  /** Merges the sketches of a stream written by {@link #writeTo(OutputStream)}. */
+  public void mergeFrom(InputStream in) throws IOException {
+    try (DataFileStream<GenericRecord> reader =
+        new DataFileStream<>(in, new GenericDatumReader<>(SCHEMA))) {
+      GenericRecord record = null;
+      while (reader.hasNext()) {
+        record = reader.next(record);
+        DistinctKey key =
+            new DistinctKey(
+                string(record.get("appName")),
+                string(record.get("appVersion")),
+                string(record.get("channelId")),
+                (Integer) record.get("day"));
+        ByteBuffer users = (ByteBuffer) record.get("users");
+        merge(
+            key,
+            HyperLogLog.fromBytes((ByteBuffer) record.get("devices")),
+            users == null ? null : HyperLogLog.fromBytes(users));
+      }
+    }
+  }
+
+  public void uploadTo(AmazonS3 s3, String bucket, String key) throws IOException {
+    File file = Files.createTempFile("distinct-", ".avro").toFile();
+    try {
+      try (OutputStream out = Files.newOutputStream(file.toPath())) {
+        writeTo(out);
+      }
+      s3.putObject(bucket, key, file);
+      log.info("Uploaded {} distinct sketches to s3://{}/{}", sketches.size(), bucket, key);
+    } finally {
+      Files.deleteIfExists(file.toPath());
+    }
+  }
+
+  public void mergeFrom(AmazonS3 s3, String bucket, String key) throws IOException {
+    try (S3Object object = s3.getObject(bucket, key);
+        InputStream in = object.getObjectContent()) {
+      mergeFrom(in);
+    }
+  }
+
+  private void merge(DistinctKey key, HyperLogLog devices, HyperLogLog users) {
+    Sketches entry = sketches.get(key);
+    if (entry == null) {
+      if (sketches.size() == config.getMaxKeys()) {
+        if (skippedKeys++ == 0) {
+          log.warn("Distinct counter reached {} keys; skipping merged keys", sketches.size());
+        }
+        return;
+      }
+      entry = new Sketches(new HyperLogLog(config.getPrecision()));
+      sketches.put(key, entry);
+    }
+    entry.devices.merge(devices);
+    if (users != null) {
+      entry.users().merge(users);
+    }
+  }
+
+  private void bind(Schema schema) {
+    clientIdPos = schema.getField("clientId").pos();
+    accountIdPos = schema.getField("accountId").pos();
+    appNamePos = schema.getField("appName").pos();
+    appVersionPos = schema.getField("appVersion").pos();
+    channelIdPos = schema.getField("channelId").pos();
+    occurredPos = schema.getField("eventOccurredTimestampUtc").pos();
+    eventSchema = schema;
+  }
+
+  private static String string(Object value) {
+    return value == null ? null : value.toString();
+  }
+
+  /** Device sketch of a key and its user sketch, created on the first accountId. */
+  private final class Sketches {
+    final HyperLogLog devices;
+    HyperLogLog users;
+
+    Sketches(HyperLogLog devices) {
+      this.devices = devices;
+    }
+
+    HyperLogLog users() {
+      if (users == null) {
+        users = new HyperLogLog(config.getPrecision());
+      }
+      return users;
+    }
+  }
+
+  /**
+   * Builds sketches from event files, writes them and prints distinct counts per appName: {@code
+   * DistinctCounter <sketches.avro> <events.avro>...}.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: DistinctCounter <sketches.avro> <events.avro>...");
+      System.exit(1);
+    }
+    Schema schema = AvroEventSchemaBuilder.buildSchema();
+    DistinctCounter counter = new DistinctCounter(DistinctCountConfig.builder().build());
+    long started = System.nanoTime();
+    for (int i = 1; i < args.length; i++) {
+      try (DataFileReader<GenericRecord> reader =
+          new DataFileReader<>(new File(args[i]), new GenericDatumReader<>(null, schema))) {
+        GenericRecord event = null;
+        while (reader.hasNext()) {
+          event = reader.next(event);
+          counter.observe(event);
+        }
+      }
+    }
+    double seconds = (System.nanoTime() - started) / 1e9;
+    try (OutputStream out = Files.newOutputStream(new File(args[0]).toPath())) {
+      counter.writeTo(out);
+    }
+    System.out.printf(
+        "%d events in %.1f s, %d keys, %d off-heap bytes, written to %s%n",
+        counter.events(), seconds, counter.keyCount(), counter.memoryBytes(), args[0]);
+    Set<String> appNames = new TreeSet<>();
+    for (DistinctKey key : counter.sketches.keySet()) {
+      if (key.getAppName() != null) {
+        appNames.add(key.getAppName());
+      }
+    }
+    for (String appName : appNames) {
+      DistinctEstimate estimate =
+          counter.estimate(appName, null, null, Integer.MIN_VALUE, Integer.MAX_VALUE);
+      System.out.printf(
+          "  %-20s devices=%d users=%d keys=%d%n",
+          appName, estimate.getDevices(), estimate.getUsers(), estimate.getKeys());
+    }
+  }
+}
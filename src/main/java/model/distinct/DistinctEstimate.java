@@ -0,0 +1,15 @@
+package model.distinct;
+
+import lombok.Value;
+
+@Value
+public class DistinctEstimate {
+  /** Distinct clientIds. */
+  long devices;
+
+  /** Distinct accountIds. */
+  long users;
+
+  /** Dimension combinations merged into the estimate. */
+  int keys;
+}
@@ -0,0 +1,26 @@
+package model.distinct;
+
+import lombok.Value;
+
+/** Dimension combination a pair of sketches is kept for; null stands for a missing value. */
+@Value
+public class DistinctKey {
+  String appName;
+  String appVersion;
+  String channelId;
+
+  /** UTC day of eventOccurredTimestampUtc, in days since the epoch. */
+  int day;
+
+  /**
+   * Whether the key matches; null filter values match anything, and the day range is inclusive, so
+   * fromDay > toDay matches nothing.
+   */
+  boolean matches(String appName, String appVersion, String channelId, int fromDay, int toDay) {
+    return (appName == null || appName.equals(this.appName))
+        && (appVersion == null || appVersion.equals(this.appVersion))
+        && (channelId == null || channelId.equals(this.channelId))
+        && day >= fromDay
+        && day <= toDay;
+  }
+}
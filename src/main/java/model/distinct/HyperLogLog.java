@@ -0,0 +1,281 @@
+package model.distinct;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * HyperLogLog distinct-count sketch over 64-bit hashes, stored off-heap. A sketch starts sparse, as
+ * an open-addressing set of the exact hashes it has seen, which is exact for small counts and costs
+ * little for the many dimension combinations that only ever see a few values; once that set would
+ * outgrow the dense form it is converted to 2^precision one-byte registers. Below precision 7 even
+ * the smallest set is larger than the registers, so those sketches start dense. Estimates use
+ * Ertl's improved estimator, which needs no bias tables or range switching. Sketches of equal
+ * precision merge losslessly. Not thread-safe.
+ */
+public final class HyperLogLog {
+
+  public static final int MIN_PRECISION = 4;
+  public static final int MAX_PRECISION = 18;
+
+  private static final byte VERSION = 1;
+  private static final byte SPARSE = 0;
+  private static final byte DENSE = 1;
+  private static final int MIN_SPARSE_SLOTS = 16;
+  private static final long EMPTY = 0L;
+
+  /** Stand-in for the hash 0, which marks empty slots. */
+  private static final long ZERO_HASH = 0x9e3779b97f4a7c15L;
+
+  private final int precision;
+  private final int registerCount;
+
+  /** Sparse sets may hold this many hashes; one more converts the sketch to dense. */
+  private final int sparseLimit;
+
+  private ByteBuffer sparse;
+  private int sparseMask;
+  private int sparseSize;
+  private ByteBuffer dense;
+
+  public HyperLogLog(int precision) {
+    if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+      throw new IllegalArgumentException("Precision must be in [4, 18]: " + precision);
+    }
+    this.precision = precision;
+    this.registerCount = 1 << precision;
+    if (registerCount < MIN_SPARSE_SLOTS * Long.BYTES) {
+      // Even the smallest sparse table would take more bytes than the registers.
+      this.sparseLimit = 0;
+      this.dense = ByteBuffer.allocateDirect(registerCount);
+      return;
+    }
+    // The table converts before growing past registerCount / 8 slots, so it never takes more
+    // bytes than the dense registers.
+    this.sparseLimit = registerCount / Long.BYTES / 4 * 3;
+    allocateSparse(MIN_SPARSE_SLOTS);
+  }
+
+  public int getPrecision() {
+    return precision;
+  }
+
+  public boolean isSparse() {
+    return dense == null;
+  }
+
+  /** Adds a well-mixed 64-bit hash of a value. */
+  public void add(long hash) {
+    if (dense != null) {
+      addDense(hash);
+      return;
+    }
+    hash = hash == EMPTY ? ZERO_HASH : hash;
+    int slot = slot(hash);
+    while (true) {
+      long existing = sparse.getLong(slot << 3);
+      if (existing == hash) {
+        return;
+      }
+      if (existing == EMPTY) {
+        break;
+      }
+      slot = (slot + 1) & sparseMask;
+    }
+    if (sparseSize == sparseLimit) {
+      toDense();
+      addDense(hash);
+      return;
+    }
+    sparse.putLong(slot << 3, hash);
+    sparseSize++;
+    if (sparseSize * 4 > (sparseMask + 1) * 3) {
+      growSparse();
+    }
+  }
+
+  /** Adds everything the other sketch has seen; both must have the same precision. */
+  public void merge(HyperLogLog other) {
+    if (other.precision != precision) {
+      throw new IllegalArgumentException(
+          "Cannot merge precision " + other.precision + " into " + precision);
+    }
+    if (other.dense == null) {
+      for (int slot = 0; slot <= other.sparseMask; slot++) {
+        long hash = other.sparse.getLong(slot << 3);
+        if (hash != EMPTY) {
+          add(hash);
+        }
+      }
+      return;
+    }
+    if (dense == null) {
+      toDense();
+    }
+    for (int i = 0; i < registerCount; i++) {
+      byte value = other.dense.get(i);
+      if (value > dense.get(i)) {
+        dense.put(i, value);
+      }
+    }
+  }
+
+  /** Estimated number of distinct hashes added; exact while the sketch is sparse. */
+  public long estimate() {
+    if (dense == null) {
+      return sparseSize;
+    }
+    int q = 64 - precision;
+    int[] histogram = new int[q + 2];
+    for (int i = 0; i < registerCount; i++) {
+      histogram[dense.get(i)]++;
+    }
+    double m = registerCount;
+    double z = m * tau(1 - histogram[q + 1] / m);
+    for (int k = q; k >= 1; k--) {
+      z = 0.5 * (z + histogram[k]);
+    }
+    z += m * sigma(histogram[0] / m);
+    return Math.round(m * m / (2 * Math.log(2)) / z);
+  }
+
+  /** Off-heap bytes held by the sketch. */
+  public long memoryBytes() {
+    return dense != null ? dense.capacity() : sparse.capacity();
+  }
+
+  public HyperLogLog copy() {
+    HyperLogLog copy = new HyperLogLog(precision);
+    copy.merge(this);
+    return copy;
+  }
+
+  /** Portable encoding: version, precision, form, then the sparse hashes or dense registers. */
+  public byte[] toBytes() {
+    ByteBuffer out;
+    if (dense == null) {
+      out = ByteBuffer.allocate(3 + Integer.BYTES + sparseSize * Long.BYTES);
+      out.put(VERSION).put((byte) precision).put(SPARSE).putInt(sparseSize);
+      for (int slot = 0; slot <= sparseMask; slot++) {
+        long hash = sparse.getLong(slot << 3);
+        if (hash != EMPTY) {
+          out.putLong(hash);
+        }
+      }
+    } else {
+      out = ByteBuffer.allocate(3 + registerCount);
+      out.put(VERSION).put((byte) precision).put(DENSE);
+      for (int i = 0; i < registerCount; i++) {
+        out.put(dense.get(i));
+      }
+    }
+    return out.array();
+  }
+
+  /** Decodes {@link #toBytes()} output from the buffer's position. */
+  public static HyperLogLog fromBytes(ByteBuffer in) {
+    in = in.slice().order(ByteOrder.BIG_ENDIAN);
+    byte version = in.get();
+    if (version != VERSION) {
+      throw new IllegalArgumentException("Unknown HyperLogLog encoding version " + version);
+    }
+    HyperLogLog sketch = new HyperLogLog(in.get());
+    byte form = in.get();
+    if (form == SPARSE) {
+      for (int i = in.getInt(); i > 0; i--) {
+        sketch.add(in.getLong());
+      }
+    } else if (form == DENSE) {
+      if (sketch.dense == null) {
+        sketch.toDense();
+      }
+      for (int i = 0; i < sketch.registerCount; i++) {
+        sketch.dense.put(i, in.get());
+      }
+    } else {
+      throw new IllegalArgumentException("Unknown HyperLogLog form " + form);
+    }
+    return sketch;
+  }
+
+  private void addDense(long hash) {
+    int index = (int) (hash >>> (64 - precision));
+    long rest = hash << precision;
+    byte rank = (byte) (rest == 0 ? 64 - precision + 1 : Long.numberOfLeadingZeros(rest) + 1);
+    if (rank > dense.get(index)) {
+      dense.put(index, rank);
+    }
+  }
+
+  private void toDense() {
+    ByteBuffer hashes = sparse;
+    int slots = sparseMask + 1;
+    dense = ByteBuffer.allocateDirect(registerCount);
+    sparse = null;
+    sparseSize = 0;
+    for (int slot = 0; slot < slots; slot++) {
+      long hash = hashes.getLong(slot << 3);
+      if (hash != EMPTY) {
+        addDense(hash);
+      }
+    }
+  }
+
+  private void growSparse() {
+    ByteBuffer old = sparse;
+    int slots = sparseMask + 1;
+    allocateSparse(slots * 2);
+    for (int slot = 0; slot < slots; slot++) {
+      long hash = old.getLong(slot << 3);
+      if (hash != EMPTY) {
+        int target = slot(hash);
+        while (sparse.getLong(target << 3) != EMPTY) {
+          target = (target + 1) & sparseMask;
+        }
+        sparse.putLong(target << 3, hash);
+      }
+    }
+  }
+
+  private void allocateSparse(int slots) {
+    sparse = ByteBuffer.allocateDirect(slots * Long.BYTES);
+    sparseMask = slots - 1;
+  }
+
+  private int slot(long hash) {
+    return (int) hash & sparseMask;
+  }
+
+  private static double sigma(double x) {
+    if (x == 1) {
+      return Double.POSITIVE_INFINITY;
+    }
+    double y = 1;
+    double z = x;
+    while (true) {
+      x *= x;
+      double previous = z;
+      z += x * y;
+      y += y;
+      if (z == previous) {
+        return z;
+      }
+    }
+  }
+
+  private static double tau(double x) {
+    if (x == 0 || x == 1) {
+      return 0;
+    }
+    double y = 1;
+    double z = 1 - x;
+    while (true) {
+      x = Math.sqrt(x);
+      double previous = z;
+      y *= 0.5;
+      z -= (1 - x) * (1 - x) * y;
+      if (z == previous) {
+        return z / 3;
+      }
+    }
+  }
+}
@@ -0,0 +1,27 @@
+package model.errors;
+
+import java.time.Duration;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@Builder
+@ToString
+public class ErrorAggregationConfig {
+
+  /** Fingerprints counted per window; rarer ones share the overcount of the ones they evict. */
+  @Builder.Default private final int topN = 1_000;
+
+  /** Raw ErrorMessages kept per fingerprint and window, chosen uniformly at random. */
+  @Builder.Default private final int samplesPerFingerprint = 3;
+
+  /** Sampled content is cut to this many characters. */
+  @Builder.Default private final int maxContentChars = 4_096;
+
+  /** Only this many leading characters of an error message are normalized and fingerprinted. */
+  @Builder.Default private final int maxMessageChars = 512;
+
+  /** Length of a summary window. */
+  @Builder.Default private final Duration interval = Duration.ofMinutes(1);
+}
@@ -0,0 +1,202 @@
+package model.errors;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+import model.ingest.RecordConsumer;
+import model.utils.Hashing;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Aggregates ErrorMessage records instead of storing each one. Every ErrorRecord is fingerprinted
+ * by (type, normalized message, appName, appVersion), with the app fields read from the raw
+ * content, and counted in a Space-Saving sketch of the top fingerprints; each counted fingerprint
+ * keeps a small reservoir sample of its ErrorMessages. Once per interval the window is handed to
+ * the listener as an {@link ErrorSummary} and a new window starts, so memory and output per window
+ * stay the same however many errors arrive. Thread-safe.
+ */
+@Slf4j
+public class ErrorAggregator implements RecordConsumer, Closeable {
+
+  private static final long FINGERPRINT_SEED = 0xa54ff53a5f1d36f1L;
+
+  private final ErrorAggregationConfig config;
+  private final Schema errorMessageSchema;
+  private final int contentPos;
+  private final int errorsPos;
+  private final int typePos;
+  private final int messagePos;
+  private final LongSupplier clock;
+  private final SpaceSavingSketch<Detail> sketch;
+  private final SplittableRandom random = new SplittableRandom();
+  private ScheduledExecutorService scheduler;
+  private Consumer<ErrorSummary> listener;
+
+  private long windowStart;
+  private long messages;
+  private long errors;
+
+  public ErrorAggregator(Schema errorMessageSchema, ErrorAggregationConfig config) {
+    this(errorMessageSchema, config, System::currentTimeMillis);
+  }
+
+  public ErrorAggregator(
+      Schema errorMessageSchema, ErrorAggregationConfig config, LongSupplier clock) {
+    this.config = config;
+    this.errorMessageSchema = errorMessageSchema;
+    this.contentPos = errorMessageSchema.getField("content").pos();
+    this.errorsPos = errorMessageSchema.getField("errors").pos();
+    Schema errorRecordSchema = errorMessageSchema.getField("errors").schema().getElementType();
+    this.typePos = errorRecordSchema.getField("type").pos();
+    this.messagePos = errorRecordSchema.getField("message").pos();
+    this.clock = clock;
+    this.sketch = new SpaceSavingSketch<>(config.getTopN());
+    this.windowStart = clock.getAsLong();
+  }
+
+  /** Hands a summary of each window to the listener; {@link #close()} hands over the last one. */
+  public synchronized ErrorAggregator publishTo(Consumer<ErrorSummary> listener) {
+    this.listener = listener;
+    long millis = config.getInterval().toMillis();
+    scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "error-aggregator");
+              thread.setDaemon(true);
+              return thread;
+            });
+    scheduler.scheduleAtFixedRate(this::publish, millis, millis, TimeUnit.MILLISECONDS);
+    return this;
+  }
+
+  @Override
+  public synchronized void accept(GenericRecord errorMessage) {
+    messages++;
+    Object content = errorMessage.get(contentPos);
+    String json = content == null ? "" : content.toString();
+    String appName = ErrorNormalizer.stringField(json, "appName");
+    String appVersion = ErrorNormalizer.stringField(json, "appVersion");
+    GenericRecord sample = null;
+    for (Object item : (List<?>) errorMessage.get(errorsPos)) {
+      GenericRecord error = (GenericRecord) item;
+      errors++;
+      String type = String.valueOf(error.get(typePos));
+      String message =
+          ErrorNormalizer.normalize(
+              (CharSequence) error.get(messagePos), config.getMaxMessageChars());
+      long fingerprint = Hashing.hashUtf8(type, FINGERPRINT_SEED);
+      fingerprint = Hashing.combine(fingerprint, Hashing.hashUtf8(message, FINGERPRINT_SEED));
+      fingerprint = Hashing.combine(fingerprint, Hashing.hashUtf8(appName, FINGERPRINT_SEED));
+      fingerprint = Hashing.combine(fingerprint, Hashing.hashUtf8(appVersion, FINGERPRINT_SEED));
+
+      int index = sketch.offer(fingerprint);
+      Detail detail = sketch.value(index);
+      if (detail == null) {
+        detail = new Detail(type, message, appName, appVersion);
+        sketch.value(index, detail);
+      }
+      // Reservoir sampling (algorithm R) over the occurrences since the fingerprint was counted.
+      detail.seen++;
+      int limit = config.getSamplesPerFingerprint();
+      int slot =
+          detail.samples.size() < limit
+              ? detail.samples.size()
+              : (int) Math.min(limit, random.nextLong(detail.seen));
+      if (slot < limit) {
+        if (sample == null) {
+          sample = truncate(errorMessage, json);
+        }
+        if (slot == detail.samples.size()) {
+          detail.samples.add(sample);
+        } else {
+          detail.samples.set(slot, sample);
+        }
+      }
+    }
+  }
+
+  /** Summary of the current window, which is then reset. */
+  public synchronized ErrorSummary summarize() {
+    long now = clock.getAsLong();
+    List<ErrorFingerprint> fingerprints = new ArrayList<>(sketch.size());
+    for (int i = 0; i < sketch.size(); i++) {
+      Detail detail = sketch.value(i);
+      fingerprints.add(
+          new ErrorFingerprint(
+              sketch.key(i),
+              detail.type,
+              detail.message,
+              detail.appName,
+              detail.appVersion,
+              sketch.count(i),
+              sketch.overcount(i),
+              List.copyOf(detail.samples)));
+    }
+    fingerprints.sort((a, b) -> Long.compare(b.getCount(), a.getCount()));
+    ErrorSummary summary = new ErrorSummary(windowStart, now, messages, errors, fingerprints);
+    sketch.clear();
+    windowStart = now;
+    messages = 0;
+    errors = 0;
+    return summary;
+  }
+
+  @Override
+  public void close() {
+    Consumer<ErrorSummary> last;
+    synchronized (this) {
+      if (scheduler == null) {
+        return;
+      }
+      scheduler.shutdownNow();
+      scheduler = null;
+      last = listener;
+    }
+    last.accept(summarize());
+  }
+
+  private void publish() {
+    try {
+      ErrorSummary summary = summarize();
+      listener.accept(summary);
+    } catch (RuntimeException e) {
+      log.warn("Failed to publish error summary", e);
+    }
+  }
+
+  private GenericRecord truncate(GenericRecord errorMessage, String content) {
+    if (content.length() <= config.getMaxContentChars()) {
+      return errorMessage;
+    }
+    GenericRecord copy = new GenericData.Record(errorMessageSchema);
+    copy.put(contentPos, content.substring(0, config.getMaxContentChars()));
+    copy.put(errorsPos, errorMessage.get(errorsPos));
+    return copy;
+  }
+
+  /** What a counted fingerprint stands for, and its samples. */
+  private static final class Detail {
+    final String type;
+    final String message;
+    final String appName;
+    final String appVersion;
+    final List<GenericRecord> samples = new ArrayList<>(2);
+    long seen;
+
+    Detail(String type, String message, String appName, String appVersion) {
+      this.type = type;
+      this.message = message;
+      this.appName = appName;
+      this.appVersion = appVersion;
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package model.errors;
+
+import java.util.List;
+import lombok.Value;
+import org.apache.avro.generic.GenericRecord;
+
+/** One counted error fingerprint of a summary window. */
+@Value
+public class ErrorFingerprint {
+  long fingerprint;
+  String type;
+
+  /** Message with ids, numbers and quoted values masked. */
+  String message;
+
+  String appName;
+  String appVersion;
+
+  /** Upper bound on the occurrences in the window; at least {@code count - overcount}. */
+  long count;
+
+  long overcount;
+
+  /**
+   * Uniformly sampled ErrorMessages of the fingerprint, with content cut to the configured size.
+   */
+  List<GenericRecord> samples;
+
+  public String getFingerprintHex() {
+    return String.format("%016x", fingerprint);
+  }
+}
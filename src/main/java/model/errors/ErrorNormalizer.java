@@ -0,0 +1,103 @@
+package model.errors;
+
+/**
+ * Reduces error messages to their template, so messages that differ only in ids, numbers or quoted
+ * values share a fingerprint, and pulls single string fields out of raw event JSON without parsing
+ * the whole document.
+ */
+final class ErrorNormalizer {
+
+  private ErrorNormalizer() {}
+
+  /**
+   * Replaces every token that starts with a digit or a minus sign and a digit (numbers, versions,
+   * UUIDs, hex ids, timestamps) by {@code #} and every quoted value by {@code ?}, looking at most
+   * at {@code maxChars} characters.
+   */
+  static String normalize(CharSequence message, int maxChars) {
+    if (message == null) {
+      return "";
+    }
+    int length = Math.min(message.length(), maxChars);
+    StringBuilder normalized = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      char c = message.charAt(i);
+      boolean negative =
+          c == '-'
+              && i + 1 < length
+              && isDigit(message.charAt(i + 1))
+              && (i == 0 || !isIdChar(message.charAt(i - 1)));
+      if (isDigit(c) || negative) {
+        while (i + 1 < length && isIdChar(message.charAt(i + 1))) {
+          i++;
+        }
+        normalized.append('#');
+      } else if (c == '\'' || c == '"') {
+        int close = i + 1;
+        while (close < length && message.charAt(close) != c) {
+          close++;
+        }
+        if (close == length) {
+          normalized.append(c);
+          continue;
+        }
+        normalized.append(c).append('?').append(c);
+        i = close;
+      } else {
+        normalized.append(c);
+      }
+    }
+    return normalized.toString();
+  }
+
+  /**
+   * Value of the first {@code "name": "..."} string member in JSON text, or null. Escape sequences
+   * other than {@code \"} and {@code \\} are kept as written.
+   */
+  static String stringField(String json, String name) {
+    String key = '"' + name + '"';
+    for (int at = json.indexOf(key); at >= 0; at = json.indexOf(key, at + 1)) {
+      int i = skipSpace(json, at + key.length());
+      if (i >= json.length() || json.charAt(i) != ':') {
+        continue;
+      }
+      i = skipSpace(json, i + 1);
+      if (i >= json.length() || json.charAt(i) != '"') {
+        return null;
+      }
+      StringBuilder value = new StringBuilder();
+      for (i++; i < json.length(); i++) {
+        char c = json.charAt(i);
+        if (c == '"') {
+          return value.toString();
+        }
+        if (c == '\\' && i + 1 < json.length()) {
+          char escaped = json.charAt(++i);
+          if (escaped != '"' && escaped != '\\') {
+            value.append('\\');
+          }
+          value.append(escaped);
+        } else {
+          value.append(c);
+        }
+      }
+      return null;
+    }
+    return null;
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isIdChar(char c) {
+    return Character.isLetterOrDigit(c) || c == '-' || c == '.' || c == ':' || c == '_';
+  }
+
+  private static int skipSpace(String text, int i) {
+    while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+}
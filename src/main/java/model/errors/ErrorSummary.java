@@ -0,0 +1,97 @@
+package model.errors;
+
+import java.util.List;
+import lombok.Value;
+import org.apache.avro.generic.GenericRecord;
+
+@Value
+public class ErrorSummary {
+  long fromMillis;
+  long toMillis;
+
+  /** ErrorMessages seen in the window. */
+  long messages;
+
+  /** ErrorRecords seen in the window; an ErrorMessage may carry several. */
+  long errors;
+
+  /** Counted fingerprints, most frequent first. */
+  List<ErrorFingerprint> fingerprints;
+
+  /** Totals and the most frequent fingerprints, suitable for logging. */
+  public String toText(int limit) {
+    StringBuilder text = new StringBuilder();
+    text.append(
+        String.format(
+            "messages=%d errors=%d fingerprints=%d in %d ms%n",
+            messages, errors, fingerprints.size(), toMillis - fromMillis));
+    for (int i = 0; i < Math.min(limit, fingerprints.size()); i++) {
+      ErrorFingerprint fingerprint = fingerprints.get(i);
+      text.append(
+          String.format(
+              "  %s count=%d (+-%d) %s %s/%s: %s%n",
+              fingerprint.getFingerprintHex(),
+              fingerprint.getCount(),
+              fingerprint.getOvercount(),
+              fingerprint.getType(),
+              fingerprint.getAppName(),
+              fingerprint.getAppVersion(),
+              fingerprint.getMessage()));
+    }
+    return text.toString();
+  }
+
+  public String toJson() {
+    StringBuilder json = new StringBuilder(256 + fingerprints.size() * 256);
+    json.append("{\"fromMillis\":").append(fromMillis);
+    json.append(",\"toMillis\":").append(toMillis);
+    json.append(",\"messages\":").append(messages);
+    json.append(",\"errors\":").append(errors).append(",\"fingerprints\":[");
+    for (int i = 0; i < fingerprints.size(); i++) {
+      ErrorFingerprint fingerprint = fingerprints.get(i);
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append("{\"fingerprint\":\"").append(fingerprint.getFingerprintHex()).append('"');
+      json.append(",\"type\":");
+      appendString(json, fingerprint.getType());
+      json.append(",\"message\":");
+      appendString(json, fingerprint.getMessage());
+      json.append(",\"appName\":");
+      appendString(json, fingerprint.getAppName());
+      json.append(",\"appVersion\":");
+      appendString(json, fingerprint.getAppVersion());
+      json.append(",\"count\":").append(fingerprint.getCount());
+      json.append(",\"overcount\":").append(fingerprint.getOvercount());
+      json.append(",\"samples\":[");
+      List<GenericRecord> samples = fingerprint.getSamples();
+      for (int j = 0; j < samples.size(); j++) {
+        if (j > 0) {
+          json.append(',');
+        }
+        appendString(json, String.valueOf(samples.get(j).get("content")));
+      }
+      json.append("]}");
+    }
+    return json.append("]}").toString();
+  }
+
+  private static void appendString(StringBuilder json, String value) {
+    if (value == null) {
+      json.append("null");
+      return;
+    }
+    json.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        json.append('\\').append(c);
+      } else if (c < 0x20) {
+        json.append(String.format("\\u%04x", (int) c));
+      } else {
+        json.append(c);
+      }
+    }
+    json.append('"');
+  }
+}
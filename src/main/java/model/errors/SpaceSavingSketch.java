@@ -0,0 +1,175 @@
+package model.errors;
+
+import java.util.Arrays;
+
+/**
+ * Space-Saving top-k counters over 64-bit keys. The counters form a min-heap by count, so an unseen
+ * key takes over the smallest counter in O(log k) and inherits its count as overcount; a key's true
+ * count lies in {@code [count - overcount, count]}, and every key occurring more than total/k times
+ * is guaranteed to be present. Each counter carries an attached value that is reset to null when
+ * the counter changes hands. Not thread-safe.
+ */
+final class SpaceSavingSketch<T> {
+
+  private static final long EMPTY = 0L;
+
+  /** Stand-in for the key 0, which marks empty slots. */
+  private static final long ZERO_KEY = 0x9e3779b97f4a7c15L;
+
+  private final long[] keys;
+  private final long[] counts;
+  private final long[] overcounts;
+  private final Object[] values;
+  private final long[] slotKeys;
+  private final int[] slotIndexes;
+  private final int mask;
+  private int size;
+
+  SpaceSavingSketch(int capacity) {
+    this.keys = new long[capacity];
+    this.counts = new long[capacity];
+    this.overcounts = new long[capacity];
+    this.values = new Object[capacity];
+    int slots = Integer.highestOneBit(Math.max(1, capacity - 1)) << 2;
+    this.slotKeys = new long[slots];
+    this.slotIndexes = new int[slots];
+    this.mask = slots - 1;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Counts one occurrence of the key and returns the index of its counter, valid until the next
+   * call. The counter's value is null if the key was not being counted.
+   */
+  int offer(long key) {
+    key = key == EMPTY ? ZERO_KEY : key;
+    int slot = slot(key);
+    int index;
+    if (slotKeys[slot] == key) {
+      index = slotIndexes[slot];
+    } else if (size < keys.length) {
+      index = size++;
+      keys[index] = key;
+      counts[index] = 0;
+      overcounts[index] = 0;
+      values[index] = null;
+      siftUp(index);
+      index = indexOf(key);
+    } else {
+      index = 0;
+      remove(keys[0]);
+      keys[0] = key;
+      overcounts[0] = counts[0];
+      values[0] = null;
+      slot = slot(key);
+      slotKeys[slot] = key;
+      slotIndexes[slot] = 0;
+    }
+    counts[index]++;
+    return siftDown(index);
+  }
+
+  long count(int index) {
+    return counts[index];
+  }
+
+  long overcount(int index) {
+    return overcounts[index];
+  }
+
+  long key(int index) {
+    return keys[index];
+  }
+
+  @SuppressWarnings("unchecked")
+  T value(int index) {
+    return (T) values[index];
+  }
+
+  void value(int index, T value) {
+    values[index] = value;
+  }
+
+  void clear() {
+    Arrays.fill(slotKeys, EMPTY);
+    Arrays.fill(values, 0, size, null);
+    size = 0;
+  }
+
+  /** Slot holding the key, or the empty slot where it would go. */
+  private int slot(long key) {
+    int slot = (int) key & mask;
+    while (slotKeys[slot] != key && slotKeys[slot] != EMPTY) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private int indexOf(long key) {
+    return slotIndexes[slot(key)];
+  }
+
+  private void remove(long key) {
+    int hole = slot(key);
+    for (int slot = (hole + 1) & mask; slotKeys[slot] != EMPTY; slot = (slot + 1) & mask) {
+      int home = (int) slotKeys[slot] & mask;
+      if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+        slotKeys[hole] = slotKeys[slot];
+        slotIndexes[hole] = slotIndexes[slot];
+        hole = slot;
+      }
+    }
+    slotKeys[hole] = EMPTY;
+  }
+
+  private void siftUp(int index) {
+    int slot = slot(keys[index]);
+    slotKeys[slot] = keys[index];
+    slotIndexes[slot] = index;
+    while (index > 0) {
+      int parent = (index - 1) >>> 1;
+      if (counts[parent] <= counts[index]) {
+        break;
+      }
+      swap(index, parent);
+      index = parent;
+    }
+  }
+
+  private int siftDown(int index) {
+    while (true) {
+      int child = 2 * index + 1;
+      if (child >= size) {
+        return index;
+      }
+      if (child + 1 < size && counts[child + 1] < counts[child]) {
+        child++;
+      }
+      if (counts[index] <= counts[child]) {
+        return index;
+      }
+      swap(index, child);
+      index = child;
+    }
+  }
+
+  private void swap(int a, int b) {
+    long key = keys[a];
+    keys[a] = keys[b];
+    keys[b] = key;
+    long count = counts[a];
+    counts[a] = counts[b];
+    counts[b] = count;
+    long overcount = overcounts[a];
+    overcounts[a] = overcounts[b];
+    overcounts[b] = overcount;
+    Object value = values[a];
+    values[a] = values[b];
+    values[b] = value;
+    slotIndexes[slot(keys[a])] = a;
+    slotIndexes[slot(keys[b])] = b;
+  }
+}
@@ -0,0 +1,35 @@
+package model.eventkey;
+
+import lombok.Value;
+
+/** 128-bit key of an event, derived by {@link EventKeyDeriver}. */
+@Value
+public class EventKey {
+  long high;
+  long low;
+
+  /** 64 bits of the key, e.g. for a dedup index. */
+  public long shortKey() {
+    return high;
+  }
+
+  /** Bucket in {@code [0, buckets)}, uniform over keys, for partitioning writes. */
+  public int bucket(int buckets) {
+    return (int) (((high >>> 32) * buckets) >>> 32);
+  }
+
+  /** 32 lowercase hex digits, usable in object names. */
+  public String toHex() {
+    char[] hex = new char[32];
+    for (int i = 0; i < 16; i++) {
+      hex[15 - i] = Character.forDigit((int) (high >>> (i * 4)) & 0xf, 16);
+      hex[31 - i] = Character.forDigit((int) (low >>> (i * 4)) & 0xf, 16);
+    }
+    return new String(hex);
+  }
+
+  @Override
+  public String toString() {
+    return toHex();
+  }
+}
@@ -0,0 +1,22 @@
+package model.eventkey;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@Builder
+@ToString
+public class EventKeyConfig {
+
+  /**
+   * Canonical fields, hashed in this order and looked up by name in each writer schema. Changing
+   * the list, its order or the seed changes every key.
+   */
+  @Builder.Default
+  private final List<String> fields =
+      List.of("clientId", "sessionId", "hitId", "eventName", "eventOccurredTimestampUtc");
+
+  @Builder.Default private final long seed = 0;
+}
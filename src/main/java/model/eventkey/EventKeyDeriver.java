@@ -0,0 +1,340 @@
+package model.eventkey;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.extern.slf4j.Slf4j;
+import model.codec.AvroRecordCodec;
+import model.codec.BinarySkipPlan;
+import model.metrics.EventMetrics;
+import model.utils.Murmur3;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.util.Utf8;
+
+/**
+ * Derives a 128-bit {@link EventKey} (Murmur3 x64) from a canonical subset of an event's fields,
+ * for idempotent writes and dedup when eventTransactionId is missing. Binary-encoded events are
+ * keyed without decoding: the canonical fields are found with a {@link BinarySkipPlan} and their
+ * bytes hashed as they are.
+ *
+ * <p>Fields are looked up by name in each writer schema and hashed in a canonical form without
+ * schema positions or union branch indexes: null, an integer (int and long alike), a floating point
+ * number (float and double alike) or a byte string (strings, bytes and enum symbol names). Keys
+ * therefore stay the same across schema versions that add or reorder fields, make a field nullable
+ * or widen an int to a long; a canonical field the writer schema lacks hashes as null. Not
+ * thread-safe; use one deriver per thread.
+ */
+@Slf4j
+public class EventKeyDeriver {
+
+  private static final byte NULL = 0;
+  private static final byte INTEGER = 1;
+  private static final byte FLOATING = 2;
+  private static final byte BYTES = 3;
+
+  private final EventKeyConfig config;
+  private final Map<Schema, Plan> plans = new HashMap<>();
+  private final long[] hash = new long[2];
+  private final int[] offsets;
+  private byte[] canonical = new byte[256];
+  private int length;
+
+  private Schema lastSchema;
+  private Plan lastPlan;
+
+  public EventKeyDeriver(EventKeyConfig config) {
+    this.config = config;
+    this.offsets = new int[config.getFields().size()];
+  }
+
+  /** Key of a decoded event. */
+  public EventKey derive(GenericRecord event) {
+    Plan plan = plan(event.getSchema());
+    length = 0;
+    for (int i = 0; i < plan.positions.length; i++) {
+      int pos = plan.positions[i];
+      Object value = pos < 0 ? null : event.get(pos);
+      if (value == null) {
+        ensure(1);
+        canonical[length++] = NULL;
+      } else if (value instanceof Number) {
+        if (value instanceof Float || value instanceof Double) {
+          writeFloating(((Number) value).doubleValue());
+        } else {
+          writeInteger(((Number) value).longValue());
+        }
+      } else if (value instanceof Boolean) {
+        writeInteger((Boolean) value ? 1 : 0);
+      } else if (value instanceof Utf8) {
+        Utf8 utf8 = (Utf8) value;
+        writeBytes(utf8.getBytes(), 0, utf8.getByteLength());
+      } else if (value instanceof ByteBuffer) {
+        ByteBuffer buffer = ((ByteBuffer) value).duplicate();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        writeBytes(bytes, 0, bytes.length);
+      } else {
+        // Strings and enum symbols.
+        byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+        writeBytes(bytes, 0, bytes.length);
+      }
+    }
+    return hash();
+  }
+
+  public EventKey derive(Schema writerSchema, byte[] record) {
+    return derive(writerSchema, record, 0);
+  }
+
+  /** Key of the event encoded at {@code offset} with {@code writerSchema}, without decoding it. */
+  public EventKey derive(Schema writerSchema, byte[] record, int offset) {
+    Plan plan = plan(writerSchema);
+    int pos = offset;
+    int field = 0;
+    for (int i = 0; i < plan.scanOrder.length; i++) {
+      int canonicalIndex = plan.scanOrder[i];
+      int target = plan.positions[canonicalIndex];
+      pos = plan.skipPlan.skip(record, pos, field, target);
+      field = target;
+      offsets[canonicalIndex] = pos;
+    }
+
+    length = 0;
+    for (int i = 0; i < plan.positions.length; i++) {
+      if (plan.positions[i] < 0) {
+        ensure(1);
+        canonical[length++] = NULL;
+        continue;
+      }
+      pos = offsets[i];
+      if (plan.nullBranches[i] >= 0) {
+        long branch = BinarySkipPlan.readLong(record, pos);
+        pos = BinarySkipPlan.skipVarint(record, pos);
+        if (branch == plan.nullBranches[i]) {
+          ensure(1);
+          canonical[length++] = NULL;
+          continue;
+        }
+      }
+      switch (plan.types[i]) {
+        case INT:
+        case LONG:
+          writeInteger(BinarySkipPlan.readLong(record, pos));
+          break;
+        case BOOLEAN:
+          writeInteger(record[pos]);
+          break;
+        case FLOAT:
+          writeFloating(Float.intBitsToFloat((int) readLittleEndian(record, pos, 4)));
+          break;
+        case DOUBLE:
+          writeFloating(Double.longBitsToDouble(readLittleEndian(record, pos, 8)));
+          break;
+        case ENUM:
+          byte[] symbol = plan.symbols[i][(int) BinarySkipPlan.readLong(record, pos)];
+          writeBytes(symbol, 0, symbol.length);
+          break;
+        default:
+          int size = (int) BinarySkipPlan.readLong(record, pos);
+          writeBytes(record, BinarySkipPlan.skipVarint(record, pos), size);
+          break;
+      }
+    }
+    return hash();
+  }
+
+  private EventKey hash() {
+    Murmur3.hash128(canonical, 0, length, config.getSeed(), hash);
+    return new EventKey(hash[0], hash[1]);
+  }
+
+  private Plan plan(Schema schema) {
+    if (schema != lastSchema) {
+      lastPlan = plans.computeIfAbsent(schema, writer -> new Plan(writer, config.getFields()));
+      lastSchema = schema;
+    }
+    return lastPlan;
+  }
+
+  private void writeInteger(long value) {
+    ensure(9);
+    canonical[length++] = INTEGER;
+    writeLittleEndian(value);
+  }
+
+  private void writeFloating(double value) {
+    ensure(9);
+    canonical[length++] = FLOATING;
+    writeLittleEndian(Double.doubleToLongBits(value));
+  }
+
+  private void writeBytes(byte[] bytes, int offset, int size) {
+    ensure(5 + size);
+    canonical[length++] = BYTES;
+    for (int shift = 0; shift < 32; shift += 8) {
+      canonical[length++] = (byte) (size >>> shift);
+    }
+    System.arraycopy(bytes, offset, canonical, length, size);
+    length += size;
+  }
+
+  private void writeLittleEndian(long value) {
+    for (int shift = 0; shift < 64; shift += 8) {
+      canonical[length++] = (byte) (value >>> shift);
+    }
+  }
+
+  private void ensure(int bytes) {
+    if (length + bytes > canonical.length) {
+      byte[] grown = new byte[Math.max(length + bytes, canonical.length * 2)];
+      System.arraycopy(canonical, 0, grown, 0, length);
+      canonical = grown;
+    }
+  }
+
+  private static long readLittleEndian(byte[] bytes, int pos, int count) {
+    long value = 0;
+    for (int i = count - 1; i >= 0; i--) {
+      value = (value << 8) | (bytes[pos + i] & 0xff);
+    }
+    return value;
+  }
+
+  /** Where a writer schema keeps the canonical fields. Immutable. */
+  private static final class Plan {
+    final BinarySkipPlan skipPlan;
+
+    /** Per canonical field: its position in the writer schema, or -1 if it has none. */
+    final int[] positions;
+
+    /** Per canonical field: its null branch index, or -1 if it is not a nullable union. */
+    final int[] nullBranches;
+
+    final Schema.Type[] types;
+
+    /** Per canonical enum field: the UTF-8 names of its symbols. */
+    final byte[][][] symbols;
+
+    /** Canonical field indexes of the fields present, in writer schema order. */
+    final int[] scanOrder;
+
+    Plan(Schema writer, List<String> fields) {
+      this.skipPlan = new BinarySkipPlan(writer);
+      this.positions = new int[fields.size()];
+      this.nullBranches = new int[fields.size()];
+      this.types = new Schema.Type[fields.size()];
+      this.symbols = new byte[fields.size()][][];
+      List<Integer> present = new ArrayList<>();
+      for (int i = 0; i < fields.size(); i++) {
+        Schema.Field field = writer.getField(fields.get(i));
+        positions[i] = field == null ? -1 : field.pos();
+        nullBranches[i] = -1;
+        if (field == null) {
+          log.warn("Schema {} has no key field {}", writer.getFullName(), fields.get(i));
+          continue;
+        }
+        present.add(i);
+        Schema schema = field.schema();
+        if (schema.getType() == Schema.Type.UNION) {
+          List<Schema> branches = schema.getTypes();
+          int nullBranch = branches.get(0).getType() == Schema.Type.NULL ? 0 : 1;
+          if (branches.size() != 2 || branches.get(nullBranch).getType() != Schema.Type.NULL) {
+            throw new IllegalArgumentException(
+                "Key field " + field.name() + " must be a primitive, enum or nullable one");
+          }
+          nullBranches[i] = nullBranch;
+          schema = branches.get(1 - nullBranch);
+        }
+        types[i] = schema.getType();
+        switch (types[i]) {
+          case ENUM:
+            List<String> names = schema.getEnumSymbols();
+            symbols[i] = new byte[names.size()][];
+            for (int s = 0; s < names.size(); s++) {
+              symbols[i][s] = names.get(s).getBytes(StandardCharsets.UTF_8);
+            }
+            break;
+          case INT:
+          case LONG:
+          case BOOLEAN:
+          case FLOAT:
+          case DOUBLE:
+          case STRING:
+          case BYTES:
+            break;
+          default:
+            throw new IllegalArgumentException(
+                "Key field " + field.name() + " has unsupported type " + types[i]);
+        }
+      }
+      this.scanOrder =
+          present.stream().sorted((a, b) -> positions[a] - positions[b]).mapToInt(i -> i).toArray();
+    }
+  }
+
+  /**
+   * Derives keys for the events of a file from their binary encoding and their decoded form, checks
+   * both agree and reports speed and distinct keys: {@code EventKeyDeriver <events.avro>}.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length != 1) {
+      System.err.println("Usage: EventKeyDeriver <events.avro>");
+      System.exit(1);
+    }
+    List<GenericRecord> events = new ArrayList<>();
+    Schema schema;
+    try (DataFileReader<GenericRecord> reader =
+        new DataFileReader<>(new File(args[0]), new GenericDatumReader<>())) {
+      schema = reader.getSchema();
+      while (reader.hasNext()) {
+        events.add(reader.next());
+      }
+    }
+    AvroRecordCodec codec = AvroRecordCodec.forEvents(schema, new EventMetrics());
+    List<byte[]> encoded = new ArrayList<>(events.size());
+    for (GenericRecord event : events) {
+      encoded.add(codec.encode(event));
+    }
+
+    EventKeyDeriver deriver = new EventKeyDeriver(EventKeyConfig.builder().build());
+    Set<EventKey> keys = new HashSet<>();
+    int mismatches = 0;
+    for (int i = 0; i < events.size(); i++) {
+      EventKey key = deriver.derive(schema, encoded.get(i));
+      keys.add(key);
+      if (!key.equals(deriver.derive(events.get(i)))) {
+        mismatches++;
+      }
+    }
+    System.out.printf(
+        "%d events, %d distinct keys, %d binary/decoded mismatches, e.g. %s%n",
+        events.size(), keys.size(), mismatches, deriver.derive(events.get(0)));
+
+    for (int round = 0; round < 5; round++) {
+      long sum = 0;
+      long started = System.nanoTime();
+      for (byte[] event : encoded) {
+        sum += deriver.derive(schema, event).getLow();
+      }
+      long binary = System.nanoTime() - started;
+      started = System.nanoTime();
+      for (GenericRecord event : events) {
+        sum += deriver.derive(event).getLow();
+      }
+      long decoded = System.nanoTime() - started;
+      System.out.printf(
+          "binary %.0f ns/event, decoded %.0f ns/event (%d)%n",
+          (double) binary / events.size(), (double) decoded / events.size(), sum & 1);
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package model.evolution;
+
+import lombok.Value;
+
+/** Measured cost of encoding and decoding a sample with one schema. */
+@Value
+public class CodecCost {
+  int records;
+  double bytesPerRecord;
+  double encodeNanosPerRecord;
+  double decodeNanosPerRecord;
+
+  public String toText() {
+    return String.format(
+        "%.1f B/record, encode %.0f ns, decode %.0f ns",
+        bytesPerRecord, encodeNanosPerRecord, decodeNanosPerRecord);
+  }
+}
@@ -0,0 +1,117 @@
+package model.evolution;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+
+/**
+ * Compares the binary codec cost of two schemas on the same sample. Both schemas are timed in
+ * interleaved rounds, keeping each one's fastest round, so machine noise affects both alike.
+ */
+public class CodecCostEstimator {
+
+  /** Untimed rounds first, so both schemas are measured with compiled code. */
+  private static final int WARMUP_ROUNDS = 2;
+
+  private final int rounds;
+
+  public CodecCostEstimator(int rounds) {
+    this.rounds = rounds;
+  }
+
+  /** Returns the costs of {@code before} and {@code after}, in that order. */
+  public CodecCost[] compare(
+      Schema before,
+      List<GenericRecord> beforeSample,
+      Schema after,
+      List<GenericRecord> afterSample)
+      throws IOException {
+    Measurement first = new Measurement(before, beforeSample);
+    Measurement second = new Measurement(after, afterSample);
+    for (int round = 0; round < WARMUP_ROUNDS + rounds; round++) {
+      if (round == WARMUP_ROUNDS) {
+        first.resetTimings();
+        second.resetTimings();
+      }
+      // Alternate the order so drift during the run (JIT, GC, frequency) hits both alike.
+      if ((round & 1) == 0) {
+        first.round();
+        second.round();
+      } else {
+        second.round();
+        first.round();
+      }
+    }
+    return new CodecCost[] {first.cost(), second.cost()};
+  }
+
+  private static final class Measurement {
+    private final List<GenericRecord> sample;
+    private final GenericDatumWriter<GenericRecord> writer;
+    private final GenericDatumReader<GenericRecord> reader;
+    private final List<byte[]> encoded = new ArrayList<>();
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    private BinaryEncoder encoder;
+    private BinaryDecoder decoder;
+    private long totalBytes;
+    private long bestEncodeNanos = Long.MAX_VALUE;
+    private long bestDecodeNanos = Long.MAX_VALUE;
+
+    Measurement(Schema schema, List<GenericRecord> sample) throws IOException {
+      this.sample = sample;
+      this.writer = new GenericDatumWriter<>(schema);
+      this.reader = new GenericDatumReader<>(schema);
+      for (GenericRecord record : sample) {
+        byte[] bytes = encode(record);
+        encoded.add(bytes);
+        totalBytes += bytes.length;
+      }
+    }
+
+    void round() throws IOException {
+      long start = System.nanoTime();
+      for (GenericRecord record : sample) {
+        encode(record);
+      }
+      bestEncodeNanos = Math.min(bestEncodeNanos, System.nanoTime() - start);
+      GenericRecord reuse = null;
+      start = System.nanoTime();
+      for (byte[] bytes : encoded) {
+        decoder = DecoderFactory.get().binaryDecoder(bytes, decoder);
+        reuse = reader.read(reuse, decoder);
+      }
+      bestDecodeNanos = Math.min(bestDecodeNanos, System.nanoTime() - start);
+    }
+
+    void resetTimings() {
+      bestEncodeNanos = Long.MAX_VALUE;
+      bestDecodeNanos = Long.MAX_VALUE;
+    }
+
+    CodecCost cost() {
+      int n = Math.max(1, sample.size());
+      return new CodecCost(
+          sample.size(),
+          (double) totalBytes / n,
+          (double) bestEncodeNanos / n,
+          (double) bestDecodeNanos / n);
+    }
+
+    private byte[] encode(GenericRecord record) throws IOException {
+      out.reset();
+      encoder = EncoderFactory.get().binaryEncoder(out, encoder);
+      writer.write(record, encoder);
+      encoder.flush();
+      return out.toByteArray();
+    }
+  }
+}
@@ -0,0 +1,21 @@
+package model.evolution;
+
+import lombok.Value;
+
+@Value
+public class FieldChange {
+
+  public enum Kind {
+    ADDED,
+    REMOVED,
+    CHANGED
+  }
+
+  Kind kind;
+  String field;
+  String detail;
+
+  public String toText() {
+    return String.format("%-8s %s%s", kind, field, detail.isEmpty() ? "" : ": " + detail);
+  }
+}
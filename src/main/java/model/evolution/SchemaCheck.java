@@ -0,0 +1,181 @@
+package model.evolution;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import model.loadtest.EventGenerator;
+import model.loadtest.EventGeneratorConfig;
+import model.utils.AvroEventSchemaBuilder;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaCompatibility;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+
+/**
+ * Checks the EventDataPayload schema built by {@link AvroEventSchemaBuilder} against the last
+ * released one: lists field changes, checks backward and forward compatibility, and measures the
+ * encoded size and encode/decode time of a sample under both schemas. Fails when compatibility
+ * breaks or the encoded size grows beyond the configured threshold; slower encoding or decoding is
+ * only reported as a warning, since timings on shared build machines are noisy. The build runs it
+ * in the test phase against {@code src/main/resources/schemas/event-data-payload.avsc}, which is
+ * regenerated with {@link AvroEventSchemaBuilder#main} on release.
+ */
+@Slf4j
+public class SchemaCheck {
+
+  private final SchemaCheckConfig config;
+
+  public SchemaCheck(SchemaCheckConfig config) {
+    this.config = config;
+  }
+
+  /**
+   * @param sample events to measure, written with {@code sampleSchema}; resolved into both schemas
+   *     before measuring
+   */
+  public SchemaCheckResult check(
+      Schema baseline, Schema current, List<GenericRecord> sample, Schema sampleSchema)
+      throws IOException {
+    List<FieldChange> changes = SchemaDiff.diff(baseline, current);
+    boolean backward = compatible(current, baseline);
+    boolean forward = compatible(baseline, current);
+    List<String> failures = new ArrayList<>();
+    if (!backward) {
+      failures.add("data written with the released schema cannot be read with the new one");
+    }
+    if (!forward && config.isRequireForwardCompatible()) {
+      failures.add("readers on the released schema cannot read data written with the new one");
+    }
+    if (changes.isEmpty() || !backward) {
+      return new SchemaCheckResult(changes, backward, forward, null, null, failures, List.of());
+    }
+
+    CodecCost[] costs =
+        new CodecCostEstimator(config.getRounds())
+            .compare(
+                baseline,
+                resolve(sample, sampleSchema, baseline),
+                current,
+                resolve(sample, sampleSchema, current));
+    CodecCost before = costs[0];
+    CodecCost after = costs[1];
+    checkIncrease(
+        failures,
+        "bytes per record",
+        before.getBytesPerRecord(),
+        after.getBytesPerRecord(),
+        config.getMaxSizeIncrease());
+    List<String> warnings = new ArrayList<>();
+    checkIncrease(
+        warnings,
+        "encode time",
+        before.getEncodeNanosPerRecord(),
+        after.getEncodeNanosPerRecord(),
+        config.getMaxTimeIncrease());
+    checkIncrease(
+        warnings,
+        "decode time",
+        before.getDecodeNanosPerRecord(),
+        after.getDecodeNanosPerRecord(),
+        config.getMaxTimeIncrease());
+    return new SchemaCheckResult(changes, backward, forward, before, after, failures, warnings);
+  }
+
+  /** Synthetic production-like events for the given schema, deterministic across runs. */
+  public List<GenericRecord> generateSample(Schema schema) {
+    EventGenerator generator =
+        new EventGenerator(
+            EventGeneratorConfig.production().build(), schema, () -> 1_700_000_000_000L);
+    List<GenericRecord> sample = new ArrayList<>(config.getGeneratedSampleSize());
+    for (int i = 0; i < config.getGeneratedSampleSize(); i++) {
+      sample.add(generator.next());
+    }
+    return sample;
+  }
+
+  private static boolean compatible(Schema reader, Schema writer) {
+    return SchemaCompatibility.checkReaderWriterCompatibility(reader, writer).getType()
+        == SchemaCompatibility.SchemaCompatibilityType.COMPATIBLE;
+  }
+
+  private static void checkIncrease(
+      List<String> findings, String metric, double before, double after, double maxIncrease) {
+    if (before > 0 && after > before * (1 + maxIncrease)) {
+      findings.add(
+          String.format(
+              "%s grew %.1f%% (%.1f -> %.1f), more than the allowed %.1f%%",
+              metric, (after / before - 1) * 100, before, after, maxIncrease * 100));
+    }
+  }
+
+  private static List<GenericRecord> resolve(
+      List<GenericRecord> records, Schema writer, Schema reader) throws IOException {
+    GenericDatumWriter<GenericRecord> datumWriter = new GenericDatumWriter<>(writer);
+    GenericDatumReader<GenericRecord> datumReader = new GenericDatumReader<>(writer, reader);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryEncoder encoder = null;
+    BinaryDecoder decoder = null;
+    List<GenericRecord> resolved = new ArrayList<>(records.size());
+    for (GenericRecord record : records) {
+      out.reset();
+      encoder = EncoderFactory.get().binaryEncoder(out, encoder);
+      datumWriter.write(record, encoder);
+      encoder.flush();
+      decoder = DecoderFactory.get().binaryDecoder(out.toByteArray(), decoder);
+      resolved.add(datumReader.read(null, decoder));
+    }
+    return resolved;
+  }
+
+  /**
+   * {@code SchemaCheck <released.avsc> [sample.avro]}. Without a stored sample, production-like
+   * synthetic events are generated for the new schema. Throws when the check fails, so the build
+   * step running it fails too.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: SchemaCheck <released.avsc> [sample.avro]");
+      System.exit(1);
+    }
+    Schema baseline = new Schema.Parser().parse(new File(args[0]));
+    Schema current = AvroEventSchemaBuilder.buildSchema();
+    SchemaCheck check = new SchemaCheck(SchemaCheckConfig.builder().build());
+    List<GenericRecord> sample;
+    Schema sampleSchema;
+    if (args.length > 1 && args[1] != null && !args[1].isEmpty()) {
+      sample = new ArrayList<>();
+      try (DataFileReader<GenericRecord> reader =
+          new DataFileReader<>(new File(args[1]), new GenericDatumReader<>())) {
+        sampleSchema = reader.getSchema();
+        for (GenericRecord record : reader) {
+          sample.add(record);
+        }
+      }
+    } else if (SchemaDiff.diff(baseline, current).isEmpty()) {
+      // Nothing changed, so nothing will be measured.
+      sample = List.of();
+      sampleSchema = current;
+    } else {
+      sample = check.generateSample(current);
+      sampleSchema = current;
+    }
+    SchemaCheckResult result = check.check(baseline, current, sample, sampleSchema);
+    if (result.getWarnings().isEmpty()) {
+      log.info("EventDataPayload schema check against {}:\n{}", args[0], result.toText());
+    } else {
+      log.warn("EventDataPayload schema check against {}:\n{}", args[0], result.toText());
+    }
+    if (!result.isPassed()) {
+      throw new IllegalStateException("EventDataPayload schema check failed:\n" + result.toText());
+    }
+  }
+}
@@ -0,0 +1,28 @@
+package model.evolution;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@Builder
+@ToString
+public class SchemaCheckConfig {
+
+  /** Largest allowed relative growth of the encoded size per record, e.g. 0.05 for 5%. */
+  @Builder.Default private final double maxSizeIncrease = 0.05;
+
+  /**
+   * Relative growth of encode or decode time per record above which the check warns. Timings on
+   * shared build machines are too noisy to fail on, so only size and compatibility fail the check.
+   */
+  @Builder.Default private final double maxTimeIncrease = 0.25;
+
+  /** Old readers must be able to read data written with the new schema. */
+  @Builder.Default private final boolean requireForwardCompatible = true;
+
+  /** Synthetic events generated when no stored sample is given. */
+  @Builder.Default private final int generatedSampleSize = 20_000;
+
+  @Builder.Default private final int rounds = 7;
+}
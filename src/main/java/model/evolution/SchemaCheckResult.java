@@ -0,0 +1,45 @@
+package model.evolution;
+
+import java.util.List;
+import lombok.Value;
+
+@Value
+public class SchemaCheckResult {
+  List<FieldChange> changes;
+  boolean backwardCompatible;
+  boolean forwardCompatible;
+
+  /** Null when the schemas did not differ and nothing was measured. */
+  CodecCost baselineCost;
+
+  CodecCost currentCost;
+  List<String> failures;
+
+  /** Regressions reported but not failing the check, such as slower encoding. */
+  List<String> warnings;
+
+  public boolean isPassed() {
+    return failures.isEmpty();
+  }
+
+  public String toText() {
+    StringBuilder text = new StringBuilder();
+    text.append(changes.size()).append(" field changes\n");
+    for (FieldChange change : changes) {
+      text.append("  ").append(change.toText()).append('\n');
+    }
+    text.append("backward compatible: ").append(backwardCompatible).append('\n');
+    text.append("forward compatible: ").append(forwardCompatible).append('\n');
+    if (baselineCost != null) {
+      text.append("baseline: ").append(baselineCost.toText()).append('\n');
+      text.append("current:  ").append(currentCost.toText()).append('\n');
+    }
+    for (String warning : warnings) {
+      text.append("WARNING: ").append(warning).append('\n');
+    }
+    for (String failure : failures) {
+      text.append("FAILED: ").append(failure).append('\n');
+    }
+    return text.toString();
+  }
+}
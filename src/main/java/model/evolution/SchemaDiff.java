@@ -0,0 +1,93 @@
+package model.evolution;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import org.apache.avro.JsonProperties;
+import org.apache.avro.Schema;
+
+/**
+ * Field-level differences between two versions of a record schema. Docs and field positions are
+ * ignored; Avro resolves fields by name.
+ */
+public final class SchemaDiff {
+
+  private static final int MAX_DETAIL_LENGTH = 160;
+
+  private SchemaDiff() {}
+
+  public static List<FieldChange> diff(Schema before, Schema after) {
+    List<FieldChange> changes = new ArrayList<>();
+    for (Schema.Field field : after.getFields()) {
+      Schema.Field previous = before.getField(field.name());
+      if (previous == null) {
+        changes.add(new FieldChange(FieldChange.Kind.ADDED, field.name(), describe(field)));
+      } else if (!sameField(previous, field)) {
+        changes.add(
+            new FieldChange(
+                FieldChange.Kind.CHANGED, field.name(), describeChange(previous, field)));
+      }
+    }
+    for (Schema.Field field : before.getFields()) {
+      if (after.getField(field.name()) == null) {
+        changes.add(new FieldChange(FieldChange.Kind.REMOVED, field.name(), ""));
+      }
+    }
+    return changes;
+  }
+
+  private static boolean sameField(Schema.Field before, Schema.Field after) {
+    return before.schema().equals(after.schema())
+        && Objects.equals(before.defaultVal(), after.defaultVal())
+        && before.getObjectProps().equals(after.getObjectProps());
+  }
+
+  private static String describeChange(Schema.Field before, Schema.Field after) {
+    List<String> parts = new ArrayList<>();
+    if (!before.schema().equals(after.schema())) {
+      Schema oldType = before.schema();
+      Schema newType = after.schema();
+      if (oldType.getType() == Schema.Type.ENUM && newType.getType() == Schema.Type.ENUM) {
+        parts.add(symbolChange(oldType.getEnumSymbols(), newType.getEnumSymbols()));
+      } else {
+        parts.add(truncate(oldType.toString()) + " -> " + truncate(newType.toString()));
+      }
+    }
+    if (!Objects.equals(before.defaultVal(), after.defaultVal())) {
+      parts.add(
+          "default "
+              + (before.hasDefaultValue() ? defaultText(before) : "none")
+              + " -> "
+              + (after.hasDefaultValue() ? defaultText(after) : "none"));
+    }
+    if (!before.getObjectProps().equals(after.getObjectProps())) {
+      parts.add("properties changed");
+    }
+    return String.join("; ", parts);
+  }
+
+  private static String describe(Schema.Field field) {
+    return truncate(field.schema().toString())
+        + (field.hasDefaultValue() ? " default " + defaultText(field) : " no default");
+  }
+
+  private static String defaultText(Schema.Field field) {
+    return field.defaultVal() == JsonProperties.NULL_VALUE ? "null" : field.defaultVal().toString();
+  }
+
+  private static String symbolChange(List<String> before, List<String> after) {
+    Set<String> added = new LinkedHashSet<>(after);
+    added.removeAll(before);
+    Set<String> removed = new LinkedHashSet<>(before);
+    removed.removeAll(after);
+    return "enum symbols +" + added + " -" + removed;
+  }
+
+  private static String truncate(String text) {
+    return text.length() <= MAX_DETAIL_LENGTH
+        ? text
+        : text.substring(0, MAX_DETAIL_LENGTH - 3) + "...";
+  }
+}
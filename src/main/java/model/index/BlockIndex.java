@@ -0,0 +1,14 @@
+package model.index;
+
+import lombok.Value;
+
+/** Range of records in a container file starting at a sync position usable with seek(). */
+@Value
+public class BlockIndex {
+  long position;
+  long records;
+  long minTimestamp;
+  long maxTimestamp;
+  int minHitId;
+  int maxHitId;
+}
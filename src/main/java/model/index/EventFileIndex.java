@@ -0,0 +1,166 @@
+package model.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Value;
+import model.utils.BlockedBloomFilter;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Sidecar index of one event container file: timestamp and hitId ranges for the file and each
+ * block, and Bloom filters over the {@link IndexedField}s. Stored as a one-record Avro container
+ * next to the data file, under the data file name plus {@link #SUFFIX}.
+ */
+@Value
+public class EventFileIndex {
+
+  public static final String SUFFIX = ".index.avro";
+
+  static final Schema BLOCK_SCHEMA =
+      SchemaBuilder.record("EventBlockIndex")
+          .namespace("tv.pluto.nile.avro.index")
+          .fields()
+          .requiredLong("position")
+          .requiredLong("records")
+          .requiredLong("minTimestamp")
+          .requiredLong("maxTimestamp")
+          .requiredInt("minHitId")
+          .requiredInt("maxHitId")
+          .endRecord();
+
+  static final Schema BLOOM_SCHEMA =
+      SchemaBuilder.record("BloomFilter")
+          .namespace("tv.pluto.nile.avro.index")
+          .fields()
+          .requiredInt("hashes")
+          .requiredBytes("bits")
+          .endRecord();
+
+  public static final Schema SCHEMA =
+      SchemaBuilder.record("EventFileIndex")
+          .namespace("tv.pluto.nile.avro.index")
+          .doc("Sidecar index of an EventDataPayload container file.")
+          .fields()
+          .requiredLong("records")
+          .requiredLong("minTimestamp")
+          .requiredLong("maxTimestamp")
+          .requiredInt("minHitId")
+          .requiredInt("maxHitId")
+          .name("blocks")
+          .type()
+          .array()
+          .items(BLOCK_SCHEMA)
+          .noDefault()
+          .name("blooms")
+          .doc("Bloom filter per indexed field name.")
+          .type()
+          .map()
+          .values(BLOOM_SCHEMA)
+          .noDefault()
+          .endRecord();
+
+  long records;
+  long minTimestamp;
+  long maxTimestamp;
+  int minHitId;
+  int maxHitId;
+  List<BlockIndex> blocks;
+  Map<IndexedField, BlockedBloomFilter> blooms;
+
+  public void write(File file) throws IOException {
+    try (DataFileWriter<GenericRecord> writer =
+        new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(SCHEMA))) {
+      writer.create(SCHEMA, file);
+      writer.append(toRecord());
+    }
+  }
+
+  public static EventFileIndex read(InputStream in) throws IOException {
+    try (DataFileStream<GenericRecord> reader =
+        new DataFileStream<>(in, new GenericDatumReader<>(SCHEMA))) {
+      return fromRecord(reader.next());
+    }
+  }
+
+  GenericRecord toRecord() {
+    GenericRecord record = new GenericData.Record(SCHEMA);
+    record.put("records", records);
+    record.put("minTimestamp", minTimestamp);
+    record.put("maxTimestamp", maxTimestamp);
+    record.put("minHitId", minHitId);
+    record.put("maxHitId", maxHitId);
+    List<GenericRecord> blockRecords = new ArrayList<>(blocks.size());
+    for (BlockIndex block : blocks) {
+      GenericRecord blockRecord = new GenericData.Record(BLOCK_SCHEMA);
+      blockRecord.put("position", block.getPosition());
+      blockRecord.put("records", block.getRecords());
+      blockRecord.put("minTimestamp", block.getMinTimestamp());
+      blockRecord.put("maxTimestamp", block.getMaxTimestamp());
+      blockRecord.put("minHitId", block.getMinHitId());
+      blockRecord.put("maxHitId", block.getMaxHitId());
+      blockRecords.add(blockRecord);
+    }
+    record.put("blocks", blockRecords);
+    Map<String, GenericRecord> bloomRecords = new HashMap<>();
+    blooms.forEach(
+        (field, bloom) -> {
+          GenericRecord bloomRecord = new GenericData.Record(BLOOM_SCHEMA);
+          bloomRecord.put("hashes", bloom.getHashes());
+          bloomRecord.put("bits", ByteBuffer.wrap(bloom.toBytes()));
+          bloomRecords.put(field.getField(), bloomRecord);
+        });
+    record.put("blooms", bloomRecords);
+    return record;
+  }
+
+  @SuppressWarnings("unchecked")
+  static EventFileIndex fromRecord(GenericRecord record) {
+    List<BlockIndex> blocks = new ArrayList<>();
+    for (GenericRecord block : (List<GenericRecord>) record.get("blocks")) {
+      blocks.add(
+          new BlockIndex(
+              (Long) block.get("position"),
+              (Long) block.get("records"),
+              (Long) block.get("minTimestamp"),
+              (Long) block.get("maxTimestamp"),
+              (Integer) block.get("minHitId"),
+              (Integer) block.get("maxHitId")));
+    }
+    Map<IndexedField, BlockedBloomFilter> blooms = new EnumMap<>(IndexedField.class);
+    Map<CharSequence, GenericRecord> bloomRecords =
+        (Map<CharSequence, GenericRecord>) record.get("blooms");
+    for (IndexedField field : IndexedField.values()) {
+      for (Map.Entry<CharSequence, GenericRecord> entry : bloomRecords.entrySet()) {
+        if (field.getField().contentEquals(entry.getKey())) {
+          GenericRecord bloom = entry.getValue();
+          blooms.put(
+              field,
+              BlockedBloomFilter.fromBytes(
+                  (ByteBuffer) bloom.get("bits"), (Integer) bloom.get("hashes")));
+        }
+      }
+    }
+    return new EventFileIndex(
+        (Long) record.get("records"),
+        (Long) record.get("minTimestamp"),
+        (Long) record.get("maxTimestamp"),
+        (Integer) record.get("minHitId"),
+        (Integer) record.get("maxHitId"),
+        blocks,
+        blooms);
+  }
+}
@@ -0,0 +1,130 @@
+package model.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import model.utils.BlockedBloomFilter;
+import model.utils.Hashing;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Accumulates an {@link EventFileIndex} while a container file is written. The writer calls
+ * {@link #startBlock} with each position returned by {@code DataFileWriter.sync()} and
+ * {@link #add} for every appended record. Key hashes are buffered so the Bloom filters can be
+ * sized for the actual number of keys when the file is finished.
+ */
+public class EventFileIndexBuilder {
+
+  static final long BLOOM_SEED = 0x27d4eb2f165667c5L;
+
+  private static final IndexedField[] FIELDS = IndexedField.values();
+
+  private final double falsePositiveRate;
+  private final int timestampPos;
+  private final int hitIdPos;
+  private final int[] fieldPositions = new int[FIELDS.length];
+  private final long[][] hashes = new long[FIELDS.length][];
+  private final int[] hashCounts = new int[FIELDS.length];
+
+  private final List<BlockIndex> blocks = new ArrayList<>();
+  private final Range file = new Range();
+  private final Range block = new Range();
+  private long blockPosition = -1;
+
+  public EventFileIndexBuilder(Schema eventSchema, double falsePositiveRate) {
+    this.falsePositiveRate = falsePositiveRate;
+    this.timestampPos = eventSchema.getField("eventOccurredTimestampUtc").pos();
+    this.hitIdPos = eventSchema.getField("hitId").pos();
+    for (int i = 0; i < FIELDS.length; i++) {
+      fieldPositions[i] = eventSchema.getField(FIELDS[i].getField()).pos();
+      hashes[i] = new long[1024];
+    }
+  }
+
+  /** Starts a new block at a sync position; records added from now on belong to it. */
+  public void startBlock(long position) {
+    finishBlock();
+    blockPosition = position;
+  }
+
+  public void add(GenericRecord event) {
+    long timestamp = ((Number) event.get(timestampPos)).longValue();
+    int hitId = ((Number) event.get(hitIdPos)).intValue();
+    file.add(timestamp, hitId);
+    block.add(timestamp, hitId);
+    for (int i = 0; i < FIELDS.length; i++) {
+      Object value = event.get(fieldPositions[i]);
+      if (value != null) {
+        if (hashCounts[i] == hashes[i].length) {
+          hashes[i] = Arrays.copyOf(hashes[i], hashes[i].length * 2);
+        }
+        hashes[i][hashCounts[i]++] = Hashing.hashUtf8((CharSequence) value, BLOOM_SEED);
+      }
+    }
+  }
+
+  public EventFileIndex build() {
+    finishBlock();
+    Map<IndexedField, BlockedBloomFilter> blooms = new EnumMap<>(IndexedField.class);
+    for (int i = 0; i < FIELDS.length; i++) {
+      BlockedBloomFilter bloom = BlockedBloomFilter.forKeys(hashCounts[i], falsePositiveRate);
+      for (int j = 0; j < hashCounts[i]; j++) {
+        bloom.put(hashes[i][j]);
+      }
+      blooms.put(FIELDS[i], bloom);
+    }
+    return new EventFileIndex(
+        file.records,
+        file.minTimestamp,
+        file.maxTimestamp,
+        file.minHitId,
+        file.maxHitId,
+        List.copyOf(blocks),
+        blooms);
+  }
+
+  private void finishBlock() {
+    if (blockPosition >= 0 && block.records > 0) {
+      blocks.add(
+          new BlockIndex(
+              blockPosition,
+              block.records,
+              block.minTimestamp,
+              block.maxTimestamp,
+              block.minHitId,
+              block.maxHitId));
+    }
+    block.reset();
+  }
+
+  private static final class Range {
+    long records;
+    long minTimestamp;
+    long maxTimestamp;
+    int minHitId;
+    int maxHitId;
+
+    Range() {
+      reset();
+    }
+
+    void add(long timestamp, int hitId) {
+      records++;
+      minTimestamp = Math.min(minTimestamp, timestamp);
+      maxTimestamp = Math.max(maxTimestamp, timestamp);
+      minHitId = Math.min(minHitId, hitId);
+      maxHitId = Math.max(maxHitId, hitId);
+    }
+
+    void reset() {
+      records = 0;
+      minTimestamp = Long.MAX_VALUE;
+      maxTimestamp = Long.MIN_VALUE;
+      minHitId = Integer.MAX_VALUE;
+      maxHitId = Integer.MIN_VALUE;
+    }
+  }
+}
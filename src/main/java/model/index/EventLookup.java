@@ -0,0 +1,90 @@
+package model.index;
+
+import java.util.EnumMap;
+import java.util.Map;
+import model.utils.BlockedBloomFilter;
+import model.utils.Hashing;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Point lookup over indexed event files: equality on any {@link IndexedField}s plus optional
+ * eventOccurredTimestampUtc and hitId ranges (inclusive). Built with the {@code with*} methods.
+ */
+public class EventLookup {
+
+  private final Map<IndexedField, String> values = new EnumMap<>(IndexedField.class);
+  private final Map<IndexedField, Long> hashes = new EnumMap<>(IndexedField.class);
+  private long fromTimestamp = Long.MIN_VALUE;
+  private long toTimestamp = Long.MAX_VALUE;
+  private int fromHitId = Integer.MIN_VALUE;
+  private int toHitId = Integer.MAX_VALUE;
+
+  public EventLookup with(IndexedField field, String value) {
+    values.put(field, value);
+    hashes.put(field, Hashing.hashUtf8(value, EventFileIndexBuilder.BLOOM_SEED));
+    return this;
+  }
+
+  public EventLookup withTimestamps(long from, long to) {
+    this.fromTimestamp = from;
+    this.toTimestamp = to;
+    return this;
+  }
+
+  public EventLookup withHitIds(int from, int to) {
+    this.fromHitId = from;
+    this.toHitId = to;
+    return this;
+  }
+
+  /** False if no record of the file can match; true means the file has to be read. */
+  public boolean mightMatch(EventFileIndex index) {
+    if (index.getRecords() == 0) {
+      return false;
+    }
+    if (!overlaps(
+        index.getMinTimestamp(),
+        index.getMaxTimestamp(),
+        index.getMinHitId(),
+        index.getMaxHitId())) {
+      return false;
+    }
+    for (Map.Entry<IndexedField, Long> hash : hashes.entrySet()) {
+      BlockedBloomFilter bloom = index.getBlooms().get(hash.getKey());
+      if (bloom != null && !bloom.mightContain(hash.getValue())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public boolean mightMatch(BlockIndex block) {
+    return overlaps(
+        block.getMinTimestamp(), block.getMaxTimestamp(), block.getMinHitId(), block.getMaxHitId());
+  }
+
+  public boolean matches(GenericRecord event) {
+    long timestamp = ((Number) event.get("eventOccurredTimestampUtc")).longValue();
+    int hitId = ((Number) event.get("hitId")).intValue();
+    if (timestamp < fromTimestamp
+        || timestamp > toTimestamp
+        || hitId < fromHitId
+        || hitId > toHitId) {
+      return false;
+    }
+    for (Map.Entry<IndexedField, String> value : values.entrySet()) {
+      Object actual = event.get(value.getKey().getField());
+      if (actual == null || !value.getValue().contentEquals((CharSequence) actual)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean overlaps(long minTimestamp, long maxTimestamp, int minHitId, int maxHitId) {
+    return minTimestamp <= toTimestamp
+        && maxTimestamp >= fromTimestamp
+        && minHitId <= toHitId
+        && maxHitId >= fromHitId;
+  }
+}
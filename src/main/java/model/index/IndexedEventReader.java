@@ -0,0 +1,161 @@
+package model.index;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Finds events by consulting sidecar indexes first: files whose ranges or Bloom filters rule the
+ * lookup out are never downloaded, and within a candidate file only blocks whose ranges overlap are
+ * decoded. Data files without an index, e.g. because its upload failed, are read in full. Counters
+ * describe the work done since construction.
+ */
+@Slf4j
+@Getter
+public class IndexedEventReader {
+
+  private final AmazonS3 s3;
+  private final String bucket;
+
+  private long filesConsidered;
+  private long filesRead;
+  private long blocksConsidered;
+  private long blocksRead;
+
+  public IndexedEventReader(AmazonS3 s3, String bucket) {
+    this.s3 = s3;
+    this.bucket = bucket;
+  }
+
+  /** Looks the events up in every event file under an S3 prefix. */
+  public List<GenericRecord> find(String prefix, EventLookup lookup) throws IOException {
+    List<GenericRecord> found = new ArrayList<>();
+    Set<String> indexKeys = new HashSet<>();
+    List<String> dataKeys = new ArrayList<>();
+    ListObjectsV2Request request =
+        new ListObjectsV2Request().withBucketName(bucket).withPrefix(prefix);
+    ListObjectsV2Result listing;
+    do {
+      listing = s3.listObjectsV2(request);
+      for (S3ObjectSummary summary : listing.getObjectSummaries()) {
+        String key = summary.getKey();
+        if (key.endsWith(EventFileIndex.SUFFIX)) {
+          indexKeys.add(key);
+          findInObject(key, lookup, found);
+        } else if (key.endsWith(".avro")) {
+          dataKeys.add(key);
+        }
+      }
+      request.setContinuationToken(listing.getNextContinuationToken());
+    } while (listing.isTruncated());
+    for (String dataKey : dataKeys) {
+      if (!indexKeys.contains(dataKey + EventFileIndex.SUFFIX)) {
+        log.debug("No index for s3://{}/{}; reading it in full", bucket, dataKey);
+        findInUnindexedObject(dataKey, lookup, found);
+      }
+    }
+    log.debug(
+        "Lookup under s3://{}/{} read {} of {} files and {} of {} blocks",
+        bucket,
+        prefix,
+        filesRead,
+        filesConsidered,
+        blocksRead,
+        blocksConsidered);
+    return found;
+  }
+
+  /** Looks the events up in a local container file with its index. */
+  public List<GenericRecord> find(File dataFile, EventFileIndex index, EventLookup lookup)
+      throws IOException {
+    List<GenericRecord> found = new ArrayList<>();
+    filesConsidered++;
+    if (!lookup.mightMatch(index)) {
+      return found;
+    }
+    filesRead++;
+    try (DataFileReader<GenericRecord> reader =
+        new DataFileReader<>(dataFile, new GenericDatumReader<>())) {
+      if (index.getBlocks().isEmpty()) {
+        for (GenericRecord event : reader) {
+          if (lookup.matches(event)) {
+            found.add(event);
+          }
+        }
+        return found;
+      }
+      for (BlockIndex block : index.getBlocks()) {
+        blocksConsidered++;
+        if (!lookup.mightMatch(block)) {
+          continue;
+        }
+        blocksRead++;
+        reader.seek(block.getPosition());
+        for (long i = 0; i < block.getRecords() && reader.hasNext(); i++) {
+          GenericRecord event = reader.next();
+          if (lookup.matches(event)) {
+            found.add(event);
+          }
+        }
+      }
+    }
+    return found;
+  }
+
+  private void findInUnindexedObject(String dataKey, EventLookup lookup, List<GenericRecord> found)
+      throws IOException {
+    filesConsidered++;
+    filesRead++;
+    File local = Files.createTempFile("lookup-", ".avro").toFile();
+    try {
+      s3.getObject(new GetObjectRequest(bucket, dataKey), local);
+      try (DataFileReader<GenericRecord> reader =
+          new DataFileReader<>(local, new GenericDatumReader<>())) {
+        for (GenericRecord event : reader) {
+          if (lookup.matches(event)) {
+            found.add(event);
+          }
+        }
+      }
+    } finally {
+      Files.deleteIfExists(local.toPath());
+    }
+  }
+
+  private void findInObject(String indexKey, EventLookup lookup, List<GenericRecord> found)
+      throws IOException {
+    EventFileIndex index;
+    try (S3Object object = s3.getObject(bucket, indexKey);
+        InputStream in = object.getObjectContent()) {
+      index = EventFileIndex.read(in);
+    }
+    if (!lookup.mightMatch(index)) {
+      filesConsidered++;
+      return;
+    }
+    String dataKey = indexKey.substring(0, indexKey.length() - EventFileIndex.SUFFIX.length());
+    File local = Files.createTempFile("lookup-", ".avro").toFile();
+    try {
+      s3.getObject(new GetObjectRequest(bucket, dataKey), local);
+      found.addAll(find(local, index, lookup));
+    } finally {
+      Files.deleteIfExists(local.toPath());
+    }
+  }
+}
@@ -0,0 +1,18 @@
+package model.index;
+
+import lombok.Getter;
+
+/** String fields with a Bloom filter in the sidecar index. */
+@Getter
+public enum IndexedField {
+  CLIENT_ID("clientId"),
+  SESSION_ID("sessionId"),
+  ACCOUNT_ID("accountId"),
+  CHANNEL_ID("channelId");
+
+  private final String field;
+
+  IndexedField(String field) {
+    this.field = field;
+  }
+}
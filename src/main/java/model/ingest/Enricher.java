@@ -0,0 +1,16 @@
+package model.ingest;
+
+import model.metrics.Stage;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * One enrichment step (UA parsing, geo lookup, ...). Enrichers of a batch run concurrently, so
+ * each must only write fields no other enricher writes.
+ */
+public interface Enricher {
+
+  /** Stage the enricher's time is reported under. */
+  Stage stage();
+
+  void enrich(GenericRecord event) throws Exception;
+}
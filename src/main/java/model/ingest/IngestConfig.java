@@ -0,0 +1,39 @@
+package model.ingest;
+
+import java.time.Duration;
+import java.util.List;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Singular;
+import lombok.ToString;
+import model.admission.AdmissionController;
+
+@Getter
+@Builder
+@ToString
+public class IngestConfig {
+
+  /** Loopback port to listen on; 0 picks a free one. */
+  @Builder.Default private final int port = 8080;
+
+  @Builder.Default private final int maxEventsPerRequest = 1_000;
+
+  @Builder.Default private final long maxRequestBytes = 4L * 1024 * 1024;
+
+  /** A request body rejected as a whole is kept in its ErrorMessage up to this many bytes. */
+  @Builder.Default private final int maxRejectedContentBytes = 64 * 1024;
+
+  @Builder.Default private final Duration maxEventAge = Duration.ofDays(7);
+
+  @Builder.Default private final Duration maxClockAhead = Duration.ofHours(1);
+
+  @Singular private final List<Enricher> enrichers;
+
+  /** Sheds low-priority events when request latency breaches its SLO; null admits everything. */
+  private final AdmissionController admission;
+
+  @NonNull private final RecordConsumer events;
+
+  @NonNull private final RecordConsumer errors;
+}
@@ -0,0 +1,157 @@
+package model.ingest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import model.admission.AdmissionConfig;
+import model.admission.AdmissionController;
+import model.errors.ErrorAggregationConfig;
+import model.errors.ErrorAggregator;
+import model.errors.ErrorFingerprint;
+import model.errors.ErrorSummary;
+import model.metrics.EventMetrics;
+import model.metrics.MetricsReporter;
+import model.profiling.ContinuousRecording;
+import model.profiling.ProfilingConfig;
+import model.utils.AvroErrorMessageSchemaBuilder;
+import model.utils.AvroEventSchemaBuilder;
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Local ingest entry point writing accepted events to an Avro container file. ErrorMessages are
+ * aggregated per minute; each summary is logged and only its sampled ErrorMessages are written.
+ *
+ * <pre>
+ *   IngestServer &lt;port&gt; &lt;events.avro&gt; &lt;errors.avro&gt; [metricsPort]
+ * </pre>
+ *
+ * <p>With {@code -Dingest.jfr.directory=<dir>}, a {@link ContinuousRecording} keeps rolling JFR
+ * files of the pipeline events in that directory.
+ */
+@Slf4j
+public class IngestServer {
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 3) {
+      System.err.println("Usage: IngestServer <port> <events.avro> <errors.avro> [metricsPort]");
+      System.exit(1);
+    }
+    Schema eventSchema = AvroEventSchemaBuilder.buildSchema();
+    Schema errorMessageSchema = AvroErrorMessageSchemaBuilder.buildSchema();
+    EventMetrics metrics = EventMetrics.shared();
+    FileConsumer events = new FileConsumer(eventSchema, new File(args[1]));
+    FileConsumer errors = new FileConsumer(errorMessageSchema, new File(args[2]));
+    ErrorAggregator errorAggregator =
+        new ErrorAggregator(errorMessageSchema, ErrorAggregationConfig.builder().build())
+            .publishTo(summary -> writeSamples(summary, errors));
+    AdmissionController admission =
+        new AdmissionController(eventSchema, AdmissionConfig.builder().build());
+    IngestService service =
+        new IngestService(
+            IngestConfig.builder()
+                .port(Integer.parseInt(args[0]))
+                .events(events)
+                .errors(errorAggregator)
+                .admission(admission)
+                .build(),
+            eventSchema,
+            errorMessageSchema,
+            metrics);
+    MetricsReporter reporter = new MetricsReporter(metrics);
+    if (args.length > 3) {
+      reporter.serveOn(Integer.parseInt(args[3]));
+    }
+    String jfrDirectory = System.getProperty("ingest.jfr.directory");
+    ContinuousRecording recording =
+        jfrDirectory == null
+            ? null
+            : ContinuousRecording.start(
+                ProfilingConfig.builder().directory(Path.of(jfrDirectory)).build());
+    // Stop taking requests and drain in-flight ones before the files are finalized.
+    Runtime.getRuntime()
+        .addShutdownHook(
+            new Thread(
+                () -> {
+                  service.close();
+                  reporter.close();
+                  log.info("Admission: {}", admission.stats().toText());
+                  errorAggregator.close();
+                  if (recording != null) {
+                    recording.close();
+                  }
+                  try {
+                    events.close();
+                    errors.close();
+                  } catch (IOException e) {
+                    log.error("Failed to close output files", e);
+                  }
+                }));
+    service.start();
+  }
+
+  private static void writeSamples(ErrorSummary summary, FileConsumer errors) {
+    if (summary.getErrors() == 0) {
+      return;
+    }
+    log.info("Errors: {}", summary.toText(10));
+    // An ErrorMessage with several errors can be sampled for more than one fingerprint.
+    Set<GenericRecord> written = Collections.newSetFromMap(new IdentityHashMap<>());
+    try {
+      for (ErrorFingerprint fingerprint : summary.getFingerprints()) {
+        for (GenericRecord sample : fingerprint.getSamples()) {
+          if (written.add(sample)) {
+            errors.accept(sample);
+          }
+        }
+      }
+    } catch (IOException e) {
+      log.error("Failed to write sampled ErrorMessages", e);
+    }
+  }
+
+  /**
+   * Appends records from many request threads to one container file. Writes are guarded by a {@link
+   * ReentrantLock} rather than {@code synchronized}, so a virtual request thread blocked on file
+   * I/O does not pin its carrier thread.
+   */
+  static class FileConsumer implements RecordConsumer, AutoCloseable {
+
+    private final DataFileWriter<GenericRecord> writer;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    FileConsumer(Schema schema, File file) throws IOException {
+      writer = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema));
+      writer.setCodec(CodecFactory.deflateCodec(6));
+      writer.create(schema, file);
+    }
+
+    @Override
+    public void accept(GenericRecord record) throws IOException {
+      lock.lock();
+      try {
+        writer.append(record);
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      lock.lock();
+      try {
+        writer.close();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
@@ -0,0 +1,330 @@
+package model.ingest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+import model.admission.AdmissionController;
+import model.json.JsonReader;
+import model.json.JsonSyntaxException;
+import model.metrics.EventMetrics;
+import model.metrics.StageMetrics;
+import model.profiling.DecodeBatchEvent;
+import model.profiling.ErrorMessageEvent;
+import model.utils.EventNames;
+import model.validation.BatchEventValidator;
+import model.validation.BatchValidationResult;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Collector ingest endpoint: {@code POST /events} with a JSON array of events. Every request runs
+ * on its own virtual thread, so a request blocked on enrichment or a slow sink costs no platform
+ * thread and no pool needs tuning. Each request parses its batch, drops the events the optional
+ * {@link AdmissionController} sheds, validates the rest, fans the valid events out to all
+ * enrichers concurrently (one child virtual thread per enricher, all joined before the request
+ * continues), hands accepted events to the event consumer and writes an ErrorMessage for each
+ * rejected event. The request's latency is reported back to the admission controller.
+ */
+@Slf4j
+public class IngestService implements Closeable {
+
+  private final IngestConfig config;
+  private final Schema eventSchema;
+  private final Schema errorMessageSchema;
+  private final Schema errorRecordSchema;
+  private final JsonEventParser parser;
+  private final EventMetrics metrics;
+  private final ExecutorService requests = Executors.newVirtualThreadPerTaskExecutor();
+  private final HttpServer server;
+
+  private final LongAdder accepted = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder shed = new LongAdder();
+
+  public IngestService(
+      IngestConfig config, Schema eventSchema, Schema errorMessageSchema, EventMetrics metrics)
+      throws IOException {
+    this.config = config;
+    this.eventSchema = eventSchema;
+    this.errorMessageSchema = errorMessageSchema;
+    this.errorRecordSchema = errorMessageSchema.getField("errors").schema().getElementType();
+    this.parser = new JsonEventParser(eventSchema);
+    this.metrics = metrics;
+    this.server =
+        HttpServer.create(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), config.getPort()), 1024);
+    server.createContext("/events", this::handle);
+    server.setExecutor(requests);
+  }
+
+  public IngestService start() {
+    server.start();
+    log.info("Ingest service listening on {}", server.getAddress());
+    return this;
+  }
+
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  public long acceptedEvents() {
+    return accepted.sum();
+  }
+
+  public long rejectedEvents() {
+    return rejected.sum();
+  }
+
+  public long shedEvents() {
+    return shed.sum();
+  }
+
+  @Override
+  public void close() {
+    server.stop(1);
+    requests.close();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    long start = System.nanoTime();
+    // Failures are caught inside the try so the exchange is still open for the 500 response.
+    try (exchange) {
+      try {
+        serve(exchange);
+      } catch (IOException | RuntimeException | InterruptedException e) {
+        if (e instanceof InterruptedException) {
+          Thread.currentThread().interrupt();
+        }
+        log.error("Ingest request failed", e);
+        // Nothing more can be sent once the response has started, e.g. when writing it failed.
+        if (exchange.getResponseCode() < 0) {
+          respond(exchange, 500, "{\"error\":\"internal error\"}");
+        }
+      } finally {
+        // Every request counts, rejected and failed ones too, or the controller would only see
+        // the requests it let through and underestimate the delay.
+        AdmissionController admission = config.getAdmission();
+        if (admission != null) {
+          admission.recordDelay(System.nanoTime() - start);
+        }
+      }
+    }
+  }
+
+  private void serve(HttpExchange exchange) throws IOException, InterruptedException {
+    if (!"POST".equals(exchange.getRequestMethod())) {
+      respond(exchange, 405, "{\"error\":\"POST a JSON array of events\"}");
+      return;
+    }
+    byte[] bytes;
+    try (InputStream body = exchange.getRequestBody()) {
+      bytes = body.readNBytes((int) config.getMaxRequestBytes() + 1);
+    }
+    if (bytes.length > config.getMaxRequestBytes()) {
+      respond(exchange, 413, "{\"error\":\"request too large\"}");
+      return;
+    }
+    int[] bounds;
+    try {
+      bounds = split(bytes, config.getMaxEventsPerRequest());
+    } catch (JsonSyntaxException e) {
+      int length = Math.min(bytes.length, config.getMaxRejectedContentBytes());
+      rejectContent(
+          new String(bytes, 0, length, StandardCharsets.UTF_8), "INVALID_JSON", e.getMessage());
+      respond(exchange, 400, "{\"error\":\"invalid JSON\"}");
+      return;
+    }
+    if (bounds == null) {
+      respond(
+          exchange,
+          400,
+          "{\"error\":\"expected an array of at most "
+              + config.getMaxEventsPerRequest()
+              + " events\"}");
+      return;
+    }
+    int[] counts = process(bytes, bounds);
+    respond(
+        exchange,
+        200,
+        "{\"accepted\":"
+            + counts[0]
+            + ",\"rejected\":"
+            + counts[1]
+            + ",\"shed\":"
+            + counts[2]
+            + "}");
+  }
+
+  /**
+   * Checks the whole batch and returns the start and end offset of every event, or null when the
+   * body is not an array of at most {@code maxEvents} values.
+   */
+  private static int[] split(byte[] bytes, int maxEvents) throws JsonSyntaxException {
+    JsonReader json = new JsonReader(bytes);
+    if (json.peek() != '[') {
+      json.skipValue();
+      json.expectEnd();
+      return null;
+    }
+    json.expect('[');
+    int[] bounds = new int[16];
+    int count = 0;
+    if (!json.consume(']')) {
+      do {
+        if (count == maxEvents) {
+          return null;
+        }
+        if (2 * count + 2 > bounds.length) {
+          bounds = Arrays.copyOf(bounds, bounds.length * 2);
+        }
+        json.peek();
+        bounds[2 * count] = json.position();
+        json.skipValue();
+        bounds[2 * count + 1] = json.position();
+        count++;
+      } while (json.consume(','));
+      json.expect(']');
+    }
+    json.expectEnd();
+    return Arrays.copyOf(bounds, 2 * count);
+  }
+
+  /** Returns {accepted, rejected, shed}. */
+  private int[] process(byte[] bytes, int[] bounds) throws IOException, InterruptedException {
+    DecodeBatchEvent decodeEvent = new DecodeBatchEvent();
+    decodeEvent.begin();
+    int size = bounds.length / 2;
+    GenericRecord[] events = new GenericRecord[size];
+    int[] sources = new int[size];
+    int parsed = 0;
+    int rejectedCount = 0;
+    int shedCount = 0;
+    AdmissionController admission = config.getAdmission();
+    for (int i = 0; i < size; i++) {
+      try {
+        GenericRecord event = parser.parse(new JsonReader(bytes, bounds[2 * i], bounds[2 * i + 1]));
+        if (admission != null && !admission.admit(event)) {
+          shedCount++;
+          continue;
+        }
+        events[parsed] = event;
+        sources[parsed++] = i;
+      } catch (IllegalArgumentException e) {
+        rejectContent(source(bytes, bounds, i), "INVALID_FIELD", e.getMessage());
+        rejectedCount++;
+      }
+    }
+    decodeEvent.finish(size, bytes.length, rejectedCount, shedCount);
+
+    BatchEventValidator validator =
+        new BatchEventValidator(
+            eventSchema, errorMessageSchema, config.getMaxEventAge(), config.getMaxClockAhead());
+    BatchValidationResult validation = validator.validate(events, parsed);
+    List<GenericRecord> valid = new ArrayList<>(parsed);
+    for (int i = 0; i < parsed; i++) {
+      if (validation.isValid(i)) {
+        valid.add(events[i]);
+      } else {
+        reject(source(bytes, bounds, sources[i]), validation.errorRecords(i));
+        rejectedCount++;
+      }
+    }
+
+    enrich(valid);
+    for (GenericRecord event : valid) {
+      config.getEvents().accept(event);
+    }
+    accepted.add(valid.size());
+    rejected.add(rejectedCount);
+    shed.add(shedCount);
+    return new int[] {valid.size(), rejectedCount, shedCount};
+  }
+
+  /** Runs every enricher over the batch on its own virtual thread and waits for all of them. */
+  private void enrich(List<GenericRecord> events) throws InterruptedException {
+    List<Enricher> enrichers = config.getEnrichers();
+    if (enrichers.isEmpty() || events.isEmpty()) {
+      return;
+    }
+    List<Future<?>> tasks = new ArrayList<>(enrichers.size());
+    try (ExecutorService scope = Executors.newVirtualThreadPerTaskExecutor()) {
+      for (Enricher enricher : enrichers) {
+        tasks.add(scope.submit(() -> runEnricher(enricher, events)));
+      }
+    }
+    for (Future<?> task : tasks) {
+      try {
+        task.get();
+      } catch (ExecutionException e) {
+        log.warn("Enrichment failed", e.getCause());
+      }
+    }
+  }
+
+  private void runEnricher(Enricher enricher, List<GenericRecord> events) {
+    StageMetrics stage = metrics.stage(enricher.stage());
+    int eventNamePos = eventSchema.getField("eventName").pos();
+    for (GenericRecord event : events) {
+      long start = System.nanoTime();
+      try {
+        enricher.enrich(event);
+        stage.record(
+            EventNames.ordinal(event.get(eventNamePos)), System.nanoTime() - start, 0);
+      } catch (Exception e) {
+        stage.recordError();
+        log.debug("{} failed for an event", enricher.stage(), e);
+      }
+    }
+  }
+
+  private static String source(byte[] bytes, int[] bounds, int event) {
+    int start = bounds[2 * event];
+    return new String(bytes, start, bounds[2 * event + 1] - start, StandardCharsets.UTF_8);
+  }
+
+  private void rejectContent(String content, String type, String message) throws IOException {
+    GenericRecord error = new GenericData.Record(errorRecordSchema);
+    error.put("type", type);
+    error.put("message", message);
+    reject(content, List.of(error));
+  }
+
+  private void reject(String content, List<GenericRecord> errors) throws IOException {
+    ErrorMessageEvent event = new ErrorMessageEvent();
+    event.begin();
+    GenericRecord errorMessage = new GenericData.Record(errorMessageSchema);
+    errorMessage.put("content", content);
+    errorMessage.put("errors", errors);
+    config.getErrors().accept(errorMessage);
+    event.finish(
+        errors.isEmpty() ? null : String.valueOf(errors.get(0).get("type")),
+        errors.size(),
+        content.length());
+  }
+
+  private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+    byte[] body = json.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(status, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+}
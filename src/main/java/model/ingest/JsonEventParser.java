@@ -0,0 +1,169 @@
+package model.ingest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import model.json.JsonReader;
+import model.json.JsonSyntaxException;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Converts one collector JSON event object into an EventDataPayload record. Unknown properties
+ * are ignored; a value of the wrong type fails the whole event with an {@link
+ * IllegalArgumentException} naming the field. Required-field checks are left to the batch
+ * validator.
+ */
+public class JsonEventParser {
+
+  private final Schema schema;
+  private final Map<String, Schema.Field> fields = new HashMap<>();
+  /** Positions and values of the fields with a non-null default, resolved once. */
+  private final int[] defaultPositions;
+  private final Object[] defaultValues;
+
+  public JsonEventParser(Schema schema) {
+    this.schema = schema;
+    List<Schema.Field> defaulted = new ArrayList<>();
+    for (Schema.Field field : schema.getFields()) {
+      fields.put(field.name(), field);
+      if (field.hasDefaultValue() && GenericData.get().getDefaultValue(field) != null) {
+        defaulted.add(field);
+      }
+    }
+    this.defaultPositions = new int[defaulted.size()];
+    this.defaultValues = new Object[defaulted.size()];
+    for (int i = 0; i < defaulted.size(); i++) {
+      defaultPositions[i] = defaulted.get(i).pos();
+      defaultValues[i] = GenericData.get().getDefaultValue(defaulted.get(i));
+    }
+  }
+
+  /**
+   * Reads the event object at the reader's position straight from the bytes. Syntax errors surface
+   * as {@link JsonSyntaxException}; type errors as {@link IllegalArgumentException}.
+   */
+  public GenericRecord parse(JsonReader json) throws JsonSyntaxException {
+    if (json.peek() != '{') {
+      throw new IllegalArgumentException("Event is not a JSON object");
+    }
+    GenericData.Record event = newRecord();
+    json.expect('{');
+    if (json.consume('}')) {
+      return event;
+    }
+    do {
+      String name = json.readString();
+      json.expect(':');
+      Schema.Field field = fields.get(name);
+      if (field == null) {
+        json.skipValue();
+      } else {
+        event.put(field.pos(), read(field, field.schema(), json));
+      }
+    } while (json.consume(','));
+    json.expect('}');
+    return event;
+  }
+
+  private GenericData.Record newRecord() {
+    GenericData.Record event = new GenericData.Record(schema);
+    for (int i = 0; i < defaultPositions.length; i++) {
+      event.put(defaultPositions[i], defaultValues[i]);
+    }
+    return event;
+  }
+
+  private Object read(Schema.Field field, Schema type, JsonReader json) throws JsonSyntaxException {
+    if (json.peek() == 'n') {
+      json.readNull();
+      return null;
+    }
+    char next = json.peek();
+    switch (type.getType()) {
+      case UNION:
+        List<Schema> types = type.getTypes();
+        return read(field, types.get(types.size() - 1), json);
+      case STRING:
+        return next == '"' ? json.readString() : json.readRaw();
+      case ENUM:
+        if (next != '"') {
+          throw invalid(field, json);
+        }
+        String symbol = json.readString();
+        return type.hasEnumSymbol(symbol) ? new GenericData.EnumSymbol(type, symbol) : symbol;
+      case INT:
+        {
+          BigDecimal number = integral(field, json, Integer.MIN_VALUE, Integer.MAX_VALUE);
+          return number.intValue();
+        }
+      case LONG:
+        {
+          BigDecimal number = integral(field, json, Long.MIN_VALUE, Long.MAX_VALUE);
+          return number.longValue();
+        }
+      case FLOAT:
+        if (!isNumber(next)) {
+          throw invalid(field, json);
+        }
+        return Float.parseFloat(json.readNumber());
+      case DOUBLE:
+        if (!isNumber(next)) {
+          throw invalid(field, json);
+        }
+        return Double.parseDouble(json.readNumber());
+      case BOOLEAN:
+        if (next != 't' && next != 'f') {
+          throw invalid(field, json);
+        }
+        return json.readBoolean();
+      case MAP:
+        if (next != '{') {
+          throw invalid(field, json);
+        }
+        Map<String, String> map = new HashMap<>();
+        json.expect('{');
+        if (json.consume('}')) {
+          return map;
+        }
+        do {
+          String key = json.readString();
+          json.expect(':');
+          map.put(key, json.peek() == '"' ? json.readString() : json.readRaw());
+        } while (json.consume(','));
+        json.expect('}');
+        return map;
+      default:
+        throw new IllegalArgumentException(
+            "Unsupported type " + type.getType() + " of field " + field.name());
+    }
+  }
+
+  /** Number in the given range; fractions are accepted and truncated, as Jackson does. */
+  private static BigDecimal integral(Schema.Field field, JsonReader json, long min, long max)
+      throws JsonSyntaxException {
+    if (!isNumber(json.peek())) {
+      throw invalid(field, json);
+    }
+    String text = json.readNumber();
+    BigDecimal number = new BigDecimal(text);
+    if (number.compareTo(BigDecimal.valueOf(min)) < 0
+        || number.compareTo(BigDecimal.valueOf(max)) > 0) {
+      throw new IllegalArgumentException("Invalid value for " + field.name() + ": NUMBER");
+    }
+    return number;
+  }
+
+  private static boolean isNumber(char c) {
+    return c == '-' || (c >= '0' && c <= '9');
+  }
+
+  private static IllegalArgumentException invalid(Schema.Field field, JsonReader json)
+      throws JsonSyntaxException {
+    return new IllegalArgumentException(
+        "Invalid value for " + field.name() + ": " + json.peekType());
+  }
+}
@@ -0,0 +1,10 @@
+package model.ingest;
+
+import java.io.IOException;
+import org.apache.avro.generic.GenericRecord;
+
+/** Destination of accepted events or ErrorMessage records; called from many threads. */
+@FunctionalInterface
+public interface RecordConsumer {
+  void accept(GenericRecord record) throws IOException;
+}
@@ -0,0 +1,384 @@
+package model.json;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pull reader over UTF-8 JSON bytes, for decoding flat event objects without building a tree.
+ * Strings are located with {@link JsonScanner#scanString}, so plain ASCII runs are crossed eight
+ * bytes at a time and become Strings with a single copy; non-ASCII bytes are validated as UTF-8 and
+ * escapes are decoded only in the strings that have them. Not thread-safe.
+ */
+public final class JsonReader {
+
+  private static final int MAX_DEPTH = 64;
+
+  private final byte[] buf;
+  private final int end;
+  private int pos;
+
+  public JsonReader(byte[] buf) {
+    this(buf, 0, buf.length);
+  }
+
+  public JsonReader(byte[] buf, int offset, int end) {
+    this.buf = buf;
+    this.pos = offset;
+    this.end = end;
+  }
+
+  public int position() {
+    return pos;
+  }
+
+  /** Next significant character without consuming it. */
+  public char peek() throws JsonSyntaxException {
+    skipWhitespace();
+    if (pos == end) {
+      throw new JsonSyntaxException("Unexpected end of input", pos);
+    }
+    return (char) (buf[pos] & 0xff);
+  }
+
+  public void expect(char c) throws JsonSyntaxException {
+    if (peek() != c) {
+      throw new JsonSyntaxException("Expected '" + c + "'", pos);
+    }
+    pos++;
+  }
+
+  /** Consumes the character if it is next. */
+  public boolean consume(char c) throws JsonSyntaxException {
+    if (peek() != c) {
+      return false;
+    }
+    pos++;
+    return true;
+  }
+
+  /** Checks that nothing but whitespace follows. */
+  public void expectEnd() throws JsonSyntaxException {
+    skipWhitespace();
+    if (pos != end) {
+      throw new JsonSyntaxException("Unexpected content after JSON value", pos);
+    }
+  }
+
+  /** Jackson node type name of the next value, for error messages. */
+  public String peekType() throws JsonSyntaxException {
+    char c = peek();
+    switch (c) {
+      case '"':
+        return "STRING";
+      case '{':
+        return "OBJECT";
+      case '[':
+        return "ARRAY";
+      case 't':
+      case 'f':
+        return "BOOLEAN";
+      case 'n':
+        return "NULL";
+      default:
+        return "NUMBER";
+    }
+  }
+
+  public String readString() throws JsonSyntaxException {
+    expect('"');
+    int start = pos;
+    int i = JsonScanner.scanString(buf, start, end);
+    if (i < end && buf[i] == '"') {
+      pos = i + 1;
+      return new String(buf, start, i - start, StandardCharsets.ISO_8859_1);
+    }
+    // Non-ASCII content or escapes: validate up to the first escape, then decode the rest.
+    while (i < end && buf[i] != '"' && buf[i] != '\\') {
+      i = nextPlain(i);
+    }
+    if (i == end) {
+      throw new JsonSyntaxException("Unterminated string", start - 1);
+    }
+    if (buf[i] == '"') {
+      pos = i + 1;
+      return new String(buf, start, i - start, StandardCharsets.UTF_8);
+    }
+    StringBuilder value = new StringBuilder(i - start + 16);
+    value.append(new String(buf, start, i - start, StandardCharsets.UTF_8));
+    while (true) {
+      if (i == end) {
+        throw new JsonSyntaxException("Unterminated string", start - 1);
+      }
+      if (buf[i] == '"') {
+        pos = i + 1;
+        return value.toString();
+      }
+      if (buf[i] == '\\') {
+        i = unescape(i, value);
+        continue;
+      }
+      int runStart = i;
+      while (i < end && buf[i] != '"' && buf[i] != '\\') {
+        i = nextPlain(i);
+      }
+      value.append(new String(buf, runStart, i - runStart, StandardCharsets.UTF_8));
+    }
+  }
+
+  /** Text of the next number, checked against the JSON number grammar. */
+  public String readNumber() throws JsonSyntaxException {
+    skipWhitespace();
+    int start = pos;
+    skipNumber();
+    return new String(buf, start, pos - start, StandardCharsets.ISO_8859_1);
+  }
+
+  /** Whether the number text has a fraction or exponent. */
+  public static boolean isInteger(String number) {
+    for (int i = 0; i < number.length(); i++) {
+      char c = number.charAt(i);
+      if (c == '.' || c == 'e' || c == 'E') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public boolean readBoolean() throws JsonSyntaxException {
+    if (peek() == 't') {
+      literal("true");
+      return true;
+    }
+    literal("false");
+    return false;
+  }
+
+  public void readNull() throws JsonSyntaxException {
+    literal("null");
+  }
+
+  /** JSON text of the next value, as written. */
+  public String readRaw() throws JsonSyntaxException {
+    skipWhitespace();
+    int start = pos;
+    skipValue();
+    return new String(buf, start, pos - start, StandardCharsets.UTF_8);
+  }
+
+  /** Skips the next value, checking its syntax and the UTF-8 of its strings. */
+  public void skipValue() throws JsonSyntaxException {
+    skipValue(0);
+  }
+
+  private void skipValue(int depth) throws JsonSyntaxException {
+    if (depth > MAX_DEPTH) {
+      throw new JsonSyntaxException("Nesting deeper than " + MAX_DEPTH, pos);
+    }
+    char c = peek();
+    switch (c) {
+      case '"':
+        skipString();
+        return;
+      case '{':
+        pos++;
+        if (consume('}')) {
+          return;
+        }
+        do {
+          skipString();
+          expect(':');
+          skipValue(depth + 1);
+        } while (consume(','));
+        expect('}');
+        return;
+      case '[':
+        pos++;
+        if (consume(']')) {
+          return;
+        }
+        do {
+          skipValue(depth + 1);
+        } while (consume(','));
+        expect(']');
+        return;
+      case 't':
+        literal("true");
+        return;
+      case 'f':
+        literal("false");
+        return;
+      case 'n':
+        literal("null");
+        return;
+      default:
+        skipNumber();
+    }
+  }
+
+  private void skipString() throws JsonSyntaxException {
+    expect('"');
+    int start = pos - 1;
+    int i = pos;
+    while (true) {
+      i = JsonScanner.scanString(buf, i, end);
+      if (i == end) {
+        throw new JsonSyntaxException("Unterminated string", start);
+      }
+      byte b = buf[i];
+      if (b == '"') {
+        pos = i + 1;
+        return;
+      }
+      if (b == '\\') {
+        i = skipEscape(i);
+      } else {
+        i = nextPlain(i);
+      }
+    }
+  }
+
+  /** Steps over one control-free character at {@code i}, validating UTF-8. */
+  private int nextPlain(int i) throws JsonSyntaxException {
+    int b = buf[i] & 0xff;
+    if (b < 0x20) {
+      throw new JsonSyntaxException("Unescaped control character in string", i);
+    }
+    if (b < 0x80) {
+      return JsonScanner.scanString(buf, i + 1, end);
+    }
+    int length = JsonScanner.sequenceLength(buf, i, end);
+    if (length < 0) {
+      throw new JsonSyntaxException("Invalid UTF-8", i);
+    }
+    return i + length;
+  }
+
+  private int skipEscape(int i) throws JsonSyntaxException {
+    if (i + 1 >= end) {
+      throw new JsonSyntaxException("Unterminated string", i);
+    }
+    switch (buf[i + 1]) {
+      case '"':
+      case '\\':
+      case '/':
+      case 'b':
+      case 'f':
+      case 'n':
+      case 'r':
+      case 't':
+        return i + 2;
+      case 'u':
+        hex(i);
+        return i + 6;
+      default:
+        throw new JsonSyntaxException("Invalid escape", i);
+    }
+  }
+
+  /** Value of the four hex digits of the unicode escape at {@code i}. */
+  private int hex(int i) throws JsonSyntaxException {
+    if (i + 6 > end) {
+      throw new JsonSyntaxException("Unterminated string", i);
+    }
+    int code = 0;
+    for (int k = i + 2; k < i + 6; k++) {
+      int digit = Character.digit(buf[k], 16);
+      if (digit < 0) {
+        throw new JsonSyntaxException("Invalid \\u escape", i);
+      }
+      code = code * 16 + digit;
+    }
+    return code;
+  }
+
+  private int unescape(int i, StringBuilder value) throws JsonSyntaxException {
+    if (i + 1 >= end) {
+      throw new JsonSyntaxException("Unterminated string", i);
+    }
+    char c = (char) buf[i + 1];
+    switch (c) {
+      case '"':
+      case '\\':
+      case '/':
+        value.append(c);
+        return i + 2;
+      case 'b':
+        value.append('\b');
+        return i + 2;
+      case 'f':
+        value.append('\f');
+        return i + 2;
+      case 'n':
+        value.append('\n');
+        return i + 2;
+      case 'r':
+        value.append('\r');
+        return i + 2;
+      case 't':
+        value.append('\t');
+        return i + 2;
+      case 'u':
+        value.append((char) hex(i));
+        return i + 6;
+      default:
+        throw new JsonSyntaxException("Invalid escape", i);
+    }
+  }
+
+  private void skipNumber() throws JsonSyntaxException {
+    int start = pos;
+    if (pos < end && buf[pos] == '-') {
+      pos++;
+    }
+    if (pos < end && buf[pos] == '0') {
+      pos++;
+    } else if (skipDigits() == 0) {
+      throw new JsonSyntaxException("Unexpected character", start);
+    }
+    if (pos < end && buf[pos] == '.') {
+      pos++;
+      if (skipDigits() == 0) {
+        throw new JsonSyntaxException("Invalid number", start);
+      }
+    }
+    if (pos < end && (buf[pos] == 'e' || buf[pos] == 'E')) {
+      pos++;
+      if (pos < end && (buf[pos] == '+' || buf[pos] == '-')) {
+        pos++;
+      }
+      if (skipDigits() == 0) {
+        throw new JsonSyntaxException("Invalid number", start);
+      }
+    }
+  }
+
+  private int skipDigits() {
+    int start = pos;
+    while (pos < end && buf[pos] >= '0' && buf[pos] <= '9') {
+      pos++;
+    }
+    return pos - start;
+  }
+
+  private void literal(String text) throws JsonSyntaxException {
+    skipWhitespace();
+    if (pos + text.length() > end) {
+      throw new JsonSyntaxException("Unexpected end of input", pos);
+    }
+    for (int k = 0; k < text.length(); k++) {
+      if (buf[pos + k] != text.charAt(k)) {
+        throw new JsonSyntaxException("Unexpected character", pos);
+      }
+    }
+    pos += text.length();
+  }
+
+  private void skipWhitespace() {
+    while (pos < end) {
+      byte b = buf[pos];
+      if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+        return;
+      }
+      pos++;
+    }
+  }
+}
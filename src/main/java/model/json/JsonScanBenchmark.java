@@ -0,0 +1,131 @@
+package model.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import model.ingest.JsonEventParser;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Measures ingest JSON decoding on a batch built from an event file: {@code JsonScanBenchmark
+ * <events.avro> [events]}. Compares the word-at-a-time string scan and UTF-8 check with their
+ * byte-at-a-time forms, and decodes the batch with the byte reader.
+ */
+public final class JsonScanBenchmark {
+
+  private static final int ROUNDS = 5;
+
+  /** Keeps measured results alive. */
+  private static volatile long blackhole;
+
+  private JsonScanBenchmark() {}
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: JsonScanBenchmark <events.avro> [events]");
+      System.exit(1);
+    }
+    int limit = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Schema schema;
+    int count = 0;
+    try (DataFileReader<GenericRecord> reader =
+        new DataFileReader<>(new File(args[0]), new GenericDatumReader<>())) {
+      schema = reader.getSchema();
+      out.write('[');
+      while (reader.hasNext() && count < limit) {
+        if (count++ > 0) {
+          out.write(',');
+        }
+        out.write(GenericData.get().toString(reader.next()).getBytes(StandardCharsets.UTF_8));
+      }
+      out.write(']');
+    }
+    byte[] batch = out.toByteArray();
+    JsonEventParser parser = new JsonEventParser(schema);
+    System.out.printf("%d events, %d bytes%n", count, batch.length);
+
+    int[] strings = stringStarts(batch);
+    int stringBytes = (int) scanAll(batch, strings, false);
+    System.out.printf("%d strings, %d bytes of string content%n", strings.length, stringBytes);
+
+    for (int round = 0; round < ROUNDS; round++) {
+      boolean report = round == ROUNDS - 1;
+      long start = System.nanoTime();
+      long sink = scanAll(batch, strings, false);
+      report(report, "scan strings, scalar", stringBytes, System.nanoTime() - start, sink);
+      start = System.nanoTime();
+      sink = scanAll(batch, strings, true);
+      report(report, "scan strings, SWAR", stringBytes, System.nanoTime() - start, sink);
+
+      start = System.nanoTime();
+      sink = JsonScanner.validateUtf8Scalar(batch, 0, batch.length);
+      report(report, "validate UTF-8, scalar", batch.length, System.nanoTime() - start, sink);
+      start = System.nanoTime();
+      sink = JsonScanner.validateUtf8(batch, 0, batch.length);
+      report(report, "validate UTF-8, SWAR", batch.length, System.nanoTime() - start, sink);
+
+      start = System.nanoTime();
+      sink = 0;
+      JsonReader reader = new JsonReader(batch);
+      reader.expect('[');
+      do {
+        sink += parser.parse(reader).hashCode();
+      } while (reader.consume(','));
+      reader.expect(']');
+      report(report, "decode, byte reader", batch.length, System.nanoTime() - start, sink);
+    }
+  }
+
+  /** Offset of the first content byte of every string in the batch. */
+  private static int[] stringStarts(byte[] batch) {
+    int[] starts = new int[1024];
+    int count = 0;
+    for (int i = 0; i < batch.length; i++) {
+      if (batch[i] != '"') {
+        continue;
+      }
+      if (count == starts.length) {
+        starts = Arrays.copyOf(starts, count * 2);
+      }
+      starts[count++] = ++i;
+      while (batch[i] != '"') {
+        i += batch[i] == '\\' ? 2 : 1;
+      }
+    }
+    return Arrays.copyOf(starts, count);
+  }
+
+  /** Scans every string the way the reader does, summing their lengths. */
+  private static long scanAll(byte[] batch, int[] strings, boolean swar) {
+    long total = 0;
+    for (int start : strings) {
+      int i = start;
+      while (true) {
+        i =
+            swar
+                ? JsonScanner.scanString(batch, i, batch.length)
+                : JsonScanner.scanStringScalar(batch, i, batch.length);
+        if (batch[i] == '"') {
+          break;
+        }
+        i += batch[i] == '\\' ? 2 : 1;
+      }
+      total += i - start;
+    }
+    return total;
+  }
+
+  private static void report(boolean report, String name, int bytes, long nanos, long sink) {
+    blackhole += sink;
+    if (report) {
+      System.out.printf("%-24s %8.1f MB/s%n", name, bytes * 1e3 / nanos);
+    }
+  }
+}
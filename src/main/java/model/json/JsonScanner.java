@@ -0,0 +1,141 @@
+package model.json;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Byte scanning primitives for JSON text. The hot loops look at eight bytes per step as one
+ * little-endian long (SWAR): a byte-wise compare is a subtract-and-mask that sets the top bit of
+ * every matching byte, and the first match is found with one trailing-zero count. Tails shorter
+ * than eight bytes and non-ASCII sequences take the scalar path, which is also available on its own
+ * for comparison.
+ */
+public final class JsonScanner {
+
+  private static final VarHandle LONGS =
+      MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+  private static final long ONES = 0x0101010101010101L;
+  private static final long HIGHS = 0x8080808080808080L;
+  private static final long QUOTES = ONES * '"';
+  private static final long BACKSLASHES = ONES * '\\';
+  private static final long SPACES = ONES * 0x20;
+
+  private JsonScanner() {}
+
+  /**
+   * Index of the first byte in {@code [from, to)} that ends a plain run of JSON string content: a
+   * quote, a backslash, a control character or a non-ASCII byte; {@code to} if there is none.
+   */
+  public static int scanString(byte[] buf, int from, int to) {
+    int i = from;
+    for (; i + Long.BYTES <= to; i += Long.BYTES) {
+      long word = (long) LONGS.get(buf, i);
+      long quotes = word ^ QUOTES;
+      long backslashes = word ^ BACKSLASHES;
+      // (x - 0x01..) & ~x & 0x80.. flags zero bytes; a borrow can only flag bytes above a real
+      // match, so the lowest flag of the combined mask is always exact.
+      long special =
+          ((quotes - ONES) & ~quotes)
+              | ((backslashes - ONES) & ~backslashes)
+              | ((word - SPACES) & ~word)
+              | word;
+      special &= HIGHS;
+      if (special != 0) {
+        return i + (Long.numberOfTrailingZeros(special) >>> 3);
+      }
+    }
+    return scanStringScalar(buf, i, to);
+  }
+
+  /** Byte-at-a-time {@link #scanString}. */
+  public static int scanStringScalar(byte[] buf, int from, int to) {
+    for (int i = from; i < to; i++) {
+      int b = buf[i] & 0xff;
+      if (b == '"' || b == '\\' || b < 0x20 || b >= 0x80) {
+        return i;
+      }
+    }
+    return to;
+  }
+
+  /** Index of the first byte of an invalid UTF-8 sequence in {@code [from, to)}, or -1. */
+  public static int validateUtf8(byte[] buf, int from, int to) {
+    int i = from;
+    while (i < to) {
+      if (i + 2 * Long.BYTES <= to) {
+        long words = (long) LONGS.get(buf, i) | (long) LONGS.get(buf, i + Long.BYTES);
+        if ((words & HIGHS) == 0) {
+          i += 2 * Long.BYTES;
+          continue;
+        }
+      }
+      int length = sequenceLength(buf, i, to);
+      if (length < 0) {
+        return i;
+      }
+      i += length;
+    }
+    return -1;
+  }
+
+  /** Byte-at-a-time {@link #validateUtf8}. */
+  public static int validateUtf8Scalar(byte[] buf, int from, int to) {
+    for (int i = from; i < to; ) {
+      int length = sequenceLength(buf, i, to);
+      if (length < 0) {
+        return i;
+      }
+      i += length;
+    }
+    return -1;
+  }
+
+  /**
+   * Length of the well-formed UTF-8 sequence starting at {@code i}, or -1 if it is ill-formed,
+   * overlong, a surrogate, beyond U+10FFFF or cut off at {@code to}.
+   */
+  public static int sequenceLength(byte[] buf, int i, int to) {
+    int lead = buf[i] & 0xff;
+    if (lead < 0x80) {
+      return 1;
+    }
+    int length;
+    int min = 0x80;
+    int max = 0xbf;
+    if (lead < 0xc2) {
+      return -1;
+    } else if (lead < 0xe0) {
+      length = 2;
+    } else if (lead < 0xf0) {
+      length = 3;
+      if (lead == 0xe0) {
+        min = 0xa0;
+      } else if (lead == 0xed) {
+        max = 0x9f;
+      }
+    } else if (lead < 0xf5) {
+      length = 4;
+      if (lead == 0xf0) {
+        min = 0x90;
+      } else if (lead == 0xf4) {
+        max = 0x8f;
+      }
+    } else {
+      return -1;
+    }
+    if (i + length > to) {
+      return -1;
+    }
+    int second = buf[i + 1] & 0xff;
+    if (second < min || second > max) {
+      return -1;
+    }
+    for (int k = 2; k < length; k++) {
+      if ((buf[i + k] & 0xc0) != 0x80) {
+        return -1;
+      }
+    }
+    return length;
+  }
+}
@@ -0,0 +1,18 @@
+package model.json;
+
+import java.io.IOException;
+
+/** Malformed JSON or invalid UTF-8 at a byte offset. */
+public class JsonSyntaxException extends IOException {
+
+  private final int offset;
+
+  public JsonSyntaxException(String message, int offset) {
+    super(message + " at offset " + offset);
+    this.offset = offset;
+  }
+
+  public int getOffset() {
+    return offset;
+  }
+}
@@ -0,0 +1,344 @@
+package model.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+import model.utils.AvroEventSchemaBuilder;
+import model.utils.EventNames;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Produces synthetic EventDataPayload records: event names follow configured weights, sessions
+ * advance hitIds in order, user agents and IPs are drawn from pools of configured cardinality,
+ * fields relevant to an event name are filled in and everything else is sparse. Deterministic
+ * for a given seed and clock. Not thread-safe.
+ */
+@Slf4j
+public class EventGenerator {
+
+  private static final List<String> PLAYBACK_FIELDS =
+      List.of("channelId", "clipId", "clipTimelinePoint", "episodeId", "episodeTimelinePoint");
+  private static final List<String> AD_FIELDS =
+      List.of(
+          "channelId",
+          "cmId",
+          "cmPodId",
+          "cmPodRequestId",
+          "cmImpressionIndex",
+          "cmPodDuration",
+          "cmDurationServed",
+          "cmNetworkName");
+  private static final List<String> PAGE_FIELDS = List.of("pageName", "pageUrlSp", "referrer");
+  private static final Set<String> ALWAYS_SET =
+      Set.of(
+          "appName",
+          "appVersion",
+          "clientId",
+          "clientIp",
+          "clientUserAgent",
+          "eventCategory",
+          "eventName",
+          "eventNameSp",
+          "eventOccurredTimestampUtc",
+          "eventEmittedUtc",
+          "eventServerLoggedUtc",
+          "environment",
+          "hitId",
+          "httpHeaders",
+          "previousChannelId",
+          "sessionId");
+  /** Set by the pipeline itself, never by clients. */
+  private static final Set<String> PIPELINE_SET = Set.of("clientOccurredTimestampUtc", "sampleRate");
+  private static final String[] HEADER_NAMES = {
+    "user-agent", "accept-language", "x-forwarded-for", "accept", "accept-encoding", "origin"
+  };
+
+  private final EventGeneratorConfig config;
+  private final Schema schema;
+  private final SplittableRandom random;
+  private final LongSupplier clock;
+
+  private final double[] cumulativeWeights;
+  private final GenericData.EnumSymbol[] eventNames;
+  private final int[][] specificFields;
+  private final int[] sparseFields;
+  private final String[] userAgents;
+  private final String[] ips;
+  private final String[] channels;
+  private final String[] clientIds;
+  private final Session[] sessions;
+
+  public EventGenerator(EventGeneratorConfig config) {
+    this(config, AvroEventSchemaBuilder.buildSchema(), System::currentTimeMillis);
+  }
+
+  public EventGenerator(EventGeneratorConfig config, Schema schema, LongSupplier clock) {
+    this.config = config;
+    this.schema = schema;
+    this.random = new SplittableRandom(config.getSeed());
+    this.clock = clock;
+
+    this.cumulativeWeights = new double[EventNames.COUNT];
+    this.eventNames = new GenericData.EnumSymbol[EventNames.COUNT];
+    this.specificFields = new int[EventNames.COUNT][];
+    Schema enumSchema = schema.getField("eventName").schema();
+    double total = 0;
+    for (int i = 0; i < EventNames.COUNT; i++) {
+      String symbol = EventNames.symbol(i);
+      total += config.getEventNameWeights().getOrDefault(symbol, config.getDefaultWeight());
+      cumulativeWeights[i] = total;
+      eventNames[i] = new GenericData.EnumSymbol(enumSchema, symbol);
+      specificFields[i] = positions(fieldsFor(symbol));
+    }
+    for (String symbol : config.getEventNameWeights().keySet()) {
+      if (EventNames.ordinal(symbol) < 0) {
+        throw new IllegalArgumentException("Unknown event name: " + symbol);
+      }
+    }
+    if (total <= 0) {
+      throw new IllegalArgumentException("Event name weights must not all be zero");
+    }
+
+    Set<String> excluded = new HashSet<>(ALWAYS_SET);
+    excluded.addAll(PIPELINE_SET);
+    excluded.addAll(PLAYBACK_FIELDS);
+    excluded.addAll(AD_FIELDS);
+    excluded.addAll(PAGE_FIELDS);
+    this.sparseFields =
+        schema.getFields().stream()
+            .filter(field -> field.schema().getType() == Schema.Type.UNION)
+            .filter(field -> !excluded.contains(field.name()))
+            .mapToInt(Schema.Field::pos)
+            .toArray();
+
+    this.userAgents = new String[config.getUserAgentCardinality()];
+    for (int i = 0; i < userAgents.length; i++) {
+      userAgents[i] = userAgent(i);
+    }
+    this.ips = new String[config.getIpCardinality()];
+    for (int i = 0; i < ips.length; i++) {
+      ips[i] =
+          (random.nextInt(223) + 1)
+              + "."
+              + random.nextInt(256)
+              + "."
+              + random.nextInt(256)
+              + "."
+              + random.nextInt(256);
+    }
+    this.channels = new String[300];
+    for (int i = 0; i < channels.length; i++) {
+      channels[i] = hexId(i);
+    }
+    this.clientIds = new String[config.getClientCardinality()];
+    this.sessions = new Session[config.getConcurrentSessions()];
+    for (int i = 0; i < sessions.length; i++) {
+      sessions[i] = newSession();
+    }
+  }
+
+  public Schema getSchema() {
+    return schema;
+  }
+
+  public GenericRecord next() {
+    Session session = sessions[random.nextInt(sessions.length)];
+    if (session.remaining-- <= 0) {
+      session = sessions[random.nextInt(sessions.length)] = newSession();
+    }
+    int eventName = nextEventName();
+    long occurred = clock.getAsLong() - random.nextInt(2_000);
+    long emitted = occurred + random.nextInt(1_000);
+
+    GenericData.Record event = new GenericData.Record(schema);
+    event.put("appName", session.appName);
+    event.put("appVersion", "5." + session.appVersion + ".0");
+    event.put("clientId", session.clientId);
+    event.put("clientIp", session.ip);
+    event.put("clientUserAgent", session.userAgent);
+    event.put("eventCategory", eventCategory(EventNames.symbol(eventName)));
+    event.put("eventName", eventNames[eventName]);
+    event.put("eventNameSp", "unstruct");
+    event.put("eventOccurredTimestampUtc", occurred);
+    event.put("eventEmittedUtc", emitted);
+    event.put("eventServerLoggedUtc", emitted + 20 + random.nextInt(300));
+    event.put("environment", session.environment);
+    event.put("hitId", session.hitId++);
+    event.put("sessionId", session.sessionId);
+    event.put("httpHeaders", headers(session));
+
+    if (eventName == EventNames.ordinal("channelChange")) {
+      event.put("previousChannelId", channels[session.channel]);
+      session.channel = random.nextInt(channels.length);
+    }
+    for (int pos : specificFields[eventName]) {
+      event.put(pos, value(schema.getFields().get(pos), session));
+    }
+    for (int pos : sparseFields) {
+      if (random.nextDouble() < config.getOptionalFieldFillRate()) {
+        event.put(pos, value(schema.getFields().get(pos), session));
+      }
+    }
+    return event;
+  }
+
+  /** Writes {@code count} generated events to an Avro container file. */
+  public void writeFile(File file, long count) throws IOException {
+    try (DataFileWriter<GenericRecord> writer =
+        new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema))) {
+      writer.create(schema, file);
+      for (long i = 0; i < count; i++) {
+        writer.append(next());
+      }
+    }
+    log.info("Wrote {} synthetic events to {}", count, file);
+  }
+
+  private int nextEventName() {
+    double pick = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+    int index = Arrays.binarySearch(cumulativeWeights, pick);
+    index = index < 0 ? -index - 1 : index + 1;
+    return Math.min(index, cumulativeWeights.length - 1);
+  }
+
+  private Session newSession() {
+    Session session = new Session();
+    int client = random.nextInt(clientIds.length);
+    if (clientIds[client] == null) {
+      clientIds[client] = new UUID(random.nextLong(), random.nextLong()).toString();
+    }
+    session.clientId = clientIds[client];
+    session.sessionId = new UUID(random.nextLong(), random.nextLong()).toString();
+    session.userAgent = userAgents[client % userAgents.length];
+    session.ip = ips[random.nextInt(ips.length)];
+    session.appName = pick(config.getAppNames(), client);
+    session.environment = pick(config.getEnvironments(), client);
+    session.appVersion = client % 7;
+    session.channel = random.nextInt(channels.length);
+    session.remaining = 1 + (int) (-Math.log(1 - random.nextDouble()) * config.getMeanEventsPerSession());
+    return session;
+  }
+
+  private Object value(Schema.Field field, Session session) {
+    switch (field.name()) {
+      case "channelId":
+        return channels[session.channel];
+      case "cmPodId":
+      case "cmPodRequestId":
+        return session.sessionId.substring(0, 8) + "-" + (session.hitId / 10);
+      default:
+        break;
+    }
+    Schema type = field.schema().getType() == Schema.Type.UNION
+        ? field.schema().getTypes().get(1)
+        : field.schema();
+    switch (type.getType()) {
+      case STRING:
+        return field.name() + "-" + random.nextInt(config.getStringFieldCardinality());
+      case INT:
+        return random.nextInt(1_000);
+      case LONG:
+        return type.getLogicalType() != null
+            ? clock.getAsLong() - random.nextInt(60_000)
+            : (long) random.nextInt(3_600_000);
+      case FLOAT:
+        return (float) random.nextDouble();
+      case DOUBLE:
+        return random.nextDouble() * 20;
+      case BOOLEAN:
+        return random.nextBoolean();
+      case MAP:
+        return Map.of("k" + random.nextInt(5), "v" + random.nextInt(config.getStringFieldCardinality()));
+      default:
+        return null;
+    }
+  }
+
+  private Map<String, String> headers(Session session) {
+    Map<String, String> headers = new HashMap<>(8);
+    headers.put(HEADER_NAMES[0], session.userAgent);
+    headers.put(HEADER_NAMES[1], "en-US,en;q=0.9");
+    headers.put(HEADER_NAMES[2], session.ip);
+    if (random.nextBoolean()) {
+      headers.put(HEADER_NAMES[3], "*/*");
+      headers.put(HEADER_NAMES[4], "gzip, deflate, br");
+    }
+    if (random.nextInt(4) == 0) {
+      headers.put(HEADER_NAMES[5], "https://pluto.tv");
+    }
+    return headers;
+  }
+
+  private int[] positions(List<String> names) {
+    return names.stream().mapToInt(name -> schema.getField(name).pos()).toArray();
+  }
+
+  private static List<String> fieldsFor(String eventName) {
+    if (eventName.startsWith("cm")) {
+      return AD_FIELDS;
+    }
+    if (eventName.equals("heartBeat")
+        || eventName.startsWith("clip")
+        || eventName.startsWith("episode")
+        || eventName.startsWith("channel")) {
+      return PLAYBACK_FIELDS;
+    }
+    if (eventName.equals("pageView")) {
+      return PAGE_FIELDS;
+    }
+    return List.of();
+  }
+
+  private static String eventCategory(String eventName) {
+    if (eventName.startsWith("cm")) {
+      return "ad";
+    }
+    return eventName.endsWith("Error") ? "error" : "player";
+  }
+
+  private static String userAgent(int i) {
+    return "Mozilla/5.0 (Linux; Android "
+        + (8 + i % 6)
+        + "; Device-"
+        + i
+        + ") AppleWebKit/537.36 (KHTML, like Gecko) Chrome/"
+        + (90 + i % 30)
+        + ".0.4430."
+        + (i % 200)
+        + " Mobile Safari/537.36";
+  }
+
+  private static String hexId(int i) {
+    return String.format("5f%022x", (long) i * 0x9e3779b1L);
+  }
+
+  private static <T> T pick(List<T> values, int index) {
+    return values.get(index % values.size());
+  }
+
+  private static final class Session {
+    String clientId;
+    String sessionId;
+    String userAgent;
+    String ip;
+    String appName;
+    String environment;
+    int appVersion;
+    int channel;
+    int hitId;
+    int remaining;
+  }
+}
@@ -0,0 +1,68 @@
+package model.loadtest;
+
+import java.util.List;
+import java.util.Map;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Singular;
+import lombok.ToString;
+
+@Getter
+@Builder
+@ToString
+public class EventGeneratorConfig {
+
+  @Builder.Default private final long seed = 42L;
+
+  /**
+   * Relative weight per EventName symbol. Symbols without an entry get {@link #defaultWeight}, so
+   * every event name shows up unless explicitly weighted 0.
+   */
+  @Singular private final Map<String, Double> eventNameWeights;
+
+  @Builder.Default private final double defaultWeight = 0.2;
+
+  /** Distinct clientIds, i.e. devices. */
+  @Builder.Default private final int clientCardinality = 100_000;
+
+  /** Sessions in flight at once; each event continues one of them. */
+  @Builder.Default private final int concurrentSessions = 5_000;
+
+  @Builder.Default private final int meanEventsPerSession = 60;
+
+  @Builder.Default private final int userAgentCardinality = 2_000;
+
+  @Builder.Default private final int ipCardinality = 50_000;
+
+  /** Probability that an optional field not tied to the event name is populated. */
+  @Builder.Default private final double optionalFieldFillRate = 0.1;
+
+  /** Distinct values per generic optional string field. */
+  @Builder.Default private final int stringFieldCardinality = 50;
+
+  @Builder.Default private final List<String> appNames = List.of("web", "androidmobile", "roku");
+
+  @Builder.Default private final List<String> environments = List.of("production");
+
+  /** Weights close to typical production traffic, dominated by heartbeats and ad beacons. */
+  public static EventGeneratorConfig.EventGeneratorConfigBuilder production() {
+    return builder()
+        .eventNameWeight("heartBeat", 40.0)
+        .eventNameWeight("cmImpression", 6.0)
+        .eventNameWeight("cmStart", 6.0)
+        .eventNameWeight("cmFirstQuartile", 5.0)
+        .eventNameWeight("cmMidPoint", 5.0)
+        .eventNameWeight("cmThirdQuartile", 5.0)
+        .eventNameWeight("cmComplete", 5.0)
+        .eventNameWeight("cmPodStart", 2.0)
+        .eventNameWeight("cmPodEnd", 2.0)
+        .eventNameWeight("channelChange", 4.0)
+        .eventNameWeight("clipStart", 3.0)
+        .eventNameWeight("clipEnd", 3.0)
+        .eventNameWeight("episodeStart", 2.0)
+        .eventNameWeight("episodeEnd", 2.0)
+        .eventNameWeight("pageView", 3.0)
+        .eventNameWeight("appLaunch", 1.0)
+        .eventNameWeight("videoError", 0.5);
+  }
+}
@@ -0,0 +1,9 @@
+package model.loadtest;
+
+import org.apache.avro.generic.GenericRecord;
+
+/** The system under test in a replay: called once per replayed event. */
+@FunctionalInterface
+public interface EventHandler {
+  void handle(GenericRecord event) throws Exception;
+}
@@ -0,0 +1,45 @@
+package model.loadtest;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import model.codec.AvroRecordCodec;
+import model.metrics.EventMetrics;
+import model.utils.AvroEventSchemaBuilder;
+
+/**
+ * Offline load-test entry point.
+ *
+ * <pre>
+ *   generate &lt;file.avro&gt; &lt;count&gt;            write synthetic events
+ *   replay &lt;rate&gt; &lt;file.avro&gt;...          drive recorded events through the codec
+ * </pre>
+ */
+@Slf4j
+public class LoadTest {
+
+  public static void main(String[] args) throws Exception {
+    if (args.length >= 3 && "generate".equals(args[0])) {
+      EventGenerator generator = new EventGenerator(EventGeneratorConfig.production().build());
+      generator.writeFile(new File(args[1]), Long.parseLong(args[2]));
+    } else if (args.length >= 3 && "replay".equals(args[0])) {
+      List<File> files = new ArrayList<>();
+      for (int i = 2; i < args.length; i++) {
+        files.add(new File(args[i]));
+      }
+      EventMetrics metrics = new EventMetrics();
+      AvroRecordCodec codec =
+          AvroRecordCodec.forEvents(AvroEventSchemaBuilder.buildSchema(), metrics);
+      ReplayResult result =
+          new ReplayDriver(Double.parseDouble(args[1]))
+              .replay(files, event -> codec.decode(codec.encode(event)));
+      System.out.println(result.toText());
+      System.out.print(metrics.snapshot().toText());
+    } else {
+      System.err.println("Usage: LoadTest generate <file.avro> <count>");
+      System.err.println("       LoadTest replay <eventsPerSecond> <file.avro>...");
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package model.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import lombok.extern.slf4j.Slf4j;
+import model.metrics.LatencyHistogram;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Replays recorded Avro container files into an {@link EventHandler} at a fixed target rate.
+ * Event {@code i} is scheduled at {@code start + i / rate}; its latency is the time from that
+ * schedule to completion, which corrects for coordinated omission when the handler falls behind.
+ */
+@Slf4j
+public class ReplayDriver {
+
+  private final double eventsPerSecond;
+  private final long maxEvents;
+
+  public ReplayDriver(double eventsPerSecond) {
+    this(eventsPerSecond, Long.MAX_VALUE);
+  }
+
+  public ReplayDriver(double eventsPerSecond, long maxEvents) {
+    if (eventsPerSecond <= 0) {
+      throw new IllegalArgumentException("Target rate must be positive: " + eventsPerSecond);
+    }
+    this.eventsPerSecond = eventsPerSecond;
+    this.maxEvents = maxEvents;
+  }
+
+  public ReplayResult replay(List<File> files, EventHandler handler) throws IOException {
+    LatencyHistogram latency = new LatencyHistogram();
+    LatencyHistogram service = new LatencyHistogram();
+    double intervalNanos = 1e9 / eventsPerSecond;
+    long events = 0;
+    long failures = 0;
+    long start = System.nanoTime();
+
+    GenericRecord event = null;
+    for (File file : files) {
+      try (DataFileReader<GenericRecord> reader =
+          new DataFileReader<>(file, new GenericDatumReader<>())) {
+        while (reader.hasNext() && events < maxEvents) {
+          event = reader.next(event);
+          long intended = start + (long) (events * intervalNanos);
+          long now;
+          while ((now = System.nanoTime()) < intended) {
+            long wait = intended - now;
+            if (wait > 50_000) {
+              LockSupport.parkNanos(wait - 20_000);
+            } else {
+              Thread.onSpinWait();
+            }
+          }
+          try {
+            handler.handle(event);
+          } catch (Exception e) {
+            if (failures++ == 0) {
+              log.warn("Handler failed during replay of {}", file, e);
+            }
+          }
+          long done = System.nanoTime();
+          latency.record(done - intended);
+          service.record(done - now);
+          events++;
+        }
+      }
+    }
+
+    long elapsed = Math.max(1, System.nanoTime() - start);
+    long[] counts = latency.snapshotCounts();
+    long total = LatencyHistogram.total(counts);
+    long[] serviceCounts = service.snapshotCounts();
+    return new ReplayResult(
+        events,
+        failures,
+        eventsPerSecond,
+        events * 1e9 / elapsed,
+        LatencyHistogram.percentile(counts, total, 50),
+        LatencyHistogram.percentile(counts, total, 99),
+        LatencyHistogram.percentile(counts, total, 99.9),
+        LatencyHistogram.percentile(counts, total, 100),
+        LatencyHistogram.percentile(serviceCounts, total, 99));
+  }
+}
@@ -0,0 +1,36 @@
+package model.loadtest;
+
+import lombok.Value;
+
+/**
+ * Outcome of a replay. Latencies are measured from each event's intended send time, so stalls in
+ * the handler show up in the percentiles rather than silently lowering the offered rate.
+ */
+@Value
+public class ReplayResult {
+  long events;
+  long failures;
+  double targetRate;
+  double achievedRate;
+  long p50Nanos;
+  long p99Nanos;
+  long p999Nanos;
+  long maxNanos;
+  /** p99 of pure handler time, without queueing behind earlier slow events. */
+  long serviceP99Nanos;
+
+  public String toText() {
+    return String.format(
+        "events=%d failures=%d target=%.0f/s achieved=%.0f/s p50=%dus p99=%dus p99.9=%dus"
+            + " max=%dus serviceP99=%dus",
+        events,
+        failures,
+        targetRate,
+        achievedRate,
+        p50Nanos / 1000,
+        p99Nanos / 1000,
+        p999Nanos / 1000,
+        maxNanos / 1000,
+        serviceP99Nanos / 1000);
+  }
+}
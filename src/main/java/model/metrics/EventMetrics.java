@@ -0,0 +1,39 @@
+package model.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Registry of per-{@link Stage} metrics. Recording never allocates, so a single shared instance
+ * can stay enabled in production.
+ */
+public final class EventMetrics {
+
+  private static final EventMetrics SHARED = new EventMetrics();
+
+  private final StageMetrics[] stages = new StageMetrics[Stage.values().length];
+  private final long startedMillis = System.currentTimeMillis();
+
+  public EventMetrics() {
+    for (Stage stage : Stage.values()) {
+      stages[stage.ordinal()] = new StageMetrics(stage);
+    }
+  }
+
+  /** Process-wide registry used when no explicit instance is passed. */
+  public static EventMetrics shared() {
+    return SHARED;
+  }
+
+  public StageMetrics stage(Stage stage) {
+    return stages[stage.ordinal()];
+  }
+
+  public MetricsSnapshot snapshot() {
+    List<StageSnapshot> snapshots = new ArrayList<>(stages.length);
+    for (StageMetrics stage : stages) {
+      snapshots.add(stage.snapshot());
+    }
+    return new MetricsSnapshot(startedMillis, System.currentTimeMillis(), snapshots);
+  }
+}
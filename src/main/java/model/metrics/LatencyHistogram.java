@@ -0,0 +1,92 @@
+package model.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear latency histogram in the style of HdrHistogram: every power-of-two range is split
+ * into 32 linear sub-buckets, so a recorded value is reported within ~3% of its true value.
+ * Recording is allocation-free and spreads writers over striped counter arrays to avoid
+ * contention on a single cache line.
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  /** Values are clamped to 2^40 ns, about 18 minutes. */
+  private static final int MAX_VALUE_BITS = 40;
+
+  static final int BUCKETS = (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+  private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+
+  private final AtomicLongArray[] stripes;
+  private final int stripeMask;
+
+  public LatencyHistogram() {
+    int cpus = Runtime.getRuntime().availableProcessors();
+    int stripeCount = Math.min(8, Integer.highestOneBit(Math.max(1, cpus - 1)) << 1);
+    this.stripes = new AtomicLongArray[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new AtomicLongArray(BUCKETS);
+    }
+    this.stripeMask = stripeCount - 1;
+  }
+
+  public void record(long value) {
+    int stripe = (int) Thread.currentThread().threadId() & stripeMask;
+    stripes[stripe].getAndIncrement(bucketIndex(value));
+  }
+
+  /** Sums all stripes into a point-in-time bucket count array. */
+  public long[] snapshotCounts() {
+    long[] counts = new long[BUCKETS];
+    for (AtomicLongArray stripe : stripes) {
+      for (int i = 0; i < BUCKETS; i++) {
+        counts[i] += stripe.get(i);
+      }
+    }
+    return counts;
+  }
+
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKETS) {
+      return value < 0 ? 0 : (int) value;
+    }
+    value = Math.min(value, MAX_VALUE);
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return ((shift + 1) << SUB_BUCKET_BITS) + (int) (value >>> shift) - SUB_BUCKETS;
+  }
+
+  /** Largest value that falls into the bucket. */
+  static long highestValue(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = (index >>> SUB_BUCKET_BITS) - 1;
+    long sub = (index & (SUB_BUCKETS - 1)) + SUB_BUCKETS;
+    return ((sub + 1) << shift) - 1;
+  }
+
+  public static long total(long[] counts) {
+    long total = 0;
+    for (long count : counts) {
+      total += count;
+    }
+    return total;
+  }
+
+  /** Value at the given percentile (0-100) of a {@link #snapshotCounts()} result. */
+  public static long percentile(long[] counts, long total, double percentile) {
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return highestValue(i);
+      }
+    }
+    return highestValue(counts.length - 1);
+  }
+}
@@ -0,0 +1,89 @@
+package model.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Exports {@link EventMetrics} by logging a text summary periodically and, optionally, serving
+ * JSON at {@code http://127.0.0.1:<port>/metrics} and text at {@code /metrics.txt}.
+ */
+@Slf4j
+public class MetricsReporter implements Closeable {
+
+  private final EventMetrics metrics;
+  private final ScheduledExecutorService scheduler;
+  private HttpServer server;
+
+  public MetricsReporter(EventMetrics metrics) {
+    this.metrics = metrics;
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "metrics-reporter");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  public MetricsReporter logEvery(Duration interval) {
+    long millis = interval.toMillis();
+    scheduler.scheduleAtFixedRate(this::logSnapshot, millis, millis, TimeUnit.MILLISECONDS);
+    return this;
+  }
+
+  /** Serves snapshots on the loopback interface; port 0 picks a free port. */
+  public MetricsReporter serveOn(int port) throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    server.createContext(
+        "/metrics", exchange -> {
+          boolean text = exchange.getRequestURI().getPath().endsWith(".txt");
+          MetricsSnapshot snapshot = metrics.snapshot();
+          byte[] body =
+              (text ? snapshot.toText() : snapshot.toJson()).getBytes(StandardCharsets.UTF_8);
+          exchange
+              .getResponseHeaders()
+              .set("Content-Type", text ? "text/plain" : "application/json");
+          exchange.sendResponseHeaders(200, body.length);
+          try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+          }
+        });
+    server.setExecutor(scheduler);
+    server.start();
+    log.info("Serving event metrics on {}", server.getAddress());
+    return this;
+  }
+
+  public int getPort() {
+    return server == null ? -1 : server.getAddress().getPort();
+  }
+
+  private void logSnapshot() {
+    try {
+      String text = metrics.snapshot().toText();
+      if (!text.isEmpty()) {
+        log.info("Event processing metrics:\n{}", text);
+      }
+    } catch (RuntimeException e) {
+      log.warn("Failed to report event metrics", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    if (server != null) {
+      server.stop(0);
+    }
+    scheduler.shutdownNow();
+  }
+}
@@ -0,0 +1,70 @@
+package model.metrics;
+
+import java.util.List;
+import java.util.Map;
+import lombok.Value;
+
+@Value
+public class MetricsSnapshot {
+  long startedMillis;
+  long takenMillis;
+  List<StageSnapshot> stages;
+
+  /** One line per active stage, suitable for logging. */
+  public String toText() {
+    double seconds = Math.max(1, takenMillis - startedMillis) / 1000.0;
+    StringBuilder text = new StringBuilder();
+    for (StageSnapshot stage : stages) {
+      if (stage.getCount() == 0 && stage.getErrors() == 0) {
+        continue;
+      }
+      text.append(
+          String.format(
+              "%-13s count=%d rate=%.1f/s bytes=%d errors=%d p50=%dns p99=%dns p99.9=%dns"
+                  + " max=%dns%n",
+              stage.getStage(),
+              stage.getCount(),
+              stage.getCount() / seconds,
+              stage.getBytes(),
+              stage.getErrors(),
+              stage.getP50Nanos(),
+              stage.getP99Nanos(),
+              stage.getP999Nanos(),
+              stage.getMaxNanos()));
+    }
+    return text.toString();
+  }
+
+  public String toJson() {
+    StringBuilder json = new StringBuilder(1024);
+    json.append("{\"startedMillis\":").append(startedMillis);
+    json.append(",\"takenMillis\":").append(takenMillis).append(",\"stages\":{");
+    boolean firstStage = true;
+    for (StageSnapshot stage : stages) {
+      if (!firstStage) {
+        json.append(',');
+      }
+      firstStage = false;
+      json.append('"').append(stage.getStage()).append("\":{");
+      json.append("\"count\":").append(stage.getCount());
+      json.append(",\"bytes\":").append(stage.getBytes());
+      json.append(",\"errors\":").append(stage.getErrors());
+      json.append(",\"p50Nanos\":").append(stage.getP50Nanos());
+      json.append(",\"p90Nanos\":").append(stage.getP90Nanos());
+      json.append(",\"p99Nanos\":").append(stage.getP99Nanos());
+      json.append(",\"p999Nanos\":").append(stage.getP999Nanos());
+      json.append(",\"maxNanos\":").append(stage.getMaxNanos());
+      json.append(",\"eventNames\":{");
+      boolean firstName = true;
+      for (Map.Entry<String, Long> entry : stage.eventNameCounts().entrySet()) {
+        if (!firstName) {
+          json.append(',');
+        }
+        firstName = false;
+        json.append('"').append(entry.getKey()).append("\":").append(entry.getValue());
+      }
+      json.append("}}");
+    }
+    return json.append("}}").toString();
+  }
+}
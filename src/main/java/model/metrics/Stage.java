@@ -0,0 +1,11 @@
+package model.metrics;
+
+/** Event processing stages that report latency and throughput. */
+public enum Stage {
+  EVENT_DECODE,
+  EVENT_ENCODE,
+  ERROR_DECODE,
+  ERROR_ENCODE,
+  ENRICHMENT,
+  S3_UPLOAD
+}
@@ -0,0 +1,74 @@
+package model.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import model.utils.EventNames;
+
+/** Latency, throughput and error counters of one {@link Stage}. */
+public final class StageMetrics {
+
+  private final Stage stage;
+  private final LatencyHistogram latency = new LatencyHistogram();
+  private final LongAdder count = new LongAdder();
+  private final LongAdder bytes = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder[] countByEventName = new LongAdder[EventNames.COUNT];
+  private final LongAdder[] nanosByEventName = new LongAdder[EventNames.COUNT];
+
+  StageMetrics(Stage stage) {
+    this.stage = stage;
+    for (int i = 0; i < EventNames.COUNT; i++) {
+      countByEventName[i] = new LongAdder();
+      nanosByEventName[i] = new LongAdder();
+    }
+  }
+
+  public Stage getStage() {
+    return stage;
+  }
+
+  /**
+   * Records one processed item.
+   *
+   * @param eventNameOrdinal EventName ordinal for the per-event breakdown, or -1 if not applicable
+   * @param nanos time spent in the stage
+   * @param byteCount bytes produced or consumed, 0 if not applicable
+   */
+  public void record(int eventNameOrdinal, long nanos, long byteCount) {
+    latency.record(nanos);
+    count.increment();
+    if (byteCount > 0) {
+      bytes.add(byteCount);
+    }
+    if (eventNameOrdinal >= 0 && eventNameOrdinal < EventNames.COUNT) {
+      countByEventName[eventNameOrdinal].increment();
+      nanosByEventName[eventNameOrdinal].add(nanos);
+    }
+  }
+
+  public void recordError() {
+    errors.increment();
+  }
+
+  StageSnapshot snapshot() {
+    long[] counts = latency.snapshotCounts();
+    long total = LatencyHistogram.total(counts);
+    long[] eventCounts = new long[EventNames.COUNT];
+    long[] eventNanos = new long[EventNames.COUNT];
+    for (int i = 0; i < EventNames.COUNT; i++) {
+      eventCounts[i] = countByEventName[i].sum();
+      eventNanos[i] = nanosByEventName[i].sum();
+    }
+    return new StageSnapshot(
+        stage,
+        count.sum(),
+        bytes.sum(),
+        errors.sum(),
+        LatencyHistogram.percentile(counts, total, 50),
+        LatencyHistogram.percentile(counts, total, 90),
+        LatencyHistogram.percentile(counts, total, 99),
+        LatencyHistogram.percentile(counts, total, 99.9),
+        LatencyHistogram.percentile(counts, total, 100),
+        eventCounts,
+        eventNanos);
+  }
+}
@@ -0,0 +1,33 @@
+package model.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.Value;
+import model.utils.EventNames;
+
+/** Cumulative counters and latency percentiles (in nanoseconds) of a stage. */
+@Value
+public class StageSnapshot {
+  Stage stage;
+  long count;
+  long bytes;
+  long errors;
+  long p50Nanos;
+  long p90Nanos;
+  long p99Nanos;
+  long p999Nanos;
+  long maxNanos;
+  long[] countByEventName;
+  long[] nanosByEventName;
+
+  /** Counts keyed by EventName symbol, omitting event names that were not seen. */
+  public Map<String, Long> eventNameCounts() {
+    Map<String, Long> counts = new LinkedHashMap<>();
+    for (int i = 0; i < countByEventName.length; i++) {
+      if (countByEventName[i] > 0) {
+        counts.put(EventNames.symbol(i), countByEventName[i]);
+      }
+    }
+    return counts;
+  }
+}
@@ -0,0 +1,26 @@
+package model.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** JFR event for an enrichment cache miss the cache loaded itself, timed over the load. */
+@Name("model.CacheMiss")
+@Label("Enrichment Cache Miss")
+@Category({"Event Pipeline", "Cache"})
+@StackTrace(false)
+public class CacheMissEvent extends jdk.jfr.Event {
+
+  @Label("Cache")
+  String cache;
+
+  /** Commits the event if it is enabled and over its threshold. */
+  public void finish(String cache) {
+    end();
+    if (shouldCommit()) {
+      this.cache = cache;
+      commit();
+    }
+  }
+}
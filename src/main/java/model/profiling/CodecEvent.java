@@ -0,0 +1,45 @@
+package model.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import model.metrics.Stage;
+
+/**
+ * JFR event for one EventDataPayload or ErrorMessage Avro encode or decode. Only calls slower than
+ * the threshold are recorded, so it can stay enabled on the hot path.
+ */
+@Name("model.Codec")
+@Label("Avro Encode/Decode")
+@Category({"Event Pipeline", "Codec"})
+@Description("A single record encode or decode slower than the threshold")
+@Threshold("1 ms")
+@StackTrace(false)
+public class CodecEvent extends jdk.jfr.Event {
+
+  @Label("Stage")
+  String stage;
+
+  @Label("Event Name")
+  @Description("EventName ordinal, or -1 for ErrorMessages")
+  int eventName;
+
+  @Label("Bytes")
+  @DataAmount
+  long bytes;
+
+  /** Commits the event if it is enabled and over its threshold. */
+  public void finish(Stage stage, int eventName, long bytes) {
+    end();
+    if (shouldCommit()) {
+      this.stage = stage.name();
+      this.eventName = eventName;
+      this.bytes = bytes;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,143 @@
+package model.profiling;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Always-on JDK Flight Recorder recording of the pipeline events ({@link CodecEvent}, {@link
+ * DecodeBatchEvent}, {@link CacheMissEvent}, {@link S3UploadEvent}, {@link ErrorMessageEvent}) on
+ * top of the JVM's own, written to a new file in the configured directory every roll interval.
+ * Rolling starts the next recording before stopping the current one, so files overlap by a moment
+ * rather than leaving gaps. Only the newest {@code maxFiles} files are kept.
+ */
+@Slf4j
+public class ContinuousRecording implements Closeable {
+
+  private static final DateTimeFormatter FILE_TIME =
+      DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+  private static final String PREFIX = "event-pipeline-";
+
+  private final ProfilingConfig config;
+  private final Configuration settings;
+  private final ScheduledExecutorService roller;
+  private Recording current;
+  private int sequence;
+
+  private ContinuousRecording(ProfilingConfig config) throws IOException {
+    this.config = config;
+    try {
+      this.settings = Configuration.getConfiguration(config.getSettings());
+    } catch (ParseException e) {
+      throw new IOException("Invalid JFR settings " + config.getSettings(), e);
+    }
+    Files.createDirectories(config.getDirectory());
+    this.current = startRecording();
+    long interval = config.getRollInterval().toMillis();
+    this.roller =
+        Executors.newSingleThreadScheduledExecutor(
+            task -> {
+              Thread thread = new Thread(task, "jfr-roller");
+              thread.setDaemon(true);
+              return thread;
+            });
+    roller.scheduleAtFixedRate(this::roll, interval, interval, TimeUnit.MILLISECONDS);
+    log.info("Continuous JFR recording started with {}", config);
+  }
+
+  /** Starts recording to {@code config.getDirectory()}. */
+  public static ContinuousRecording start(ProfilingConfig config) throws IOException {
+    return new ContinuousRecording(config);
+  }
+
+  /** Writes the current file and starts the next one. */
+  public synchronized void roll() {
+    if (current == null) {
+      return;
+    }
+    Recording previous = current;
+    try {
+      current = startRecording();
+    } catch (IOException | RuntimeException e) {
+      log.warn("Could not start the next JFR recording; keeping the current one", e);
+      return;
+    }
+    finish(previous);
+    deleteOldFiles();
+  }
+
+  /** Writes the current file and stops recording. */
+  @Override
+  public synchronized void close() {
+    roller.shutdownNow();
+    if (current != null) {
+      finish(current);
+      current = null;
+      deleteOldFiles();
+    }
+  }
+
+  private Recording startRecording() throws IOException {
+    Recording recording = new Recording(settings);
+    recording.setName("event-pipeline");
+    recording.setToDisk(true);
+    recording.enable(CodecEvent.class).withThreshold(config.getCodecThreshold());
+    recording.enable(DecodeBatchEvent.class).withoutThreshold();
+    recording.enable(CacheMissEvent.class).withThreshold(config.getCacheMissThreshold());
+    recording.enable(S3UploadEvent.class).withoutThreshold();
+    recording.enable(ErrorMessageEvent.class).withoutThreshold();
+    String name =
+        String.format(
+            "%s%s-%04d.jfr", PREFIX, FILE_TIME.format(ZonedDateTime.now()), sequence++ % 10_000);
+    recording.setDestination(config.getDirectory().resolve(name));
+    recording.start();
+    return recording;
+  }
+
+  private void finish(Recording recording) {
+    try {
+      // Stopping writes the recording to its destination.
+      recording.stop();
+      log.debug("Wrote JFR recording {}", recording.getDestination());
+    } catch (RuntimeException e) {
+      log.warn("Could not write JFR recording {}", recording.getDestination(), e);
+    } finally {
+      recording.close();
+    }
+  }
+
+  private void deleteOldFiles() {
+    List<Path> files;
+    try (Stream<Path> listing = Files.list(config.getDirectory())) {
+      files =
+          listing
+              .filter(path -> path.getFileName().toString().startsWith(PREFIX))
+              .sorted()
+              .collect(Collectors.toList());
+    } catch (IOException e) {
+      log.warn("Could not list {}", config.getDirectory(), e);
+      return;
+    }
+    for (int i = 0; i < files.size() - config.getMaxFiles(); i++) {
+      try {
+        Files.deleteIfExists(files.get(i));
+      } catch (IOException e) {
+        log.warn("Could not delete {}", files.get(i), e);
+      }
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package model.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** JFR event for decoding one ingest request's JSON batch into EventDataPayload records. */
+@Name("model.DecodeBatch")
+@Label("Event Batch Decode")
+@Category({"Event Pipeline", "Ingest"})
+@Description("Parsing and admission of the events of one ingest request")
+@StackTrace(false)
+public class DecodeBatchEvent extends jdk.jfr.Event {
+
+  @Label("Events")
+  int events;
+
+  @Label("Bytes")
+  @DataAmount
+  long bytes;
+
+  @Label("Rejected")
+  int rejected;
+
+  @Label("Shed")
+  int shed;
+
+  /** Commits the event if it is enabled and over its threshold. */
+  public void finish(int events, long bytes, int rejected, int shed) {
+    end();
+    if (shouldCommit()) {
+      this.events = events;
+      this.bytes = bytes;
+      this.rejected = rejected;
+      this.shed = shed;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package model.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** JFR event for an ErrorMessage emitted for rejected input; the content itself is not kept. */
+@Name("model.ErrorMessage")
+@Label("ErrorMessage Emitted")
+@Category({"Event Pipeline", "Ingest"})
+@StackTrace(false)
+public class ErrorMessageEvent extends jdk.jfr.Event {
+
+  @Label("Type")
+  @Description("Type of the first error")
+  String type;
+
+  @Label("Errors")
+  int errors;
+
+  @Label("Content Length")
+  @Description("Characters of the rejected input")
+  int contentLength;
+
+  /** Commits the event if it is enabled and over its threshold. */
+  public void finish(String type, int errors, int contentLength) {
+    end();
+    if (shouldCommit()) {
+      this.type = type;
+      this.errors = errors;
+      this.contentLength = contentLength;
+      commit();
+    }
+  }
+}
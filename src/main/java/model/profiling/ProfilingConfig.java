@@ -0,0 +1,33 @@
+package model.profiling;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@Builder
+@ToString
+public class ProfilingConfig {
+
+  /** Directory the rolling .jfr files are written to. */
+  @Builder.Default
+  private final Path directory =
+      Path.of(System.getProperty("java.io.tmpdir"), "event-pipeline-jfr");
+
+  /** A new file is started this often. */
+  @Builder.Default private final Duration rollInterval = Duration.ofMinutes(10);
+
+  /** Files kept in the directory; older ones are deleted. */
+  @Builder.Default private final int maxFiles = 12;
+
+  /** JFR settings the pipeline events are added to: "default" (about 1% overhead) or "profile". */
+  @Builder.Default private final String settings = "default";
+
+  /** Encodes and decodes faster than this are not recorded. */
+  @Builder.Default private final Duration codecThreshold = Duration.ofMillis(1);
+
+  /** Enrichment cache loads faster than this are not recorded. */
+  @Builder.Default private final Duration cacheMissThreshold = Duration.ZERO;
+}
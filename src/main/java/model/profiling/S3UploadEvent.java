@@ -0,0 +1,40 @@
+package model.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** JFR event for one partition or index file uploaded to S3. */
+@Name("model.S3Upload")
+@Label("S3 Upload")
+@Category({"Event Pipeline", "Sink"})
+@StackTrace(false)
+public class S3UploadEvent extends jdk.jfr.Event {
+
+  @Label("Bucket")
+  String bucket;
+
+  @Label("Key")
+  String key;
+
+  @Label("Bytes")
+  @DataAmount
+  long bytes;
+
+  @Label("Succeeded")
+  boolean succeeded;
+
+  /** Commits the event if it is enabled and over its threshold. */
+  public void finish(String bucket, String key, long bytes, boolean succeeded) {
+    end();
+    if (shouldCommit()) {
+      this.bucket = bucket;
+      this.key = key;
+      this.bytes = bytes;
+      this.succeeded = succeeded;
+      commit();
+    }
+  }
+}
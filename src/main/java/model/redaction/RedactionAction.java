@@ -0,0 +1,19 @@
+package model.redaction;
+
+/** What a redaction policy does to one field. Values an action cannot parse become null. */
+public enum RedactionAction {
+  /** Replaces the value with null. The only action allowed on map fields such as httpHeaders. */
+  DROP,
+
+  /** Zeroes the host bits of an IPv4 or IPv6 address beyond the policy's prefix lengths. */
+  TRUNCATE_IP,
+
+  /**
+   * Replaces the value with 16 hex characters of its SipHash-2-4 under the policy's key, so equal
+   * values still join within a sink but cannot be recovered or linked across sinks.
+   */
+  HASH,
+
+  /** Rounds a decimal latitude or longitude to the policy's number of decimal places. */
+  ROUND_COORDINATE
+}
@@ -0,0 +1,437 @@
+package model.redaction;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import model.codec.BinarySkipPlan;
+import model.utils.SipHash;
+import org.apache.avro.Schema;
+
+/**
+ * A {@link RedactionPolicy} compiled against one record schema: the redacted field positions in
+ * schema order, their actions and union branches, and the derived hash key. Fields are redacted to
+ * null when their action does not apply, so all but HASH need a nullable field. Values are
+ * transformed on their UTF-8 bytes, so decoded and binary-encoded records give identical results.
+ * Immutable and thread-safe; use a {@link Redactor} per thread to apply it.
+ */
+public final class RedactionPlan {
+
+  /** Longest value {@link #apply} writes: an IPv6 address, a coordinate or a hash. */
+  static final int MAX_VALUE_BYTES = 64;
+
+  private static final int MAX_COORDINATE_DECIMALS = 8;
+  private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] IPV4_MAPPED = "::ffff:".getBytes(StandardCharsets.US_ASCII);
+
+  private final Schema schema;
+  private final String sink;
+  private final BinarySkipPlan skipPlan;
+  private final int[] positions;
+  private final RedactionAction[] actions;
+  private final int[] nullBranches;
+  private final int[] valueBranches;
+
+  private final long hashKey0;
+  private final long hashKey1;
+  private final int ipv4Mask;
+  private final int ipv6PrefixBits;
+  private final int coordinateDecimals;
+
+  public RedactionPlan(Schema schema, RedactionPolicy policy) {
+    this.schema = schema;
+    this.sink = policy.getSink();
+    this.skipPlan = new BinarySkipPlan(schema);
+    Map<String, RedactionAction> fields = policy.getFields();
+    this.positions = new int[fields.size()];
+    this.actions = new RedactionAction[fields.size()];
+    this.nullBranches = new int[fields.size()];
+    this.valueBranches = new int[fields.size()];
+    int[] order =
+        fields.keySet().stream().mapToInt(name -> field(schema, name).pos()).sorted().toArray();
+    boolean hashes = false;
+    for (int i = 0; i < order.length; i++) {
+      Schema.Field field = schema.getFields().get(order[i]);
+      RedactionAction action = fields.get(field.name());
+      int nullBranch = nullBranch(field.schema());
+      Schema value =
+          nullBranch < 0 ? field.schema() : field.schema().getTypes().get(1 - nullBranch);
+      if (nullBranch < 0 && action != RedactionAction.HASH) {
+        // Only hashing never needs to fall back to null.
+        throw new IllegalArgumentException(
+            action + " needs a nullable field but " + field.name() + " is required");
+      }
+      if (action != RedactionAction.DROP && value.getType() != Schema.Type.STRING) {
+        throw new IllegalArgumentException(
+            action + " needs a string field but " + field.name() + " is " + value.getType());
+      }
+      positions[i] = order[i];
+      actions[i] = action;
+      nullBranches[i] = nullBranch;
+      valueBranches[i] = nullBranch < 0 ? -1 : 1 - nullBranch;
+      hashes |= action == RedactionAction.HASH;
+    }
+
+    if (hashes) {
+      String key = policy.getHashKey();
+      if (key == null || key.length() < 16) {
+        throw new IllegalArgumentException("HASH needs a hashKey of at least 16 characters");
+      }
+      ByteBuffer digest = ByteBuffer.wrap(sha256(key)).order(ByteOrder.LITTLE_ENDIAN);
+      this.hashKey0 = digest.getLong();
+      this.hashKey1 = digest.getLong();
+    } else {
+      this.hashKey0 = 0;
+      this.hashKey1 = 0;
+    }
+    int ipv4PrefixBits = policy.getIpv4PrefixBits();
+    if (ipv4PrefixBits < 0 || ipv4PrefixBits > 32) {
+      throw new IllegalArgumentException("ipv4PrefixBits must be 0 to 32: " + ipv4PrefixBits);
+    }
+    this.ipv4Mask = ipv4PrefixBits == 0 ? 0 : -1 << (32 - ipv4PrefixBits);
+    this.ipv6PrefixBits = policy.getIpv6PrefixBits();
+    if (ipv6PrefixBits < 0 || ipv6PrefixBits > 128) {
+      throw new IllegalArgumentException("ipv6PrefixBits must be 0 to 128: " + ipv6PrefixBits);
+    }
+    this.coordinateDecimals = policy.getCoordinateDecimals();
+    if (coordinateDecimals < 0 || coordinateDecimals > MAX_COORDINATE_DECIMALS) {
+      throw new IllegalArgumentException(
+          "coordinateDecimals must be 0 to " + MAX_COORDINATE_DECIMALS + ": " + coordinateDecimals);
+    }
+  }
+
+  public Schema getSchema() {
+    return schema;
+  }
+
+  public String getSink() {
+    return sink;
+  }
+
+  /** Number of redacted fields. */
+  public int size() {
+    return positions.length;
+  }
+
+  /** Field position of the {@code step}-th redacted field; steps are in schema order. */
+  public int position(int step) {
+    return positions[step];
+  }
+
+  public RedactionAction action(int step) {
+    return actions[step];
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder text = new StringBuilder(sink).append(" [");
+    for (int i = 0; i < positions.length; i++) {
+      text.append(i == 0 ? "" : ", ")
+          .append(schema.getFields().get(positions[i]).name())
+          .append('=')
+          .append(actions[i]);
+    }
+    return text.append(']').toString();
+  }
+
+  BinarySkipPlan skipPlan() {
+    return skipPlan;
+  }
+
+  /** Null branch index of a redacted field, or -1 if it is not a union. */
+  int nullBranch(int step) {
+    return nullBranches[step];
+  }
+
+  int valueBranch(int step) {
+    return valueBranches[step];
+  }
+
+  /**
+   * Writes the redacted form of the UTF-8 value {@code src[offset, offset + length)} to the start
+   * of {@code out}, which holds at least {@link #MAX_VALUE_BYTES}. Returns the bytes written, or -1
+   * if the value becomes null.
+   */
+  int apply(int step, byte[] src, int offset, int length, byte[] out) {
+    switch (actions[step]) {
+      case TRUNCATE_IP:
+        return truncateIp(src, offset, length, out);
+      case HASH:
+        long hash = SipHash.hash(hashKey0, hashKey1, src, offset, length);
+        for (int i = 15; i >= 0; i--) {
+          out[i] = HEX[(int) hash & 0xf];
+          hash >>>= 4;
+        }
+        return 16;
+      case ROUND_COORDINATE:
+        return roundCoordinate(src, offset, length, out);
+      default:
+        return -1;
+    }
+  }
+
+  private int truncateIp(byte[] src, int offset, int length, byte[] out) {
+    if (length == 0 || length > 45) {
+      return -1;
+    }
+    for (int i = offset, end = offset + length; i < end; i++) {
+      if (src[i] == ':') {
+        return truncateIpv6(src, offset, length, out);
+      }
+    }
+    long address = parseIpv4(src, offset, length);
+    return address < 0 ? -1 : writeIpv4(out, 0, (int) address & ipv4Mask);
+  }
+
+  private int truncateIpv6(byte[] src, int offset, int length, byte[] out) {
+    int[] groups = new int[8];
+    int count = 0;
+    int gap = -1;
+    int i = offset;
+    int end = offset + length;
+    if (length >= 2 && src[i] == ':' && src[i + 1] == ':') {
+      gap = 0;
+      i += 2;
+    }
+    while (i < end) {
+      int start = i;
+      int group = 0;
+      while (i < end && i - start < 4 && hexDigit(src[i]) >= 0) {
+        group = group << 4 | hexDigit(src[i++]);
+      }
+      if (i < end && src[i] == '.') {
+        // Embedded IPv4 address, as in ::ffff:192.0.2.1.
+        long address = parseIpv4(src, start, end - start);
+        if (address < 0 || count > 6) {
+          return -1;
+        }
+        groups[count++] = (int) (address >>> 16);
+        groups[count++] = (int) address & 0xffff;
+        break;
+      }
+      if (i == start || count == 8) {
+        return -1;
+      }
+      groups[count++] = group;
+      if (i == end) {
+        break;
+      }
+      if (src[i++] != ':' || i == end) {
+        return -1;
+      }
+      if (src[i] == ':') {
+        if (gap >= 0) {
+          return -1;
+        }
+        gap = count;
+        i++;
+      }
+    }
+    if (gap < 0 ? count != 8 : count > 7) {
+      return -1;
+    }
+    if (gap >= 0) {
+      int moved = count - gap;
+      System.arraycopy(groups, gap, groups, 8 - moved, moved);
+      Arrays.fill(groups, gap, 8 - moved, 0);
+    }
+
+    if (groups[0] == 0
+        && groups[1] == 0
+        && groups[2] == 0
+        && groups[3] == 0
+        && groups[4] == 0
+        && groups[5] == 0xffff) {
+      // IPv4-mapped: truncate the IPv4 address instead, which is what the prefix means here.
+      int address = (groups[6] << 16 | groups[7]) & ipv4Mask;
+      System.arraycopy(IPV4_MAPPED, 0, out, 0, IPV4_MAPPED.length);
+      return writeIpv4(out, IPV4_MAPPED.length, address);
+    }
+    for (int g = 0; g < 8; g++) {
+      int keep = Math.max(0, Math.min(16, ipv6PrefixBits - g * 16));
+      groups[g] &= 0xffff << (16 - keep) & 0xffff;
+    }
+    return writeIpv6(out, groups);
+  }
+
+  /** Parses a dotted-quad IPv4 address, or returns -1. */
+  private static long parseIpv4(byte[] src, int offset, int length) {
+    long address = 0;
+    int octets = 0;
+    int value = -1;
+    for (int i = offset, end = offset + length; i < end; i++) {
+      int c = src[i];
+      if (c >= '0' && c <= '9') {
+        value = (value < 0 ? 0 : value * 10) + c - '0';
+        if (value > 255) {
+          return -1;
+        }
+      } else if (c == '.' && value >= 0 && octets < 3) {
+        address = address << 8 | value;
+        octets++;
+        value = -1;
+      } else {
+        return -1;
+      }
+    }
+    return value < 0 || octets != 3 ? -1 : address << 8 | value;
+  }
+
+  private static int writeIpv4(byte[] out, int pos, int address) {
+    for (int shift = 24; shift >= 0; shift -= 8) {
+      pos = writeDecimal(out, pos, address >>> shift & 0xff);
+      if (shift > 0) {
+        out[pos++] = '.';
+      }
+    }
+    return pos;
+  }
+
+  /** Writes the RFC 5952 text form: lowercase, no leading zeros, longest zero run as "::". */
+  private static int writeIpv6(byte[] out, int[] groups) {
+    int runStart = -1;
+    int runLength = 1;
+    for (int g = 0; g < 8; ) {
+      int start = g;
+      while (g < 8 && groups[g] == 0) {
+        g++;
+      }
+      if (g - start > runLength) {
+        runStart = start;
+        runLength = g - start;
+      }
+      g = Math.max(g, start + 1);
+    }
+    int pos = 0;
+    for (int g = 0; g < 8; g++) {
+      if (g == runStart) {
+        out[pos++] = ':';
+        out[pos++] = ':';
+        g += runLength - 1;
+        continue;
+      }
+      if (pos > 0 && out[pos - 1] != ':') {
+        out[pos++] = ':';
+      }
+      int group = groups[g];
+      for (int shift = 12; shift >= 0; shift -= 4) {
+        if (group >>> shift != 0 || shift == 0) {
+          out[pos++] = HEX[group >>> shift & 0xf];
+        }
+      }
+    }
+    return pos;
+  }
+
+  private int roundCoordinate(byte[] src, int offset, int length, byte[] out) {
+    int i = offset;
+    int end = offset + length;
+    boolean negative = i < end && src[i] == '-';
+    if (negative || (i < end && src[i] == '+')) {
+      i++;
+    }
+    long scaled = 0;
+    int digits = 0;
+    while (i < end && src[i] >= '0' && src[i] <= '9') {
+      scaled = scaled * 10 + src[i++] - '0';
+      if (++digits > 9) {
+        return -1;
+      }
+    }
+    int decimals = 0;
+    boolean roundUp = false;
+    if (i < end && src[i] == '.') {
+      i++;
+      for (; i < end && src[i] >= '0' && src[i] <= '9'; i++, digits++) {
+        if (decimals < coordinateDecimals) {
+          scaled = scaled * 10 + src[i] - '0';
+          decimals++;
+        } else if (decimals++ == coordinateDecimals) {
+          roundUp = src[i] >= '5';
+        }
+      }
+    }
+    if (i != end || digits == 0) {
+      return -1;
+    }
+    for (; decimals < coordinateDecimals; decimals++) {
+      scaled *= 10;
+    }
+    if (roundUp) {
+      scaled++;
+    }
+
+    int pos = 0;
+    if (negative && scaled != 0) {
+      out[pos++] = '-';
+    }
+    long unit = 1;
+    for (int d = 0; d < coordinateDecimals; d++) {
+      unit *= 10;
+    }
+    pos = writeDecimal(out, pos, scaled / unit);
+    if (coordinateDecimals > 0) {
+      out[pos++] = '.';
+      long fraction = scaled % unit;
+      for (long digit = unit / 10; digit > 0; digit /= 10) {
+        out[pos++] = (byte) ('0' + fraction / digit % 10);
+      }
+    }
+    return pos;
+  }
+
+  private static int writeDecimal(byte[] out, int pos, long value) {
+    int digits = 1;
+    for (long rest = value / 10; rest > 0; rest /= 10) {
+      digits++;
+    }
+    for (int i = pos + digits - 1; i >= pos; i--) {
+      out[i] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    return pos + digits;
+  }
+
+  private static int hexDigit(byte c) {
+    if (c >= '0' && c <= '9') {
+      return c - '0';
+    }
+    if (c >= 'a' && c <= 'f') {
+      return c - 'a' + 10;
+    }
+    return c >= 'A' && c <= 'F' ? c - 'A' + 10 : -1;
+  }
+
+  private static Schema.Field field(Schema schema, String name) {
+    Schema.Field field = schema.getField(name);
+    if (field == null) {
+      throw new IllegalArgumentException(
+          "Schema " + schema.getFullName() + " has no field " + name);
+    }
+    return field;
+  }
+
+  /** Index of the null branch of a two-branch nullable union, or -1 for other types. */
+  private static int nullBranch(Schema schema) {
+    if (schema.getType() != Schema.Type.UNION || schema.getTypes().size() != 2) {
+      return -1;
+    }
+    List<Schema> branches = schema.getTypes();
+    if (branches.get(0).getType() == Schema.Type.NULL) {
+      return 0;
+    }
+    return branches.get(1).getType() == Schema.Type.NULL ? 1 : -1;
+  }
+
+  private static byte[] sha256(String key) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+}
@@ -0,0 +1,38 @@
+package model.redaction;
+
+import java.util.Map;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Singular;
+import lombok.ToString;
+
+/**
+ * Fields one sink must not receive as they are, and what to do with each. Compile it against a
+ * schema with {@link RedactionPlan} once per sink.
+ */
+@Getter
+@Builder
+@ToString
+public class RedactionPolicy {
+
+  /** Sink the policy belongs to, for logs. */
+  @Builder.Default private final String sink = "default";
+
+  /** Action per field name; fields not listed pass through unchanged. */
+  @Singular private final Map<String, RedactionAction> fields;
+
+  /**
+   * Secret the HASH action is keyed with, at least 16 characters. Sinks with different keys get
+   * unlinkable pseudonyms for the same value.
+   */
+  @ToString.Exclude private final String hashKey;
+
+  /** Leading bits of IPv4 addresses kept by TRUNCATE_IP. */
+  @Builder.Default private final int ipv4PrefixBits = 24;
+
+  /** Leading bits of IPv6 addresses kept by TRUNCATE_IP. */
+  @Builder.Default private final int ipv6PrefixBits = 48;
+
+  /** Decimal places kept by ROUND_COORDINATE, 0 to 8; 2 places is about 1 km. */
+  @Builder.Default private final int coordinateDecimals = 2;
+}
@@ -0,0 +1,167 @@
+package model.redaction;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import model.codec.AvroRecordCodec;
+import model.ingest.RecordConsumer;
+import model.metrics.EventMetrics;
+import model.utils.AvroEventSchemaBuilder;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Passes records to a sink's consumer with the sink's redaction policy applied. Records are
+ * redacted in place and restored once the consumer returns, so one record can be fanned out to
+ * sinks with different policies without copying it; consumers must therefore not keep the record,
+ * or hand it to another thread, past {@code accept}. Thread-safe: each record borrows a {@link
+ * Redactor} from a small pool and returns it afterwards, so the stage holds redactors for the
+ * records in flight rather than for every thread that ever called it, virtual ones included.
+ */
+@Slf4j
+public class RedactionStage implements RecordConsumer {
+
+  /** Idle redactors kept at most; more are created under load and dropped when returned. */
+  private static final int MAX_IDLE = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+  private final RedactionPlan plan;
+  private final RecordConsumer downstream;
+  private final Redactor.Counters counters = new Redactor.Counters();
+  private final Queue<Redactor> idle = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger idleCount = new AtomicInteger();
+
+  public RedactionStage(Schema schema, RedactionPolicy policy, RecordConsumer downstream) {
+    this.plan = new RedactionPlan(schema, policy);
+    this.downstream = downstream;
+    log.info("Redaction stage created for {}", plan);
+  }
+
+  public RedactionPlan getPlan() {
+    return plan;
+  }
+
+  @Override
+  public void accept(GenericRecord record) throws IOException {
+    Redactor current = borrow();
+    try {
+      current.redact(record);
+      try {
+        downstream.accept(record);
+      } finally {
+        current.restore(record);
+      }
+    } finally {
+      release(current);
+    }
+  }
+
+  /** Totals over all threads; records still being redacted may be missing. */
+  public RedactionStats stats() {
+    return counters.stats();
+  }
+
+  private Redactor borrow() {
+    Redactor pooled = idle.poll();
+    if (pooled == null) {
+      return new Redactor(plan, counters);
+    }
+    idleCount.decrementAndGet();
+    return pooled;
+  }
+
+  private void release(Redactor redactor) {
+    if (idleCount.incrementAndGet() <= MAX_IDLE) {
+      idle.offer(redactor);
+    } else {
+      idleCount.decrementAndGet();
+    }
+  }
+
+  /**
+   * Measures redaction of decoded and binary-encoded events against a decode and re-encode of each
+   * event: {@code RedactionStage <events.avro> [field=ACTION...]}. Without fields, a policy
+   * covering the usual personal fields is used.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: RedactionStage <events.avro> [field=ACTION...]");
+      System.exit(1);
+    }
+    Schema schema = AvroEventSchemaBuilder.buildSchema();
+    RedactionPolicy.RedactionPolicyBuilder policy =
+        RedactionPolicy.builder().sink("benchmark").hashKey("benchmark-hash-key-0123456789");
+    for (int i = 1; i < args.length; i++) {
+      String[] field = args[i].split("=", 2);
+      policy.field(field[0], RedactionAction.valueOf(field[1]));
+    }
+    if (args.length == 1) {
+      policy
+          .field("clientIp", RedactionAction.TRUNCATE_IP)
+          .field("clientPrivateIp", RedactionAction.DROP)
+          .field("accountId", RedactionAction.HASH)
+          .field("clientId", RedactionAction.HASH)
+          .field("userLatitude", RedactionAction.ROUND_COORDINATE)
+          .field("userLongitude", RedactionAction.ROUND_COORDINATE)
+          .field("referrer", RedactionAction.DROP)
+          .field("httpHeaders", RedactionAction.DROP);
+    }
+    Redactor redactor = new Redactor(new RedactionPlan(schema, policy.build()));
+    System.out.println("Plan: " + redactor.getPlan());
+
+    AvroRecordCodec codec = AvroRecordCodec.forEvents(schema, new EventMetrics());
+    List<GenericRecord> events = new ArrayList<>();
+    List<byte[]> encoded = new ArrayList<>();
+    long bytes = 0;
+    try (DataFileReader<GenericRecord> reader =
+        new DataFileReader<>(new File(args[0]), new GenericDatumReader<>(null, schema))) {
+      while (reader.hasNext()) {
+        GenericRecord event = reader.next();
+        events.add(event);
+        encoded.add(codec.encode(event));
+        bytes += encoded.get(encoded.size() - 1).length;
+      }
+    }
+    System.out.printf(
+        "%d events, %d bytes each on average%n", events.size(), bytes / events.size());
+
+    for (int round = 0; round < 5; round++) {
+      long started = System.nanoTime();
+      GenericRecord reuse = null;
+      for (byte[] event : encoded) {
+        reuse = codec.decode(event, 0, event.length, reuse);
+        redactor.redact(reuse);
+        codec.encode(reuse);
+      }
+      long decoded = System.nanoTime() - started;
+
+      started = System.nanoTime();
+      long written = 0;
+      for (byte[] event : encoded) {
+        written += redactor.redact(event).length;
+      }
+      long binary = System.nanoTime() - started;
+
+      started = System.nanoTime();
+      for (GenericRecord event : events) {
+        redactor.redact(event);
+        redactor.restore(event);
+      }
+      long inPlace = System.nanoTime() - started;
+      System.out.printf(
+          "decode+redact+encode %.0f ns/event, binary %.0f ns/event (%d bytes out),"
+              + " in place with restore %.0f ns/event%n",
+          (double) decoded / events.size(),
+          (double) binary / events.size(),
+          written / events.size(),
+          (double) inPlace / events.size());
+    }
+    System.out.print(redactor.stats().toText());
+  }
+}
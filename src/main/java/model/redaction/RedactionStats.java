@@ -0,0 +1,19 @@
+package model.redaction;
+
+import lombok.Value;
+
+@Value
+public class RedactionStats {
+  long records;
+
+  /** Values replaced by a truncated, hashed or rounded one. */
+  long redactedValues;
+
+  /** Values replaced by null, dropped or not parseable by their action. */
+  long nulledValues;
+
+  public String toText() {
+    return String.format(
+        "records=%d redacted=%d nulled=%d%n", records, redactedValues, nulledValues);
+  }
+}
@@ -0,0 +1,183 @@
+package model.redaction;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import model.codec.BinaryCursor;
+import model.codec.BinarySkipPlan;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.util.Utf8;
+
+/**
+ * Applies a {@link RedactionPlan} to decoded records in place or to binary-encoded records, at a
+ * cost that depends on the number of redacted fields rather than on the record. Holds the value
+ * buffers and the original values of the last record redacted in place, so it is not thread-safe;
+ * use one per thread. Counts go to {@link Counters} that several redactors of a stage may share.
+ */
+public class Redactor {
+
+  private final RedactionPlan plan;
+  private final BinarySkipPlan skipPlan;
+  private final Object[] saved;
+  private final byte[] value = new byte[RedactionPlan.MAX_VALUE_BYTES];
+  private byte[] input = new byte[256];
+  private byte[] output = new byte[8192];
+
+  private final Counters counters;
+
+  public Redactor(RedactionPlan plan) {
+    this(plan, new Counters());
+  }
+
+  Redactor(RedactionPlan plan, Counters counters) {
+    this.plan = plan;
+    this.counters = counters;
+    this.skipPlan = plan.skipPlan();
+    this.saved = new Object[plan.size()];
+  }
+
+  public RedactionPlan getPlan() {
+    return plan;
+  }
+
+  /**
+   * Redacts the planned fields of a decoded record in place. The replaced values are kept until the
+   * next call so {@link #restore} can put them back, e.g. before the same record goes to a sink
+   * with another policy.
+   */
+  public void redact(GenericRecord record) {
+    int redacted = 0;
+    int nulled = 0;
+    for (int step = 0; step < saved.length; step++) {
+      int pos = plan.position(step);
+      Object original = record.get(pos);
+      saved[step] = original;
+      if (original == null) {
+        continue;
+      }
+      int length =
+          plan.action(step) == RedactionAction.DROP ? -1 : apply(step, (CharSequence) original);
+      if (length < 0) {
+        record.put(pos, null);
+        nulled++;
+      } else {
+        record.put(pos, new Utf8(Arrays.copyOf(value, length)));
+        redacted++;
+      }
+    }
+    counters.add(redacted, nulled);
+  }
+
+  /** Puts back the values replaced by the last {@link #redact(GenericRecord)} of this record. */
+  public void restore(GenericRecord record) {
+    for (int step = 0; step < saved.length; step++) {
+      record.put(plan.position(step), saved[step]);
+      saved[step] = null;
+    }
+  }
+
+  public byte[] redact(byte[] record) {
+    return redact(record, 0, record.length);
+  }
+
+  /**
+   * Redacts a binary-encoded record without decoding it: fields up to the last redacted one are
+   * skipped with the schema's {@link BinarySkipPlan}, redacted values are re-encoded and the bytes
+   * in between are copied as they are. Returns a new array holding the redacted record.
+   */
+  public byte[] redact(byte[] record, int offset, int length) {
+    int redactedCount = 0;
+    int nulled = 0;
+    int capacity = length + saved.length * (RedactionPlan.MAX_VALUE_BYTES + 16);
+    if (output.length < capacity) {
+      output = new byte[Math.max(capacity, output.length * 2)];
+    }
+    int out = 0;
+    int pos = offset;
+    int field = 0;
+    int copied = offset;
+    for (int step = 0; step < saved.length; step++) {
+      int target = plan.position(step);
+      int start = skipPlan.skip(record, pos, field, target);
+      pos = skipPlan.skip(record, start, target, target + 1);
+      field = target + 1;
+      int nullBranch = plan.nullBranch(step);
+      if (nullBranch >= 0 && BinarySkipPlan.readLong(record, start) == nullBranch) {
+        continue;
+      }
+      System.arraycopy(record, copied, output, out, start - copied);
+      out += start - copied;
+      copied = pos;
+
+      int redacted = -1;
+      if (plan.action(step) != RedactionAction.DROP) {
+        int lengthPos = nullBranch < 0 ? start : BinarySkipPlan.skipVarint(record, start);
+        int valueLength = (int) BinarySkipPlan.readLong(record, lengthPos);
+        int valueStart = BinarySkipPlan.skipVarint(record, lengthPos);
+        redacted = plan.apply(step, record, valueStart, valueLength, value);
+      }
+      if (redacted < 0) {
+        out = BinaryCursor.writeLong(output, out, nullBranch);
+        nulled++;
+      } else {
+        if (nullBranch >= 0) {
+          out = BinaryCursor.writeLong(output, out, plan.valueBranch(step));
+        }
+        out = BinaryCursor.writeLong(output, out, redacted);
+        System.arraycopy(value, 0, output, out, redacted);
+        out += redacted;
+        redactedCount++;
+      }
+    }
+    counters.add(redactedCount, nulled);
+    int end = offset + length;
+    System.arraycopy(record, copied, output, out, end - copied);
+    return Arrays.copyOf(output, out + end - copied);
+  }
+
+  /** Totals of the counters, which may be shared with other redactors. */
+  public RedactionStats stats() {
+    return counters.stats();
+  }
+
+  private int apply(int step, CharSequence original) {
+    if (original instanceof Utf8) {
+      Utf8 utf8 = (Utf8) original;
+      return plan.apply(step, utf8.getBytes(), 0, utf8.getByteLength(), value);
+    }
+    int length = original.length();
+    if (input.length < length) {
+      input = new byte[Math.max(length, input.length * 2)];
+    }
+    for (int i = 0; i < length; i++) {
+      char c = original.charAt(i);
+      if (c >= 0x80) {
+        byte[] bytes = original.toString().getBytes(StandardCharsets.UTF_8);
+        return plan.apply(step, bytes, 0, bytes.length, value);
+      }
+      input[i] = (byte) c;
+    }
+    return plan.apply(step, input, 0, length, value);
+  }
+
+  /** Redaction counts, safe to share between the redactors of a stage. */
+  static final class Counters {
+    private final LongAdder records = new LongAdder();
+    private final LongAdder redactedValues = new LongAdder();
+    private final LongAdder nulledValues = new LongAdder();
+
+    void add(int redacted, int nulled) {
+      records.increment();
+      if (redacted > 0) {
+        redactedValues.add(redacted);
+      }
+      if (nulled > 0) {
+        nulledValues.add(nulled);
+      }
+    }
+
+    RedactionStats stats() {
+      return new RedactionStats(records.sum(), redactedValues.sum(), nulledValues.sum());
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package model.shard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import model.utils.Hashing;
+
+/**
+ * Immutable consistent-hash ring of worker addresses, each placed at a number of virtual points.
+ * A key belongs to the first point at or after its hash. Adding a worker only takes over the keys
+ * falling just before its own points, so roughly 1/(n+1) of the clients move and every other
+ * client keeps its worker and state.
+ */
+public final class ConsistentHashRing {
+
+  private static final long POINT_SEED = 0x3c6ef372fe94f82bL;
+  private static final long CLIENT_SEED = 0x6a09e667f3bcc908L;
+
+  private final List<String> workers;
+  private final int virtualNodes;
+  private final long[] points;
+  private final int[] owners;
+
+  public ConsistentHashRing(Collection<String> workers, int virtualNodes) {
+    if (workers.isEmpty() || virtualNodes < 1) {
+      throw new IllegalArgumentException("A ring needs at least one worker and virtual node");
+    }
+    this.workers = Collections.unmodifiableList(new ArrayList<>(workers));
+    this.virtualNodes = virtualNodes;
+    int n = this.workers.size() * virtualNodes;
+    long[] hashes = new long[n];
+    Integer[] order = new Integer[n];
+    for (int w = 0, i = 0; w < this.workers.size(); w++) {
+      for (int v = 0; v < virtualNodes; v++, i++) {
+        hashes[i] = Hashing.hashUtf8(this.workers.get(w) + '#' + v, POINT_SEED);
+        order[i] = i;
+      }
+    }
+    Arrays.sort(order, Comparator.comparingLong(i -> hashes[i]));
+    this.points = new long[n];
+    this.owners = new int[n];
+    for (int i = 0; i < n; i++) {
+      points[i] = hashes[order[i]];
+      owners[i] = order[i] / virtualNodes;
+    }
+  }
+
+  /** Hash of a clientId, matching {@link #clientHash(byte[], int, int)} on its UTF-8 bytes. */
+  public static long clientHash(CharSequence clientId) {
+    return Hashing.hashUtf8(clientId, CLIENT_SEED);
+  }
+
+  public static long clientHash(byte[] utf8, int offset, int length) {
+    return Hashing.hashUtf8(utf8, offset, length, CLIENT_SEED);
+  }
+
+  /** Index into {@link #getWorkers()} of the worker owning the key. */
+  public int ownerIndex(long keyHash) {
+    int slot = Arrays.binarySearch(points, keyHash);
+    if (slot < 0) {
+      slot = -slot - 1;
+    }
+    return owners[slot == points.length ? 0 : slot];
+  }
+
+  public String owner(long keyHash) {
+    return workers.get(ownerIndex(keyHash));
+  }
+
+  /** A ring with one more worker; existing workers keep their points. */
+  public ConsistentHashRing withWorker(String worker) {
+    if (workers.contains(worker)) {
+      return this;
+    }
+    List<String> grown = new ArrayList<>(workers);
+    grown.add(worker);
+    return new ConsistentHashRing(grown, virtualNodes);
+  }
+
+  public List<String> getWorkers() {
+    return workers;
+  }
+
+  public int getVirtualNodes() {
+    return virtualNodes;
+  }
+
+  @Override
+  public String toString() {
+    return "ConsistentHashRing" + workers + " x" + virtualNodes;
+  }
+}
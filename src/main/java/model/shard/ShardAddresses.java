@@ -0,0 +1,53 @@
+package model.shard;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Worker addresses: {@code unix:/path} for a Unix domain socket between processes on one machine,
+ * otherwise {@code host:port} over TCP.
+ */
+final class ShardAddresses {
+
+  private static final String UNIX_PREFIX = "unix:";
+
+  private ShardAddresses() {}
+
+  static SocketAddress parse(String address) {
+    if (address.startsWith(UNIX_PREFIX)) {
+      return UnixDomainSocketAddress.of(address.substring(UNIX_PREFIX.length()));
+    }
+    int colon = address.lastIndexOf(':');
+    if (colon < 0) {
+      throw new IllegalArgumentException("Expected host:port or unix:/path, got " + address);
+    }
+    return new InetSocketAddress(
+        address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+  }
+
+  static SocketChannel connect(String address) throws IOException {
+    SocketAddress socketAddress = parse(address);
+    SocketChannel channel = SocketChannel.open(socketAddress);
+    if (socketAddress instanceof InetSocketAddress) {
+      channel.socket().setTcpNoDelay(true);
+    }
+    return channel;
+  }
+
+  static ServerSocketChannel bind(String address) throws IOException {
+    SocketAddress socketAddress = parse(address);
+    if (socketAddress instanceof UnixDomainSocketAddress) {
+      Path path = ((UnixDomainSocketAddress) socketAddress).getPath();
+      Files.deleteIfExists(path);
+      return ServerSocketChannel.open(StandardProtocolFamily.UNIX).bind(socketAddress);
+    }
+    return ServerSocketChannel.open().bind(socketAddress);
+  }
+}
@@ -0,0 +1,29 @@
+package model.shard;
+
+import java.time.Duration;
+import java.util.List;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Singular;
+import lombok.ToString;
+
+@Getter
+@Builder
+@ToString
+public class ShardConfig {
+
+  /** Worker addresses, {@code host:port} or {@code unix:/path/to/socket}. */
+  @Singular private final List<String> workers;
+
+  /** Points per worker on the hash ring; more points spread clients more evenly. */
+  @Builder.Default private final int virtualNodes = 160;
+
+  /** A worker's batch is sent once it holds this many bytes. */
+  @Builder.Default private final int batchBytes = 64 * 1024;
+
+  /** ... or once its oldest event has waited this long. */
+  @Builder.Default private final Duration maxBatchDelay = Duration.ofMillis(20);
+
+  /** Batches a worker buffers between its connections and its processing thread. */
+  @Builder.Default private final int workerQueueBatches = 64;
+}
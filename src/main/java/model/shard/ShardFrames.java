@@ -0,0 +1,74 @@
+package model.shard;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wire format between router and workers: {@code [type:byte][length:int][payload]}. A data
+ * payload is a sequence of {@code [length:int][encoded event]}; a ring payload is the virtual node
+ * count followed by the length-prefixed UTF-8 worker addresses.
+ */
+final class ShardFrames {
+
+  static final byte DATA = 1;
+  static final byte RING = 2;
+  static final int HEADER_BYTES = 5;
+  static final int MAX_PAYLOAD_BYTES = 64 * 1024 * 1024;
+
+  private ShardFrames() {}
+
+  static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  /** Reads exactly {@code buffer.remaining()} bytes; false on a clean end of stream. */
+  static boolean readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+    boolean started = buffer.position() > 0;
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0) {
+        if (!started && buffer.position() == 0) {
+          return false;
+        }
+        throw new EOFException("Connection closed in the middle of a frame");
+      }
+    }
+    return true;
+  }
+
+  static ByteBuffer ringFrame(ConsistentHashRing ring) {
+    List<byte[]> addresses = new ArrayList<>();
+    int payload = 8;
+    for (String worker : ring.getWorkers()) {
+      byte[] bytes = worker.getBytes(StandardCharsets.UTF_8);
+      addresses.add(bytes);
+      payload += 4 + bytes.length;
+    }
+    ByteBuffer frame = ByteBuffer.allocate(HEADER_BYTES + payload);
+    frame.put(RING).putInt(payload).putInt(ring.getVirtualNodes()).putInt(addresses.size());
+    for (byte[] address : addresses) {
+      frame.putInt(address.length).put(address);
+    }
+    return frame.flip();
+  }
+
+  static ConsistentHashRing readRing(byte[] payload) {
+    ByteBuffer buffer = ByteBuffer.wrap(payload);
+    int virtualNodes = buffer.getInt();
+    int count = buffer.getInt();
+    List<String> workers = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      byte[] address = new byte[buffer.getInt()];
+      buffer.get(address);
+      workers.add(new String(address, StandardCharsets.UTF_8));
+    }
+    return new ConsistentHashRing(workers, virtualNodes);
+  }
+}
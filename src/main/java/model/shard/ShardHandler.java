@@ -0,0 +1,10 @@
+package model.shard;
+
+import java.io.IOException;
+
+/** Processes the events routed to one worker, always on the worker's single processing thread. */
+public interface ShardHandler {
+
+  /** One binary-encoded EventDataPayload; the array is only valid during the call. */
+  void onEvent(byte[] buf, int offset, int length) throws IOException;
+}
@@ -0,0 +1,146 @@
+package model.shard;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import model.clock.ClockSkewConfig;
+import model.clock.ClockSkewStage;
+import model.codec.AvroRecordCodec;
+import model.dedup.DedupConfig;
+import model.dedup.DedupStage;
+import model.metrics.EventMetrics;
+import model.utils.AvroEventSchemaBuilder;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Runs shard workers and a router as separate local processes.
+ *
+ * <pre>
+ *   worker &lt;address&gt;                               decode, dedup, correct skew
+ *   route &lt;address,...&gt; &lt;passes&gt; &lt;file.avro&gt;...    replay events across workers
+ * </pre>
+ *
+ * Addresses prefixed with {@code +} in the route list join halfway through the run, to exercise
+ * rebalancing.
+ */
+@Slf4j
+public class ShardMain {
+
+  public static void main(String[] args) throws Exception {
+    if (args.length == 2 && "worker".equals(args[0])) {
+      runWorker(args[1]);
+    } else if (args.length >= 4 && "route".equals(args[0])) {
+      List<File> files = new ArrayList<>();
+      for (int i = 3; i < args.length; i++) {
+        files.add(new File(args[i]));
+      }
+      route(args[1].split(","), Integer.parseInt(args[2]), files);
+    } else {
+      System.err.println("Usage: ShardMain worker <address>");
+      System.err.println("       ShardMain route <address,...> <passes> <file.avro>...");
+      System.exit(1);
+    }
+  }
+
+  private static void runWorker(String address) throws IOException {
+    Schema schema = AvroEventSchemaBuilder.buildSchema();
+    PipelineHandler handler = new PipelineHandler(schema);
+    ShardWorker worker = new ShardWorker(address, ShardConfig.builder().build(), handler).start();
+    long startNanos = System.nanoTime();
+    Runtime.getRuntime()
+        .addShutdownHook(
+            new Thread(
+                () -> {
+                  try {
+                    worker.close();
+                  } catch (IOException e) {
+                    log.warn("Failed to stop shard worker", e);
+                  }
+                  double seconds = (System.nanoTime() - startNanos) / 1e9;
+                  log.info(
+                      "Worker {} processed {} events in {} batches ({} failed) in {}s; {} {}",
+                      address,
+                      worker.events(),
+                      worker.batches(),
+                      worker.failures(),
+                      String.format("%.1f", seconds),
+                      handler.dedup.stats(),
+                      handler.skew.stats());
+                }));
+  }
+
+  private static void route(String[] addresses, int passes, List<File> files) throws IOException {
+    Schema schema = AvroEventSchemaBuilder.buildSchema();
+    AvroRecordCodec codec = AvroRecordCodec.forEvents(schema, new EventMetrics());
+    List<byte[]> events = new ArrayList<>();
+    for (File file : files) {
+      try (DataFileReader<GenericRecord> reader =
+          new DataFileReader<>(file, new GenericDatumReader<>(schema))) {
+        for (GenericRecord event : reader) {
+          events.add(codec.encode(event));
+        }
+      }
+    }
+    ShardConfig.ShardConfigBuilder config = ShardConfig.builder();
+    List<String> joining = new ArrayList<>();
+    for (String address : addresses) {
+      if (address.startsWith("+")) {
+        joining.add(address.substring(1));
+      } else {
+        config.worker(address);
+      }
+    }
+    long startNanos = System.nanoTime();
+    try (ShardRouter router = new ShardRouter(schema, config.build())) {
+      for (int pass = 0; pass < passes; pass++) {
+        if (pass == passes / 2) {
+          for (String address : joining) {
+            router.addWorker(address);
+          }
+        }
+        for (byte[] event : events) {
+          router.send(event);
+        }
+      }
+      router.flush();
+      double seconds = (System.nanoTime() - startNanos) / 1e9;
+      long total = (long) events.size() * passes;
+      System.out.printf(
+          "Routed %d events to %s in %.2fs (%.0f events/s); per worker: %s%n",
+          total,
+          router.getRing().getWorkers(),
+          seconds,
+          total / seconds,
+          Arrays.toString(router.sentEvents()));
+    }
+  }
+
+  /** The per-client stateful stages a single process cannot hold for all traffic. */
+  private static final class PipelineHandler implements ShardHandler {
+    private final AvroRecordCodec codec;
+    private final DedupStage dedup;
+    private final ClockSkewStage skew;
+    private GenericRecord reuse;
+
+    PipelineHandler(Schema schema) {
+      this.codec = AvroRecordCodec.forEvents(schema, EventMetrics.shared());
+      this.dedup = new DedupStage(schema, DedupConfig.builder().build());
+      this.skew = new ClockSkewStage(schema, ClockSkewConfig.builder().build());
+    }
+
+    @Override
+    public void onEvent(byte[] buf, int offset, int length) throws IOException {
+      GenericRecord event = codec.decode(buf, offset, length, reuse);
+      reuse = event;
+      if (!dedup.isDuplicate(event)) {
+        skew.correct(event);
+      }
+    }
+  }
+}
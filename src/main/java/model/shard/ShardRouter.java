@@ -0,0 +1,188 @@
+package model.shard;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import model.codec.BinarySkipPlan;
+import org.apache.avro.Schema;
+
+/**
+ * Routes binary-encoded EventDataPayload records to shard workers by consistent hash of their
+ * clientId, so all events of a client reach the same worker in order. Events are batched per
+ * worker and written as one frame when the batch is full or its oldest event is older than the
+ * configured delay. Not thread-safe; use one router per producing thread.
+ */
+@Slf4j
+public class ShardRouter implements Closeable {
+
+  /** How many sends pass between checks for batches that waited too long. */
+  private static final int DELAY_CHECK_MASK = 255;
+
+  private final BinarySkipPlan skipPlan;
+  private final ShardConfig config;
+  private final int clientIdPos;
+  private final long maxBatchDelayNanos;
+  private final List<Connection> connections = new ArrayList<>();
+  @Getter private ConsistentHashRing ring;
+  private long sends;
+
+  public ShardRouter(Schema eventSchema, ShardConfig config) throws IOException {
+    this.skipPlan = new BinarySkipPlan(eventSchema);
+    this.config = config;
+    this.clientIdPos = eventSchema.getField("clientId").pos();
+    this.maxBatchDelayNanos = config.getMaxBatchDelay().toNanos();
+    this.ring = new ConsistentHashRing(config.getWorkers(), config.getVirtualNodes());
+    try {
+      for (String worker : ring.getWorkers()) {
+        connections.add(new Connection(worker));
+      }
+    } catch (IOException e) {
+      closeConnections();
+      throw e;
+    }
+    broadcastRing();
+    log.info("Routing events over {}", ring);
+  }
+
+  public void send(byte[] record) throws IOException {
+    send(record, 0, record.length);
+  }
+
+  public void send(byte[] record, int offset, int length) throws IOException {
+    int pos = skipPlan.fieldOffset(record, offset, clientIdPos);
+    int clientIdLength = (int) BinarySkipPlan.readLong(record, pos);
+    pos = BinarySkipPlan.skipVarint(record, pos);
+    long hash = ConsistentHashRing.clientHash(record, pos, clientIdLength);
+    connections.get(ring.ownerIndex(hash)).append(record, offset, length);
+    if ((++sends & DELAY_CHECK_MASK) == 0) {
+      flushExpired();
+    }
+  }
+
+  /** Sends batches whose oldest event waited longer than the configured delay. */
+  public void flushExpired() throws IOException {
+    long now = System.nanoTime();
+    for (Connection connection : connections) {
+      if (connection.count > 0 && now - connection.firstAppendNanos >= maxBatchDelayNanos) {
+        connection.flush();
+      }
+    }
+  }
+
+  public void flush() throws IOException {
+    for (Connection connection : connections) {
+      connection.flush();
+    }
+  }
+
+  /**
+   * Adds a worker and rebalances. Pending batches go out under the old ring first, then every
+   * worker learns the new ring in stream order; only clients whose ring position now falls to
+   * the new worker move. Per-client state is not handed over: a moved client starts with empty
+   * dedup and clock skew state on the new worker, so duplicates straddling the move are not
+   * caught and its skew is re-estimated from scratch.
+   */
+  public void addWorker(String worker) throws IOException {
+    if (ring.getWorkers().contains(worker)) {
+      return;
+    }
+    flush();
+    connections.add(new Connection(worker));
+    ring = ring.withWorker(worker);
+    broadcastRing();
+    log.info("Rebalanced to {}", ring);
+  }
+
+  /** Events sent to each worker, in ring worker order. */
+  public long[] sentEvents() {
+    long[] sent = new long[connections.size()];
+    for (int i = 0; i < sent.length; i++) {
+      sent[i] = connections.get(i).sent;
+    }
+    return sent;
+  }
+
+  @Override
+  public void close() throws IOException {
+    closeConnections();
+  }
+
+  private void closeConnections() throws IOException {
+    IOException failure = null;
+    for (Connection connection : connections) {
+      try {
+        connection.flush();
+      } catch (IOException e) {
+        failure = e;
+      }
+      connection.channel.close();
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private void broadcastRing() throws IOException {
+    ByteBuffer frame = ShardFrames.ringFrame(ring);
+    for (Connection connection : connections) {
+      ShardFrames.writeFully(connection.channel, frame.duplicate());
+    }
+  }
+
+  private final class Connection {
+    private final String worker;
+    private final SocketChannel channel;
+    private final ByteBuffer batch;
+    private int count;
+    private long firstAppendNanos;
+    private long sent;
+
+    Connection(String worker) throws IOException {
+      this.worker = worker;
+      this.channel = ShardAddresses.connect(worker);
+      this.batch = ByteBuffer.allocateDirect(ShardFrames.HEADER_BYTES + config.getBatchBytes());
+      batch.position(ShardFrames.HEADER_BYTES);
+    }
+
+    void append(byte[] record, int offset, int length) throws IOException {
+      if (count > 0 && batch.remaining() < Integer.BYTES + length) {
+        flush();
+      }
+      if (batch.remaining() < Integer.BYTES + length) {
+        sendAlone(record, offset, length);
+        return;
+      }
+      if (count == 0) {
+        firstAppendNanos = System.nanoTime();
+      }
+      batch.putInt(length).put(record, offset, length);
+      count++;
+    }
+
+    void flush() throws IOException {
+      if (count == 0) {
+        return;
+      }
+      batch.put(0, ShardFrames.DATA).putInt(1, batch.position() - ShardFrames.HEADER_BYTES);
+      batch.flip();
+      ShardFrames.writeFully(channel, batch);
+      batch.clear().position(ShardFrames.HEADER_BYTES);
+      sent += count;
+      count = 0;
+    }
+
+    private void sendAlone(byte[] record, int offset, int length) throws IOException {
+      ByteBuffer frame = ByteBuffer.allocate(ShardFrames.HEADER_BYTES + Integer.BYTES + length);
+      frame.put(ShardFrames.DATA).putInt(Integer.BYTES + length).putInt(length);
+      frame.put(record, offset, length).flip();
+      ShardFrames.writeFully(channel, frame);
+      sent++;
+      log.debug("Sent an oversized {}-byte event to {} unbatched", length, worker);
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package model.shard;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Receives event batches from {@link ShardRouter}s and hands every event to one {@link
+ * ShardHandler} on a single processing thread, so per-client state needs no locking. Connections
+ * are read on virtual threads into a bounded queue; when the handler falls behind the queue fills
+ * and TCP back-pressure slows the routers down.
+ */
+@Slf4j
+public class ShardWorker implements Closeable {
+
+  private static final Frame STOP = new Frame((byte) 0, new byte[0]);
+
+  private final String address;
+  private final ShardHandler handler;
+  private final BlockingQueue<Frame> frames;
+  private final Set<SocketChannel> connections = ConcurrentHashMap.newKeySet();
+  private final LongAdder events = new LongAdder();
+  private final LongAdder batches = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private ServerSocketChannel server;
+  private Thread processor;
+
+  public ShardWorker(String address, ShardConfig config, ShardHandler handler) {
+    this.address = address;
+    this.handler = handler;
+    this.frames = new ArrayBlockingQueue<>(config.getWorkerQueueBatches());
+  }
+
+  public ShardWorker start() throws IOException {
+    server = ShardAddresses.bind(address);
+    processor = new Thread(this::process, "shard-worker");
+    processor.start();
+    Thread.ofVirtual().name("shard-accept").start(this::accept);
+    log.info("Shard worker listening on {}", address);
+    return this;
+  }
+
+  public long events() {
+    return events.sum();
+  }
+
+  public long batches() {
+    return batches.sum();
+  }
+
+  public long failures() {
+    return failures.sum();
+  }
+
+  /** Stops accepting, processes what was already received and waits for the handler. */
+  @Override
+  public void close() throws IOException {
+    server.close();
+    for (SocketChannel connection : connections) {
+      connection.close();
+    }
+    try {
+      frames.put(STOP);
+      processor.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void accept() {
+    try {
+      while (true) {
+        SocketChannel connection = server.accept();
+        connections.add(connection);
+        Thread.ofVirtual().name("shard-connection").start(() -> read(connection));
+      }
+    } catch (ClosedChannelException e) {
+      log.debug("Shard worker {} stopped accepting", address);
+    } catch (IOException e) {
+      log.error("Shard worker {} failed to accept", address, e);
+    }
+  }
+
+  private void read(SocketChannel connection) {
+    ByteBuffer header = ByteBuffer.allocate(ShardFrames.HEADER_BYTES);
+    try (connection) {
+      while (ShardFrames.readFully(connection, header.clear())) {
+        byte type = header.get(0);
+        int length = header.getInt(1);
+        if (length < 0 || length > ShardFrames.MAX_PAYLOAD_BYTES) {
+          throw new IOException("Invalid frame length " + length);
+        }
+        byte[] payload = new byte[length];
+        ShardFrames.readFully(connection, ByteBuffer.wrap(payload));
+        frames.put(new Frame(type, payload));
+      }
+    } catch (ClosedChannelException e) {
+      log.debug("Connection to shard worker {} closed", address);
+    } catch (IOException e) {
+      log.warn("Dropping connection to shard worker {}", address, e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      connections.remove(connection);
+    }
+  }
+
+  private void process() {
+    try {
+      for (Frame frame = frames.take(); frame != STOP; frame = frames.take()) {
+        if (frame.type == ShardFrames.DATA) {
+          processBatch(frame.payload);
+        } else if (frame.type == ShardFrames.RING) {
+          ConsistentHashRing ring = ShardFrames.readRing(frame.payload);
+          log.info("Shard worker {} now part of {}", address, ring);
+        } else {
+          log.warn("Ignoring frame of unknown type {}", frame.type);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void processBatch(byte[] payload) {
+    ByteBuffer buffer = ByteBuffer.wrap(payload);
+    int count = 0;
+    while (buffer.hasRemaining()) {
+      int length = buffer.getInt();
+      int offset = buffer.position();
+      try {
+        handler.onEvent(payload, offset, length);
+      } catch (IOException | RuntimeException e) {
+        failures.increment();
+        log.debug("Shard handler failed on an event", e);
+      }
+      buffer.position(offset + length);
+      count++;
+    }
+    events.add(count);
+    batches.increment();
+  }
+
+  private static final class Frame {
+    final byte type;
+    final byte[] payload;
+
+    Frame(byte type, byte[] payload) {
+      this.type = type;
+      this.payload = payload;
+    }
+  }
+}
@@ -0,0 +1,438 @@
+package model.sink;
+
+import com.amazonaws.services.s3.AmazonS3;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import model.eventkey.EventKey;
+import model.eventkey.EventKeyDeriver;
+import model.index.EventFileIndex;
+import model.index.EventFileIndexBuilder;
+import model.metrics.EventMetrics;
+import model.metrics.Stage;
+import model.metrics.StageMetrics;
+import model.profiling.S3UploadEvent;
+import model.redaction.RedactionPlan;
+import model.redaction.Redactor;
+import model.utils.EventNames;
+import model.utils.Hashing;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Routes EventDataPayload records into one Avro container file per (eventName, environment,
+ * eventOccurredTimestampUtc hour) partition and uploads each finished file to
+ * {@code <prefix>/eventName=<name>/environment=<env>/date=<yyyy-MM-dd>/hour=<HH>/}.
+ *
+ * <p>Partition files are written to local disk, so memory per open partition is one block buffer.
+ * At most {@code maxOpenPartitions} writers are open; adding another closes and uploads the least
+ * recently written one. Not thread-safe; uploads run on a small background pool.
+ *
+ * <p>Unless disabled, each file gets an {@link EventFileIndex} sidecar uploaded after it, under the
+ * same key plus {@link EventFileIndex#SUFFIX}.
+ *
+ * <p>A local file is only deleted once its upload succeeded. Files that failed to upload are moved
+ * to {@code failedDirectory} under their object key, and {@link #retryFailed} uploads them later.
+ * Upload failures are rethrown by the next {@link #write} or {@link #closeIdle} that closes a file,
+ * or by {@link #close}.
+ *
+ * <p>Files are named after a random writer id, or when {@code fileKey} is set after a hash of the
+ * {@link model.eventkey.EventKey}s of all their events in order, so two files only share a name
+ * when they hold the same events.
+ *
+ * <p>With a redaction policy, events are redacted in place while they are written and indexed, and
+ * restored before {@link #write} returns.
+ */
+@Slf4j
+public class PartitionedEventSink implements Closeable {
+
+  private static final long MILLIS_PER_HOUR = 3_600_000L;
+  /** File size is checked every this many appends; it only grows when a block is written. */
+  private static final int SIZE_CHECK_INTERVAL = 256;
+  private static final DateTimeFormatter HOUR_PATH =
+      DateTimeFormatter.ofPattern("'date='yyyy-MM-dd'/hour='HH").withZone(ZoneOffset.UTC);
+
+  static {
+    // Partition keys hold the event name ordinal in their low 16 bits.
+    if (EventNames.COUNT > 1 << 16) {
+      throw new IllegalStateException("Too many event names for a partition key");
+    }
+  }
+
+  private final Schema schema;
+  private final PartitionedSinkConfig config;
+  private final AmazonS3 s3;
+  private final StageMetrics uploadMetrics;
+  private final ExecutorService uploader;
+  /** Null unless files are named after event keys. */
+  private final EventKeyDeriver fileKeys;
+  /** Null without a redaction policy. */
+  private final Redactor redactor;
+  private final List<Future<?>> pendingUploads = new ArrayList<>();
+  private final String writerId = UUID.randomUUID().toString();
+
+  private final int eventNamePos;
+  private final int environmentPos;
+  private final int timestampPos;
+  private final Map<String, Integer> environmentIds = new HashMap<>();
+  private final List<String> environments = new ArrayList<>();
+  private final LinkedHashMap<Long, Partition> open;
+
+  private long fileSequence;
+  /** Data files uploaded; counted by the upload tasks. */
+  private final AtomicLong uploadedFiles = new AtomicLong();
+
+  public PartitionedEventSink(
+      Schema schema, PartitionedSinkConfig config, AmazonS3 s3, EventMetrics metrics) {
+    this.schema = schema;
+    this.config = config;
+    this.s3 = s3;
+    this.uploadMetrics = metrics.stage(Stage.S3_UPLOAD);
+    this.uploader = Executors.newFixedThreadPool(config.getUploadThreads());
+    this.fileKeys = config.getFileKey() == null ? null : new EventKeyDeriver(config.getFileKey());
+    this.redactor =
+        config.getRedaction() == null
+            ? null
+            : new Redactor(new RedactionPlan(schema, config.getRedaction()));
+    this.eventNamePos = schema.getField("eventName").pos();
+    this.environmentPos = schema.getField("environment").pos();
+    this.timestampPos = schema.getField("eventOccurredTimestampUtc").pos();
+    this.open = new LinkedHashMap<>(config.getMaxOpenPartitions() * 2, 0.75f, true);
+  }
+
+  public void write(GenericRecord event) throws IOException {
+    int eventName = EventNames.ordinal(event.get(eventNamePos));
+    if (eventName < 0) {
+      throw new IllegalArgumentException("Event has no valid eventName: " + event.get(eventNamePos));
+    }
+    long hour = Math.floorDiv(((Number) event.get(timestampPos)).longValue(), MILLIS_PER_HOUR);
+    int environment = environmentId(String.valueOf(event.get(environmentPos)));
+    long key = (hour << 32) | ((long) environment << 16) | eventName;
+
+    boolean finished = false;
+    Partition partition = open.get(key);
+    if (partition == null) {
+      if (open.size() >= config.getMaxOpenPartitions()) {
+        Iterator<Partition> eldest = open.values().iterator();
+        Partition evicted = eldest.next();
+        eldest.remove();
+        finish(evicted);
+        finished = true;
+      }
+      String name = fileKeys == null ? "part-" + writerId + "-" + (fileSequence++) : null;
+      partition = new Partition(eventName, environments.get(environment), hour, name);
+      open.put(key, partition);
+    }
+    if (fileKeys != null) {
+      partition.addKey(fileKeys.derive(event));
+    }
+    if (redactor != null) {
+      redactor.redact(event);
+    }
+    try {
+      partition.writer.append(event);
+      partition.lastWriteMillis = System.currentTimeMillis();
+      partition.records++;
+      if (partition.index != null) {
+        partition.index.add(event);
+        if (partition.records % config.getIndexBlockRecords() == 0) {
+          partition.index.startBlock(partition.writer.sync());
+        }
+      }
+    } finally {
+      if (redactor != null) {
+        redactor.restore(event);
+      }
+    }
+    boolean full =
+        partition.records % SIZE_CHECK_INTERVAL == 0
+            && partition.file.length() >= config.getMaxFileBytes();
+    if (full
+        || partition.lastWriteMillis - partition.openedMillis >= config.getMaxFileAge().toMillis()) {
+      open.remove(key);
+      finish(partition);
+      finished = true;
+    }
+    if (finished) {
+      // Only once the event is written, so an upload failure never drops the event at hand.
+      awaitUploads(false);
+    }
+  }
+
+  /** Closes and uploads partitions that have not been written to within {@code maxIdle}. */
+  public int closeIdle() throws IOException {
+    long cutoff = System.currentTimeMillis() - config.getMaxIdle().toMillis();
+    int closed = 0;
+    for (Iterator<Partition> it = open.values().iterator(); it.hasNext(); ) {
+      Partition partition = it.next();
+      if (partition.lastWriteMillis < cutoff) {
+        it.remove();
+        finish(partition);
+        closed++;
+      }
+    }
+    awaitUploads(false);
+    return closed;
+  }
+
+  public int openPartitions() {
+    return open.size();
+  }
+
+  /** Data files whose upload succeeded, not counting those uploaded by {@link #retryFailed}. */
+  public long uploadedFiles() {
+    return uploadedFiles.get();
+  }
+
+  /**
+   * Uploads the files left in {@code failedDirectory} by earlier failed uploads, each data file
+   * before its index. Must not run while this or another sink may be moving failed files there.
+   * Returns the number of files uploaded; files that fail again stay for the next retry.
+   */
+  public int retryFailed() throws IOException {
+    Path directory = config.getFailedDirectory();
+    if (!Files.isDirectory(directory)) {
+      return 0;
+    }
+    List<Path> files;
+    try (Stream<Path> walk = Files.walk(directory)) {
+      // Sorted, a data file comes right before its index: "x.avro" < "x.avro.index.avro".
+      files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+    }
+    int uploaded = 0;
+    IOException failure = null;
+    String failedDataKey = null;
+    for (Path file : files) {
+      String key = directory.relativize(file).toString().replace(File.separatorChar, '/');
+      if (failedDataKey != null && key.equals(failedDataKey + EventFileIndex.SUFFIX)) {
+        continue;
+      }
+      try {
+        upload(file.toFile(), key);
+        uploaded++;
+      } catch (RuntimeException e) {
+        failedDataKey = key;
+        if (failure == null) {
+          failure = new IOException("Retrying failed uploads", e);
+        }
+      }
+    }
+    log.info("Retried {} failed uploads, {} succeeded", files.size(), uploaded);
+    if (failure != null) {
+      throw failure;
+    }
+    return uploaded;
+  }
+
+  /** Closes every partition and waits for all uploads to finish, throwing if any of them failed. */
+  @Override
+  public void close() throws IOException {
+    try {
+      for (Partition partition : open.values()) {
+        finish(partition);
+      }
+      open.clear();
+    } finally {
+      try {
+        awaitUploads(true);
+      } finally {
+        uploader.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Removes finished uploads from {@code pendingUploads}, or waits for all of them when {@code
+   * all}, and throws for the first that failed. The failed files are already in {@code
+   * failedDirectory}.
+   */
+  private void awaitUploads(boolean all) throws IOException {
+    Throwable failure = null;
+    for (Iterator<Future<?>> it = pendingUploads.iterator(); it.hasNext(); ) {
+      Future<?> upload = it.next();
+      if (!all && !upload.isDone()) {
+        continue;
+      }
+      it.remove();
+      try {
+        upload.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting for uploads", e);
+      } catch (ExecutionException e) {
+        if (failure == null) {
+          failure = e.getCause();
+        } else {
+          failure.addSuppressed(e.getCause());
+        }
+      }
+    }
+    if (failure != null) {
+      throw new IOException(
+          "Partition upload failed; the file is kept in " + config.getFailedDirectory(), failure);
+    }
+  }
+
+  private void finish(Partition partition) throws IOException {
+    partition.writer.close();
+    File file = partition.file;
+    String key = partition.objectKey();
+    File indexFile = null;
+    if (partition.index != null) {
+      indexFile = Files.createTempFile(config.getTempDirectory(), "partition-", ".index").toFile();
+      partition.index.build().write(indexFile);
+    }
+    File index = indexFile;
+    pendingUploads.add(
+        uploader.submit(
+            () -> {
+              try {
+                upload(file, key);
+              } catch (RuntimeException e) {
+                keepFailed(file, key);
+                if (index != null) {
+                  keepFailed(index, key + EventFileIndex.SUFFIX);
+                }
+                throw e;
+              }
+              uploadedFiles.incrementAndGet();
+              // The sidecar goes last so a reader never finds an index without its data file.
+              // Until a failed one is retried, readers scan the data file in full.
+              if (index != null) {
+                try {
+                  upload(index, key + EventFileIndex.SUFFIX);
+                } catch (RuntimeException e) {
+                  keepFailed(index, key + EventFileIndex.SUFFIX);
+                  throw e;
+                }
+              }
+            }));
+  }
+
+  private void upload(File file, String key) {
+    S3UploadEvent event = new S3UploadEvent();
+    event.begin();
+    long start = System.nanoTime();
+    long bytes = file.length();
+    try {
+      s3.putObject(config.getBucket(), key, file);
+      uploadMetrics.record(-1, System.nanoTime() - start, bytes);
+      event.finish(config.getBucket(), key, bytes, true);
+      log.debug("Uploaded {} bytes to s3://{}/{}", bytes, config.getBucket(), key);
+    } catch (RuntimeException e) {
+      uploadMetrics.recordError();
+      event.finish(config.getBucket(), key, bytes, false);
+      log.error("Failed to upload {} to s3://{}/{}", file, config.getBucket(), key, e);
+      throw e;
+    }
+    try {
+      Files.deleteIfExists(file.toPath());
+    } catch (IOException e) {
+      log.warn("Could not delete uploaded partition file {}", file, e);
+    }
+  }
+
+  /** Moves a file whose upload failed to {@code failedDirectory}, under its object key. */
+  private void keepFailed(File file, String key) {
+    Path target = config.getFailedDirectory().resolve(key);
+    try {
+      Files.createDirectories(target.getParent());
+      Files.move(file.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+      log.warn("Kept {} for retry as {}", key, target);
+    } catch (IOException e) {
+      log.error("Could not move {} to {}; it stays at {}", key, target, file, e);
+    }
+  }
+
+  private int environmentId(String environment) {
+    Integer id = environmentIds.get(environment);
+    if (id == null) {
+      if (environments.size() == 1 << 16) {
+        throw new IllegalStateException("Too many distinct environments");
+      }
+      id = environments.size();
+      environments.add(environment);
+      environmentIds.put(environment, id);
+    }
+    return id;
+  }
+
+  private final class Partition {
+    final DataFileWriter<GenericRecord> writer;
+    final File file;
+    /** Object key up to the file name. */
+    final String directory;
+    /** Null when the file is named after its events' keys. */
+    final String name;
+    final EventFileIndexBuilder index;
+    final long openedMillis = System.currentTimeMillis();
+    long lastWriteMillis = openedMillis;
+    long records;
+    long keyHigh;
+    long keyLow;
+
+    Partition(int eventName, String environment, long hour, String name) throws IOException {
+      this.name = name;
+      this.directory =
+          config.getPrefix()
+              + "/eventName="
+              + EventNames.symbol(eventName)
+              + "/environment="
+              + environment
+              + "/"
+              + HOUR_PATH.format(Instant.ofEpochMilli(hour * MILLIS_PER_HOUR))
+              + "/";
+      this.file = Files.createTempFile(config.getTempDirectory(), "partition-", ".avro").toFile();
+      this.writer = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema));
+      try {
+        writer.setCodec(config.getCodec());
+        writer.setSyncInterval(config.getSyncInterval());
+        writer.create(schema, file);
+        if (config.isWriteIndex()) {
+          this.index = new EventFileIndexBuilder(schema, config.getIndexFalsePositiveRate());
+          index.startBlock(writer.sync());
+        } else {
+          this.index = null;
+        }
+      } catch (IOException | RuntimeException e) {
+        Files.deleteIfExists(file.toPath());
+        throw e;
+      }
+    }
+
+    /** Folds the key of the next event into the file name. */
+    void addKey(EventKey key) {
+      keyHigh = Hashing.combine(keyHigh, key.getHigh());
+      keyLow = Hashing.combine(keyLow, key.getLow());
+    }
+
+    String objectKey() {
+      return directory
+          + (name != null ? name : "part-" + new EventKey(keyHigh, keyLow).toHex())
+          + ".avro";
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package model.sink;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+import model.eventkey.EventKeyConfig;
+import model.redaction.RedactionPolicy;
+import org.apache.avro.file.CodecFactory;
+
+@Getter
+@Builder
+@ToString
+public class PartitionedSinkConfig {
+
+  @NonNull private final String bucket;
+
+  /** Key prefix without trailing slash, e.g. "events/v1". */
+  @Builder.Default private final String prefix = "events";
+
+  /** Partitions with an open writer at once; the least recently written one is closed first. */
+  @Builder.Default private final int maxOpenPartitions = 128;
+
+  /** A partition file is closed and uploaded once it reaches this size. */
+  @Builder.Default private final long maxFileBytes = 128L * 1024 * 1024;
+
+  /** A partition file is closed and uploaded once it is this old. */
+  @Builder.Default private final Duration maxFileAge = Duration.ofMinutes(15);
+
+  /** A partition that received nothing for this long is closed by {@code closeIdle}. */
+  @Builder.Default private final Duration maxIdle = Duration.ofMinutes(2);
+
+  /** Local directory for partition files until they are uploaded. */
+  @Builder.Default private final Path tempDirectory = Path.of(System.getProperty("java.io.tmpdir"));
+
+  /**
+   * Files whose upload failed are moved here, under their object key, until {@code retryFailed}
+   * uploads them.
+   */
+  @Builder.Default
+  private final Path failedDirectory =
+      Path.of(System.getProperty("java.io.tmpdir"), "failed-uploads");
+
+  @Builder.Default private final CodecFactory codec = CodecFactory.zstandardCodec(3);
+
+  /** Bytes buffered per open writer before a block is compressed and written out. */
+  @Builder.Default private final int syncInterval = 64 * 1024;
+
+  @Builder.Default private final int uploadThreads = 4;
+
+  /** Whether to upload an EventFileIndex sidecar next to each partition file. */
+  @Builder.Default private final boolean writeIndex = true;
+
+  /** Records per indexed block; readers can skip blocks whose ranges do not match. */
+  @Builder.Default private final int indexBlockRecords = 4096;
+
+  @Builder.Default private final double indexFalsePositiveRate = 0.01;
+
+  /**
+   * Names partition files after a hash of the keys of all their events, in order: identical files
+   * get identical names, and files with different events never overwrite each other. File
+   * boundaries depend on wall-clock age, idle closing and eviction, so a replay does not in general
+   * cut the same files, and its events may be uploaded again under other names. Null names them
+   * after a random writer id and a sequence number.
+   */
+  private final EventKeyConfig fileKey;
+
+  /** Fields redacted before events are written, or null to write them as they are. */
+  private final RedactionPolicy redaction;
+}
@@ -0,0 +1,37 @@
+package model.sort;
+
+import java.io.File;
+import java.util.List;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+import org.apache.avro.file.CodecFactory;
+
+@Getter
+@Builder
+@ToString
+public class ExternalSortConfig {
+
+  /** Sort key, most significant field first. */
+  @Builder.Default private final List<String> keyFields = List.of("clientId", "sessionId", "hitId");
+
+  /** Threads building sorted runs; each owns one run buffer. */
+  @Builder.Default private final int threads = Runtime.getRuntime().availableProcessors();
+
+  /** Off-heap bytes of encoded records per run buffer; keys take roughly a tenth more on heap. */
+  @Builder.Default private final int runBufferBytes = 128 * 1024 * 1024;
+
+  /** Input files are split at sync markers into ranges of about this size, read in parallel. */
+  @Builder.Default private final long splitBytes = 64L * 1024 * 1024;
+
+  /** Most runs merged at once; more runs are merged in several passes. */
+  @Builder.Default private final int mergeFanIn = 128;
+
+  /** Read and write buffer per run file. */
+  @Builder.Default private final int ioBufferBytes = 1024 * 1024;
+
+  /** Where runs are spilled; the JVM temp directory when null. */
+  private final File tempDirectory;
+
+  @Builder.Default private final CodecFactory codec = CodecFactory.zstandardCodec(3);
+}
@@ -0,0 +1,394 @@
+package model.sort;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import model.codec.BinaryCursor;
+import model.codec.BinaryKeyComparator;
+import model.codec.BinarySkipPlan;
+import model.utils.AvroEventSchemaBuilder;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileConstants;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.EncoderFactory;
+
+/**
+ * External merge sort of EventDataPayload container files by a key such as (clientId, sessionId,
+ * hitId), for data that does not fit in memory. Input files are split at sync markers and read
+ * in parallel; each thread fills an off-heap {@link RunBuffer} straight from the decompressed
+ * blocks, without decoding records, sorts it on byte-comparable keys and spills it to local disk.
+ * Runs are then merged with a {@link LoserTree}, in several passes if there are more than the
+ * fan-in, and the last pass appends the still-encoded records to the output container file.
+ */
+@Slf4j
+public class ExternalSorter {
+
+  private final Schema schema;
+  private final ExternalSortConfig config;
+  private final BinarySkipPlan plan;
+  private final BinaryKeyComparator keys;
+  private final int fieldCount;
+
+  public ExternalSorter(Schema schema, ExternalSortConfig config) {
+    this.schema = schema;
+    this.config = config;
+    this.plan = new BinarySkipPlan(schema);
+    this.keys = new BinaryKeyComparator(plan, config.getKeyFields().toArray(new String[0]));
+    this.fieldCount = schema.getFields().size();
+  }
+
+  public SortResult sort(List<File> inputs, File output) throws IOException {
+    File tempDirectory =
+        Files.createTempDirectory(
+                config.getTempDirectory() == null
+                    ? new File(System.getProperty("java.io.tmpdir")).toPath()
+                    : config.getTempDirectory().toPath(),
+                "event-sort-")
+            .toFile();
+    try {
+      long start = System.nanoTime();
+      Queue<Split> splits = new ConcurrentLinkedQueue<>();
+      long inputBytes = 0;
+      for (File input : inputs) {
+        inputBytes += input.length();
+        for (long from = 0; from < input.length(); from += config.getSplitBytes()) {
+          long to = Math.min(input.length(), from + config.getSplitBytes());
+          splits.add(new Split(input, from, to));
+        }
+      }
+      List<File> runs = new ArrayList<>();
+      AtomicLong records = new AtomicLong();
+      AtomicLong spilled = new AtomicLong();
+      buildRuns(splits, tempDirectory, runs, records, spilled);
+      long runNanos = System.nanoTime() - start;
+      log.info(
+          "Built {} sorted runs of {} records in {} ms",
+          runs.size(),
+          records,
+          runNanos / 1_000_000);
+
+      start = System.nanoTime();
+      int passes = 0;
+      while (runs.size() > config.getMergeFanIn()) {
+        List<File> merged = new ArrayList<>();
+        for (int i = 0; i < runs.size(); i += config.getMergeFanIn()) {
+          List<File> group = runs.subList(i, Math.min(runs.size(), i + config.getMergeFanIn()));
+          File run = File.createTempFile("merge-", ".run", tempDirectory);
+          spilled.addAndGet(mergeToRun(group, run));
+          merged.add(run);
+        }
+        runs = merged;
+        passes++;
+      }
+      mergeToContainer(runs, output);
+      passes++;
+      return new SortResult(
+          records.get(),
+          runs.size(),
+          passes,
+          inputBytes,
+          spilled.get(),
+          runNanos,
+          System.nanoTime() - start);
+    } finally {
+      File[] leftovers = tempDirectory.listFiles();
+      if (leftovers != null) {
+        for (File leftover : leftovers) {
+          Files.deleteIfExists(leftover.toPath());
+        }
+      }
+      Files.deleteIfExists(tempDirectory.toPath());
+    }
+  }
+
+  private void buildRuns(
+      Queue<Split> splits,
+      File tempDirectory,
+      List<File> runs,
+      AtomicLong records,
+      AtomicLong spilled)
+      throws IOException {
+    int threads = Math.max(1, Math.min(config.getThreads(), splits.size()));
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> workers = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        workers.add(
+            executor.submit(
+                () -> {
+                  new RunBuilder(tempDirectory, runs, records, spilled).run(splits);
+                  return null;
+                }));
+      }
+      for (Future<?> worker : workers) {
+        worker.get();
+      }
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof IOException
+          ? (IOException) e.getCause()
+          : new IOException("Building sorted runs failed", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while building sorted runs", e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private long mergeToRun(List<File> runs, File output) throws IOException {
+    ByteBuffer out = ByteBuffer.allocateDirect(config.getIoBufferBytes());
+    long written = 0;
+    try (FileChannel channel =
+        FileChannel.open(output.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+      Merge merge = new Merge(runs);
+      try {
+        for (RunFile head = merge.next(); head != null; head = merge.next()) {
+          if (out.remaining() < head.entryBytes()) {
+            written += drain(channel, out);
+            if (out.capacity() < head.entryBytes()) {
+              out = ByteBuffer.allocateDirect(head.entryBytes());
+            }
+          }
+          head.copyEntryTo(out);
+        }
+      } finally {
+        merge.close();
+      }
+      written += drain(channel, out);
+    }
+    for (File run : runs) {
+      Files.delete(run.toPath());
+    }
+    return written;
+  }
+
+  private void mergeToContainer(List<File> runs, File output) throws IOException {
+    try (DataFileWriter<GenericRecord> writer =
+        new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema))) {
+      writer.setCodec(config.getCodec());
+      writer.create(schema, output);
+      Merge merge = new Merge(runs);
+      try {
+        for (RunFile head = merge.next(); head != null; head = merge.next()) {
+          writer.appendEncoded(ByteBuffer.wrap(head.record, 0, head.recordLength));
+        }
+      } finally {
+        merge.close();
+      }
+    }
+  }
+
+  private static long drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    long bytes = buffer.remaining();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+    return bytes;
+  }
+
+  /** Byte range of an input file; it owns the blocks whose sync marker starts inside it. */
+  private static final class Split {
+    final File file;
+    final long from;
+    final long to;
+
+    Split(File file, long from, long to) {
+      this.file = file;
+      this.from = from;
+      this.to = to;
+    }
+  }
+
+  /** One thread's loop: read splits into its run buffer, sort and spill when full. */
+  private final class RunBuilder {
+    private final File tempDirectory;
+    private final List<File> runs;
+    private final AtomicLong records;
+    private final AtomicLong spilled;
+    private final RunBuffer buffer = new RunBuffer(config.getRunBufferBytes());
+    private final ByteBuffer out = ByteBuffer.allocateDirect(config.getIoBufferBytes());
+    private final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    private final GenericDatumWriter<GenericRecord> writer = new GenericDatumWriter<>(schema);
+    private BinaryEncoder encoder;
+
+    RunBuilder(File tempDirectory, List<File> runs, AtomicLong records, AtomicLong spilled) {
+      this.tempDirectory = tempDirectory;
+      this.runs = runs;
+      this.records = records;
+      this.spilled = spilled;
+    }
+
+    void run(Queue<Split> splits) throws IOException {
+      for (Split split = splits.poll(); split != null; split = splits.poll()) {
+        read(split);
+      }
+      spill();
+    }
+
+    private void read(Split split) throws IOException {
+      try (DataFileReader<GenericRecord> reader =
+          new DataFileReader<>(split.file, new GenericDatumReader<>(null, schema))) {
+        // sync(0) rereads the header and leaves previousSync() at 0; searching from past the magic
+        // finds the header's own sync marker instead, so every split uses the same rule: a block
+        // belongs to the split its preceding sync marker starts in.
+        reader.sync(Math.max(split.from, DataFileConstants.MAGIC.length));
+        long limit = split.to + DataFileConstants.SYNC_SIZE;
+        if (!reader.getSchema().equals(schema)) {
+          // Another writer schema: resolve and re-encode so keys and output match the schema.
+          GenericRecord reuse = null;
+          while (reader.hasNext() && reader.previousSync() < limit) {
+            reuse = reader.next(reuse);
+            add(encode(reuse));
+          }
+          return;
+        }
+        // nextBlock() does not maintain previousSync() and tell() runs ahead by whatever the
+        // decoder buffered, so follow block starts from the block headers instead.
+        long blockStart = reader.previousSync();
+        while (blockStart < limit && reader.hasNext()) {
+          long count = reader.getBlockCount();
+          long size = reader.getBlockSize();
+          ByteBuffer block = reader.nextBlock();
+          blockStart +=
+              BinaryCursor.longSize(count)
+                  + BinaryCursor.longSize(size)
+                  + size
+                  + DataFileConstants.SYNC_SIZE;
+          byte[] bytes = block.array();
+          int pos = block.arrayOffset() + block.position();
+          for (long i = 0; i < count; i++) {
+            int end = plan.skip(bytes, pos, 0, fieldCount);
+            add(bytes, pos, end - pos);
+            pos = end;
+          }
+        }
+      }
+    }
+
+    private byte[] encode(GenericRecord record) throws IOException {
+      encoded.reset();
+      encoder = EncoderFactory.get().binaryEncoder(encoded, encoder);
+      writer.write(record, encoder);
+      encoder.flush();
+      return encoded.toByteArray();
+    }
+
+    private void add(byte[] record) throws IOException {
+      add(record, 0, record.length);
+    }
+
+    private void add(byte[] record, int offset, int length) throws IOException {
+      byte[] key = keys.sortKey(record, offset);
+      if (!buffer.add(key, record, offset, length)) {
+        spill();
+        buffer.add(key, record, offset, length);
+      }
+    }
+
+    private void spill() throws IOException {
+      if (buffer.size() == 0) {
+        return;
+      }
+      buffer.sort();
+      File run = File.createTempFile("run-", ".run", tempDirectory);
+      try (FileChannel channel =
+          FileChannel.open(run.toPath(), StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+        spilled.addAndGet(buffer.writeTo(channel, out));
+      }
+      records.addAndGet(buffer.size());
+      synchronized (runs) {
+        runs.add(run);
+      }
+      buffer.clear();
+    }
+  }
+
+  /** K-way merge over run files. */
+  private final class Merge implements LoserTree.Sources {
+    private final RunFile[] heads;
+    private final LoserTree tree;
+    private boolean started;
+
+    Merge(List<File> runs) throws IOException {
+      heads = new RunFile[runs.size()];
+      try {
+        for (int i = 0; i < heads.length; i++) {
+          heads[i] = new RunFile(runs.get(i), config.getIoBufferBytes());
+          heads[i].advance();
+        }
+      } catch (IOException e) {
+        close();
+        throw e;
+      }
+      tree = new LoserTree(heads.length, this);
+    }
+
+    /** The run holding the next entry in key order, or null when all are exhausted. */
+    RunFile next() throws IOException {
+      if (started) {
+        int previous = tree.winner();
+        heads[previous].advance();
+        tree.replay();
+      }
+      started = true;
+      int winner = tree.winner();
+      return winner < 0 ? null : heads[winner];
+    }
+
+    @Override
+    public boolean isExhausted(int source) {
+      return heads[source].exhausted;
+    }
+
+    @Override
+    public int compareHeads(int a, int b) {
+      return heads[a].compareTo(heads[b]);
+    }
+
+    void close() throws IOException {
+      for (RunFile head : heads) {
+        if (head != null) {
+          head.close();
+        }
+      }
+    }
+  }
+
+  /** Sorts event files: {@code ExternalSorter <output.avro> <input.avro>...}. */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: ExternalSorter <output.avro> <input.avro>...");
+      System.exit(1);
+    }
+    List<File> inputs = new ArrayList<>();
+    for (int i = 1; i < args.length; i++) {
+      inputs.add(new File(args[i]));
+    }
+    ExternalSorter sorter =
+        new ExternalSorter(
+            AvroEventSchemaBuilder.buildSchema(), ExternalSortConfig.builder().build());
+    SortResult result = sorter.sort(inputs, new File(args[0]));
+    System.out.println(result.toText());
+  }
+}
@@ -0,0 +1,80 @@
+package model.sort;
+
+import java.util.Arrays;
+
+/**
+ * Tournament tree for k-way merging: each inner node keeps the loser of the match played there
+ * and the root slot the overall winner, so replacing the winner replays only one leaf-to-root
+ * path, about log2(k) comparisons, where a binary heap needs up to twice that.
+ */
+final class LoserTree {
+
+  /** Order of the current heads of two sources; exhausted sources must lose every match. */
+  interface Sources {
+    boolean isExhausted(int source);
+
+    int compareHeads(int a, int b);
+  }
+
+  private final Sources sources;
+  private final int k;
+  /** tree[0] is the winner, tree[1..k-1] the losers of the inner nodes. */
+  private final int[] tree;
+
+  LoserTree(int k, Sources sources) {
+    this.k = k;
+    this.sources = sources;
+    this.tree = new int[Math.max(1, k)];
+    Arrays.fill(tree, -1);
+    for (int source = k - 1; source >= 0; source--) {
+      insert(source);
+    }
+  }
+
+  /** Source holding the smallest head, or -1 when all are exhausted. */
+  int winner() {
+    int winner = tree[0];
+    return winner < 0 || sources.isExhausted(winner) ? -1 : winner;
+  }
+
+  /** Replays the winner's path after its source advanced to its next head. */
+  void replay() {
+    int winner = tree[0];
+    for (int node = (winner + k) >> 1; node > 0; node >>= 1) {
+      if (beats(tree[node], winner)) {
+        int loser = winner;
+        winner = tree[node];
+        tree[node] = loser;
+      }
+    }
+    tree[0] = winner;
+  }
+
+  private void insert(int source) {
+    int winner = source;
+    for (int node = (source + k) >> 1; node > 0; node >>= 1) {
+      if (tree[node] < 0) {
+        // First arrival waits here for its opponent from the other subtree.
+        tree[node] = winner;
+        return;
+      }
+      if (beats(tree[node], winner)) {
+        int loser = winner;
+        winner = tree[node];
+        tree[node] = loser;
+      }
+    }
+    tree[0] = winner;
+  }
+
+  private boolean beats(int a, int b) {
+    if (sources.isExhausted(a)) {
+      return false;
+    }
+    if (sources.isExhausted(b)) {
+      return true;
+    }
+    int result = sources.compareHeads(a, b);
+    return result < 0 || (result == 0 && a < b);
+  }
+}
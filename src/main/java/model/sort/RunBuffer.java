@@ -0,0 +1,174 @@
+package model.sort;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * One thread's in-memory run: encoded records in an off-heap buffer, their sort keys in an
+ * on-heap arena, and per record a long key prefix, so most comparisons during the sort are a
+ * single unsigned long compare on a primitive array and records never move until they are
+ * spilled.
+ */
+final class RunBuffer {
+
+  private final ByteBuffer records;
+  private byte[] keys = new byte[64 * 1024];
+  private int keysUsed;
+  private long[] prefixes = new long[1024];
+  private int[] keyOffsets = new int[1024];
+  private int[] keyLengths = new int[1024];
+  private int[] recordOffsets = new int[1024];
+  private int[] recordLengths = new int[1024];
+  private int count;
+  private int[] order = new int[0];
+
+  RunBuffer(int capacityBytes) {
+    this.records = ByteBuffer.allocateDirect(capacityBytes);
+  }
+
+  int size() {
+    return count;
+  }
+
+  /** Adds a record, or returns false when the off-heap buffer is full. */
+  boolean add(byte[] key, byte[] record, int offset, int length) {
+    if (records.remaining() < length) {
+      if (count == 0) {
+        throw new IllegalArgumentException(
+            "A " + length + "-byte record does not fit in an empty run buffer");
+      }
+      return false;
+    }
+    if (count == prefixes.length) {
+      int grown = count * 2;
+      prefixes = Arrays.copyOf(prefixes, grown);
+      keyOffsets = Arrays.copyOf(keyOffsets, grown);
+      keyLengths = Arrays.copyOf(keyLengths, grown);
+      recordOffsets = Arrays.copyOf(recordOffsets, grown);
+      recordLengths = Arrays.copyOf(recordLengths, grown);
+    }
+    if (keysUsed + key.length > keys.length) {
+      keys = Arrays.copyOf(keys, Math.max(keys.length * 2, keysUsed + key.length));
+    }
+    System.arraycopy(key, 0, keys, keysUsed, key.length);
+    prefixes[count] = prefix(key, 0, key.length);
+    keyOffsets[count] = keysUsed;
+    keyLengths[count] = key.length;
+    keysUsed += key.length;
+    recordOffsets[count] = records.position();
+    recordLengths[count] = length;
+    records.put(record, offset, length);
+    count++;
+    return true;
+  }
+
+  void sort() {
+    order = new int[count];
+    for (int i = 0; i < count; i++) {
+      order[i] = i;
+    }
+    mergeSort(order, new int[count], 0, count);
+  }
+
+  /**
+   * Writes the sorted run as {@code [keyLength:int][key][recordLength:int][record]} entries.
+   * Returns the bytes written.
+   */
+  long writeTo(FileChannel channel, ByteBuffer out) throws IOException {
+    long written = 0;
+    out.clear();
+    for (int i : order) {
+      int entry = 2 * Integer.BYTES + keyLengths[i] + recordLengths[i];
+      if (out.remaining() < entry) {
+        written += drain(channel, out);
+      }
+      if (out.remaining() < entry) {
+        ByteBuffer large = ByteBuffer.allocate(entry);
+        putEntry(large, i);
+        written += drain(channel, large);
+        continue;
+      }
+      putEntry(out, i);
+    }
+    return written + drain(channel, out);
+  }
+
+  void clear() {
+    records.clear();
+    keysUsed = 0;
+    count = 0;
+    order = new int[0];
+  }
+
+  /** First eight key bytes big-endian, zero-padded; compared unsigned. */
+  static long prefix(byte[] key, int offset, int length) {
+    long prefix = 0;
+    for (int i = 0; i < Long.BYTES; i++) {
+      prefix = prefix << 8 | (i < length ? key[offset + i] & 0xff : 0);
+    }
+    return prefix;
+  }
+
+  private void putEntry(ByteBuffer out, int i) {
+    out.putInt(keyLengths[i]).put(keys, keyOffsets[i], keyLengths[i]);
+    out.putInt(recordLengths[i]);
+    out.put(out.position(), records, recordOffsets[i], recordLengths[i]);
+    out.position(out.position() + recordLengths[i]);
+  }
+
+  private static long drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    long bytes = buffer.remaining();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+    return bytes;
+  }
+
+  private int compare(int a, int b) {
+    int result = Long.compareUnsigned(prefixes[a], prefixes[b]);
+    if (result != 0) {
+      return result;
+    }
+    return Arrays.compareUnsigned(
+        keys,
+        keyOffsets[a],
+        keyOffsets[a] + keyLengths[a],
+        keys,
+        keyOffsets[b],
+        keyOffsets[b] + keyLengths[b]);
+  }
+
+  /** Stable top-down merge sort of record indexes, insertion sort below 16 elements. */
+  private void mergeSort(int[] a, int[] scratch, int from, int to) {
+    if (to - from < 16) {
+      for (int i = from + 1; i < to; i++) {
+        int value = a[i];
+        int j = i - 1;
+        while (j >= from && compare(a[j], value) > 0) {
+          a[j + 1] = a[j];
+          j--;
+        }
+        a[j + 1] = value;
+      }
+      return;
+    }
+    int mid = (from + to) >>> 1;
+    mergeSort(a, scratch, from, mid);
+    mergeSort(a, scratch, mid, to);
+    if (compare(a[mid - 1], a[mid]) <= 0) {
+      return;
+    }
+    System.arraycopy(a, from, scratch, from, to - from);
+    for (int i = from, left = from, right = mid; i < to; i++) {
+      if (right >= to || (left < mid && compare(scratch[left], scratch[right]) <= 0)) {
+        a[i] = scratch[left++];
+      } else {
+        a[i] = scratch[right++];
+      }
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package model.sort;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/** Sequential reader of a spilled run, exposing one entry (key and record) at a time. */
+final class RunFile implements Closeable {
+
+  private final File file;
+  private final FileChannel channel;
+  private ByteBuffer buffer;
+  private boolean eof;
+
+  byte[] key = new byte[128];
+  int keyLength;
+  long prefix;
+  byte[] record = new byte[4096];
+  int recordLength;
+  boolean exhausted;
+
+  RunFile(File file, int bufferBytes) throws IOException {
+    this.file = file;
+    this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    this.buffer = ByteBuffer.allocateDirect(bufferBytes).flip();
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  /** Loads the next entry, setting {@link #exhausted} at the end of the run. */
+  void advance() throws IOException {
+    if (!fill(Integer.BYTES)) {
+      exhausted = true;
+      return;
+    }
+    keyLength = buffer.getInt();
+    requireFill(keyLength);
+    if (key.length < keyLength) {
+      key = new byte[Math.max(keyLength, key.length * 2)];
+    }
+    buffer.get(key, 0, keyLength);
+    prefix = RunBuffer.prefix(key, 0, keyLength);
+    requireFill(Integer.BYTES);
+    recordLength = buffer.getInt();
+    requireFill(recordLength);
+    if (record.length < recordLength) {
+      record = Arrays.copyOf(record, Math.max(recordLength, record.length * 2));
+    }
+    buffer.get(record, 0, recordLength);
+  }
+
+  int compareTo(RunFile other) {
+    int result = Long.compareUnsigned(prefix, other.prefix);
+    if (result != 0) {
+      return result;
+    }
+    return Arrays.compareUnsigned(key, 0, keyLength, other.key, 0, other.keyLength);
+  }
+
+  /** Writes the current entry in run format. */
+  void copyEntryTo(ByteBuffer out) {
+    out.putInt(keyLength).put(key, 0, keyLength).putInt(recordLength).put(record, 0, recordLength);
+  }
+
+  int entryBytes() {
+    return 2 * Integer.BYTES + keyLength + recordLength;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  private void requireFill(int bytes) throws IOException {
+    if (!fill(bytes)) {
+      throw new EOFException("Run " + file + " ends in the middle of an entry");
+    }
+  }
+
+  private boolean fill(int bytes) throws IOException {
+    if (buffer.remaining() >= bytes) {
+      return true;
+    }
+    if (buffer.capacity() < bytes) {
+      ByteBuffer grown = ByteBuffer.allocateDirect(bytes);
+      grown.put(buffer);
+      buffer = grown.flip();
+    }
+    buffer.compact();
+    while (!eof && buffer.position() < bytes) {
+      if (channel.read(buffer) < 0) {
+        eof = true;
+      }
+    }
+    buffer.flip();
+    return buffer.remaining() >= bytes;
+  }
+}
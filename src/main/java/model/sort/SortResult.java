@@ -0,0 +1,33 @@
+package model.sort;
+
+import lombok.Value;
+
+@Value
+public class SortResult {
+  long records;
+  int runs;
+  int mergePasses;
+  long inputBytes;
+  long spilledBytes;
+  long runNanos;
+  long mergeNanos;
+
+  public double getInputMegabytesPerSecond() {
+    long nanos = runNanos + mergeNanos;
+    return nanos == 0 ? 0 : inputBytes / 1e6 / (nanos / 1e9);
+  }
+
+  public String toText() {
+    return String.format(
+        "%d records, %d runs, %d merge passes, %.1f MB in, %.1f MB spilled,"
+            + " runs %.2fs, merge %.2fs, %.1f MB/s",
+        records,
+        runs,
+        mergePasses,
+        inputBytes / 1e6,
+        spilledBytes / 1e6,
+        runNanos / 1e9,
+        mergeNanos / 1e9,
+        getInputMegabytesPerSecond());
+  }
+}
@@ -16,6 +16,20 @@ public class AvroErrorMessageSchemaBuilder {
     public static void main(String[] args) throws IOException {
         log.info("Starting building error message schema for Avro");
 
+        Schema errorMessageSchema = buildSchema();
+
+        String outputFile = (args.length == 0 || args[0] == null || "".equals(args[0]))
+                ? "src/main/resources/schemas/error-message.avsc"
+                : args[0];
+
+        String content = errorMessageSchema.toString(true);
+
+        Files.writeString(Path.of(outputFile), content);
+        System.out.println(content);
+    }
+
+    /** Builds the ErrorMessage record schema, whose errors are ErrorRecord entries. */
+    public static Schema buildSchema() {
         Schema errorRecordSchema = SchemaBuilder
             .record("ErrorRecord")
             .namespace("tv.pluto.nile.avro")
@@ -39,7 +53,7 @@ public class AvroErrorMessageSchemaBuilder {
 
             .endRecord();
 
-        Schema errorMessageSchema = SchemaBuilder
+        return SchemaBuilder
             .record("ErrorMessage")
             .namespace("tv.pluto.nile.avro")
             .fields()
@@ -53,15 +67,6 @@ public class AvroErrorMessageSchemaBuilder {
             .type(Schema.createArray(errorRecordSchema)).noDefault()
 
             .endRecord();
-
-        String outputFile = (args.length == 0 || args[0] == null || "".equals(args[0]))
-                ? "src/main/resources/schemas/error-message.avsc"
-                : args[0];
-
-        String content = errorMessageSchema.toString(true);
-
-        Files.writeString(Path.of(outputFile), content);
-        System.out.println(content);
     }
 
 }
@@ -8,6 +8,8 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 
 import static model.utils.AvroCommonTypes.*;
 
@@ -19,7 +21,7 @@ import static model.utils.AvroCommonTypes.*;
 public class AvroEventSchemaBuilder {
 
   /** Event name enumeration. */
-  private static final Schema EVENT_NAME_ENUM =
+  public static final Schema EVENT_NAME_ENUM =
       Schema.createEnum(
           "EventName",
           "Identifies the Name of the Event being fired.",
@@ -161,10 +163,94 @@ public class AvroEventSchemaBuilder {
               "impressionNonAd"
           ));
 
+  /**
+   * Well-known httpHeaders keys, attached to the field as its "keyDictionary" property so compact
+   * encoders can replace them with small ids. Append only: ids are list positions, and the version
+   * must be bumped whenever keys are added.
+   */
+  public static final Map<String, Object> HTTP_HEADERS_KEY_DICTIONARY =
+      Map.of(
+          "version", 1,
+          "keys",
+          List.of(
+              "user-agent",
+              "accept",
+              "accept-language",
+              "accept-encoding",
+              "x-forwarded-for",
+              "x-forwarded-proto",
+              "x-forwarded-port",
+              "x-real-ip",
+              "x-amzn-trace-id",
+              "host",
+              "origin",
+              "referer",
+              "content-type",
+              "content-length",
+              "connection",
+              "cache-control",
+              "cookie",
+              "dnt",
+              "pragma",
+              "via",
+              "x-request-id",
+              "sec-fetch-site",
+              "sec-fetch-mode",
+              "sec-fetch-dest",
+              "sec-ch-ua",
+              "sec-ch-ua-mobile",
+              "sec-ch-ua-platform",
+              "cloudfront-viewer-country",
+              "cloudfront-is-mobile-viewer",
+              "cloudfront-is-desktop-viewer",
+              "cloudfront-is-smarttv-viewer",
+              "cloudfront-is-tablet-viewer"));
+
+  /** Well-known httpQueryString keys, see {@link #HTTP_HEADERS_KEY_DICTIONARY}. */
+  public static final Map<String, Object> HTTP_QUERY_STRING_KEY_DICTIONARY =
+      Map.of(
+          "version", 1,
+          "keys",
+          List.of(
+              "appName",
+              "appVersion",
+              "deviceType",
+              "deviceMake",
+              "deviceModel",
+              "deviceVersion",
+              "deviceId",
+              "deviceDNT",
+              "deviceLat",
+              "deviceLon",
+              "clientID",
+              "clientModelNumber",
+              "sid",
+              "userId",
+              "advertisingId",
+              "serverSideAds",
+              "marketingRegion",
+              "includeExtendedEvents",
+              "architecture",
+              "buildVersion"));
+
   public static void main(String[] args) throws IOException {
     log.info("Starting building Odin Event Schema for Avro");
 
-    Schema eventSchema = SchemaBuilder
+    Schema eventSchema = buildSchema();
+
+    String outputFile = (args.length == 0 || args[0] == null || "".equals(args[0]))
+        ? "src/main/resources/schemas/event-data-payload.avsc"
+        : args[0];
+
+    String content = eventSchema.toString(true);
+
+    Files.writeString(Path.of(outputFile), content);
+    System.out.println(content);
+  }
+
+  /** Builds the EventDataPayload record schema. */
+  public static Schema buildSchema() {
+    return SchemaBuilder
         .record("EventDataPayload")
         .namespace("tv.pluto.nile.avro")
         .fields()
@@ -574,6 +660,18 @@ public class AvroEventSchemaBuilder {
         .doc("Timestamp event began ETL.")
         .type(OPTIONAL_TIMESTAMP_MILLIS).withDefault(null)
 
+        .name("clientOccurredTimestampUtc")
+        .doc("""
+            eventOccurredTimestampUtc as reported by the client, kept when the pipeline corrects
+            eventOccurredTimestampUtc for client clock skew; null if it was never corrected.""")
+        .type(OPTIONAL_TIMESTAMP_MILLIS).withDefault(null)
+
+        .name("sampleRate")
+        .doc("""
+            Fraction of its kind of events the collector kept when it sampled this one under load,
+            so counts can be re-weighted downstream; null if the event was not sampled.""")
+        .type(OPTIONAL_DOUBLE).withDefault(null)
+
         .name("eventEtlLoadUtc")
         .type(OPTIONAL_TIMESTAMP_MILLIS).withDefault(null)
 
@@ -1065,6 +1163,7 @@ public class AvroEventSchemaBuilder {
 
         .name("httpQueryString")
         .doc("Query string of HTTP request processed by collector.")
+        .prop("keyDictionary", HTTP_QUERY_STRING_KEY_DICTIONARY)
         .type(OPTIONAL_MAP_OF_STRING).withDefault(null)
 
         .name("httpEncoding")
@@ -1077,6 +1176,7 @@ public class AvroEventSchemaBuilder {
 
         .name("httpHeaders")
         .doc("Headers of HTTP request processed by collector.")
+        .prop("keyDictionary", HTTP_HEADERS_KEY_DICTIONARY)
         .type(OPTIONAL_MAP_OF_STRING).withDefault(null)
 
         .name("custom1")
@@ -1107,14 +1207,5 @@ public class AvroEventSchemaBuilder {
         .doc("Identifies the term of the referer which is parsed from the pageReferer field. Identifies the parameters used in the search engine URL to identify the search.")
         .type(OPTIONAL_STRING).withDefault(null)
         .endRecord();
-
-    String outputFile = (args.length == 0 || args[0] == null || "".equals(args[0]))
-        ? "src/main/resources/schemas/event-data-payload.avsc"
-        : args[0];
-
-    String content = eventSchema.toString(true);
-
-    Files.writeString(Path.of(outputFile), content);
-    System.out.println(content);
   }
 }
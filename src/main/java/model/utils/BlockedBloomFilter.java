@@ -0,0 +1,111 @@
+package model.utils;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Bloom filter whose probes for one key all land in a single 512-bit block (one cache line), so a
+ * lookup costs one memory access instead of {@code k}.
+ */
+public final class BlockedBloomFilter {
+
+  public static final int BLOCK_BITS = 512;
+  private static final int BLOCK_LONGS = BLOCK_BITS / Long.SIZE;
+  private static final long BIT_SEED = 0x9e3779b97f4a7c15L;
+
+  private final long[] bits;
+  private final int blockMask;
+  private final int hashes;
+
+  public BlockedBloomFilter(int blocks, int hashes) {
+    if (Integer.bitCount(blocks) != 1) {
+      throw new IllegalArgumentException("Block count must be a power of two: " + blocks);
+    }
+    this.bits = new long[blocks * BLOCK_LONGS];
+    this.blockMask = blocks - 1;
+    this.hashes = hashes;
+  }
+
+  /** Filter sized for {@code keys} keys at false-positive rate {@code fpp}. */
+  public static BlockedBloomFilter forKeys(long keys, double fpp) {
+    double bitsPerKey = bitsPerKey(fpp);
+    long blocks = Math.max(1, (long) Math.ceil(keys * bitsPerKey / BLOCK_BITS));
+    long powerOfTwo =
+        Long.highestOneBit(blocks) == blocks ? blocks : Long.highestOneBit(blocks) << 1;
+    return new BlockedBloomFilter((int) Math.min(powerOfTwo, 1 << 24), optimalHashes(bitsPerKey));
+  }
+
+  /** Restores a filter from {@link #toBytes()}. */
+  public static BlockedBloomFilter fromBytes(ByteBuffer bytes, int hashes) {
+    ByteBuffer in = bytes.duplicate();
+    BlockedBloomFilter filter = new BlockedBloomFilter(in.remaining() / (BLOCK_BITS / 8), hashes);
+    in.asLongBuffer().get(filter.bits);
+    return filter;
+  }
+
+  public byte[] toBytes() {
+    ByteBuffer out = ByteBuffer.allocate(bits.length * Long.BYTES);
+    out.asLongBuffer().put(bits);
+    return out.array();
+  }
+
+  public int getHashes() {
+    return hashes;
+  }
+
+  /** Sets the key's bits, returning true if at least one of them was previously unset. */
+  public boolean put(long key) {
+    int base = ((int) (key >>> 32) & blockMask) * BLOCK_LONGS;
+    long h = Hashing.fmix64(key + BIT_SEED);
+    int h1 = (int) h;
+    int h2 = (int) (h >>> 32) | 1;
+    boolean changed = false;
+    for (int i = 0; i < hashes; i++) {
+      int bit = (h1 + i * h2) & (BLOCK_BITS - 1);
+      int word = base + (bit >>> 6);
+      long mask = 1L << bit;
+      if ((bits[word] & mask) == 0) {
+        bits[word] |= mask;
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  public boolean mightContain(long key) {
+    int base = ((int) (key >>> 32) & blockMask) * BLOCK_LONGS;
+    long h = Hashing.fmix64(key + BIT_SEED);
+    int h1 = (int) h;
+    int h2 = (int) (h >>> 32) | 1;
+    for (int i = 0; i < hashes; i++) {
+      int bit = (h1 + i * h2) & (BLOCK_BITS - 1);
+      if ((bits[base + (bit >>> 6)] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public void clear() {
+    Arrays.fill(bits, 0L);
+  }
+
+  public long memoryBytes() {
+    return (long) bits.length * Long.BYTES;
+  }
+
+  /** Bits per key for a classic Bloom filter at {@code fpp}, plus headroom for blocking. */
+  public static double bitsPerKey(double fpp) {
+    return -Math.log(fpp) / (Math.log(2) * Math.log(2)) * 1.1;
+  }
+
+  public static int optimalHashes(double bitsPerKey) {
+    return (int) Math.max(1, Math.min(16, Math.round(bitsPerKey * Math.log(2))));
+  }
+
+  /** Approximate false-positive rate after {@code keys} insertions into {@code blocks} blocks. */
+  public static double expectedFpp(long keys, int blocks, int hashes) {
+    double bitsTotal = (double) blocks * BLOCK_BITS;
+    return Math.pow(1 - Math.exp(-hashes * keys / bitsTotal), hashes);
+  }
+}
@@ -0,0 +1,36 @@
+package model.utils;
+
+import java.util.List;
+import org.apache.avro.Schema;
+
+/** Ordinal lookups for the EventName enum, for code that keys arrays by event name. */
+public final class EventNames {
+
+  private static final Schema ENUM = AvroEventSchemaBuilder.EVENT_NAME_ENUM;
+  private static final List<String> SYMBOLS = ENUM.getEnumSymbols();
+
+  /** Number of EventName symbols. */
+  public static final int COUNT = SYMBOLS.size();
+
+  private EventNames() {}
+
+  /**
+   * Ordinal of an eventName value as stored in a record (an enum symbol or a string), or -1 if it
+   * is null or not an EventName symbol.
+   */
+  public static int ordinal(Object eventName) {
+    if (eventName == null) {
+      return -1;
+    }
+    String symbol = eventName.toString();
+    return ENUM.hasEnumSymbol(symbol) ? ENUM.getEnumOrdinal(symbol) : -1;
+  }
+
+  public static String symbol(int ordinal) {
+    return SYMBOLS.get(ordinal);
+  }
+
+  public static List<String> symbols() {
+    return SYMBOLS;
+  }
+}
@@ -0,0 +1,79 @@
+package model.utils;
+
+import org.apache.avro.util.Utf8;
+
+/**
+ * Small allocation-free hash helpers for keying events. String values are hashed over their
+ * UTF-8 bytes, so a {@link String} and an Avro {@link Utf8} with the same content hash equally.
+ */
+public final class Hashing {
+
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private Hashing() {}
+
+  /** Murmur3 64-bit finalizer. */
+  public static long fmix64(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  /** Combines two 64-bit hashes into one. */
+  public static long combine(long h1, long h2) {
+    return fmix64(h1 * 31 + h2);
+  }
+
+  /** 64-bit hash of the UTF-8 encoding of {@code value}, or of the seed alone when null. */
+  public static long hashUtf8(CharSequence value, long seed) {
+    long h = FNV_OFFSET ^ seed;
+    if (value == null) {
+      return fmix64(h);
+    }
+    if (value instanceof Utf8) {
+      Utf8 utf8 = (Utf8) value;
+      return hashUtf8(utf8.getBytes(), 0, utf8.getByteLength(), seed);
+    }
+    for (int i = 0, n = value.length(); i < n; i++) {
+      int c = value.charAt(i);
+      if (c < 0x80) {
+        h = (h ^ c) * FNV_PRIME;
+      } else if (c < 0x800) {
+        h = (h ^ (0xc0 | (c >>> 6))) * FNV_PRIME;
+        h = (h ^ (0x80 | (c & 0x3f))) * FNV_PRIME;
+      } else if (Character.isHighSurrogate((char) c)
+          && i + 1 < n
+          && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int cp = Character.toCodePoint((char) c, value.charAt(++i));
+        h = (h ^ (0xf0 | (cp >>> 18))) * FNV_PRIME;
+        h = (h ^ (0x80 | ((cp >>> 12) & 0x3f))) * FNV_PRIME;
+        h = (h ^ (0x80 | ((cp >>> 6) & 0x3f))) * FNV_PRIME;
+        h = (h ^ (0x80 | (cp & 0x3f))) * FNV_PRIME;
+      } else {
+        // Lone surrogates are written as '?' by the UTF-8 encoder.
+        if (Character.isSurrogate((char) c)) {
+          c = '?';
+          h = (h ^ c) * FNV_PRIME;
+          continue;
+        }
+        h = (h ^ (0xe0 | (c >>> 12))) * FNV_PRIME;
+        h = (h ^ (0x80 | ((c >>> 6) & 0x3f))) * FNV_PRIME;
+        h = (h ^ (0x80 | (c & 0x3f))) * FNV_PRIME;
+      }
+    }
+    return fmix64(h);
+  }
+
+  /** Same hash as {@link #hashUtf8(CharSequence, long)} over already-encoded UTF-8 bytes. */
+  public static long hashUtf8(byte[] bytes, int offset, int length, long seed) {
+    long h = FNV_OFFSET ^ seed;
+    for (int i = offset, end = offset + length; i < end; i++) {
+      h = (h ^ (bytes[i] & 0xff)) * FNV_PRIME;
+    }
+    return fmix64(h);
+  }
+}
@@ -0,0 +1,61 @@
+package model.utils;
+
+/**
+ * MurmurHash3 x64 128-bit, the variant Guava and most stores use. Stateless and allocation-free.
+ */
+public final class Murmur3 {
+
+  private static final long C1 = 0x87c37b91114253d5L;
+  private static final long C2 = 0x4cf5ad432745937fL;
+
+  private Murmur3() {}
+
+  /** Writes the two 64-bit halves (h1, h2) of the hash of {@code data} to {@code result}. */
+  public static void hash128(byte[] data, int offset, int length, long seed, long[] result) {
+    long h1 = seed;
+    long h2 = seed;
+    int end = offset + (length & ~15);
+    for (int i = offset; i < end; i += 16) {
+      h1 ^= mixK1(readLongLe(data, i, 8));
+      h1 = Long.rotateLeft(h1, 27) + h2;
+      h1 = h1 * 5 + 0x52dce729;
+      h2 ^= mixK2(readLongLe(data, i + 8, 8));
+      h2 = Long.rotateLeft(h2, 31) + h1;
+      h2 = h2 * 5 + 0x38495ab5;
+    }
+    int tail = length & 15;
+    if (tail > 8) {
+      h2 ^= mixK2(readLongLe(data, end + 8, tail - 8));
+    }
+    if (tail > 0) {
+      h1 ^= mixK1(readLongLe(data, end, Math.min(tail, 8)));
+    }
+    h1 ^= length;
+    h2 ^= length;
+    h1 += h2;
+    h2 += h1;
+    h1 = Hashing.fmix64(h1);
+    h2 = Hashing.fmix64(h2);
+    h1 += h2;
+    h2 += h1;
+    result[0] = h1;
+    result[1] = h2;
+  }
+
+  private static long mixK1(long k1) {
+    return Long.rotateLeft(k1 * C1, 31) * C2;
+  }
+
+  private static long mixK2(long k2) {
+    return Long.rotateLeft(k2 * C2, 33) * C1;
+  }
+
+  /** Reads {@code count} (at most 8) bytes at {@code pos} as a little-endian long. */
+  private static long readLongLe(byte[] bytes, int pos, int count) {
+    long value = 0;
+    for (int i = count - 1; i >= 0; i--) {
+      value = (value << 8) | (bytes[pos + i] & 0xff);
+    }
+    return value;
+  }
+}
@@ -0,0 +1,74 @@
+package model.utils;
+
+/**
+ * SipHash-2-4, a keyed 64-bit hash for values that must not be reversible by anyone without the
+ * key, e.g. pseudonymised identifiers. Stateless and allocation-free.
+ */
+public final class SipHash {
+
+  private SipHash() {}
+
+  /** SipHash-2-4 of {@code bytes[offset, offset + length)} under the 128-bit key (k0, k1). */
+  public static long hash(long k0, long k1, byte[] bytes, int offset, int length) {
+    long v0 = 0x736f6d6570736575L ^ k0;
+    long v1 = 0x646f72616e646f6dL ^ k1;
+    long v2 = 0x6c7967656e657261L ^ k0;
+    long v3 = 0x7465646279746573L ^ k1;
+    int end = offset + (length & ~7);
+    for (int i = offset; i < end; i += 8) {
+      long m = readLongLe(bytes, i, 8);
+      v3 ^= m;
+      for (int round = 0; round < 2; round++) {
+        v0 += v1;
+        v1 = Long.rotateLeft(v1, 13) ^ v0;
+        v0 = Long.rotateLeft(v0, 32);
+        v2 += v3;
+        v3 = Long.rotateLeft(v3, 16) ^ v2;
+        v0 += v3;
+        v3 = Long.rotateLeft(v3, 21) ^ v0;
+        v2 += v1;
+        v1 = Long.rotateLeft(v1, 17) ^ v2;
+        v2 = Long.rotateLeft(v2, 32);
+      }
+      v0 ^= m;
+    }
+    long last = ((long) length << 56) | readLongLe(bytes, end, length & 7);
+    v3 ^= last;
+    for (int round = 0; round < 2; round++) {
+      v0 += v1;
+      v1 = Long.rotateLeft(v1, 13) ^ v0;
+      v0 = Long.rotateLeft(v0, 32);
+      v2 += v3;
+      v3 = Long.rotateLeft(v3, 16) ^ v2;
+      v0 += v3;
+      v3 = Long.rotateLeft(v3, 21) ^ v0;
+      v2 += v1;
+      v1 = Long.rotateLeft(v1, 17) ^ v2;
+      v2 = Long.rotateLeft(v2, 32);
+    }
+    v0 ^= last;
+    v2 ^= 0xff;
+    for (int round = 0; round < 4; round++) {
+      v0 += v1;
+      v1 = Long.rotateLeft(v1, 13) ^ v0;
+      v0 = Long.rotateLeft(v0, 32);
+      v2 += v3;
+      v3 = Long.rotateLeft(v3, 16) ^ v2;
+      v0 += v3;
+      v3 = Long.rotateLeft(v3, 21) ^ v0;
+      v2 += v1;
+      v1 = Long.rotateLeft(v1, 17) ^ v2;
+      v2 = Long.rotateLeft(v2, 32);
+    }
+    return v0 ^ v1 ^ v2 ^ v3;
+  }
+
+  /** Reads {@code count} (at most 8) bytes at {@code pos} as a little-endian long. */
+  private static long readLongLe(byte[] bytes, int pos, int count) {
+    long value = 0;
+    for (int i = count - 1; i >= 0; i--) {
+      value = (value << 8) | (bytes[pos + i] & 0xff);
+    }
+    return value;
+  }
+}
@@ -0,0 +1,153 @@
+package model.utils;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Hierarchical timing wheel over entry indexes in {@code [0, capacity)}. Each of the {@value
+ * #LEVELS} levels has 64 buckets, each 64 times coarser than the level below; entries sit in the
+ * coarsest level their deadline fits and move down a level each time their bucket comes due, so
+ * scheduling, rescheduling and expiring are all O(1). Buckets are doubly linked lists threaded
+ * through primitive arrays, so nothing is allocated per entry.
+ */
+public final class TimingWheel {
+
+  public static final int LEVELS = 4;
+
+  private static final int BITS = 6;
+  private static final int SLOTS = 1 << BITS;
+  private static final int MASK = SLOTS - 1;
+
+  /** Deadlines are capped at this many ticks ahead. */
+  public static final long MAX_TICKS = (1L << (BITS * LEVELS)) - 1;
+
+  private final int[] heads = new int[LEVELS * SLOTS];
+  private final int[] next;
+  private final int[] prev;
+  private final int[] bucket;
+  private final long[] deadline;
+
+  private long currentTick;
+  private int scheduled;
+
+  public TimingWheel(int capacity, long startTick) {
+    this.next = new int[capacity];
+    this.prev = new int[capacity];
+    this.bucket = new int[capacity];
+    this.deadline = new long[capacity];
+    Arrays.fill(heads, -1);
+    Arrays.fill(bucket, -1);
+    this.currentTick = startTick;
+  }
+
+  public long currentTick() {
+    return currentTick;
+  }
+
+  public int scheduled() {
+    return scheduled;
+  }
+
+  /**
+   * Schedules or reschedules the entry to expire at the deadline tick, at the earliest next one.
+   */
+  public void schedule(int entry, long deadlineTick) {
+    deadlineTick = Math.min(Math.max(deadlineTick, currentTick + 1), currentTick + MAX_TICKS);
+    int target = bucketOf(deadlineTick);
+    deadline[entry] = deadlineTick;
+    if (bucket[entry] == target) {
+      return;
+    }
+    if (bucket[entry] >= 0) {
+      unlink(entry);
+    }
+    link(entry, target);
+  }
+
+  public void cancel(int entry) {
+    if (bucket[entry] >= 0) {
+      unlink(entry);
+    }
+  }
+
+  /** Moves time forward to the tick, handing each entry that came due to the consumer. */
+  public int advance(long toTick, IntConsumer expired) {
+    int count = 0;
+    while (currentTick < toTick) {
+      if (scheduled == 0) {
+        // Every bucket is empty, so there is nothing to step through.
+        currentTick = toTick;
+        break;
+      }
+      currentTick++;
+      // Cascade coarse levels first: entries they release may land in a finer bucket due now.
+      int levels = 1;
+      while (levels < LEVELS && (currentTick & ((1L << (BITS * levels)) - 1)) == 0) {
+        levels++;
+      }
+      for (int level = levels - 1; level > 0; level--) {
+        cascade(level * SLOTS + (int) ((currentTick >>> (BITS * level)) & MASK));
+      }
+      int due = (int) (currentTick & MASK);
+      int entry = heads[due];
+      heads[due] = -1;
+      while (entry >= 0) {
+        int following = next[entry];
+        bucket[entry] = -1;
+        scheduled--;
+        count++;
+        expired.accept(entry);
+        entry = following;
+      }
+    }
+    return count;
+  }
+
+  public long memoryBytes() {
+    return (long) next.length * (Integer.BYTES * 3 + Long.BYTES) + (long) heads.length * 4;
+  }
+
+  private void cascade(int from) {
+    int entry = heads[from];
+    heads[from] = -1;
+    while (entry >= 0) {
+      int following = next[entry];
+      scheduled--;
+      link(entry, bucketOf(deadline[entry]));
+      entry = following;
+    }
+  }
+
+  private int bucketOf(long deadlineTick) {
+    long delta = deadlineTick - currentTick;
+    int level = delta <= 0 ? 0 : (63 - Long.numberOfLeadingZeros(delta)) / BITS;
+    return level * SLOTS + (int) ((deadlineTick >>> (BITS * level)) & MASK);
+  }
+
+  private void link(int entry, int target) {
+    int head = heads[target];
+    next[entry] = head;
+    prev[entry] = -1;
+    if (head >= 0) {
+      prev[head] = entry;
+    }
+    heads[target] = entry;
+    bucket[entry] = target;
+    scheduled++;
+  }
+
+  private void unlink(int entry) {
+    int before = prev[entry];
+    int after = next[entry];
+    if (before >= 0) {
+      next[before] = after;
+    } else {
+      heads[bucket[entry]] = after;
+    }
+    if (after >= 0) {
+      prev[after] = before;
+    }
+    bucket[entry] = -1;
+    scheduled--;
+  }
+}
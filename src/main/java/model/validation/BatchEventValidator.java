@@ -0,0 +1,140 @@
+package model.validation;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+import model.utils.EventNames;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Validates batches of decoded EventDataPayload records column by column: each required field is
+ * read for the whole batch in one loop, and the enum and range checks then run over primitive
+ * arrays in branch-free loops that C2 can auto-vectorize. Scratch arrays are reused between
+ * batches, so an instance must not be shared between threads.
+ */
+public class BatchEventValidator {
+
+  private static final String[] REQUIRED_FIELDS = {
+    "appName",
+    "clientId",
+    "eventCategory",
+    "eventName",
+    "eventOccurredTimestampUtc",
+    "environment",
+    "hitId",
+    "sessionId"
+  };
+  private static final ValidationCheck[] MISSING_CHECKS = {
+    ValidationCheck.MISSING_APP_NAME,
+    ValidationCheck.MISSING_CLIENT_ID,
+    ValidationCheck.MISSING_EVENT_CATEGORY,
+    ValidationCheck.MISSING_EVENT_NAME,
+    ValidationCheck.MISSING_EVENT_OCCURRED_TIMESTAMP,
+    ValidationCheck.MISSING_ENVIRONMENT,
+    ValidationCheck.MISSING_HIT_ID,
+    ValidationCheck.MISSING_SESSION_ID
+  };
+
+  private final Schema errorRecordSchema;
+  private final int[] requiredPositions = new int[REQUIRED_FIELDS.length];
+  private final int eventNamePos;
+  private final int timestampPos;
+  private final int hitIdPos;
+  private final long maxPastMillis;
+  private final long maxFutureMillis;
+  private final LongSupplier clock;
+
+  private int[] masks = new int[0];
+  private int[] ordinals = new int[0];
+  private long[] timestamps = new long[0];
+  private int[] hitIds = new int[0];
+
+  /**
+   * @param errorMessageSchema ErrorMessage schema whose errors item type is used for ErrorRecords
+   * @param maxPast how far before now eventOccurredTimestampUtc may be
+   * @param maxFuture how far after now eventOccurredTimestampUtc may be
+   */
+  public BatchEventValidator(
+      Schema eventSchema, Schema errorMessageSchema, Duration maxPast, Duration maxFuture) {
+    this(eventSchema, errorMessageSchema, maxPast, maxFuture, System::currentTimeMillis);
+  }
+
+  public BatchEventValidator(
+      Schema eventSchema,
+      Schema errorMessageSchema,
+      Duration maxPast,
+      Duration maxFuture,
+      LongSupplier clock) {
+    this.errorRecordSchema = errorMessageSchema.getField("errors").schema().getElementType();
+    for (int i = 0; i < REQUIRED_FIELDS.length; i++) {
+      requiredPositions[i] = eventSchema.getField(REQUIRED_FIELDS[i]).pos();
+    }
+    this.eventNamePos = eventSchema.getField("eventName").pos();
+    this.timestampPos = eventSchema.getField("eventOccurredTimestampUtc").pos();
+    this.hitIdPos = eventSchema.getField("hitId").pos();
+    this.maxPastMillis = maxPast.toMillis();
+    this.maxFutureMillis = maxFuture.toMillis();
+    this.clock = clock;
+  }
+
+  /** Validates {@code events[0..count)}. */
+  public BatchValidationResult validate(GenericRecord[] events, int count) {
+    ensureCapacity(count);
+    int[] masks = this.masks;
+    Arrays.fill(masks, 0, count, 0);
+
+    for (int f = 0; f < requiredPositions.length; f++) {
+      int pos = requiredPositions[f];
+      int bit = MISSING_CHECKS[f].bit();
+      for (int i = 0; i < count; i++) {
+        if (events[i].get(pos) == null) {
+          masks[i] |= bit;
+        }
+      }
+    }
+
+    // Gather the checked values into primitive columns; nulls were flagged above and get values
+    // that pass, so each event reports a missing field only once.
+    long now = clock.getAsLong();
+    long min = now - maxPastMillis;
+    long max = now + maxFutureMillis;
+    for (int i = 0; i < count; i++) {
+      GenericRecord event = events[i];
+      Object name = event.get(eventNamePos);
+      ordinals[i] = name == null ? 0 : EventNames.ordinal(name);
+      Object timestamp = event.get(timestampPos);
+      timestamps[i] = timestamp == null ? now : ((Number) timestamp).longValue();
+      Object hitId = event.get(hitIdPos);
+      hitIds[i] = hitId == null ? 0 : ((Number) hitId).intValue();
+    }
+
+    int invalidName = ValidationCheck.INVALID_EVENT_NAME.ordinal();
+    int badTimestamp = ValidationCheck.TIMESTAMP_OUT_OF_RANGE.ordinal();
+    int negativeHit = ValidationCheck.NEGATIVE_HIT_ID.ordinal();
+    for (int i = 0; i < count; i++) {
+      int ts = (int) (((timestamps[i] - min) | (max - timestamps[i])) >>> 63);
+      masks[i] |=
+          ((ordinals[i] >>> 31) << invalidName)
+              | (ts << badTimestamp)
+              | ((hitIds[i] >>> 31) << negativeHit);
+    }
+
+    int invalid = 0;
+    for (int i = 0; i < count; i++) {
+      invalid += (masks[i] | -masks[i]) >>> 31;
+    }
+    return new BatchValidationResult(
+        errorRecordSchema, Arrays.copyOf(masks, count), count, invalid, min, max);
+  }
+
+  private void ensureCapacity(int count) {
+    if (masks.length < count) {
+      int capacity = Math.max(count, masks.length * 2);
+      masks = new int[capacity];
+      ordinals = new int[capacity];
+      timestamps = new long[capacity];
+      hitIds = new int[capacity];
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package model.validation;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Per-event failure masks of a validated batch. ErrorRecord entries are only built for the events
+ * that failed, when asked for.
+ */
+public class BatchValidationResult {
+
+  private static final ValidationCheck[] CHECKS = ValidationCheck.values();
+
+  private final Schema errorRecordSchema;
+  private final int[] failureMasks;
+  private final int size;
+  private final int invalidCount;
+  private final long minTimestamp;
+  private final long maxTimestamp;
+
+  BatchValidationResult(
+      Schema errorRecordSchema,
+      int[] failureMasks,
+      int size,
+      int invalidCount,
+      long minTimestamp,
+      long maxTimestamp) {
+    this.errorRecordSchema = errorRecordSchema;
+    this.failureMasks = failureMasks;
+    this.size = size;
+    this.invalidCount = invalidCount;
+    this.minTimestamp = minTimestamp;
+    this.maxTimestamp = maxTimestamp;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int getInvalidCount() {
+    return invalidCount;
+  }
+
+  public boolean isValid(int index) {
+    return failureMasks[index] == 0;
+  }
+
+  public boolean failed(int index, ValidationCheck check) {
+    return (failureMasks[index] & check.bit()) != 0;
+  }
+
+  /** ErrorRecord entries for one event, with rawEventIndex set to its index in the batch. */
+  public List<GenericRecord> errorRecords(int index) {
+    int mask = failureMasks[index];
+    List<GenericRecord> errors = new ArrayList<>(Integer.bitCount(mask));
+    for (ValidationCheck check : CHECKS) {
+      if ((mask & check.bit()) != 0) {
+        GenericRecord error = new GenericData.Record(errorRecordSchema);
+        error.put("type", check.getErrorType());
+        error.put("message", message(check));
+        error.put("rawEventIndex", index);
+        errors.add(error);
+      }
+    }
+    return errors;
+  }
+
+  /** ErrorRecord entries of every invalid event in the batch, in event order. */
+  public List<GenericRecord> allErrorRecords() {
+    List<GenericRecord> errors = new ArrayList<>(invalidCount);
+    for (int i = 0; i < size; i++) {
+      if (failureMasks[i] != 0) {
+        errors.addAll(errorRecords(i));
+      }
+    }
+    return errors;
+  }
+
+  private String message(ValidationCheck check) {
+    switch (check) {
+      case INVALID_EVENT_NAME:
+        return "eventName is not a known EventName symbol";
+      case TIMESTAMP_OUT_OF_RANGE:
+        return "eventOccurredTimestampUtc is outside [" + minTimestamp + ", " + maxTimestamp + "]";
+      case NEGATIVE_HIT_ID:
+        return "hitId must not be negative";
+      default:
+        return check.getField() + " is required";
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package model.validation;
+
+import lombok.Getter;
+
+/** Checks run by {@link BatchEventValidator}; each owns one bit of a per-event failure mask. */
+@Getter
+public enum ValidationCheck {
+  MISSING_APP_NAME("MISSING_REQUIRED_FIELD", "appName"),
+  MISSING_CLIENT_ID("MISSING_REQUIRED_FIELD", "clientId"),
+  MISSING_EVENT_CATEGORY("MISSING_REQUIRED_FIELD", "eventCategory"),
+  MISSING_EVENT_NAME("MISSING_REQUIRED_FIELD", "eventName"),
+  MISSING_EVENT_OCCURRED_TIMESTAMP("MISSING_REQUIRED_FIELD", "eventOccurredTimestampUtc"),
+  MISSING_ENVIRONMENT("MISSING_REQUIRED_FIELD", "environment"),
+  MISSING_HIT_ID("MISSING_REQUIRED_FIELD", "hitId"),
+  MISSING_SESSION_ID("MISSING_REQUIRED_FIELD", "sessionId"),
+  INVALID_EVENT_NAME("INVALID_EVENT_NAME", "eventName"),
+  TIMESTAMP_OUT_OF_RANGE("INVALID_TIMESTAMP", "eventOccurredTimestampUtc"),
+  NEGATIVE_HIT_ID("INVALID_HIT_ID", "hitId");
+
+  /** Value written to ErrorRecord.type. */
+  private final String errorType;
+
+  private final String field;
+
+  ValidationCheck(String errorType, String field) {
+    this.errorType = errorType;
+    this.field = field;
+  }
+
+  int bit() {
+    return 1 << ordinal();
+  }
+}
@@ -0,0 +1,76 @@
+package model.viewers;
+
+/**
+ * Assigns dense ids to channelIds, keyed by the 64-bit hash of their UTF-8 bytes so encoded events
+ * are looked up without decoding the string. Written by one thread; {@link #count()} and {@link
+ * #name(int)} may be read from any thread, since a name is stored before the count that publishes
+ * it.
+ */
+final class ChannelRegistry {
+
+  private static final long EMPTY = 0L;
+  private static final long ZERO_KEY = 0x9e3779b97f4a7c15L;
+
+  private final long[] keys;
+  private final int[] ids;
+  private final int mask;
+  private final String[] names;
+  private volatile int count;
+
+  ChannelRegistry(int capacity) {
+    int slots = Integer.highestOneBit(Math.max(1, capacity - 1)) << 2;
+    this.keys = new long[slots];
+    this.ids = new int[slots];
+    this.mask = slots - 1;
+    this.names = new String[capacity];
+  }
+
+  int capacity() {
+    return names.length;
+  }
+
+  /** Number of registered channels; ids are {@code [0, count)}. */
+  int count() {
+    return count;
+  }
+
+  String name(int id) {
+    return names[id];
+  }
+
+  /** Returns the id of the channel hash, or -1. */
+  int find(long key) {
+    key = key == EMPTY ? ZERO_KEY : key;
+    for (int slot = (int) key & mask; ; slot = (slot + 1) & mask) {
+      long existing = keys[slot];
+      if (existing == key) {
+        return ids[slot];
+      }
+      if (existing == EMPTY) {
+        return -1;
+      }
+    }
+  }
+
+  /** Registers a channel that {@link #find} did not know; returns its id, or -1 when full. */
+  int register(long key, String name) {
+    int id = count;
+    if (id == names.length) {
+      return -1;
+    }
+    key = key == EMPTY ? ZERO_KEY : key;
+    int slot = (int) key & mask;
+    while (keys[slot] != EMPTY) {
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = key;
+    ids[slot] = id;
+    names[id] = name;
+    count = id + 1;
+    return id;
+  }
+
+  long memoryBytes() {
+    return (long) keys.length * (Long.BYTES + Integer.BYTES) + (long) names.length * 8;
+  }
+}
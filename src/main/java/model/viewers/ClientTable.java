@@ -0,0 +1,109 @@
+package model.viewers;
+
+/**
+ * Bounded map from 64-bit clientId hash to a dense entry index and the channel the client is
+ * watching. Keys live in an open-addressing table with linear probing and backward-shift deletion,
+ * so removals leave no tombstones; entry indexes are stable for as long as the client is present
+ * and are recycled through a free list, which lets other structures key arrays by them.
+ */
+final class ClientTable {
+
+  private static final long EMPTY = 0L;
+
+  /** Stand-in for the key 0, which marks empty slots. */
+  private static final long ZERO_KEY = 0x9e3779b97f4a7c15L;
+
+  private final long[] slotKeys;
+  private final int[] slotEntries;
+  private final int mask;
+  private final long[] entryKeys;
+  private final int[] channels;
+  private final int[] free;
+  private int freeCount;
+  private int allocated;
+  private int size;
+
+  ClientTable(int capacity) {
+    int entries = Math.max(1, Integer.highestOneBit(Math.max(1, capacity - 1)) << 1);
+    this.slotKeys = new long[entries * 2];
+    this.slotEntries = new int[entries * 2];
+    this.mask = entries * 2 - 1;
+    this.entryKeys = new long[entries];
+    this.channels = new int[entries];
+    this.free = new int[entries];
+  }
+
+  int capacity() {
+    return entryKeys.length;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** Returns the entry of the key, or -1. */
+  int find(long key) {
+    key = key == EMPTY ? ZERO_KEY : key;
+    for (int slot = (int) key & mask; ; slot = (slot + 1) & mask) {
+      long existing = slotKeys[slot];
+      if (existing == key) {
+        return slotEntries[slot];
+      }
+      if (existing == EMPTY) {
+        return -1;
+      }
+    }
+  }
+
+  /** Adds a key that is not present with no channel; returns its entry, or -1 when full. */
+  int insert(long key) {
+    if (size == entryKeys.length) {
+      return -1;
+    }
+    key = key == EMPTY ? ZERO_KEY : key;
+    int entry = freeCount > 0 ? free[--freeCount] : allocated++;
+    int slot = (int) key & mask;
+    while (slotKeys[slot] != EMPTY) {
+      slot = (slot + 1) & mask;
+    }
+    slotKeys[slot] = key;
+    slotEntries[slot] = entry;
+    entryKeys[entry] = key;
+    channels[entry] = -1;
+    size++;
+    return entry;
+  }
+
+  void remove(int entry) {
+    long key = entryKeys[entry];
+    int hole = (int) key & mask;
+    while (slotKeys[hole] != key) {
+      hole = (hole + 1) & mask;
+    }
+    for (int slot = (hole + 1) & mask; slotKeys[slot] != EMPTY; slot = (slot + 1) & mask) {
+      int home = (int) slotKeys[slot] & mask;
+      // Move the key back into the hole unless its home lies between the hole and its slot.
+      if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+        slotKeys[hole] = slotKeys[slot];
+        slotEntries[hole] = slotEntries[slot];
+        hole = slot;
+      }
+    }
+    slotKeys[hole] = EMPTY;
+    free[freeCount++] = entry;
+    size--;
+  }
+
+  int channel(int entry) {
+    return channels[entry];
+  }
+
+  void channel(int entry, int channel) {
+    channels[entry] = channel;
+  }
+
+  long memoryBytes() {
+    return (long) slotKeys.length * (Long.BYTES + Integer.BYTES)
+        + (long) entryKeys.length * (Long.BYTES + Integer.BYTES * 2);
+  }
+}
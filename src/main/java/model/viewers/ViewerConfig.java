@@ -0,0 +1,27 @@
+package model.viewers;
+
+import java.time.Duration;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+@Getter
+@Builder
+@ToString
+public class ViewerConfig {
+
+  /**
+   * Number of concurrently watching clients tracked at most; rounded up to a power of two. Memory
+   * is ~60 bytes each. Clients beyond this are not counted until others expire.
+   */
+  @Builder.Default private final int maxClients = 1 << 21;
+
+  /** Number of distinct channelIds tracked at most. */
+  @Builder.Default private final int maxChannels = 1 << 16;
+
+  /** Clients without a watch event for this long are no longer counted as viewers. */
+  @Builder.Default private final Duration heartbeatTimeout = Duration.ofSeconds(90);
+
+  /** Resolution of expiry; clients expire up to one tick after their timeout. */
+  @Builder.Default private final Duration tick = Duration.ofSeconds(1);
+}
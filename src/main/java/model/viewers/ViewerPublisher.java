@@ -0,0 +1,146 @@
+package model.viewers;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import model.codec.BinarySkipPlan;
+import model.utils.AvroEventSchemaBuilder;
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Publishes {@link ViewerSnapshot}s of a {@link ViewerStateEngine} at a fixed rate, advancing the
+ * engine's clock first so clients expire even when events stop arriving.
+ */
+@Slf4j
+public class ViewerPublisher implements Closeable {
+
+  private final ViewerStateEngine engine;
+  private final Consumer<ViewerSnapshot> listener;
+  private final ScheduledExecutorService scheduler;
+
+  public ViewerPublisher(ViewerStateEngine engine, Consumer<ViewerSnapshot> listener) {
+    this.engine = engine;
+    this.listener = listener;
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "viewer-publisher");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  public ViewerPublisher publishEvery(Duration interval) {
+    long millis = interval.toMillis();
+    scheduler.scheduleAtFixedRate(this::publish, millis, millis, TimeUnit.MILLISECONDS);
+    return this;
+  }
+
+  private void publish() {
+    try {
+      engine.advance();
+      listener.accept(engine.snapshot());
+    } catch (RuntimeException e) {
+      log.warn("Failed to publish viewer counts", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+  }
+
+  /**
+   * Replays event files through an engine, logging the top channels every second: {@code
+   * ViewerPublisher <events.avro>...}. Events written with the current schema are applied in their
+   * binary encoding. The engine runs on event time, the latest eventServerLoggedUtc seen, so that
+   * replayed events are not judged stale against the wall clock.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: ViewerPublisher <events.avro>...");
+      System.exit(1);
+    }
+    Schema schema = AvroEventSchemaBuilder.buildSchema();
+    BinarySkipPlan plan = new BinarySkipPlan(schema);
+    int fieldCount = schema.getFields().size();
+    int serverLoggedPos = schema.getField("eventServerLoggedUtc").pos();
+    // Start at the first event so the engine's timing wheel does not step through from 0.
+    AtomicLong eventTime = new AtomicLong(firstEventTime(args, schema, serverLoggedPos));
+    ViewerStateEngine engine =
+        new ViewerStateEngine(schema, ViewerConfig.builder().build(), eventTime::get);
+    long started = System.nanoTime();
+    long replayed = 0;
+    try (ViewerPublisher publisher =
+        new ViewerPublisher(engine, snapshot -> log.info("Viewers: {}", snapshot.toText(10)))) {
+      publisher.publishEvery(Duration.ofSeconds(1));
+      for (String path : args) {
+        try (DataFileReader<GenericRecord> reader =
+            new DataFileReader<>(new File(path), new GenericDatumReader<>(null, schema))) {
+          if (!reader.getSchema().equals(schema)) {
+            for (GenericRecord event : reader) {
+              Long serverLogged = (Long) event.get(serverLoggedPos);
+              if (serverLogged != null) {
+                eventTime.accumulateAndGet(serverLogged, Math::max);
+              }
+              engine.observe(event);
+              replayed++;
+            }
+            continue;
+          }
+          while (reader.hasNext()) {
+            long count = reader.getBlockCount();
+            ByteBuffer block = reader.nextBlock();
+            byte[] bytes = block.array();
+            int pos = block.arrayOffset() + block.position();
+            for (long i = 0; i < count; i++) {
+              int serverLogged = plan.fieldOffset(bytes, pos, serverLoggedPos);
+              if (BinarySkipPlan.readLong(bytes, serverLogged) != 0) {
+                eventTime.accumulateAndGet(
+                    BinarySkipPlan.readLong(bytes, BinarySkipPlan.skipVarint(bytes, serverLogged)),
+                    Math::max);
+              }
+              engine.observe(bytes, pos);
+              pos = plan.skip(bytes, pos, 0, fieldCount);
+            }
+            replayed += count;
+          }
+        }
+      }
+    }
+    double seconds = (System.nanoTime() - started) / 1e9;
+    System.out.printf("%d events in %.1f s (%.0f/s)%n", replayed, seconds, replayed / seconds);
+    System.out.println(engine.stats());
+    System.out.print(engine.snapshot().toText(20));
+  }
+
+  /** eventServerLoggedUtc of the first event that has one, or the current time if none does. */
+  private static long firstEventTime(String[] paths, Schema schema, int serverLoggedPos)
+      throws IOException {
+    for (String path : paths) {
+      try (DataFileReader<GenericRecord> reader =
+          new DataFileReader<>(new File(path), new GenericDatumReader<>(null, schema))) {
+        GenericRecord event = null;
+        while (reader.hasNext()) {
+          event = reader.next(event);
+          Long serverLogged = (Long) event.get(serverLoggedPos);
+          if (serverLogged != null) {
+            return serverLogged;
+          }
+        }
+      }
+    }
+    return System.currentTimeMillis();
+  }
+}
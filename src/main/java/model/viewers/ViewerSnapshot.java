@@ -0,0 +1,57 @@
+package model.viewers;
+
+import java.util.Map;
+import lombok.Value;
+
+@Value
+public class ViewerSnapshot {
+  long takenMillis;
+  long viewers;
+
+  /** Viewers per channelId, most watched first; channels without viewers are left out. */
+  Map<String, Integer> channels;
+
+  /** Total and the most watched channels, suitable for logging. */
+  public String toText(int limit) {
+    StringBuilder text = new StringBuilder();
+    text.append(String.format("viewers=%d channels=%d%n", viewers, channels.size()));
+    int shown = 0;
+    for (Map.Entry<String, Integer> entry : channels.entrySet()) {
+      if (shown++ == limit) {
+        break;
+      }
+      text.append(String.format("  %-26s %d%n", entry.getKey(), entry.getValue()));
+    }
+    return text.toString();
+  }
+
+  public String toJson() {
+    StringBuilder json = new StringBuilder(64 + channels.size() * 40);
+    json.append("{\"takenMillis\":").append(takenMillis);
+    json.append(",\"viewers\":").append(viewers).append(",\"channels\":{");
+    boolean first = true;
+    for (Map.Entry<String, Integer> entry : channels.entrySet()) {
+      if (!first) {
+        json.append(',');
+      }
+      first = false;
+      appendString(json, entry.getKey()).append(':').append(entry.getValue());
+    }
+    return json.append("}}").toString();
+  }
+
+  private static StringBuilder appendString(StringBuilder json, String value) {
+    json.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        json.append('\\').append(c);
+      } else if (c < 0x20) {
+        json.append(String.format("\\u%04x", (int) c));
+      } else {
+        json.append(c);
+      }
+    }
+    return json.append('"');
+  }
+}
@@ -0,0 +1,291 @@
+package model.viewers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntConsumer;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+import model.codec.BinaryCursor;
+import model.codec.BinarySkipPlan;
+import model.utils.Hashing;
+import model.utils.TimingWheel;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+
+/**
+ * Live per-channel viewer counts. heartBeat, channelChange, clipStart and episodeStart events put
+ * their client on the event's channelId; clipEnd and episodeEnd only keep a client alive. Clients
+ * without a watch event for the heartbeat timeout drop out via a {@link TimingWheel}. Each client's
+ * channel is kept in a bounded primitive table and per-channel counts are atomic, so {@link
+ * #snapshot()} can be taken from any thread while events are applied. Event methods are
+ * synchronized and meant for one feeding thread, ideally with events partitioned by clientId across
+ * nodes. Works on decoded records or directly on binary-encoded ones.
+ */
+@Slf4j
+public class ViewerStateEngine {
+
+  private static final long CLIENT_SEED = 0x6a09e667f3bcc909L;
+  private static final long CHANNEL_SEED = 0xbb67ae8584caa73bL;
+
+  private static final byte IGNORE = 0;
+  private static final byte WATCH = 1;
+  private static final byte TOUCH = 2;
+
+  private final ClientTable clients;
+  private final ChannelRegistry channels;
+  private final TimingWheel wheel;
+  private final AtomicIntegerArray viewers;
+  private final LongSupplier clock;
+  private final long tickMillis;
+  private final long timeoutMillis;
+  private final long timeoutTicks;
+  private final Schema eventNameSchema;
+  private final byte[] actions;
+  private final int clientIdPos;
+  private final int channelIdPos;
+  private final int eventNamePos;
+  private final int serverLoggedPos;
+  private final BinarySkipPlan skipPlan;
+  private final BinaryCursor cursor = new BinaryCursor();
+  private final IntConsumer expire = this::expire;
+
+  private long events;
+  private long transitions;
+  private long expirations;
+  private long rejectedClients;
+  private long staleEvents;
+  private long channelOverflows;
+
+  public ViewerStateEngine(Schema eventSchema, ViewerConfig config) {
+    this(eventSchema, config, System::currentTimeMillis);
+  }
+
+  /** The clock drives expiry and decides which events are too old to count. */
+  public ViewerStateEngine(Schema eventSchema, ViewerConfig config, LongSupplier clock) {
+    this.tickMillis = Math.max(1, config.getTick().toMillis());
+    this.timeoutMillis = config.getHeartbeatTimeout().toMillis();
+    this.timeoutTicks = (timeoutMillis + tickMillis - 1) / tickMillis;
+    if (timeoutTicks > TimingWheel.MAX_TICKS) {
+      throw new IllegalArgumentException("Heartbeat timeout too long for tick " + config);
+    }
+    this.clients = new ClientTable(config.getMaxClients());
+    this.channels = new ChannelRegistry(config.getMaxChannels());
+    this.wheel = new TimingWheel(clients.capacity(), clock.getAsLong() / tickMillis);
+    this.viewers = new AtomicIntegerArray(channels.capacity());
+    this.clock = clock;
+    this.skipPlan = new BinarySkipPlan(eventSchema);
+    this.clientIdPos = fieldPos(eventSchema, "clientId");
+    this.channelIdPos = fieldPos(eventSchema, "channelId");
+    this.eventNamePos = fieldPos(eventSchema, "eventName");
+    this.serverLoggedPos = fieldPos(eventSchema, "eventServerLoggedUtc");
+    if (!(clientIdPos < channelIdPos
+        && channelIdPos < eventNamePos
+        && eventNamePos < serverLoggedPos)) {
+      throw new IllegalArgumentException("Unexpected field order in " + eventSchema.getFullName());
+    }
+    this.eventNameSchema = eventSchema.getField("eventName").schema();
+    this.actions = new byte[eventNameSchema.getEnumSymbols().size()];
+    for (String symbol : List.of("heartBeat", "channelChange", "clipStart", "episodeStart")) {
+      setAction(symbol, WATCH);
+    }
+    for (String symbol : List.of("clipEnd", "episodeEnd")) {
+      setAction(symbol, TOUCH);
+    }
+    log.info(
+        "Viewer state engine created with {} using {} bytes",
+        config,
+        clients.memoryBytes() + channels.memoryBytes() + wheel.memoryBytes());
+  }
+
+  public synchronized void observe(GenericRecord event) {
+    Object name = event.get(eventNamePos);
+    byte action =
+        name != null && eventNameSchema.hasEnumSymbol(name.toString())
+            ? actions[eventNameSchema.getEnumOrdinal(name.toString())]
+            : IGNORE;
+    if (action == IGNORE) {
+      return;
+    }
+    long now = now();
+    Long serverLogged = (Long) event.get(serverLoggedPos);
+    if (serverLogged != null && serverLogged < now - timeoutMillis) {
+      staleEvents++;
+      return;
+    }
+    long client = Hashing.hashUtf8((CharSequence) event.get(clientIdPos), CLIENT_SEED);
+    CharSequence channelId = (CharSequence) event.get(channelIdPos);
+    if (action == WATCH && channelId != null) {
+      long key = Hashing.hashUtf8(channelId, CHANNEL_SEED);
+      int channel = channels.find(key);
+      watch(client, channel >= 0 ? channel : register(key, channelId.toString()));
+    } else {
+      touch(client);
+    }
+  }
+
+  /** Same as {@link #observe(GenericRecord)} on an event encoded at the offset. */
+  public synchronized void observe(byte[] buf, int offset) {
+    cursor.reset(buf, skipPlan.fieldOffset(buf, offset, clientIdPos));
+    int clientStart = cursor.position();
+    skipTo(clientIdPos, channelIdPos);
+    int channelStart = cursor.position();
+    skipTo(channelIdPos, eventNamePos);
+    int ordinal = cursor.readInt();
+    byte action = ordinal >= 0 && ordinal < actions.length ? actions[ordinal] : IGNORE;
+    if (action == IGNORE) {
+      return;
+    }
+    long now = now();
+    skipTo(eventNamePos + 1, serverLoggedPos);
+    if (cursor.readInt() != 0 && cursor.readLong() < now - timeoutMillis) {
+      staleEvents++;
+      return;
+    }
+    cursor.position(clientStart);
+    int clientLength = cursor.readLength();
+    long client = Hashing.hashUtf8(buf, cursor.position(), clientLength, CLIENT_SEED);
+    cursor.position(channelStart);
+    if (action == WATCH && cursor.readInt() != 0) {
+      int channelLength = cursor.readLength();
+      int start = cursor.position();
+      long key = Hashing.hashUtf8(buf, start, channelLength, CHANNEL_SEED);
+      int channel = channels.find(key);
+      if (channel < 0) {
+        channel = register(key, new String(buf, start, channelLength, StandardCharsets.UTF_8));
+      }
+      watch(client, channel);
+    } else {
+      touch(client);
+    }
+  }
+
+  /** Expires clients whose timeout passed; call periodically when events may stop arriving. */
+  public synchronized void advance() {
+    now();
+  }
+
+  /** Current viewers of the channel. */
+  public synchronized int viewers(String channelId) {
+    int channel = channels.find(Hashing.hashUtf8(channelId, CHANNEL_SEED));
+    return channel < 0 ? 0 : viewers.get(channel);
+  }
+
+  /**
+   * Counts of all channels with viewers; safe from any thread. Each count is exact at the moment it
+   * is read, but counts are read one after another while events may still be applied.
+   */
+  public ViewerSnapshot snapshot() {
+    long takenMillis = clock.getAsLong();
+    int count = channels.count();
+    List<int[]> watched = new ArrayList<>();
+    long total = 0;
+    for (int channel = 0; channel < count; channel++) {
+      int value = viewers.get(channel);
+      if (value > 0) {
+        watched.add(new int[] {channel, value});
+        total += value;
+      }
+    }
+    watched.sort((a, b) -> Integer.compare(b[1], a[1]));
+    Map<String, Integer> counts = new LinkedHashMap<>();
+    for (int[] entry : watched) {
+      counts.put(channels.name(entry[0]), entry[1]);
+    }
+    return new ViewerSnapshot(takenMillis, total, counts);
+  }
+
+  public synchronized ViewerStats stats() {
+    return new ViewerStats(
+        events,
+        transitions,
+        expirations,
+        rejectedClients,
+        staleEvents,
+        channelOverflows,
+        clients.size(),
+        channels.count(),
+        clients.memoryBytes() + channels.memoryBytes() + wheel.memoryBytes());
+  }
+
+  private void watch(long client, int channel) {
+    events++;
+    int entry = clients.find(client);
+    if (entry < 0) {
+      entry = clients.insert(client);
+      if (entry < 0) {
+        rejectedClients++;
+        return;
+      }
+    }
+    int previous = clients.channel(entry);
+    if (previous != channel) {
+      if (previous >= 0) {
+        viewers.decrementAndGet(previous);
+      }
+      if (channel >= 0) {
+        viewers.incrementAndGet(channel);
+      }
+      clients.channel(entry, channel);
+      transitions++;
+    }
+    wheel.schedule(entry, wheel.currentTick() + timeoutTicks);
+  }
+
+  private void touch(long client) {
+    events++;
+    int entry = clients.find(client);
+    if (entry >= 0) {
+      wheel.schedule(entry, wheel.currentTick() + timeoutTicks);
+    }
+  }
+
+  private int register(long key, String channelId) {
+    int channel = channels.register(key, channelId);
+    if (channel < 0) {
+      channelOverflows++;
+    }
+    return channel;
+  }
+
+  private void expire(int entry) {
+    int channel = clients.channel(entry);
+    if (channel >= 0) {
+      viewers.decrementAndGet(channel);
+    }
+    clients.remove(entry);
+    expirations++;
+  }
+
+  /** Reads the clock and expires everything due up to it. */
+  private long now() {
+    long now = clock.getAsLong();
+    long tick = now / tickMillis;
+    if (tick > wheel.currentTick()) {
+      wheel.advance(tick, expire);
+    }
+    return now;
+  }
+
+  private void setAction(String symbol, byte action) {
+    if (eventNameSchema.hasEnumSymbol(symbol)) {
+      actions[eventNameSchema.getEnumOrdinal(symbol)] = action;
+    }
+  }
+
+  private void skipTo(int from, int to) {
+    cursor.position(skipPlan.skip(cursor.getBuffer(), cursor.position(), from, to));
+  }
+
+  private static int fieldPos(Schema schema, String name) {
+    Schema.Field field = schema.getField(name);
+    if (field == null) {
+      throw new IllegalArgumentException(
+          "Schema " + schema.getFullName() + " has no field " + name);
+    }
+    return field.pos();
+  }
+}
@@ -0,0 +1,26 @@
+package model.viewers;
+
+import lombok.Value;
+
+@Value
+public class ViewerStats {
+  long events;
+
+  /** Events that moved a client to another channel, including its first one. */
+  long transitions;
+
+  long expirations;
+
+  /** Watch events of new clients dropped because maxClients were already tracked. */
+  long rejectedClients;
+
+  /** Events logged longer than the heartbeat timeout ago. */
+  long staleEvents;
+
+  /** Events for channels beyond maxChannels, which are not counted. */
+  long channelOverflows;
+
+  int trackedClients;
+  int channels;
+  long memoryBytes;
+}
@@ -0,0 +1,54 @@
+package model.adpods;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import model.utils.AvroEventSchemaBuilder;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.jupiter.api.Test;
+
+class AdPodCorrelatorTest {
+
+  private static final long NOW = 1_700_000_000_000L;
+
+  private final Schema schema = AvroEventSchemaBuilder.buildSchema();
+  private final List<AdPod> pods = new ArrayList<>();
+  private final AdPodCorrelator correlator =
+      new AdPodCorrelator(schema, AdPodConfig.builder().build(), () -> NOW).publishTo(pods::add);
+
+  @Test
+  void fullPodTracksImpressionIndexesFromOne() {
+    for (int index = 1; index <= 32; index++) {
+      correlator.observe(event("pod-1", "cmImpression", index));
+    }
+    correlator.observe(event("pod-1", "cmPodEnd", null));
+    correlator.flush();
+
+    assertEquals(1, pods.size());
+    assertEquals(32, pods.get(0).getAds());
+    assertEquals(32, pods.get(0).getImpressions());
+    assertEquals(0, correlator.stats().getUntrackedAds());
+  }
+
+  @Test
+  void indexesOutsideOneToMaxAdsAreUntracked() {
+    correlator.observe(event("pod-1", "cmImpression", 0));
+    correlator.observe(event("pod-1", "cmImpression", 33));
+    correlator.flush();
+
+    assertEquals(0, pods.get(0).getAds());
+    assertEquals(2, correlator.stats().getUntrackedAds());
+  }
+
+  private GenericRecord event(String podId, String name, Integer impressionIndex) {
+    GenericRecord event = new GenericData.Record(schema);
+    event.put("eventName", new GenericData.EnumSymbol(schema.getField("eventName").schema(), name));
+    event.put("cmPodId", podId);
+    event.put("cmImpressionIndex", impressionIndex);
+    event.put("eventOccurredTimestampUtc", NOW);
+    return event;
+  }
+}
@@ -0,0 +1,133 @@
+package model.cache;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SharedFileCacheTest {
+
+  @TempDir Path directory;
+
+  @Test
+  void entriesOutliveTheMappingAndAreSharedBetweenMappings() throws Exception {
+    Path file = directory.resolve("cache");
+    try (SharedFileCache first = SharedFileCache.open(file, 8, 4096);
+        SharedFileCache second = SharedFileCache.open(file, 8, 4096)) {
+      assertTrue(first.put(bytes("ua\0Roku"), bytes("roku")));
+      assertArrayEquals(bytes("roku"), second.get(bytes("ua\0Roku")));
+    }
+    try (SharedFileCache reopened = SharedFileCache.open(file, 8, 4096)) {
+      assertArrayEquals(bytes("roku"), reopened.get(bytes("ua\0Roku")));
+      assertNull(reopened.get(bytes("ua\0Other")));
+      assertEquals(1, reopened.entries());
+    }
+  }
+
+  @Test
+  void putKeepsTheFirstValueAndReplaceOverwritesIt() throws Exception {
+    try (SharedFileCache cache = SharedFileCache.open(directory.resolve("cache"), 8, 4096)) {
+      assertTrue(cache.put(bytes("key"), bytes("first")));
+      assertTrue(cache.put(bytes("key"), bytes("second")));
+      assertArrayEquals(bytes("first"), cache.get(bytes("key")));
+
+      assertTrue(cache.replace(bytes("key"), bytes("third")));
+      assertArrayEquals(bytes("third"), cache.get(bytes("key")));
+      assertTrue(cache.replace(bytes("new"), bytes("value")));
+      assertArrayEquals(bytes("value"), cache.get(bytes("new")));
+      assertEquals(2, cache.entries());
+    }
+  }
+
+  @Test
+  void removedKeysCanBeStoredAgain() throws Exception {
+    try (SharedFileCache cache = SharedFileCache.open(directory.resolve("cache"), 8, 4096)) {
+      cache.put(bytes("a\0one"), bytes("1"));
+      cache.put(bytes("a\0two"), bytes("2"));
+      cache.put(bytes("b\0one"), bytes("3"));
+
+      assertTrue(cache.remove(bytes("b\0one")));
+      assertFalse(cache.remove(bytes("b\0one")));
+      assertNull(cache.get(bytes("b\0one")));
+      assertEquals(2, cache.removePrefix(bytes("a\0")));
+      assertNull(cache.get(bytes("a\0one")));
+
+      assertTrue(cache.put(bytes("a\0one"), bytes("4")));
+      assertArrayEquals(bytes("4"), cache.get(bytes("a\0one")));
+    }
+  }
+
+  @Test
+  void newKeysAreDroppedWhenFullButPresentOnesCanBeReplaced() throws Exception {
+    // 16 slots, of which 12 may be filled.
+    try (SharedFileCache cache = SharedFileCache.open(directory.resolve("cache"), 4, 4096)) {
+      int stored = 0;
+      for (int i = 0; i < 20; i++) {
+        if (cache.put(bytes("key" + i), bytes("value" + i))) {
+          stored++;
+        }
+      }
+      assertEquals(12, stored);
+      assertEquals(8, cache.dropped());
+      assertTrue(cache.replace(bytes("key0"), bytes("replaced")));
+      assertArrayEquals(bytes("replaced"), cache.get(bytes("key0")));
+      assertFalse(cache.replace(bytes("key19"), bytes("value19")));
+    }
+  }
+
+  @Test
+  void valuesAreDroppedWhenTheDataRegionIsUsedUp() throws Exception {
+    try (SharedFileCache cache = SharedFileCache.open(directory.resolve("cache"), 8, 64)) {
+      assertTrue(cache.put(bytes("key"), new byte[40]));
+      assertFalse(cache.put(bytes("other"), new byte[40]));
+      assertNull(cache.get(bytes("other")));
+      assertEquals(1, cache.dropped());
+    }
+  }
+
+  @Test
+  void concurrentWritersOfAKeyAgreeOnOneValue() throws Exception {
+    int threads = 8;
+    List<Future<?>> writers = new ArrayList<>();
+    try (SharedFileCache cache = SharedFileCache.open(directory.resolve("cache"), 12, 1 << 20)) {
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+        for (int t = 0; t < threads; t++) {
+          int thread = t;
+          writers.add(
+              executor.submit(
+                  () -> {
+                    for (int i = 0; i < 1000; i++) {
+                      cache.put(bytes("key" + i), bytes("thread" + thread));
+                    }
+                  }));
+        }
+        for (Future<?> writer : writers) {
+          writer.get();
+        }
+      } finally {
+        executor.shutdown();
+      }
+      assertEquals(1000, cache.entries());
+      for (int i = 0; i < 1000; i++) {
+        String value = new String(cache.get(bytes("key" + i)), StandardCharsets.UTF_8);
+        assertTrue(value.startsWith("thread"), value);
+      }
+    }
+  }
+
+  private static byte[] bytes(String text) {
+    return text.getBytes(StandardCharsets.UTF_8);
+  }
+}
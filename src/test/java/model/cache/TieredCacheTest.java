@@ -0,0 +1,103 @@
+package model.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TieredCacheTest {
+
+  @TempDir Path directory;
+
+  private TieredCacheManager manager;
+
+  @BeforeEach
+  void open() throws Exception {
+    manager = newManager();
+  }
+
+  @AfterEach
+  void close() {
+    manager.close();
+  }
+
+  @Test
+  void putOverwritesTheWarmValue() throws Exception {
+    TieredCache cache = manager.getCache("ua");
+    cache.put("Roku/1", "old");
+    cache.put("Roku/1", "new");
+
+    try (TieredCacheManager other = newManager()) {
+      assertEquals("new", other.getCache("ua").get("Roku/1", String.class));
+    }
+  }
+
+  @Test
+  void aValueTooLargeForWarmRemovesTheOlderWarmValue() throws Exception {
+    TieredCache cache = manager.getCache("ua");
+    cache.put("Roku/1", "old");
+    cache.put("Roku/1", "x".repeat(200));
+
+    try (TieredCacheManager other = newManager()) {
+      assertNull(other.getCache("ua").get("Roku/1"));
+    }
+    assertEquals("x".repeat(200), cache.get("Roku/1", String.class));
+  }
+
+  @Test
+  void loadedValuesAndNullsAreServedFromWarm() throws Exception {
+    TieredCache cache = manager.getCache("ua");
+    AtomicInteger loads = new AtomicInteger();
+    assertEquals("roku", cache.get("Roku/1", () -> load(loads, "roku")));
+    assertNull(cache.get("unknown", () -> load(loads, null)));
+
+    try (TieredCacheManager other = newManager()) {
+      TieredCache warmOnly = other.getCache("ua");
+      assertEquals("roku", warmOnly.get("Roku/1", () -> "reloaded"));
+      assertNull(warmOnly.get("unknown", () -> "reloaded"));
+      assertEquals(2, warmOnly.stats().getWarmHits());
+    }
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void evictAndClearReachTheWarmTier() throws Exception {
+    TieredCache cache = manager.getCache("ua");
+    cache.put("a", "1");
+    cache.put("b", "2");
+    manager.getCache("geo").put("a", "3");
+    cache.evict("a");
+
+    try (TieredCacheManager other = newManager()) {
+      assertNull(other.getCache("ua").get("a"));
+      assertEquals("2", other.getCache("ua").get("b", String.class));
+    }
+    cache.clear();
+    try (TieredCacheManager other = newManager()) {
+      assertNull(other.getCache("ua").get("b"));
+      assertEquals("3", other.getCache("geo").get("a", String.class));
+    }
+  }
+
+  private static String load(AtomicInteger loads, String value) {
+    loads.incrementAndGet();
+    return value;
+  }
+
+  private TieredCacheManager newManager() throws Exception {
+    return new TieredCacheManager(
+            EnrichmentCacheConfig.builder()
+                .file(directory.resolve("enrichment.cache"))
+                .slotBits(8)
+                .dataBytes(1 << 16)
+                .maxValueBytes(100)
+                .build())
+        .valueType("ua", String.class)
+        .valueType("geo", String.class);
+  }
+}
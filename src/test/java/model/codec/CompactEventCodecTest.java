@@ -0,0 +1,127 @@
+package model.codec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import model.loadtest.EventGenerator;
+import model.loadtest.EventGeneratorConfig;
+import model.metrics.EventMetrics;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.jupiter.api.Test;
+
+class CompactEventCodecTest {
+
+  private final EventGenerator generator =
+      new EventGenerator(EventGeneratorConfig.builder().clientCardinality(100).build());
+  private final CompactEventCodec codec =
+      new CompactEventCodec(generator.getSchema(), new EventMetrics());
+
+  @Test
+  void roundTripKeepsEveryDictionaryKeyedMap() throws Exception {
+    GenericRecord event = generator.next();
+    Map<String, String> queryString = new LinkedHashMap<>();
+    queryString.put("appName", "a");
+    queryString.put("deviceId", "d");
+    queryString.put("zzz", "z");
+    Map<String, String> headers = new LinkedHashMap<>();
+    headers.put("user-agent", "Roku/DVP-12.0");
+    headers.put("accept", "*/*");
+    headers.put("x-custom-header", "1");
+    event.put("httpQueryString", queryString);
+    event.put("httpHeaders", headers);
+
+    GenericRecord decoded = codec.decode(codec.encode(event));
+
+    assertEquals(queryString, new HashMap<>(asMap(decoded.get("httpQueryString"))));
+    assertEquals(headers, new HashMap<>(asMap(decoded.get("httpHeaders"))));
+    assertEquals(event.get("clientId").toString(), decoded.get("clientId").toString());
+  }
+
+  @Test
+  void encodingReusesNoStateBetweenEvents() throws Exception {
+    GenericRecord first = generator.next();
+    first.put("httpQueryString", Map.of("appName", "first", "extra", "1"));
+    byte[] firstBytes = codec.encode(first);
+    GenericRecord second = generator.next();
+    second.put("httpQueryString", Map.of("deviceId", "second"));
+    second.put("httpHeaders", null);
+    byte[] secondBytes = codec.encode(second);
+
+    assertEquals(
+        Map.of("appName", "first", "extra", "1"),
+        new HashMap<>(asMap(codec.decode(firstBytes).get("httpQueryString"))));
+    GenericRecord decoded = codec.decode(secondBytes);
+    assertEquals(
+        Map.of("deviceId", "second"), new HashMap<>(asMap(decoded.get("httpQueryString"))));
+    assertNull(decoded.get("httpHeaders"));
+  }
+
+  @Test
+  void mapsWithOnlyUnknownKeysRoundTrip() throws Exception {
+    GenericRecord event = generator.next();
+    Map<String, String> headers = Map.of("x-one", "1", "x-two", "2");
+    event.put("httpHeaders", headers);
+    event.put("httpQueryString", Map.of());
+
+    GenericRecord decoded = codec.decode(codec.encode(event));
+
+    assertEquals(headers, new HashMap<>(asMap(decoded.get("httpHeaders"))));
+    assertEquals(Map.of(), new HashMap<>(asMap(decoded.get("httpQueryString"))));
+  }
+
+  @Test
+  void keysMissingFromAnOlderDictionaryAreFoundByName() throws Exception {
+    Schema olderSchema = withHeaderKeys(generator.getSchema(), List.of("user-agent", "accept"));
+    CompactEventCodec older = new CompactEventCodec(olderSchema, new EventMetrics());
+    GenericRecord event = new GenericData.Record(olderSchema);
+    GenericRecord generated = generator.next();
+    for (Schema.Field field : olderSchema.getFields()) {
+      event.put(field.pos(), generated.get(field.pos()));
+    }
+    Map<String, String> headers = new LinkedHashMap<>();
+    headers.put("user-agent", "Roku/DVP-12.0");
+    headers.put("accept-language", "en-US");
+    headers.put("x-custom-header", "1");
+    event.put("httpHeaders", headers);
+
+    codec.checkReadable(older.getCompactSchema());
+    Map<String, String> decoded = asMap(codec.decode(older.encode(event)).get("httpHeaders"));
+
+    assertEquals("Roku/DVP-12.0", decoded.get("user-agent"));
+    assertEquals("en-US", decoded.get("accept-language"));
+    assertTrue(decoded.containsKey("accept-language"));
+    assertEquals("1", decoded.get("x-custom-header"));
+    assertNull(decoded.get("accept"));
+    assertEquals(headers, new HashMap<>(decoded));
+  }
+
+  /** A copy of {@code schema} whose httpHeaders dictionary is version 0 with only {@code keys}. */
+  private static Schema withHeaderKeys(Schema schema, List<String> keys) {
+    List<Schema.Field> fields = new ArrayList<>();
+    for (Schema.Field field : schema.getFields()) {
+      if (!field.name().equals("httpHeaders")) {
+        fields.add(new Schema.Field(field, field.schema()));
+        continue;
+      }
+      Schema.Field copy =
+          new Schema.Field(field.name(), field.schema(), field.doc(), field.defaultVal());
+      copy.addProp(MapKeyDictionary.PROP, Map.of("version", 0, "keys", keys));
+      fields.add(copy);
+    }
+    return Schema.createRecord(
+        schema.getName(), schema.getDoc(), schema.getNamespace(), false, fields);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, String> asMap(Object value) {
+    return (Map<String, String>) value;
+  }
+}
@@ -0,0 +1,199 @@
+package model.columnar;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import model.loadtest.EventGenerator;
+import model.loadtest.EventGeneratorConfig;
+import model.utils.AvroEventSchemaBuilder;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.jupiter.api.Test;
+
+class ColumnarStoreTest {
+
+  private static final long NOW = 1_700_000_000_000L;
+
+  private final Schema schema = AvroEventSchemaBuilder.buildSchema();
+  private final EventGenerator generator =
+      new EventGenerator(
+          EventGeneratorConfig.builder().clientCardinality(200).build(), schema, () -> NOW);
+
+  @Test
+  void groupsMatchTheEventsAcrossSealedAndActiveSegments() {
+    List<GenericRecord> events = generate(5500);
+    try (ColumnarStore store = newStore(1000)) {
+      events.forEach(store::accept);
+      assertEquals(6, store.stats().getSegments());
+
+      ColumnarResult result =
+          store.query(
+              ColumnarQuery.builder()
+                  .filter(ColumnFilter.equalTo("eventName", "heartBeat", "clipStart"))
+                  .groupBy("eventName")
+                  .groupBy("appName")
+                  .limit(1000)
+                  .build());
+
+      Map<List<String>, Long> expected = new HashMap<>();
+      for (GenericRecord event : events) {
+        String name = text(event.get("eventName"));
+        if ("heartBeat".equals(name) || "clipStart".equals(name)) {
+          expected.merge(Arrays.asList(name, text(event.get("appName"))), 1L, Long::sum);
+        }
+      }
+      Map<List<String>, Long> actual = new HashMap<>();
+      for (ColumnarGroup group : result.getGroups()) {
+        actual.put(group.getKeys(), group.getRows());
+      }
+      assertEquals(expected, actual);
+      assertEquals(
+          expected.values().stream().mapToLong(Long::longValue).sum(), result.getMatchedRows());
+    }
+  }
+
+  @Test
+  void rangeFiltersAndMetricsMatchTheEvents() {
+    List<GenericRecord> events = generate(3000);
+    try (ColumnarStore store = newStore(700)) {
+      events.forEach(store::accept);
+      long from = NOW - 1000;
+      long to = NOW - 500;
+
+      ColumnarResult result =
+          store.query(
+              ColumnarQuery.builder()
+                  .filter(ColumnFilter.between("eventOccurredTimestampUtc", from, to))
+                  .metric("eventOccurredTimestampUtc")
+                  .build());
+
+      long rows = 0;
+      double sum = 0;
+      for (GenericRecord event : events) {
+        Long time = (Long) event.get("eventOccurredTimestampUtc");
+        if (time != null && time >= from && time <= to) {
+          rows++;
+          sum += time;
+        }
+      }
+      ColumnarGroup group = result.getGroups().get(0);
+      assertTrue(rows > 0 && rows < events.size());
+      assertEquals(rows, result.getMatchedRows());
+      assertEquals(rows, group.getMetricRows());
+      assertEquals(sum, group.getSum(), 1e-9 * Math.abs(sum));
+    }
+  }
+
+  @Test
+  void ungroupedQueriesReturnTheNewestMatchingRows() {
+    List<GenericRecord> events = generate(2500);
+    try (ColumnarStore store = newStore(1000)) {
+      events.forEach(store::accept);
+
+      ColumnarResult result =
+          store.query(
+              ColumnarQuery.builder()
+                  .filter(ColumnFilter.equalTo("eventName", "heartBeat"))
+                  .limit(5)
+                  .build());
+
+      List<String> expected = new ArrayList<>();
+      for (int i = events.size() - 1; i >= 0 && expected.size() < 5; i--) {
+        if ("heartBeat".equals(text(events.get(i).get("eventName")))) {
+          expected.add(text(events.get(i).get("hitId")));
+        }
+      }
+      List<String> actual = new ArrayList<>();
+      for (Map<String, Object> row : result.getRows()) {
+        actual.add(text(row.get("hitId")));
+      }
+      assertEquals(expected, actual);
+    }
+  }
+
+  @Test
+  void groupsStayConsistentWhileTheActiveSegmentGrowsItsDictionaries() throws Exception {
+    List<GenericRecord> events = generate(20_000);
+    for (int i = 0; i < events.size(); i++) {
+      // Every event brings a new value to both key columns, and they always go together.
+      events.get(i).put("appName", "app-" + i);
+      events.get(i).put("appVersion", "version-" + i);
+    }
+    AtomicBoolean writing = new AtomicBoolean(true);
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try (ColumnarStore store = newStore(events.size())) {
+      Future<?> writer =
+          executor.submit(
+              () -> {
+                try {
+                  events.forEach(store::accept);
+                } finally {
+                  writing.set(false);
+                }
+              });
+      List<Future<Integer>> readers = new ArrayList<>();
+      for (int r = 0; r < 2; r++) {
+        readers.add(executor.submit(() -> queryWhile(store, writing)));
+      }
+      writer.get();
+      for (Future<Integer> reader : readers) {
+        assertTrue(reader.get() > 0);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /** Runs grouped queries until the writer is done, checking every group; returns how many. */
+  private static int queryWhile(ColumnarStore store, AtomicBoolean writing) {
+    int queries = 0;
+    do {
+      ColumnarResult result =
+          store.query(
+              ColumnarQuery.builder()
+                  .groupBy("appName")
+                  .groupBy("appVersion")
+                  .limit(Integer.MAX_VALUE)
+                  .build());
+      long rows = 0;
+      for (ColumnarGroup group : result.getGroups()) {
+        List<String> keys = group.getKeys();
+        assertEquals(
+            keys.get(0).substring("app-".length()), keys.get(1).substring("version-".length()));
+        assertEquals(1, group.getRows());
+        rows += group.getRows();
+      }
+      assertEquals(result.getMatchedRows(), rows);
+      queries++;
+    } while (writing.get());
+    return queries;
+  }
+
+  private ColumnarStore newStore(int segmentRows) {
+    return new ColumnarStore(
+        schema,
+        ColumnarStoreConfig.builder().segmentRows(segmentRows).parallelism(2).build(),
+        () -> NOW);
+  }
+
+  private List<GenericRecord> generate(int count) {
+    List<GenericRecord> events = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      events.add(generator.next());
+    }
+    return events;
+  }
+
+  private static String text(Object value) {
+    return value == null ? null : value.toString();
+  }
+}
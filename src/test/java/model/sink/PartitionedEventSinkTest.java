@@ -0,0 +1,180 @@
+package model.sink;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.amazonaws.services.s3.AmazonS3;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import model.eventkey.EventKeyConfig;
+import model.index.EventFileIndex;
+import model.loadtest.EventGenerator;
+import model.loadtest.EventGeneratorConfig;
+import model.metrics.EventMetrics;
+import model.utils.AvroEventSchemaBuilder;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PartitionedEventSinkTest {
+
+  @TempDir Path temp;
+
+  /** All events fall into one partition: one event name, one environment, mid-hour timestamps. */
+  private final EventGenerator generator =
+      new EventGenerator(
+          EventGeneratorConfig.builder().eventNameWeight("heartBeat", 1.0).defaultWeight(0).build(),
+          AvroEventSchemaBuilder.buildSchema(),
+          () -> 1_700_000_000_000L);
+
+  private final List<String> uploadedKeys = new ArrayList<>();
+  private boolean failUploads;
+  private boolean failIndexUploads;
+
+  @Test
+  void failedUploadKeepsTheFileAndIsReported() throws Exception {
+    failUploads = true;
+    PartitionedEventSink sink = sink();
+    sink.write(generator.next());
+
+    IOException failure = assertThrows(IOException.class, sink::close);
+
+    assertTrue(failure.getMessage().contains("upload failed"), failure.getMessage());
+    assertEquals(0, sink.uploadedFiles());
+    List<String> kept = failedFiles();
+    assertEquals(2, kept.size(), kept.toString());
+    assertTrue(kept.get(1).equals(kept.get(0) + EventFileIndex.SUFFIX), kept.toString());
+    assertEquals(0, temp.resolve("tmp").toFile().list().length);
+  }
+
+  @Test
+  void retryUploadsKeptFilesDataFirst() throws Exception {
+    failUploads = true;
+    PartitionedEventSink sink = sink();
+    sink.write(generator.next());
+    assertThrows(IOException.class, sink::close);
+    List<String> kept = failedFiles();
+
+    failUploads = false;
+    assertEquals(2, sink().retryFailed());
+
+    assertEquals(kept, uploadedKeys);
+    assertTrue(failedFiles().isEmpty());
+  }
+
+  @Test
+  void failedIndexUploadKeepsTheIndexForRetry() throws Exception {
+    failIndexUploads = true;
+    PartitionedEventSink sink = sink();
+    sink.write(generator.next());
+
+    assertThrows(IOException.class, sink::close);
+
+    assertEquals(1, uploadedKeys.size());
+    assertEquals(List.of(uploadedKeys.get(0) + EventFileIndex.SUFFIX), failedFiles());
+    failIndexUploads = false;
+    assertEquals(1, sink().retryFailed());
+    assertEquals(uploadedKeys.get(0) + EventFileIndex.SUFFIX, uploadedKeys.get(1));
+  }
+
+  @Test
+  void successfulUploadDeletesLocalFiles() throws Exception {
+    PartitionedEventSink sink = sink();
+    for (int i = 0; i < 10; i++) {
+      sink.write(generator.next());
+    }
+    sink.close();
+
+    assertEquals(2, uploadedKeys.size());
+    assertEquals(1, sink.uploadedFiles());
+    assertEquals(0, temp.resolve("tmp").toFile().list().length);
+    assertTrue(failedFiles().isEmpty());
+  }
+
+  @Test
+  void keyNamedFilesShareANameOnlyWithTheSameEvents() throws Exception {
+    GenericRecord first = generator.next();
+    GenericRecord second = generator.next();
+    GenericRecord other = generator.next();
+
+    String original = writeKeyNamed(first, second);
+    String replayed = writeKeyNamed(first, second);
+    String sameFirstEvent = writeKeyNamed(first, other);
+
+    assertEquals(original, replayed);
+    assertNotEquals(original, sameFirstEvent);
+  }
+
+  /** Writes the events to one key-named file and returns its object key. */
+  private String writeKeyNamed(GenericRecord... events) throws IOException {
+    uploadedKeys.clear();
+    try (PartitionedEventSink sink = sink(EventKeyConfig.builder().build())) {
+      for (GenericRecord event : events) {
+        sink.write(event);
+      }
+    }
+    assertEquals(2, uploadedKeys.size());
+    return uploadedKeys.get(0);
+  }
+
+  private PartitionedEventSink sink() throws IOException {
+    return sink(null);
+  }
+
+  private PartitionedEventSink sink(EventKeyConfig fileKey) throws IOException {
+    Files.createDirectories(temp.resolve("tmp"));
+    PartitionedSinkConfig config =
+        PartitionedSinkConfig.builder()
+            .bucket("events")
+            .tempDirectory(temp.resolve("tmp"))
+            .failedDirectory(temp.resolve("failed"))
+            .uploadThreads(1)
+            .fileKey(fileKey)
+            .build();
+    return new PartitionedEventSink(generator.getSchema(), config, s3(), new EventMetrics());
+  }
+
+  private AmazonS3 s3() {
+    return (AmazonS3)
+        Proxy.newProxyInstance(
+            AmazonS3.class.getClassLoader(),
+            new Class<?>[] {AmazonS3.class},
+            (proxy, method, args) -> {
+              if (!method.getName().equals("putObject")
+                  || args.length != 3
+                  || !(args[2] instanceof File)) {
+                throw new UnsupportedOperationException(method.getName());
+              }
+              if (failUploads
+                  || (failIndexUploads && ((String) args[1]).endsWith(EventFileIndex.SUFFIX))) {
+                throw new IllegalStateException("S3 unavailable");
+              }
+              synchronized (uploadedKeys) {
+                uploadedKeys.add((String) args[1]);
+              }
+              return null;
+            });
+  }
+
+  private List<String> failedFiles() throws IOException {
+    Path failed = temp.resolve("failed");
+    if (!Files.isDirectory(failed)) {
+      return List.of();
+    }
+    try (Stream<Path> walk = Files.walk(failed)) {
+      return walk.filter(Files::isRegularFile)
+          .map(file -> failed.relativize(file).toString())
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+}
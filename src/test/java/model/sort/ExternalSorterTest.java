@@ -0,0 +1,166 @@
+package model.sort;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import model.loadtest.EventGenerator;
+import model.loadtest.EventGeneratorConfig;
+import model.utils.AvroEventSchemaBuilder;
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExternalSorterTest {
+
+  private static final Comparator<GenericRecord> KEY_ORDER =
+      Comparator.<GenericRecord, String>comparing(event -> event.get("clientId").toString())
+          .thenComparing(event -> event.get("sessionId").toString())
+          .thenComparingLong(event -> ((Number) event.get("hitId")).longValue());
+
+  @TempDir Path temp;
+
+  private final Schema schema = AvroEventSchemaBuilder.buildSchema();
+
+  @Test
+  void sortsThroughManyRunsAndMergePasses() throws IOException {
+    List<GenericRecord> events = generate(3_000);
+    File input = write(schema, events.subList(0, 2_000), "a.avro");
+    File second = write(schema, events.subList(2_000, 3_000), "b.avro");
+    ExternalSortConfig config =
+        config().threads(3).splitBytes(64 * 1024).runBufferBytes(128 * 1024).mergeFanIn(3).build();
+
+    File output = temp.resolve("sorted.avro").toFile();
+    SortResult result = new ExternalSorter(schema, config).sort(List.of(input, second), output);
+
+    assertEquals(3_000, result.getRecords());
+    assertTrue(result.getRuns() <= 3, result.toText());
+    assertTrue(result.getMergePasses() > 1, result.toText());
+    List<GenericRecord> expected = read(input, schema);
+    expected.addAll(read(second, schema));
+    assertSortedPermutation(expected, read(output, schema));
+  }
+
+  @Test
+  void everyBlockIsReadByExactlyOneSplit() throws IOException {
+    List<GenericRecord> events = generate(400);
+    File input = write(schema, events, "events.avro");
+    // Split sizes below, around and above the ~4 KiB blocks, including ones ending mid-marker.
+    for (long splitBytes : new long[] {997, 4_096, 4_113, 9_999, input.length() - 1}) {
+      File output = temp.resolve("sorted-" + splitBytes + ".avro").toFile();
+      SortResult result =
+          new ExternalSorter(schema, config().threads(4).splitBytes(splitBytes).build())
+              .sort(List.of(input), output);
+
+      assertEquals(events.size(), result.getRecords(), "split size " + splitBytes);
+      assertSortedPermutation(read(input, schema), read(output, schema));
+    }
+  }
+
+  @Test
+  void resolvesFilesWrittenWithAnotherSchema() throws IOException {
+    Schema older =
+        new Schema.Parser().parse(new File("src/main/resources/schemas/event-data-payload.avsc"));
+    List<GenericRecord> events = new ArrayList<>();
+    for (GenericRecord event : generate(500)) {
+      GenericData.Record copy = new GenericData.Record(older);
+      for (Schema.Field field : older.getFields()) {
+        copy.put(field.pos(), event.get(field.name()));
+      }
+      events.add(copy);
+    }
+    File input = write(older, events, "older.avro");
+
+    File output = temp.resolve("sorted.avro").toFile();
+    new ExternalSorter(schema, config().threads(2).splitBytes(8 * 1024).build())
+        .sort(List.of(input), output);
+
+    List<GenericRecord> sorted = read(output, schema);
+    assertEquals(schema, sorted.get(0).getSchema());
+    // Reading the input with the current schema resolves it the way the sorter must have.
+    assertSortedPermutation(read(input, schema), sorted);
+  }
+
+  private ExternalSortConfig.ExternalSortConfigBuilder config() {
+    return ExternalSortConfig.builder()
+        .tempDirectory(temp.toFile())
+        .ioBufferBytes(8 * 1024)
+        .codec(CodecFactory.deflateCodec(1));
+  }
+
+  /** Few clients and sessions, so sort keys share long prefixes. */
+  private List<GenericRecord> generate(int count) {
+    EventGenerator generator =
+        new EventGenerator(
+            EventGeneratorConfig.builder()
+                .clientCardinality(20)
+                .concurrentSessions(10)
+                .meanEventsPerSession(30)
+                .build(),
+            schema,
+            () -> 1_700_000_000_000L);
+    List<GenericRecord> events = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      events.add(generator.next());
+    }
+    return events;
+  }
+
+  private File write(Schema writerSchema, List<GenericRecord> events, String name)
+      throws IOException {
+    File file = temp.resolve(name).toFile();
+    try (DataFileWriter<GenericRecord> writer =
+        new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(writerSchema))) {
+      writer.setCodec(CodecFactory.deflateCodec(1));
+      writer.setSyncInterval(4 * 1024);
+      writer.create(writerSchema, file);
+      for (GenericRecord event : events) {
+        writer.append(event);
+      }
+    }
+    return file;
+  }
+
+  /** Reads a file into {@code readerSchema}, so maps are built the same way for every file. */
+  private static List<GenericRecord> read(File file, Schema readerSchema) throws IOException {
+    List<GenericRecord> events = new ArrayList<>();
+    try (DataFileReader<GenericRecord> reader =
+        new DataFileReader<>(file, new GenericDatumReader<>(null, readerSchema))) {
+      for (GenericRecord event : reader) {
+        events.add(event);
+      }
+    }
+    return events;
+  }
+
+  private static void assertSortedPermutation(
+      List<GenericRecord> input, List<GenericRecord> sorted) {
+    assertEquals(input.size(), sorted.size());
+    for (int i = 1; i < sorted.size(); i++) {
+      assertTrue(KEY_ORDER.compare(sorted.get(i - 1), sorted.get(i)) <= 0, "out of order at " + i);
+    }
+    assertEquals(counts(input), counts(sorted));
+  }
+
+  private static Map<String, Integer> counts(List<GenericRecord> events) {
+    Map<String, Integer> counts = new HashMap<>();
+    for (GenericRecord event : events) {
+      counts.merge(event.toString(), 1, Integer::sum);
+    }
+    return counts;
+  }
+}